@@ -57,6 +57,7 @@ public class CanvasMod implements ClientModInitializer {
 	public static KeyBinding INCREMENT_A = new KeyBinding("key.canvas.increment_a", Character.valueOf('='), "key.canvas.category");
 	public static KeyBinding DECREMENT_B = new KeyBinding("key.canvas.decrement_b", Character.valueOf('['), "key.canvas.category");
 	public static KeyBinding INCREMENT_B = new KeyBinding("key.canvas.increment_b", Character.valueOf(']'), "key.canvas.category");
+	public static KeyBinding TELEMETRY_KEY = new KeyBinding("key.canvas.dump_telemetry", Character.valueOf('\\'), "key.canvas.category");
 
 	@Override
 	public void onInitializeClient() {
@@ -81,6 +82,7 @@ public class CanvasMod implements ClientModInitializer {
 		KeyBindingHelper.registerKeyBinding(INCREMENT_A);
 		KeyBindingHelper.registerKeyBinding(DECREMENT_B);
 		KeyBindingHelper.registerKeyBinding(INCREMENT_B);
+		KeyBindingHelper.registerKeyBinding(TELEMETRY_KEY);
 
 		Compat.init();
 
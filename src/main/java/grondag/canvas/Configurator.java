@@ -53,6 +53,7 @@ public class Configurator {
 	public static boolean enableBloom = DEFAULTS.enableBloom;
 	public static float bloomIntensity = DEFAULTS.bloomIntensity;
 	public static float bloomScale = DEFAULTS.bloomScale;
+	public static int bloomDownscale = DEFAULTS.bloomDownscale;
 	public static boolean wavyGrass = DEFAULTS.wavyGrass;
 	public static int handheldLightRadius = DEFAULTS.handheldLightRadius;
 	public static boolean lightmapNoise = DEFAULTS.lightmapNoise;
@@ -68,6 +69,14 @@ public class Configurator {
 	public static boolean fixLuminousBlockShading = DEFAULTS.fixLuminousBlockShading;
 	public static boolean terrainSetupOffThread = DEFAULTS.terrainSetupOffThread;
 	public static boolean cullEntityRender = DEFAULTS.cullEntityRender;
+	public static boolean occludeEntities = DEFAULTS.occludeEntities;
+	public static boolean bakeBlockEntities = DEFAULTS.bakeBlockEntities;
+	public static String staticBlockEntities = DEFAULTS.staticBlockEntities;
+	public static boolean batchBlockEntities = DEFAULTS.batchBlockEntities;
+	public static int blockEntityTickSkipDistance = DEFAULTS.blockEntityTickSkipDistance;
+	public static boolean instanceEntityModels = DEFAULTS.instanceEntityModels;
+	public static boolean cacheGuiItems = DEFAULTS.cacheGuiItems;
+	public static boolean cacheItemMeshes = DEFAULTS.cacheItemMeshes;
 	public static boolean greedyRenderThread = DEFAULTS.greedyRenderThread;
 	public static boolean forceJmxModelLoading = DEFAULTS.forceJmxModelLoading;
 	public static boolean reduceResolutionOnMac = DEFAULTS.reduceResolutionOnMac;
@@ -75,6 +84,19 @@ public class Configurator {
 	public static int staticFrustumPadding = DEFAULTS.staticFrustumPadding;
 	public static int dynamicFrustumPadding = DEFAULTS.dynamicFrustumPadding;
 	public static boolean cullParticles = DEFAULTS.cullParticles;
+	public static boolean parallelParticles = DEFAULTS.parallelParticles;
+	public static int particleThinningDistance = DEFAULTS.particleThinningDistance;
+	public static boolean mergeFluidSurfaces = DEFAULTS.mergeFluidSurfaces;
+	public static boolean greedyFarTerrain = DEFAULTS.greedyFarTerrain;
+	public static int greedyFarTerrainDistance = DEFAULTS.greedyFarTerrainDistance;
+	public static boolean reduceFarDetail = DEFAULTS.reduceFarDetail;
+	public static int reducedDetailDistance = DEFAULTS.reducedDetailDistance;
+	public static boolean compactMeshes = DEFAULTS.compactMeshes;
+	public static boolean worldDataUniformBuffer = DEFAULTS.worldDataUniformBuffer;
+	public static boolean groupTerrainDraws = DEFAULTS.groupTerrainDraws;
+	public static boolean programBinaryCache = DEFAULTS.programBinaryCache;
+	public static boolean shaderSpecialization = DEFAULTS.shaderSpecialization;
+	public static int specializedShaderLimit = DEFAULTS.specializedShaderLimit;
 	public static boolean shaderDebug = DEFAULTS.shaderDebug;
 	public static boolean lightmapDebug = DEFAULTS.lightmapDebug;
 	public static boolean conciseErrors = DEFAULTS.conciseErrors;
@@ -86,6 +108,8 @@ public class Configurator {
 	public static boolean debugOcclusionRaster = DEFAULTS.debugOcclusionRaster;
 	public static boolean debugOcclusionBoxes = DEFAULTS.debugOcclusionBoxes;
 	public static boolean traceOcclusionOutcomes = DEFAULTS.traceOcclusionOutcomes;
+	public static boolean gpuProfiler = DEFAULTS.gpuProfiler;
+	public static boolean enableTelemetry = DEFAULTS.enableTelemetry;
 	public static boolean traceOcclusionEdgeCases = DEFAULTS.traceOcclusionEdgeCases;
 	public static boolean enableBufferDebug = DEFAULTS.enableBufferDebug;
 	public static boolean enableLifeCycleDebug = DEFAULTS.enableLifeCycleDebug;
@@ -141,6 +165,7 @@ public class Configurator {
 		enableBloom = config.enableBloom;
 		bloomIntensity = config.bloomIntensity;
 		bloomScale = config.bloomScale;
+		bloomDownscale = MathHelper.clamp(config.bloomDownscale, 0, 2);
 		wavyGrass = config.wavyGrass;
 		handheldLightRadius = config.handheldLightRadius;
 
@@ -164,6 +189,14 @@ public class Configurator {
 		safeNativeMemoryAllocation = config.safeNativeMemoryAllocation;
 		enableVao = config.enableVao;
 		cullEntityRender = config.cullEntityRender;
+		occludeEntities = config.occludeEntities;
+		bakeBlockEntities = config.bakeBlockEntities;
+		staticBlockEntities = config.staticBlockEntities;
+		batchBlockEntities = config.batchBlockEntities;
+		blockEntityTickSkipDistance = MathHelper.clamp(config.blockEntityTickSkipDistance, 0, 256);
+		instanceEntityModels = config.instanceEntityModels;
+		cacheGuiItems = config.cacheGuiItems;
+		cacheItemMeshes = config.cacheItemMeshes;
 		greedyRenderThread = config.greedyRenderThread;
 		forceJmxModelLoading = config.forceJmxModelLoading;
 		reduceResolutionOnMac = config.reduceResolutionOnMac;
@@ -171,6 +204,19 @@ public class Configurator {
 		dynamicFrustumPadding = MathHelper.clamp(config.dynamicFrustumPadding, 0, 20);
 		staticFrustumPadding = MathHelper.clamp(config.staticFrustumPadding, 0, 30);
 		cullParticles = config.cullParticles;
+		parallelParticles = config.parallelParticles;
+		particleThinningDistance = MathHelper.clamp(config.particleThinningDistance, 0, 128);
+		mergeFluidSurfaces = config.mergeFluidSurfaces;
+		greedyFarTerrain = config.greedyFarTerrain;
+		greedyFarTerrainDistance = MathHelper.clamp(config.greedyFarTerrainDistance, 4, 32);
+		reduceFarDetail = config.reduceFarDetail;
+		reducedDetailDistance = MathHelper.clamp(config.reducedDetailDistance, 4, 32);
+		compactMeshes = config.compactMeshes;
+		worldDataUniformBuffer = config.worldDataUniformBuffer;
+		groupTerrainDraws = config.groupTerrainDraws;
+		programBinaryCache = config.programBinaryCache;
+		shaderSpecialization = config.shaderSpecialization;
+		specializedShaderLimit = MathHelper.clamp(config.specializedShaderLimit, 1, 64);
 
 		lightmapDebug = config.lightmapDebug;
 		conciseErrors = config.conciseErrors;
@@ -182,6 +228,8 @@ public class Configurator {
 		debugOcclusionRaster = config.debugOcclusionRaster;
 		traceOcclusionEdgeCases = config.traceOcclusionEdgeCases;
 		traceOcclusionOutcomes = config.traceOcclusionOutcomes;
+		gpuProfiler = config.gpuProfiler;
+		enableTelemetry = config.enableTelemetry;
 		enableBufferDebug = config.enableBufferDebug;
 		enableLifeCycleDebug = config.enableLifeCycleDebug;
 		logMissingUniforms = config.logMissingUniforms;
@@ -195,6 +243,7 @@ public class Configurator {
 		config.enableBloom = enableBloom;
 		config.bloomIntensity = bloomIntensity;
 		config.bloomScale = bloomScale;
+		config.bloomDownscale = bloomDownscale;
 		config.wavyGrass = wavyGrass;
 		config.handheldLightRadius = handheldLightRadius;
 
@@ -217,6 +266,14 @@ public class Configurator {
 		config.safeNativeMemoryAllocation = safeNativeMemoryAllocation;
 		config.enableVao = enableVao;
 		config.cullEntityRender = cullEntityRender;
+		config.occludeEntities = occludeEntities;
+		config.bakeBlockEntities = bakeBlockEntities;
+		config.staticBlockEntities = staticBlockEntities;
+		config.batchBlockEntities = batchBlockEntities;
+		config.blockEntityTickSkipDistance = blockEntityTickSkipDistance;
+		config.instanceEntityModels = instanceEntityModels;
+		config.cacheGuiItems = cacheGuiItems;
+		config.cacheItemMeshes = cacheItemMeshes;
 		config.greedyRenderThread = greedyRenderThread;
 		config.forceJmxModelLoading = forceJmxModelLoading;
 		config.reduceResolutionOnMac = reduceResolutionOnMac;
@@ -224,6 +281,19 @@ public class Configurator {
 		config.staticFrustumPadding = staticFrustumPadding;
 		config.dynamicFrustumPadding = dynamicFrustumPadding;
 		config.cullParticles = cullParticles;
+		config.parallelParticles = parallelParticles;
+		config.particleThinningDistance = particleThinningDistance;
+		config.mergeFluidSurfaces = mergeFluidSurfaces;
+		config.greedyFarTerrain = greedyFarTerrain;
+		config.greedyFarTerrainDistance = greedyFarTerrainDistance;
+		config.reduceFarDetail = reduceFarDetail;
+		config.reducedDetailDistance = reducedDetailDistance;
+		config.compactMeshes = compactMeshes;
+		config.worldDataUniformBuffer = worldDataUniformBuffer;
+		config.groupTerrainDraws = groupTerrainDraws;
+		config.programBinaryCache = programBinaryCache;
+		config.shaderSpecialization = shaderSpecialization;
+		config.specializedShaderLimit = specializedShaderLimit;
 
 		config.lightmapDebug = lightmapDebug;
 		config.conciseErrors = conciseErrors;
@@ -234,6 +304,8 @@ public class Configurator {
 		config.debugOcclusionBoxes = debugOcclusionBoxes;
 		config.debugOcclusionRaster = debugOcclusionRaster;
 		config.traceOcclusionOutcomes = traceOcclusionOutcomes;
+		config.gpuProfiler = gpuProfiler;
+		config.enableTelemetry = enableTelemetry;
 		config.traceOcclusionEdgeCases = traceOcclusionEdgeCases;
 		config.enableBufferDebug = enableBufferDebug;
 		config.enableLifeCycleDebug = enableLifeCycleDebug;
@@ -331,6 +403,13 @@ public class Configurator {
 				.setSaveConsumer(b -> bloomScale = b / 100f)
 				.build());
 
+		features.addEntry(ENTRY_BUILDER
+				.startIntSlider(new TranslatableText("config.canvas.value.bloom_downscale"), bloomDownscale, 0, 2)
+				.setDefaultValue(DEFAULTS.bloomDownscale)
+				.setTooltip(parse("config.canvas.help.bloom_downscale"))
+				.setSaveConsumer(b -> bloomDownscale = b)
+				.build());
+
 		features.addEntry(ENTRY_BUILDER
 				.startBooleanToggle(new TranslatableText("config.canvas.value.wavy_grass"), wavyGrass)
 				.setDefaultValue(DEFAULTS.wavyGrass)
@@ -510,6 +589,83 @@ public class Configurator {
 				})
 				.build());
 
+		tweaks.addEntry(ENTRY_BUILDER
+				.startBooleanToggle(new TranslatableText("config.canvas.value.occlude_entities"), occludeEntities)
+				.setDefaultValue(DEFAULTS.occludeEntities)
+				.setTooltip(parse("config.canvas.help.occlude_entities"))
+				.setSaveConsumer(b -> {
+					occludeEntities = b;
+				})
+				.build());
+
+		tweaks.addEntry(ENTRY_BUILDER
+				.startBooleanToggle(new TranslatableText("config.canvas.value.bake_block_entities"), bakeBlockEntities)
+				.setDefaultValue(DEFAULTS.bakeBlockEntities)
+				.setTooltip(parse("config.canvas.help.bake_block_entities"))
+				.setSaveConsumer(b -> {
+					reload |= bakeBlockEntities != b;
+					bakeBlockEntities = b;
+				})
+				.build());
+
+		tweaks.addEntry(ENTRY_BUILDER
+				.startStrField(new TranslatableText("config.canvas.value.static_block_entities"), staticBlockEntities)
+				.setDefaultValue(DEFAULTS.staticBlockEntities)
+				.setTooltip(parse("config.canvas.help.static_block_entities"))
+				.setSaveConsumer(b -> {
+					reload |= !staticBlockEntities.equals(b);
+					staticBlockEntities = b;
+				})
+				.build());
+
+		tweaks.addEntry(ENTRY_BUILDER
+				.startBooleanToggle(new TranslatableText("config.canvas.value.batch_block_entities"), batchBlockEntities)
+				.setDefaultValue(DEFAULTS.batchBlockEntities)
+				.setTooltip(parse("config.canvas.help.batch_block_entities"))
+				.setSaveConsumer(b -> {
+					batchBlockEntities = b;
+				})
+				.build());
+
+		tweaks.addEntry(ENTRY_BUILDER
+				.startIntSlider(new TranslatableText("config.canvas.value.block_entity_tick_skip_distance"), blockEntityTickSkipDistance, 0, 256)
+				.setDefaultValue(DEFAULTS.blockEntityTickSkipDistance)
+				.setTooltip(parse("config.canvas.help.block_entity_tick_skip_distance"))
+				.setSaveConsumer(b -> {
+					blockEntityTickSkipDistance = b;
+				})
+				.build());
+
+		tweaks.addEntry(ENTRY_BUILDER
+				.startBooleanToggle(new TranslatableText("config.canvas.value.instance_entity_models"), instanceEntityModels)
+				.setDefaultValue(DEFAULTS.instanceEntityModels)
+				.setTooltip(parse("config.canvas.help.instance_entity_models"))
+				.setSaveConsumer(b -> {
+					reload |= instanceEntityModels != b;
+					instanceEntityModels = b;
+				})
+				.build());
+
+		tweaks.addEntry(ENTRY_BUILDER
+				.startBooleanToggle(new TranslatableText("config.canvas.value.cache_gui_items"), cacheGuiItems)
+				.setDefaultValue(DEFAULTS.cacheGuiItems)
+				.setTooltip(parse("config.canvas.help.cache_gui_items"))
+				.setSaveConsumer(b -> {
+					reload |= cacheGuiItems != b;
+					cacheGuiItems = b;
+				})
+				.build());
+
+		tweaks.addEntry(ENTRY_BUILDER
+				.startBooleanToggle(new TranslatableText("config.canvas.value.cache_item_meshes"), cacheItemMeshes)
+				.setDefaultValue(DEFAULTS.cacheItemMeshes)
+				.setTooltip(parse("config.canvas.help.cache_item_meshes"))
+				.setSaveConsumer(b -> {
+					reload |= cacheItemMeshes != b;
+					cacheItemMeshes = b;
+				})
+				.build());
+
 		tweaks.addEntry(ENTRY_BUILDER
 				.startBooleanToggle(new TranslatableText("config.canvas.value.greedy_render_thread"), greedyRenderThread)
 				.setDefaultValue(DEFAULTS.greedyRenderThread)
@@ -574,6 +730,129 @@ public class Configurator {
 				})
 				.build());
 
+		tweaks.addEntry(ENTRY_BUILDER
+				.startBooleanToggle(new TranslatableText("config.canvas.value.parallel_particles"), parallelParticles)
+				.setDefaultValue(DEFAULTS.parallelParticles)
+				.setTooltip(parse("config.canvas.help.parallel_particles"))
+				.setSaveConsumer(b -> {
+					parallelParticles = b;
+				})
+				.build());
+
+		tweaks.addEntry(ENTRY_BUILDER
+				.startIntSlider(new TranslatableText("config.canvas.value.particle_thinning_distance"), particleThinningDistance, 0, 128)
+				.setDefaultValue(DEFAULTS.particleThinningDistance)
+				.setTooltip(parse("config.canvas.help.particle_thinning_distance"))
+				.setSaveConsumer(b -> {
+					particleThinningDistance = b;
+				})
+				.build());
+
+		tweaks.addEntry(ENTRY_BUILDER
+				.startBooleanToggle(new TranslatableText("config.canvas.value.merge_fluid_surfaces"), mergeFluidSurfaces)
+				.setDefaultValue(DEFAULTS.mergeFluidSurfaces)
+				.setTooltip(parse("config.canvas.help.merge_fluid_surfaces"))
+				.setSaveConsumer(b -> {
+					reload |= mergeFluidSurfaces != b;
+					mergeFluidSurfaces = b;
+				})
+				.build());
+
+		tweaks.addEntry(ENTRY_BUILDER
+				.startBooleanToggle(new TranslatableText("config.canvas.value.greedy_far_terrain"), greedyFarTerrain)
+				.setDefaultValue(DEFAULTS.greedyFarTerrain)
+				.setTooltip(parse("config.canvas.help.greedy_far_terrain"))
+				.setSaveConsumer(b -> {
+					reload |= greedyFarTerrain != b;
+					greedyFarTerrain = b;
+				})
+				.build());
+
+		tweaks.addEntry(ENTRY_BUILDER
+				.startIntSlider(new TranslatableText("config.canvas.value.greedy_far_terrain_distance"), greedyFarTerrainDistance, 4, 32)
+				.setDefaultValue(DEFAULTS.greedyFarTerrainDistance)
+				.setTooltip(parse("config.canvas.help.greedy_far_terrain_distance"))
+				.setSaveConsumer(b -> {
+					reload |= greedyFarTerrainDistance != b;
+					greedyFarTerrainDistance = b;
+				})
+				.build());
+
+		tweaks.addEntry(ENTRY_BUILDER
+				.startBooleanToggle(new TranslatableText("config.canvas.value.reduce_far_detail"), reduceFarDetail)
+				.setDefaultValue(DEFAULTS.reduceFarDetail)
+				.setTooltip(parse("config.canvas.help.reduce_far_detail"))
+				.setSaveConsumer(b -> {
+					reload |= reduceFarDetail != b;
+					reduceFarDetail = b;
+				})
+				.build());
+
+		tweaks.addEntry(ENTRY_BUILDER
+				.startIntSlider(new TranslatableText("config.canvas.value.reduced_detail_distance"), reducedDetailDistance, 4, 32)
+				.setDefaultValue(DEFAULTS.reducedDetailDistance)
+				.setTooltip(parse("config.canvas.help.reduced_detail_distance"))
+				.setSaveConsumer(b -> {
+					reload |= reducedDetailDistance != b;
+					reducedDetailDistance = b;
+				})
+				.build());
+
+		tweaks.addEntry(ENTRY_BUILDER
+				.startBooleanToggle(new TranslatableText("config.canvas.value.compact_meshes"), compactMeshes)
+				.setDefaultValue(DEFAULTS.compactMeshes)
+				.setTooltip(parse("config.canvas.help.compact_meshes"))
+				.setSaveConsumer(b -> {
+					compactMeshes = b;
+				})
+				.build());
+
+		tweaks.addEntry(ENTRY_BUILDER
+				.startBooleanToggle(new TranslatableText("config.canvas.value.world_data_uniform_buffer"), worldDataUniformBuffer)
+				.setDefaultValue(DEFAULTS.worldDataUniformBuffer)
+				.setTooltip(parse("config.canvas.help.world_data_uniform_buffer"))
+				.setSaveConsumer(b -> {
+					reload |= worldDataUniformBuffer != b;
+					worldDataUniformBuffer = b;
+				})
+				.build());
+
+		tweaks.addEntry(ENTRY_BUILDER
+				.startBooleanToggle(new TranslatableText("config.canvas.value.group_terrain_draws"), groupTerrainDraws)
+				.setDefaultValue(DEFAULTS.groupTerrainDraws)
+				.setTooltip(parse("config.canvas.help.group_terrain_draws"))
+				.setSaveConsumer(b -> {
+					groupTerrainDraws = b;
+				})
+				.build());
+
+		tweaks.addEntry(ENTRY_BUILDER
+				.startBooleanToggle(new TranslatableText("config.canvas.value.program_binary_cache"), programBinaryCache)
+				.setDefaultValue(DEFAULTS.programBinaryCache)
+				.setTooltip(parse("config.canvas.help.program_binary_cache"))
+				.setSaveConsumer(b -> {
+					programBinaryCache = b;
+				})
+				.build());
+
+		tweaks.addEntry(ENTRY_BUILDER
+				.startBooleanToggle(new TranslatableText("config.canvas.value.shader_specialization"), shaderSpecialization)
+				.setDefaultValue(DEFAULTS.shaderSpecialization)
+				.setTooltip(parse("config.canvas.help.shader_specialization"))
+				.setSaveConsumer(b -> {
+					shaderSpecialization = b;
+				})
+				.build());
+
+		tweaks.addEntry(ENTRY_BUILDER
+				.startIntSlider(new TranslatableText("config.canvas.value.specialized_shader_limit"), specializedShaderLimit, 1, 64)
+				.setDefaultValue(DEFAULTS.specializedShaderLimit)
+				.setTooltip(parse("config.canvas.help.specialized_shader_limit"))
+				.setSaveConsumer(b -> {
+					specializedShaderLimit = b;
+				})
+				.build());
+
 		// DEBUG
 		final ConfigCategory debug = builder.getOrCreateCategory(new TranslatableText("config.canvas.category.debug"));
 
@@ -648,6 +927,24 @@ public class Configurator {
 				.setSaveConsumer(b -> traceOcclusionOutcomes = b)
 				.build());
 
+		debug.addEntry(ENTRY_BUILDER
+				.startBooleanToggle(new TranslatableText("config.canvas.value.gpu_profiler"), gpuProfiler)
+				.setDefaultValue(DEFAULTS.gpuProfiler)
+				.setTooltip(parse("config.canvas.help.gpu_profiler"))
+				.setSaveConsumer(b -> {
+					gpuProfiler = b;
+				})
+				.build());
+
+		debug.addEntry(ENTRY_BUILDER
+				.startBooleanToggle(new TranslatableText("config.canvas.value.enable_telemetry"), enableTelemetry)
+				.setDefaultValue(DEFAULTS.enableTelemetry)
+				.setTooltip(parse("config.canvas.help.enable_telemetry"))
+				.setSaveConsumer(b -> {
+					enableTelemetry = b;
+				})
+				.build());
+
 		debug.addEntry(ENTRY_BUILDER
 				.startBooleanToggle(new TranslatableText("config.canvas.value.buffer_debug"), enableBufferDebug)
 				.setDefaultValue(DEFAULTS.enableBufferDebug)
@@ -734,6 +1031,8 @@ public class Configurator {
 		public float bloomIntensity = 0.1f;
 		@Comment("Size of bloom effect around light sources. 0.0 to 2.0, default is 0.25.")
 		public float bloomScale = 0.25f;
+		@Comment("Bloom blur resolution. 0 = full, 1 = half, 2 = quarter. Higher is faster.")
+		public int bloomDownscale = 0;
 		@Comment("Animated foliage")
 		public boolean wavyGrass = true;
 		@Comment("Hand held light max radius. 0-15, Zero disables")
@@ -778,6 +1077,22 @@ public class Configurator {
 		boolean enableVao = true;
 		@Comment("Use more efficient entity culling. Improves framerate in most scenes.")
 		boolean cullEntityRender = true;
+		@Comment("Test entities and block entities against the terrain occlusion raster. Requires cullEntityRender.")
+		boolean occludeEntities = true;
+		@Comment("Render listed block entities into terrain buffers instead of every frame. Opt-in.")
+		boolean bakeBlockEntities = false;
+		@Comment("Block entity types baked when bakeBlockEntities is true. Comma-separated type IDs.")
+		String staticBlockEntities = "minecraft:sign, minecraft:bed, minecraft:skull, minecraft:chest, minecraft:trapped_chest, minecraft:ender_chest";
+		@Comment("Render block entities grouped by renderer and block state so material setup is shared.")
+		boolean batchBlockEntities = true;
+		@Comment("Client ticks of out-of-view animated block entities beyond this many blocks happen every fourth tick, so their animations fall behind. 0 disables.")
+		int blockEntityTickSkipDistance = 0;
+		@Comment("Draw repeated entity model parts with GPU instancing.")
+		boolean instanceEntityModels = false;
+		@Comment("Reuse rendered icons for static items in inventory screens.")
+		boolean cacheGuiItems = false;
+		@Comment("Reuse encoded vertex data for plain item models.")
+		boolean cacheItemMeshes = false;
 		@Comment("When true, render thread does not yield to other threads every frame. Vanilla behavior is false (yields).")
 		boolean greedyRenderThread = true;
 		@Comment("Use more efficient model loading. Improves chunk rebuild speed and reduces memory use.")
@@ -790,8 +1105,34 @@ public class Configurator {
 		int staticFrustumPadding = 10;
 		@Comment("Extra padding at edges of screen to reduce missing chunks when view roates and terrainSetupOffThread is on. In degrees. Values 0 to 30. Zero disables.")
 		int dynamicFrustumPadding = 20;
-		@Comment("Culls particles that are not in view. Should always be faster.")
+		@Comment("Culls particles that are not in view or are in terrain regions hidden from view. Should always be faster.")
 		boolean cullParticles = true;
+		@Comment("Builds geometry for large numbers of vanilla particles on several threads.")
+		boolean parallelParticles = true;
+		@Comment("Blocks beyond which a growing share of small particles is skipped. Zero disables thinning.")
+		int particleThinningDistance = 0;
+		@Comment("Combines flat, still fluid surfaces in each chunk section into larger quads. Reduces vertex count for oceans and lakes.")
+		boolean mergeFluidSurfaces = false;
+		@Comment("Combines matching block faces of distant chunks into larger quads. Reduces vertex count and buffer memory for far terrain.")
+		boolean greedyFarTerrain = false;
+		@Comment("Distance in chunks beyond which block faces are merged when greedyFarTerrain is enabled. Values 4 to 32.")
+		int greedyFarTerrainDistance = 16;
+		@Comment("Distant regions omit plants and render leaves as solid blocks.")
+		boolean reduceFarDetail = false;
+		@Comment("Distance in chunks beyond which regions are built with reduced detail when reduceFarDetail is enabled. Values 4 to 32.")
+		int reducedDetailDistance = 12;
+		@Comment("Store baked meshes compressed and share identical meshes. Applies after resources reload.")
+		boolean compactMeshes = false;
+		@Comment("Upload world data once per frame to a uniform buffer shared by all shaders. Ignored if unsupported.")
+		boolean worldDataUniformBuffer = false;
+		@Comment("Draw solid terrain grouped by shader, texture and render state instead of by region.")
+		boolean groupTerrainDraws = false;
+		@Comment("Save linked shader programs to disk and reuse them on later launches. Cleared when the graphics driver changes.")
+		boolean programBinaryCache = false;
+		@Comment("Compile dedicated programs for the most used material shaders.")
+		boolean shaderSpecialization = false;
+		@Comment("Maximum number of dedicated material programs.")
+		int specializedShaderLimit = 8;
 
 		// DEBUG
 		@Comment("Output runtime per-material shader source. For shader development debugging.")
@@ -816,6 +1157,10 @@ public class Configurator {
 		boolean debugOcclusionBoxes = false;
 		@Comment("Log various region/occluder tests and status changes. Highly verbose and WILL spam the log. Requires restart.")
 		boolean traceOcclusionOutcomes = false;
+		@Comment("Time major render stages on the GPU. Shown in F3 screen and via JMX.")
+		boolean gpuProfiler = false;
+		@Comment("Per-thread timing event recording for export and JMX percentiles. Can be toggled without restart.")
+		boolean enableTelemetry = false;
 		@Comment("Log clipping or other non-critical failures detected by terrain occluder. May spam the log.")
 		boolean traceOcclusionEdgeCases = false;
 		@Comment("Log uniforms not found in shaders. Sometimes useful for shader debug. Will spam the log.")
@@ -28,10 +28,12 @@ import net.fabricmc.fabric.api.renderer.v1.material.RenderMaterial;
 import net.fabricmc.fabric.api.renderer.v1.mesh.MeshBuilder;
 
 import grondag.canvas.CanvasMod;
+import grondag.canvas.apiimpl.mesh.CompactMeshData;
 import grondag.canvas.apiimpl.mesh.MeshBuilderImpl;
 import grondag.canvas.apiimpl.rendercontext.BlockRenderContext;
 import grondag.canvas.apiimpl.rendercontext.EntityBlockRenderContext;
 import grondag.canvas.apiimpl.rendercontext.ItemRenderContext;
+import grondag.canvas.buffer.instance.ModelInstancer;
 import grondag.canvas.light.AoVertexClampFunction;
 import grondag.canvas.light.LightmapHd;
 import grondag.canvas.light.LightmapHdTexture;
@@ -39,12 +41,17 @@ import grondag.canvas.material.property.MaterialTextureState;
 import grondag.canvas.material.state.MaterialFinderImpl;
 import grondag.canvas.material.state.RenderMaterialImpl;
 import grondag.canvas.perf.ChunkRebuildCounters;
+import grondag.canvas.perf.ShaderLoadCounters;
+import grondag.canvas.render.CanvasParticleRenderer;
 import grondag.canvas.shader.GlShaderManager;
 import grondag.canvas.shader.MaterialProgramManager;
 import grondag.canvas.shader.ProcessShaders;
+import grondag.canvas.shader.WorldDataUniformBuffer;
 import grondag.canvas.terrain.region.ProtoRenderRegion;
+import grondag.canvas.terrain.region.StaticBlockEntities;
 import grondag.canvas.terrain.util.ChunkColorCache;
 import grondag.canvas.terrain.util.TerrainModelSpace;
+import grondag.canvas.texture.GuiItemIconCache;
 import grondag.frex.api.Renderer;
 import grondag.frex.api.material.MaterialCondition;
 
@@ -91,17 +98,29 @@ public class Canvas implements Renderer {
 
 	public void reload() {
 		CanvasMod.LOG.info(I18n.translate("info.canvas.reloading"));
+
+		if (ShaderLoadCounters.ENABLED) {
+			ShaderLoadCounters.beginReload();
+		}
+
 		ProtoRenderRegion.reload();
+		StaticBlockEntities.reload();
 		BlockRenderContext.reload();
 		EntityBlockRenderContext.reload();
 		ItemRenderContext.reload();
+		ModelInstancer.reload();
+		CanvasParticleRenderer.reload();
+		GuiItemIconCache.reload();
 		ChunkRebuildCounters.reset();
+		CompactMeshData.logStats();
 		ChunkColorCache.invalidate();
 		AoVertexClampFunction.reload();
+		WorldDataUniformBuffer.reload();
 		GlShaderManager.INSTANCE.reload();
 		LightmapHdTexture.reload();
 		LightmapHd.reload();
 		MaterialProgramManager.INSTANCE.reload();
+		MaterialProgramManager.INSTANCE.reloadVariants();
 		TerrainModelSpace.reload();
 		ProcessShaders.reload();
 		MaterialTextureState.reload();
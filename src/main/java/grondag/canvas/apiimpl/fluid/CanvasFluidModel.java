@@ -0,0 +1,374 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.apiimpl.fluid;
+
+import java.util.Random;
+import java.util.function.Supplier;
+
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.LeavesBlock;
+import net.minecraft.block.TransparentBlock;
+import net.minecraft.client.texture.Sprite;
+import net.minecraft.fluid.Fluid;
+import net.minecraft.fluid.FluidState;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Direction;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.util.shape.VoxelShape;
+import net.minecraft.util.shape.VoxelShapes;
+import net.minecraft.world.BlockRenderView;
+import net.minecraft.world.BlockView;
+
+import net.fabricmc.fabric.api.renderer.v1.material.RenderMaterial;
+import net.fabricmc.fabric.api.renderer.v1.render.RenderContext;
+
+import grondag.canvas.Configurator;
+import grondag.canvas.apiimpl.mesh.MutableQuadViewImpl;
+import grondag.canvas.apiimpl.rendercontext.TerrainRenderContext;
+import grondag.canvas.mixinterface.SpriteExt;
+import grondag.canvas.terrain.region.FastRenderRegion;
+import grondag.frex.api.fluid.AbstractFluidModel;
+
+/**
+ * Fluid model with a terrain-specific emitter. Follows vanilla fluid geometry but reads
+ * corner heights and blended colors from the region's {@link FluidCornerCache} and, when
+ * enabled, hands still top faces to {@link FluidSurfaceMerger} instead of emitting them.
+ *
+ * <p>Falls back to the frex implementation outside of terrain rendering.
+ */
+public abstract class CanvasFluidModel extends AbstractFluidModel {
+	private static final VoxelShape SOURCE_SHAPE = VoxelShapes.cuboid(0.0D, 0.0D, 0.0D, 1.0D, 0.8888889F, 1.0D);
+
+	protected final RenderMaterial fluidMaterial;
+	protected final boolean blendColors;
+
+	public CanvasFluidModel(RenderMaterial material, boolean blendColors) {
+		super(material, blendColors);
+		fluidMaterial = material;
+		this.blendColors = blendColors;
+	}
+
+	@Override
+	public abstract int getFluidColor(BlockRenderView view, BlockPos pos, FluidState state);
+
+	@Override
+	public abstract Sprite[] getFluidSprites(BlockRenderView view, BlockPos pos, FluidState state);
+
+	@Override
+	public void emitBlockQuads(BlockRenderView blockView, BlockState blockState, BlockPos pos, Supplier<Random> randomSupplier, RenderContext context) {
+		if (blockView instanceof FastRenderRegion) {
+			emitTerrainQuads((FastRenderRegion) blockView, blockState, pos, (TerrainRenderContext) context);
+		} else {
+			super.emitBlockQuads(blockView, blockState, pos, randomSupplier, context);
+		}
+	}
+
+	protected void emitTerrainQuads(FastRenderRegion region, BlockState blockState, BlockPos pos, TerrainRenderContext context) {
+		final FluidState fluidState = blockState.getFluidState();
+		final Fluid fluid = fluidState.getFluid();
+		final FluidCornerCache corners = context.fluidCorners;
+		final BlockPos.Mutable searchPos = context.fluidSearchPos;
+
+		final int x = pos.getX();
+		final int y = pos.getY();
+		final int z = pos.getZ();
+
+		final boolean upVisible = isSideExposed(region, searchPos, x, y, z, Direction.UP, blockState, fluid);
+		final boolean downVisible = isSideExposed(region, searchPos, x, y, z, Direction.DOWN, blockState, fluid) && !isSideCovered(region, searchPos, x, y, z, Direction.DOWN, 0.8888889F);
+		final boolean northVisible = isSideExposed(region, searchPos, x, y, z, Direction.NORTH, blockState, fluid);
+		final boolean southVisible = isSideExposed(region, searchPos, x, y, z, Direction.SOUTH, blockState, fluid);
+		final boolean westVisible = isSideExposed(region, searchPos, x, y, z, Direction.WEST, blockState, fluid);
+		final boolean eastVisible = isSideExposed(region, searchPos, x, y, z, Direction.EAST, blockState, fluid);
+
+		if (!upVisible && !downVisible && !eastVisible && !westVisible && !northVisible && !southVisible) {
+			return;
+		}
+
+		final Sprite[] sprites = getFluidSprites(region, pos, fluidState);
+
+		// corner heights: nw, sw, se, ne
+		final float hNW = corners.height(x, y, z, fluid);
+		final float hSW = corners.height(x, y, z + 1, fluid);
+		final float hSE = corners.height(x + 1, y, z + 1, fluid);
+		final float hNE = corners.height(x + 1, y, z, fluid);
+
+		final int cNW, cSW, cSE, cNE;
+
+		if (blendColors) {
+			cNW = corners.color(x, y, z, this, fluid);
+			cSW = corners.color(x, y, z + 1, this, fluid);
+			cSE = corners.color(x + 1, y, z + 1, this, fluid);
+			cNE = corners.color(x + 1, y, z, this, fluid);
+		} else {
+			final int c = 0xFF000000 | getFluidColor(region, pos, fluidState);
+			cNW = c;
+			cSW = c;
+			cSE = c;
+			cNE = c;
+		}
+
+		final MutableQuadViewImpl qe = (MutableQuadViewImpl) context.getEmitter();
+		final float bottom = downVisible ? 0.001F : 0.0F;
+
+		if (upVisible && !isSideCovered(region, searchPos, x, y, z, Direction.UP, Math.min(Math.min(hNW, hSW), Math.min(hSE, hNE)))) {
+			final float tNW = hNW - 0.001F;
+			final float tSW = hSW - 0.001F;
+			final float tSE = hSE - 0.001F;
+			final float tNE = hNE - 0.001F;
+
+			final Vec3d velocity = fluidState.getVelocity(region, pos);
+			final boolean backFace = needsBackFace(region, searchPos, x, y + 1, z, fluid);
+
+			if (velocity.x == 0.0D && velocity.z == 0.0D) {
+				if (Configurator.mergeFluidSurfaces && tNW == tSW && tNW == tSE && tNW == tNE && cNW == cSW && cNW == cSE && cNW == cNE) {
+					final int light = topLight(region, searchPos, x, y, z);
+					context.fluidSurfaces.add(x - region.originX(), y - region.originY(), z - region.originZ(), this, blockState, tNW, cNW, light, backFace);
+				} else {
+					final Sprite sprite = sprites[0];
+					final int spriteId = ((SpriteExt) sprite).canvas_id();
+
+					start(qe, spriteId, Direction.UP);
+					vertex(qe, 0, 0.0F, tNW, 0.0F, 0.0F, 0.0F, cNW);
+					vertex(qe, 1, 0.0F, tSW, 1.0F, 0.0F, 1.0F, cSW);
+					vertex(qe, 2, 1.0F, tSE, 1.0F, 1.0F, 1.0F, cSE);
+					vertex(qe, 3, 1.0F, tNE, 0.0F, 1.0F, 0.0F, cNE);
+					qe.emit();
+
+					if (backFace) {
+						start(qe, spriteId, Direction.DOWN);
+						vertex(qe, 0, 0.0F, tNW, 0.0F, 0.0F, 0.0F, cNW);
+						vertex(qe, 1, 1.0F, tNE, 0.0F, 1.0F, 0.0F, cNE);
+						vertex(qe, 2, 1.0F, tSE, 1.0F, 1.0F, 1.0F, cSE);
+						vertex(qe, 3, 0.0F, tSW, 1.0F, 0.0F, 1.0F, cSW);
+						qe.emit();
+					}
+				}
+			} else {
+				final Sprite sprite = sprites[1];
+				final int spriteId = ((SpriteExt) sprite).canvas_id();
+				final float angle = (float) MathHelper.atan2(velocity.z, velocity.x) - ((float) Math.PI / 2F);
+				final float sin = MathHelper.sin(angle) * 0.25F;
+				final float cos = MathHelper.cos(angle) * 0.25F;
+
+				// flowing sprites are twice the size of still sprites, so the center is at 0.5
+				final float u0 = 0.5F + (-cos - sin);
+				final float v0 = 0.5F + (-cos + sin);
+				final float u1 = 0.5F + (-cos + sin);
+				final float v1 = 0.5F + (cos + sin);
+				final float u2 = 0.5F + (cos + sin);
+				final float v2 = 0.5F + (cos - sin);
+				final float u3 = 0.5F + (cos - sin);
+				final float v3 = 0.5F + (-cos - sin);
+
+				start(qe, spriteId, Direction.UP);
+				vertex(qe, 0, 0.0F, tNW, 0.0F, u0, v0, cNW);
+				vertex(qe, 1, 0.0F, tSW, 1.0F, u1, v1, cSW);
+				vertex(qe, 2, 1.0F, tSE, 1.0F, u2, v2, cSE);
+				vertex(qe, 3, 1.0F, tNE, 0.0F, u3, v3, cNE);
+				qe.emit();
+
+				if (backFace) {
+					start(qe, spriteId, Direction.DOWN);
+					vertex(qe, 0, 0.0F, tNW, 0.0F, u0, v0, cNW);
+					vertex(qe, 1, 1.0F, tNE, 0.0F, u3, v3, cNE);
+					vertex(qe, 2, 1.0F, tSE, 1.0F, u2, v2, cSE);
+					vertex(qe, 3, 0.0F, tSW, 1.0F, u1, v1, cSW);
+					qe.emit();
+				}
+			}
+		}
+
+		if (downVisible) {
+			final int spriteId = ((SpriteExt) sprites[0]).canvas_id();
+			start(qe, spriteId, Direction.DOWN);
+			vertex(qe, 0, 0.0F, bottom, 1.0F, 0.0F, 1.0F, cSW);
+			vertex(qe, 1, 0.0F, bottom, 0.0F, 0.0F, 0.0F, cNW);
+			vertex(qe, 2, 1.0F, bottom, 0.0F, 1.0F, 0.0F, cNE);
+			vertex(qe, 3, 1.0F, bottom, 1.0F, 1.0F, 1.0F, cSE);
+			qe.emit();
+		}
+
+		final boolean hasOverlay = needsOverlay();
+
+		if (northVisible) {
+			emitSide(region, qe, searchPos, x, y, z, Direction.NORTH, sprites[1], hasOverlay, hNW, hNE, 0.0F, 0.001F, 1.0F, 0.001F, bottom, cNW, cNE);
+		}
+
+		if (southVisible) {
+			emitSide(region, qe, searchPos, x, y, z, Direction.SOUTH, sprites[1], hasOverlay, hSE, hSW, 1.0F, 0.999F, 0.0F, 0.999F, bottom, cSE, cSW);
+		}
+
+		if (westVisible) {
+			emitSide(region, qe, searchPos, x, y, z, Direction.WEST, sprites[1], hasOverlay, hSW, hNW, 0.001F, 1.0F, 0.001F, 0.0F, bottom, cSW, cNW);
+		}
+
+		if (eastVisible) {
+			emitSide(region, qe, searchPos, x, y, z, Direction.EAST, sprites[1], hasOverlay, hNE, hSE, 0.999F, 0.0F, 0.999F, 1.0F, bottom, cNE, cSE);
+		}
+	}
+
+	/**
+	 * Emits a still top face merged from width x depth blocks, starting at the north-west block.
+	 * Light is already known, so the context must skip block lighting for these quads.
+	 */
+	public void emitMergedSurface(TerrainRenderContext context, BlockState blockState, BlockPos pos, int width, int depth, float height, int color, int light, boolean backFace) {
+		final Sprite sprite = getFluidSprites(context.region, pos, blockState.getFluidState())[0];
+		final int spriteId = ((SpriteExt) sprite).canvas_id();
+		final MutableQuadViewImpl qe = (MutableQuadViewImpl) context.getEmitter();
+
+		start(qe, spriteId, Direction.UP);
+		qe.uvRepeat(true);
+		vertex(qe, 0, 0.0F, height, 0.0F, 0.0F, 0.0F, color);
+		vertex(qe, 1, 0.0F, height, depth, 0.0F, depth, color);
+		vertex(qe, 2, width, height, depth, width, depth, color);
+		vertex(qe, 3, width, height, 0.0F, width, 0.0F, color);
+		lightmap(qe, light);
+		qe.emit();
+
+		if (backFace) {
+			start(qe, spriteId, Direction.DOWN);
+			qe.uvRepeat(true);
+			vertex(qe, 0, 0.0F, height, 0.0F, 0.0F, 0.0F, color);
+			vertex(qe, 1, width, height, 0.0F, width, 0.0F, color);
+			vertex(qe, 2, width, height, depth, width, depth, color);
+			vertex(qe, 3, 0.0F, height, depth, 0.0F, depth, color);
+			lightmap(qe, light);
+			qe.emit();
+		}
+	}
+
+	private void emitSide(FastRenderRegion region, MutableQuadViewImpl qe, BlockPos.Mutable searchPos, int x, int y, int z, Direction face, Sprite flowSprite, boolean hasOverlay,
+			float h1, float h2, float x1, float z1, float x2, float z2, float bottom, int c1, int c2) {
+		if (isSideCovered(region, searchPos, x, y, z, face, Math.max(h1, h2))) {
+			return;
+		}
+
+		Sprite sprite = flowSprite;
+		boolean isOverlay = false;
+
+		if (hasOverlay) {
+			final Block block = region.getBlockState(x + face.getOffsetX(), y, z + face.getOffsetZ()).getBlock();
+
+			if (block instanceof TransparentBlock || block instanceof LeavesBlock) {
+				sprite = overlaySprite();
+				isOverlay = true;
+			}
+		}
+
+		final int spriteId = ((SpriteExt) sprite).canvas_id();
+
+		// side sprites use the upper-left quadrant of the flowing texture
+		final float v1 = (1.0F - h1) * 0.5F;
+		final float v2 = (1.0F - h2) * 0.5F;
+
+		start(qe, spriteId, face);
+		vertex(qe, 0, x1, h1, z1, 0.0F, v1, c1);
+		vertex(qe, 1, x2, h2, z2, 0.5F, v2, c2);
+		vertex(qe, 2, x2, bottom, z2, 0.5F, 0.5F, c2);
+		vertex(qe, 3, x1, bottom, z1, 0.0F, 0.5F, c1);
+		qe.emit();
+
+		if (!isOverlay) {
+			start(qe, spriteId, face.getOpposite());
+			vertex(qe, 0, x1, bottom, z1, 0.0F, 0.5F, c1);
+			vertex(qe, 1, x2, bottom, z2, 0.5F, 0.5F, c2);
+			vertex(qe, 2, x2, h2, z2, 0.5F, v2, c2);
+			vertex(qe, 3, x1, h1, z1, 0.0F, v1, c1);
+			qe.emit();
+		}
+	}
+
+	private void start(MutableQuadViewImpl qe, int spriteId, Direction face) {
+		qe.material(fluidMaterial);
+		qe.spriteId(spriteId);
+		qe.nominalFace(face);
+	}
+
+	private static void vertex(MutableQuadViewImpl qe, int i, float x, float y, float z, float u, float v, int color) {
+		qe.pos(i, x, y, z);
+		qe.spriteFloat(i, u, v);
+		qe.vertexColor(i, color);
+	}
+
+	private static void lightmap(MutableQuadViewImpl qe, int light) {
+		qe.lightmap(0, light);
+		qe.lightmap(1, light);
+		qe.lightmap(2, light);
+		qe.lightmap(3, light);
+	}
+
+	/**
+	 * Same as vanilla: max of block and sky light for the fluid block and the block above it.
+	 */
+	private static int topLight(FastRenderRegion region, BlockPos.Mutable searchPos, int x, int y, int z) {
+		final int self = region.cachedBrightness(searchPos.set(x, y, z));
+		final int above = region.cachedBrightness(searchPos.set(x, y + 1, z));
+		return Math.max(self & 0xFF, above & 0xFF) | (Math.max((self >> 16) & 0xFF, (above >> 16) & 0xFF) << 16);
+	}
+
+	private static boolean isSameFluid(FastRenderRegion region, BlockPos pos, Fluid fluid) {
+		return region.getBlockState(pos).getFluidState().getFluid().matchesType(fluid);
+	}
+
+	private static boolean isSideExposed(FastRenderRegion region, BlockPos.Mutable searchPos, int x, int y, int z, Direction face, BlockState blockState, Fluid fluid) {
+		return !isShapeCovering(region, searchPos.set(x, y, z), blockState, face.getOpposite(), VoxelShapes.fullCube())
+			&& !isSameFluid(region, searchPos.set(x + face.getOffsetX(), y + face.getOffsetY(), z + face.getOffsetZ()), fluid);
+	}
+
+	private static boolean isSideCovered(FastRenderRegion region, BlockPos.Mutable searchPos, int x, int y, int z, Direction face, float height) {
+		searchPos.set(x + face.getOffsetX(), y + face.getOffsetY(), z + face.getOffsetZ());
+		final VoxelShape fluidShape;
+
+		if (height >= 1.0F) {
+			fluidShape = VoxelShapes.fullCube();
+		} else if (height == 0.8888889F) {
+			fluidShape = SOURCE_SHAPE;
+		} else {
+			fluidShape = VoxelShapes.cuboid(0.0D, 0.0D, 0.0D, 1.0D, height, 1.0D);
+		}
+
+		return isShapeCovering(region, searchPos, region.getBlockState(searchPos), face, fluidShape);
+	}
+
+	private static boolean isShapeCovering(BlockView world, BlockPos pos, BlockState blockState, Direction face, VoxelShape fluidShape) {
+		if (blockState.isOpaque()) {
+			return VoxelShapes.isSideCovered(fluidShape, blockState.getCullingShape(world, pos), face);
+		} else {
+			return false;
+		}
+	}
+
+	/**
+	 * True when any block in the 3x3 ring at the given height is neither this fluid
+	 * nor an opaque full cube, meaning the surface can be seen from below.
+	 */
+	private static boolean needsBackFace(FastRenderRegion region, BlockPos.Mutable searchPos, int x, int y, int z, Fluid fluid) {
+		for (int dx = -1; dx <= 1; ++dx) {
+			for (int dz = -1; dz <= 1; ++dz) {
+				final BlockState blockState = region.getBlockState(searchPos.set(x + dx, y, z + dz));
+
+				if (!blockState.getFluidState().getFluid().matchesType(fluid) && !blockState.isOpaqueFullCube(region, searchPos)) {
+					return true;
+				}
+			}
+		}
+
+		return false;
+	}
+}
@@ -0,0 +1,167 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.apiimpl.fluid;
+
+import java.util.Arrays;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.fluid.Fluid;
+import net.minecraft.fluid.FluidState;
+import net.minecraft.util.math.BlockPos;
+
+import grondag.canvas.terrain.region.FastRenderRegion;
+
+/**
+ * Fluid surface corner heights and blended corner colors for one render region.
+ *
+ * <p>Vanilla computes every corner from scratch for each fluid block, so each interior
+ * corner of a body of water is computed four times, each time sampling eight block states.
+ * Here corners are computed on first use and shared by every block that touches them.
+ *
+ * <p>Corners are addressed by the block for which they are the north-west corner, so
+ * each layer has 17 x 17 entries to include the south and east edges of the region.
+ * Not thread-safe - one instance per terrain render context.
+ */
+public class FluidCornerCache {
+	static final int ROW_SIZE = 17;
+	static final int LAYER_SIZE = ROW_SIZE * ROW_SIZE;
+	static final int CACHE_SIZE = LAYER_SIZE * 16;
+
+	private final float[] heights = new float[CACHE_SIZE];
+	private final Fluid[] heightFluids = new Fluid[CACHE_SIZE];
+	private final int[] colors = new int[CACHE_SIZE];
+	private final Object[] colorModels = new Object[CACHE_SIZE];
+	private final BlockPos.Mutable searchPos = new BlockPos.Mutable();
+	private FastRenderRegion region;
+	private boolean isDirty = false;
+
+	public void prepare(FastRenderRegion region) {
+		this.region = region;
+
+		if (isDirty) {
+			Arrays.fill(heightFluids, null);
+			Arrays.fill(colorModels, null);
+			isDirty = false;
+		}
+	}
+
+	private int index(int x, int y, int z) {
+		final int rx = x - region.originX();
+		final int ry = y - region.originY();
+		final int rz = z - region.originZ();
+
+		assert rx >= 0 && rx < ROW_SIZE && rz >= 0 && rz < ROW_SIZE && ry >= 0 && ry < 16;
+
+		return ry * LAYER_SIZE + rz * ROW_SIZE + rx;
+	}
+
+	/**
+	 * Height of the north-west corner of the fluid block at the given world coordinates,
+	 * following the vanilla averaging rules.
+	 */
+	public float height(int x, int y, int z, Fluid fluid) {
+		final int i = index(x, y, z);
+		final Fluid f = heightFluids[i];
+
+		if (f != null && f.matchesType(fluid)) {
+			return heights[i];
+		}
+
+		final float result = computeHeight(x, y, z, fluid);
+		heights[i] = result;
+		heightFluids[i] = fluid;
+		isDirty = true;
+		return result;
+	}
+
+	private float computeHeight(int x, int y, int z, Fluid fluid) {
+		final FastRenderRegion region = this.region;
+		int weight = 0;
+		float total = 0.0F;
+
+		for (int j = 0; j < 4; ++j) {
+			final int bx = x - (j & 1);
+			final int bz = z - ((j >> 1) & 1);
+
+			if (region.getBlockState(bx, y + 1, bz).getFluidState().getFluid().matchesType(fluid)) {
+				return 1.0F;
+			}
+
+			final BlockState blockState = region.getBlockState(bx, y, bz);
+			final FluidState fluidState = blockState.getFluidState();
+
+			if (fluidState.getFluid().matchesType(fluid)) {
+				final float h = fluidState.getHeight();
+
+				if (h >= 0.8F) {
+					total += h * 10.0F;
+					weight += 10;
+				} else {
+					total += h;
+					++weight;
+				}
+			} else if (!blockState.getMaterial().isSolid()) {
+				++weight;
+			}
+		}
+
+		return total / weight;
+	}
+
+	/**
+	 * Color of the north-west corner of the fluid block at the given world coordinates,
+	 * averaged over the adjacent blocks of the same fluid. Includes full alpha.
+	 */
+	public int color(int x, int y, int z, CanvasFluidModel model, Fluid fluid) {
+		final int i = index(x, y, z);
+
+		if (colorModels[i] == model) {
+			return colors[i];
+		}
+
+		final int result = computeColor(x, y, z, model, fluid);
+		colors[i] = result;
+		colorModels[i] = model;
+		isDirty = true;
+		return result;
+	}
+
+	private int computeColor(int x, int y, int z, CanvasFluidModel model, Fluid fluid) {
+		final FastRenderRegion region = this.region;
+		final BlockPos.Mutable searchPos = this.searchPos;
+		int r = 0, g = 0, b = 0, n = 0;
+
+		for (int j = 0; j < 4; ++j) {
+			searchPos.set(x - (j & 1), y, z - ((j >> 1) & 1));
+			final FluidState fluidState = region.getBlockState(searchPos).getFluidState();
+
+			if (fluidState.getFluid().matchesType(fluid)) {
+				final int c = model.getFluidColor(region, searchPos, fluidState);
+				r += (c >> 16) & 0xFF;
+				g += (c >> 8) & 0xFF;
+				b += c & 0xFF;
+				++n;
+			}
+		}
+
+		if (n == 0) {
+			return 0xFFFFFFFF;
+		}
+
+		return 0xFF000000 | ((r / n) << 16) | ((g / n) << 8) | (b / n);
+	}
+}
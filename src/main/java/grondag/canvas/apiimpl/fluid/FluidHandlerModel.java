@@ -27,9 +27,8 @@ import net.minecraft.world.BlockRenderView;
 import net.fabricmc.fabric.api.client.render.fluid.v1.FluidRenderHandler;
 
 import grondag.canvas.Configurator;
-import grondag.frex.api.fluid.AbstractFluidModel;
 
-public class FluidHandlerModel extends AbstractFluidModel {
+public class FluidHandlerModel extends CanvasFluidModel {
 	protected final FluidRenderHandler handler;
 	protected final Sprite overlaySprite = ModelLoader.WATER_OVERLAY.getSprite();
 
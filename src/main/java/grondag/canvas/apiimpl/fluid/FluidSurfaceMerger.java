@@ -0,0 +1,139 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.apiimpl.fluid;
+
+import java.util.Arrays;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.client.util.math.MatrixStack;
+
+import grondag.canvas.apiimpl.rendercontext.TerrainRenderContext;
+import grondag.canvas.apiimpl.util.GreedyMerge;
+import grondag.canvas.perf.ChunkRebuildCounters;
+
+/**
+ * Collects flat, still fluid top faces during a region rebuild and emits them
+ * afterwards as greedy-merged rectangles, one per run of matching faces in each layer.
+ * Open water otherwise produces two quads (front and back) for every block.
+ *
+ * <p>Faces only merge when block state, height, color, light and back-face
+ * visibility all match, so the merged surface looks the same as the individual faces.
+ * Merged quads tile their sprite via {@link grondag.canvas.apiimpl.mesh.MutableQuadViewImpl#uvRepeat(boolean)}.
+ */
+public class FluidSurfaceMerger {
+	private static final int REGION_SIZE = 4096;
+
+	private final BlockState[] states = new BlockState[REGION_SIZE];
+	private final CanvasFluidModel[] models = new CanvasFluidModel[REGION_SIZE];
+	private final float[] heights = new float[REGION_SIZE];
+	private final int[] colors = new int[REGION_SIZE];
+	private final int[] lights = new int[REGION_SIZE];
+	private final boolean[] backFaces = new boolean[REGION_SIZE];
+	private final int[] layerCounts = new int[16];
+	private final GreedyMerge.CellMatcher matcher = this::matches;
+	private int faceCount = 0;
+
+	public void clear() {
+		if (faceCount != 0) {
+			Arrays.fill(states, null);
+			Arrays.fill(models, null);
+			Arrays.fill(layerCounts, 0);
+			faceCount = 0;
+		}
+	}
+
+	private static int index(int x, int y, int z) {
+		return (y << 8) | (z << 4) | x;
+	}
+
+	/**
+	 * Records a still top face for merging instead of emitting it.
+	 * Coordinates are relative to the region origin.
+	 */
+	public void add(int x, int y, int z, CanvasFluidModel model, BlockState blockState, float height, int color, int light, boolean backFace) {
+		final int i = index(x, y, z);
+		states[i] = blockState;
+		models[i] = model;
+		heights[i] = height;
+		colors[i] = color;
+		lights[i] = light;
+		backFaces[i] = backFace;
+		++layerCounts[y];
+		++faceCount;
+	}
+
+	private boolean matches(int i, int j) {
+		return states[j] != null
+			&& states[j] == states[i]
+			&& models[j] == models[i]
+			&& heights[j] == heights[i]
+			&& colors[j] == colors[i]
+			&& lights[j] == lights[i]
+			&& backFaces[j] == backFaces[i];
+	}
+
+	/**
+	 * Emits all recorded faces as merged quads and clears them.
+	 * Model offsets are the same as those used for individual blocks.
+	 */
+	public void emit(TerrainRenderContext context, MatrixStack matrixStack, int xModelOffset, int yModelOffset, int zModelOffset) {
+		if (faceCount == 0) {
+			return;
+		}
+
+		final BlockState[] states = this.states;
+		int quadCount = 0;
+
+		for (int y = 0; y < 16; ++y) {
+			if (layerCounts[y] == 0) {
+				continue;
+			}
+
+			for (int z = 0; z < 16; ++z) {
+				for (int x = 0; x < 16; ++x) {
+					final int i = index(x, y, z);
+
+					if (states[i] == null) {
+						continue;
+					}
+
+					final int w = GreedyMerge.width(matcher, i, x);
+					final int d = GreedyMerge.height(matcher, i, z, w);
+
+					matrixStack.push();
+					matrixStack.translate(x + xModelOffset, y + yModelOffset, z + zModelOffset);
+					context.renderFluidSurface(models[i], states[i], x, y, z, w, d, heights[i], colors[i], lights[i], backFaces[i], matrixStack);
+					matrixStack.pop();
+					++quadCount;
+
+					for (int dz = 0; dz < d; ++dz) {
+						final int rowStart = index(x, y, z + dz);
+						Arrays.fill(states, rowStart, rowStart + w, null);
+						Arrays.fill(models, rowStart, rowStart + w, null);
+					}
+				}
+			}
+		}
+
+		if (ChunkRebuildCounters.ENABLED) {
+			ChunkRebuildCounters.addFluidSurfaces(faceCount, quadCount);
+		}
+
+		Arrays.fill(layerCounts, 0);
+		faceCount = 0;
+	}
+}
@@ -21,9 +21,7 @@ import net.minecraft.fluid.FluidState;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.BlockRenderView;
 
-import grondag.frex.api.fluid.AbstractFluidModel;
-
-public class LavaFluidModel extends AbstractFluidModel {
+public class LavaFluidModel extends CanvasFluidModel {
 	protected final Sprite[] sprites = FluidHandler.lavaSprites();
 
 	public LavaFluidModel() {
@@ -24,9 +24,8 @@ import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.BlockRenderView;
 
 import grondag.canvas.Configurator;
-import grondag.frex.api.fluid.AbstractFluidModel;
 
-public class WaterFluidModel extends AbstractFluidModel {
+public class WaterFluidModel extends CanvasFluidModel {
 	protected final Sprite[] sprites = FluidHandler.waterSprites();
 	protected final Sprite overlaySprite = ModelLoader.WATER_OVERLAY.getSprite();
 
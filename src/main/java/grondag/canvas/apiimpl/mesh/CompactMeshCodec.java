@@ -0,0 +1,203 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.apiimpl.mesh;
+
+import static grondag.canvas.apiimpl.mesh.MeshEncodingHelper.BASE_VERTEX_STRIDE;
+import static grondag.canvas.apiimpl.mesh.MeshEncodingHelper.HEADER_STRIDE;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+ * Variable-length encoding of mesh quad data at {@link MeshEncodingHelper#stride()}.
+ *
+ * <p>Each quad starts with a bit mask of the header fields that differ from the previous
+ * quad, followed by only those fields. Most meshes repeat the same material, color index,
+ * tag and sprite for every quad, so the header is usually a single byte.
+ *
+ * <p>Each vertex field is encoded relative to the same field of the previous vertex as
+ * a little-endian base-128 varint:
+ * <ul>
+ * <li>Positions are XOR-ed with the previous value and bit-reversed. Unchanged values become zero and
+ * the trailing zero bits of short float mantissas (0.5, 0.0625, etc.) move to the high end.</li>
+ * <li>Sprite coordinates are zig-zag deltas.</li>
+ * <li>Color, lightmap and normal are XOR-ed, so repeated values cost one byte.</li>
+ * </ul>
+ *
+ * <p>Encoding is lossless. Not thread-safe - use one {@link Reader} per thread.
+ */
+public abstract class CompactMeshCodec {
+	private static final int MODE_FLOAT = 0;
+	private static final int MODE_DELTA = 1;
+	private static final int MODE_XOR = 2;
+
+	// x, y, z, color, u, v, lightmap, normal
+	private static final int[] VERTEX_MODES = {MODE_FLOAT, MODE_FLOAT, MODE_FLOAT, MODE_XOR, MODE_DELTA, MODE_DELTA, MODE_XOR, MODE_XOR};
+	private static final int QUAD_STRIDE = MeshEncodingHelper.stride();
+
+	static {
+		assert VERTEX_MODES.length == BASE_VERTEX_STRIDE;
+		assert HEADER_STRIDE < 8;
+	}
+
+	private CompactMeshCodec() {
+	}
+
+	/**
+	 * Encodes {@code length} ints of mesh data, which must be a whole number of quads.
+	 */
+	public static byte[] encode(int[] data, int length) {
+		assert length % QUAD_STRIDE == 0;
+
+		final ByteArrayOutputStream out = new ByteArrayOutputStream(length);
+		final int[] header = new int[HEADER_STRIDE];
+		final int[] vertex = new int[BASE_VERTEX_STRIDE];
+		int index = 0;
+
+		while (index < length) {
+			int mask = 0;
+
+			for (int i = 0; i < HEADER_STRIDE; ++i) {
+				if (data[index + i] != header[i]) {
+					mask |= 1 << i;
+				}
+			}
+
+			out.write(mask);
+
+			for (int i = 0; i < HEADER_STRIDE; ++i) {
+				if ((mask & (1 << i)) != 0) {
+					final int val = data[index + i];
+					writeVarInt(out, zigZag(val));
+					header[i] = val;
+				}
+			}
+
+			index += HEADER_STRIDE;
+
+			for (int v = 0; v < 4; ++v) {
+				for (int i = 0; i < BASE_VERTEX_STRIDE; ++i) {
+					final int val = data[index++];
+					writeVarInt(out, encodeField(VERTEX_MODES[i], val, vertex[i]));
+					vertex[i] = val;
+				}
+			}
+		}
+
+		return out.toByteArray();
+	}
+
+	private static int encodeField(int mode, int val, int prev) {
+		switch (mode) {
+			case MODE_FLOAT:
+				return Integer.reverse(val ^ prev);
+			case MODE_DELTA:
+				return zigZag(val - prev);
+			default:
+				return val ^ prev;
+		}
+	}
+
+	private static int decodeField(int mode, int encoded, int prev) {
+		switch (mode) {
+			case MODE_FLOAT:
+				return Integer.reverse(encoded) ^ prev;
+			case MODE_DELTA:
+				return unZigZag(encoded) + prev;
+			default:
+				return encoded ^ prev;
+		}
+	}
+
+	private static int zigZag(int val) {
+		return (val << 1) ^ (val >> 31);
+	}
+
+	private static int unZigZag(int val) {
+		return (val >>> 1) ^ -(val & 1);
+	}
+
+	private static void writeVarInt(ByteArrayOutputStream out, int val) {
+		while ((val & ~0x7F) != 0) {
+			out.write((val & 0x7F) | 0x80);
+			val >>>= 7;
+		}
+
+		out.write(val);
+	}
+
+	/**
+	 * Sequential decoder for data from {@link CompactMeshCodec#encode(int[], int)}.
+	 */
+	public static class Reader {
+		private final int[] header = new int[HEADER_STRIDE];
+		private final int[] vertex = new int[BASE_VERTEX_STRIDE];
+		private byte[] bytes;
+		private int pos;
+
+		public void begin(byte[] bytes) {
+			this.bytes = bytes;
+			pos = 0;
+			Arrays.fill(header, 0);
+			Arrays.fill(vertex, 0);
+		}
+
+		public boolean hasNext() {
+			return pos < bytes.length;
+		}
+
+		/**
+		 * Decodes the next quad into the target array at the given index.
+		 */
+		public void next(int[] target, int index) {
+			final int[] header = this.header;
+			final int[] vertex = this.vertex;
+			final int mask = bytes[pos++];
+
+			for (int i = 0; i < HEADER_STRIDE; ++i) {
+				if ((mask & (1 << i)) != 0) {
+					header[i] = unZigZag(readVarInt());
+				}
+
+				target[index++] = header[i];
+			}
+
+			for (int v = 0; v < 4; ++v) {
+				for (int i = 0; i < BASE_VERTEX_STRIDE; ++i) {
+					final int val = decodeField(VERTEX_MODES[i], readVarInt(), vertex[i]);
+					vertex[i] = val;
+					target[index++] = val;
+				}
+			}
+		}
+
+		private int readVarInt() {
+			final byte[] bytes = this.bytes;
+			int result = 0;
+			int shift = 0;
+			int b;
+
+			do {
+				b = bytes[pos++];
+				result |= (b & 0x7F) << shift;
+				shift += 7;
+			} while ((b & 0x80) != 0);
+
+			return result;
+		}
+	}
+}
@@ -0,0 +1,91 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.apiimpl.mesh;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+import grondag.canvas.CanvasMod;
+
+/**
+ * Encoded mesh data from {@link CompactMeshCodec}, interned so that meshes with
+ * identical content share one instance. Models often bake the same mesh for many
+ * block state permutations. The interner holds weak references, so storage is
+ * released with the last mesh that uses it.
+ */
+public final class CompactMeshData {
+	// approximate object overhead for heap estimates
+	private static final int ARRAY_OVERHEAD = 16;
+	private static final int WRAPPER_OVERHEAD = 24;
+
+	private static final Interner<CompactMeshData> INTERNER = Interners.newWeakInterner();
+	private static final LongAdder meshCount = new LongAdder();
+	private static final LongAdder sharedCount = new LongAdder();
+	private static final LongAdder rawBytes = new LongAdder();
+	private static final LongAdder compactBytes = new LongAdder();
+
+	final byte[] bytes;
+	private final int hashCode;
+
+	private CompactMeshData(byte[] bytes) {
+		this.bytes = bytes;
+		hashCode = Arrays.hashCode(bytes);
+	}
+
+	static CompactMeshData intern(int[] data, int length) {
+		final CompactMeshData candidate = new CompactMeshData(CompactMeshCodec.encode(data, length));
+		final CompactMeshData result = INTERNER.intern(candidate);
+
+		meshCount.increment();
+		rawBytes.add(ARRAY_OVERHEAD + length * 4L);
+
+		if (result == candidate) {
+			compactBytes.add(ARRAY_OVERHEAD + WRAPPER_OVERHEAD + candidate.bytes.length);
+		} else {
+			sharedCount.increment();
+		}
+
+		return result;
+	}
+
+	/**
+	 * Logs and resets estimated storage for meshes built since the last call. Called on
+	 * renderer reload, which follows model baking after a resource reload.
+	 */
+	public static void logStats() {
+		final long count = meshCount.sumThenReset();
+
+		if (count != 0) {
+			final long raw = rawBytes.sumThenReset();
+			final long compact = compactBytes.sumThenReset();
+			CanvasMod.LOG.info(String.format("Compact mesh storage: %,d meshes (%,d shared) using %,d KB instead of %,d KB", count, sharedCount.sumThenReset(), compact / 1024, raw / 1024));
+		}
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return obj instanceof CompactMeshData && ((CompactMeshData) obj).hashCode == hashCode && Arrays.equals(((CompactMeshData) obj).bytes, bytes);
+	}
+
+	@Override
+	public int hashCode() {
+		return hashCode;
+	}
+}
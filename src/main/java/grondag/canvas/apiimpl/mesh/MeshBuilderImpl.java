@@ -20,6 +20,8 @@ import net.fabricmc.fabric.api.renderer.v1.mesh.Mesh;
 import net.fabricmc.fabric.api.renderer.v1.mesh.MeshBuilder;
 import net.fabricmc.fabric.api.renderer.v1.mesh.QuadEmitter;
 
+import grondag.canvas.Configurator;
+
 /**
  * Our implementation of {@link MeshBuilder}, used for static mesh creation and baking.
  * Not much to it - mainly it just needs to grow the int[] array as quads are appended
@@ -45,11 +47,19 @@ public class MeshBuilderImpl implements MeshBuilder {
 
 	@Override
 	public Mesh build() {
-		final int[] packed = new int[index];
-		System.arraycopy(data, 0, packed, 0, index);
+		final MeshImpl result;
+
+		if (Configurator.compactMeshes) {
+			result = new MeshImpl(CompactMeshData.intern(data, index));
+		} else {
+			final int[] packed = new int[index];
+			System.arraycopy(data, 0, packed, 0, index);
+			result = new MeshImpl(packed);
+		}
+
 		index = 0;
 		maker.begin(data, index);
-		return new MeshImpl(packed);
+		return result;
 	}
 
 	@Override
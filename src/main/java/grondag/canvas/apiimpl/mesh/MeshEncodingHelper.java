@@ -77,6 +77,8 @@ public abstract class MeshEncodingHelper {
 	private static final int GEOMETRY_SHIFT = NORMALS_SHIFT + Integer.bitCount(NORMALS_MASK);
 	private static final int GEOMETRY_MASK = 0b111;
 	private static final int GEOMETRY_INVERSE_MASK = ~(GEOMETRY_MASK << GEOMETRY_SHIFT);
+	private static final int UV_REPEAT_SHIFT = GEOMETRY_SHIFT + Integer.bitCount(GEOMETRY_MASK);
+	private static final int UV_REPEAT_FLAG = 1 << UV_REPEAT_SHIFT;
 
 	static {
 		VERTEX_X = HEADER_STRIDE + 0;
@@ -148,10 +150,18 @@ public abstract class MeshEncodingHelper {
 	}
 
 	public static int geometryFlags(int bits) {
-		return bits >> GEOMETRY_SHIFT;
+		return (bits >> GEOMETRY_SHIFT) & GEOMETRY_MASK;
 	}
 
 	public static int geometryFlags(int bits, int geometryFlags) {
 		return (bits & GEOMETRY_INVERSE_MASK) | ((geometryFlags & GEOMETRY_MASK) << GEOMETRY_SHIFT);
 	}
+
+	public static boolean uvRepeat(int bits) {
+		return (bits & UV_REPEAT_FLAG) != 0;
+	}
+
+	public static int uvRepeat(int bits, boolean repeat) {
+		return repeat ? (bits | UV_REPEAT_FLAG) : (bits & ~UV_REPEAT_FLAG);
+	}
 }
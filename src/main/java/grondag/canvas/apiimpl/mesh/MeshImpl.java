@@ -26,7 +26,12 @@ import net.fabricmc.fabric.api.renderer.v1.mesh.QuadView;
  * The way we encode meshes makes it very simple.
  */
 public class MeshImpl implements Mesh {
+	// decoding state for external calls to forEach on compact meshes
+	private static final ThreadLocal<CompactMeshCodec.Reader> READER = ThreadLocal.withInitial(CompactMeshCodec.Reader::new);
+	private static final ThreadLocal<int[]> QUAD_DATA = ThreadLocal.withInitial(() -> new int[MeshEncodingHelper.MAX_QUAD_STRIDE]);
+
 	final int[] data;
+	final CompactMeshData compact;
 	/**
 	 * Used to satisfy external calls to {@link #forEach(Consumer)}.
 	 */
@@ -34,12 +39,32 @@ public class MeshImpl implements Mesh {
 
 	MeshImpl(int[] data) {
 		this.data = data;
+		compact = null;
+	}
+
+	MeshImpl(CompactMeshData compact) {
+		data = null;
+		this.compact = compact;
 	}
 
+	/**
+	 * Null when {@link #isCompact()}.
+	 */
 	public int[] data() {
 		return data;
 	}
 
+	public boolean isCompact() {
+		return compact != null;
+	}
+
+	/**
+	 * Encoded data for {@link CompactMeshCodec.Reader}. Null unless {@link #isCompact()}.
+	 */
+	public byte[] compactData() {
+		return compact == null ? null : compact.bytes;
+	}
+
 	@Override
 	public void forEach(Consumer<QuadView> consumer) {
 		forEach(consumer, POOL.get());
@@ -51,6 +76,11 @@ public class MeshImpl implements Mesh {
 	 * Also means renderer can hold final references to quad buffers.
 	 */
 	void forEach(Consumer<QuadView> consumer, QuadViewImpl cursor) {
+		if (compact != null) {
+			forEachCompact(consumer, cursor);
+			return;
+		}
+
 		final int limit = data.length;
 		int index = 0;
 
@@ -60,4 +90,16 @@ public class MeshImpl implements Mesh {
 			index += cursor.stride();
 		}
 	}
+
+	private void forEachCompact(Consumer<QuadView> consumer, QuadViewImpl cursor) {
+		final CompactMeshCodec.Reader reader = READER.get();
+		final int[] quadData = QUAD_DATA.get();
+		reader.begin(compact.bytes);
+
+		while (reader.hasNext()) {
+			reader.next(quadData, 0);
+			cursor.load(quadData, 0);
+			consumer.accept(cursor);
+		}
+	}
 }
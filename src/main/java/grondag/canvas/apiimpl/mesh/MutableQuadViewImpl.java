@@ -122,6 +122,16 @@ public abstract class MutableQuadViewImpl extends QuadViewImpl implements QuadEm
 		return nominalFace(ModelHelper.toFaceIndex(face));
 	}
 
+	/**
+	 * Marks the quad as tiling its sprite. Normalized sprite coordinates may then run
+	 * from zero up to {@link grondag.canvas.buffer.format.CanvasVertexFormats#UV_REPEAT_SPAN} and the shader wraps
+	 * them inside the sprite bounds. Used for merged faces that cover several blocks.
+	 */
+	public final MutableQuadViewImpl uvRepeat(boolean repeat) {
+		data[baseIndex + HEADER_BITS] = MeshEncodingHelper.uvRepeat(data[baseIndex + HEADER_BITS], repeat);
+		return this;
+	}
+
 	@Override
 	public final MutableQuadViewImpl colorIndex(int colorIndex) {
 		data[baseIndex + HEADER_COLOR_INDEX] = colorIndex;
@@ -144,6 +144,14 @@ public class QuadViewImpl implements QuadView {
 		return MeshEncodingHelper.geometryFlags(data[baseIndex + HEADER_BITS]);
 	}
 
+	/**
+	 * True when sprite coordinates span more than one sprite and should wrap
+	 * within the sprite bounds. See {@link MutableQuadViewImpl#uvRepeat(boolean)}.
+	 */
+	public boolean uvRepeat() {
+		return MeshEncodingHelper.uvRepeat(data[baseIndex + HEADER_BITS]);
+	}
+
 	protected void computeGeometry() {
 		if (isGeometryInvalid) {
 			isGeometryInvalid = false;
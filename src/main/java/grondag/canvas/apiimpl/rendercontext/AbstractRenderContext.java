@@ -19,6 +19,7 @@ package grondag.canvas.apiimpl.rendercontext;
 import java.util.Random;
 import java.util.function.Consumer;
 
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import org.jetbrains.annotations.Nullable;
 
@@ -38,8 +39,10 @@ import grondag.canvas.Configurator;
 import grondag.canvas.apiimpl.mesh.MutableQuadViewImpl;
 import grondag.canvas.apiimpl.util.ColorHelper;
 import grondag.canvas.buffer.encoding.VertexCollectorList;
+import grondag.canvas.buffer.encoding.VertexTransform;
 import grondag.canvas.buffer.format.CanvasVertexFormats;
 import grondag.canvas.material.state.MaterialFinderImpl;
+import grondag.canvas.material.state.RenderMaterialImpl;
 import grondag.canvas.mixinterface.Matrix3fExt;
 import grondag.canvas.texture.SpriteInfoTexture;
 import grondag.frex.api.material.MaterialFinder;
@@ -50,8 +53,11 @@ public abstract class AbstractRenderContext implements RenderContext {
 	private static final QuadTransform NO_TRANSFORM = (q) -> true;
 	private static final MaterialMap defaultMap = MaterialMap.defaultMaterialMap();
 	final MaterialFinderImpl finder = new MaterialFinderImpl();
+	/** Results of {@link #adjustMaterial()} by input material index and {@link #materialAdjustmentKey()}. */
+	private final Long2ObjectOpenHashMap<RenderMaterialImpl> adjustedMaterials = new Long2ObjectOpenHashMap<>();
 	public final float[] vecData = new float[3];
 	public final int[] appendData = new int[CanvasVertexFormats.MATERIAL_QUAD_STRIDE];
+	public final float[] transformData = new float[VertexTransform.TRANSFORM_LENGTH];
 
 	/** null when not in world render loop/thread or when default consumer should be honored. */
 	@Nullable public VertexCollectorList collectors = null;
@@ -219,13 +225,38 @@ public abstract class AbstractRenderContext implements RenderContext {
 		}
 
 		if (cullTest(quad)) {
-			finder.copyFrom(quad.material());
-			adjustMaterial();
-			quad.material(finder.find());
+			quad.material(adjustedMaterial(quad.material()));
 			encodeQuad(quad);
 		}
 	}
 
+	/**
+	 * Memoized {@link #adjustMaterial()} - the result depends only on the input material
+	 * and context state captured by {@link #materialAdjustmentKey()}, and contexts are
+	 * confined to a single thread.
+	 */
+	final RenderMaterialImpl adjustedMaterial(RenderMaterialImpl material) {
+		final long key = ((long) materialAdjustmentKey() << 32) | material.index;
+		RenderMaterialImpl result = adjustedMaterials.get(key);
+
+		if (result == null) {
+			finder.copyFrom(material);
+			adjustMaterial();
+			result = finder.find();
+			adjustedMaterials.put(key, result);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Context state other than the input material that {@link #adjustMaterial()} depends on.
+	 * Overrides that make adjustment depend on more state must include it here.
+	 */
+	protected int materialAdjustmentKey() {
+		return defaultBlendMode == null ? 0 : defaultBlendMode.ordinal() + 1;
+	}
+
 	protected abstract void encodeQuad(MutableQuadViewImpl quad);
 
 	protected void adjustMaterial() {
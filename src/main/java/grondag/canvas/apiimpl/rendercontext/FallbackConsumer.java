@@ -32,7 +32,6 @@ import grondag.canvas.apiimpl.mesh.MeshEncodingHelper;
 import grondag.canvas.apiimpl.mesh.MutableQuadViewImpl;
 import grondag.canvas.apiimpl.util.FaceConstants;
 import grondag.canvas.material.state.RenderMaterialImpl;
-import grondag.frex.api.material.MaterialFinder;
 import grondag.frex.api.mesh.QuadEmitter;
 
 /**
@@ -183,10 +182,7 @@ public class FallbackConsumer implements Consumer<BakedModel> {
 			editorQuad.unmapSpritesIfNeeded();
 		}
 
-		final MaterialFinder finder = context.finder;
-		finder.copyFrom(editorQuad.material());
-		context.adjustMaterial();
-		editorQuad.material(finder.find());
+		editorQuad.material(context.adjustedMaterial(editorQuad.material()));
 		context.encodeQuad(editorQuad);
 	}
 }
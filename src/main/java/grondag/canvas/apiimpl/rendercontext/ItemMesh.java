@@ -0,0 +1,190 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.apiimpl.rendercontext;
+
+import java.util.Arrays;
+
+import net.fabricmc.fabric.api.renderer.v1.material.BlendMode;
+
+import grondag.canvas.apiimpl.mesh.MutableQuadViewImpl;
+import grondag.canvas.apiimpl.util.ColorHelper;
+import grondag.canvas.buffer.encoding.EncoderUtils;
+import grondag.canvas.buffer.encoding.VertexCollectorList;
+import grondag.canvas.buffer.encoding.VertexTransform;
+import grondag.canvas.buffer.format.CanvasVertexFormats;
+import grondag.canvas.material.state.RenderMaterialImpl;
+import grondag.canvas.mixinterface.Matrix4fExt;
+import grondag.canvas.texture.SpriteInfoTexture;
+
+/**
+ * Item model quads encoded once with materials resolved, so drawing an item only
+ * transforms positions and normals and applies light.
+ *
+ * <p>Quads are stored in {@link CanvasVertexFormats#MATERIAL_QUAD_STRIDE} layout with
+ * these differences: positions are in model space, light holds the quad's own packed
+ * lightmap, and normals are untransformed with AO in the high byte. Colors of quads
+ * with a color index are stored uncolored and are colorized for the item stack when drawn.
+ *
+ * <p>Output matches {@link grondag.canvas.buffer.encoding.EncoderUtils#bufferQuadDirect}
+ * after item coloring and lighting.
+ */
+class ItemMesh {
+	private static final int VERTEX_STRIDE = CanvasVertexFormats.MATERIAL_VERTEX_STRIDE;
+	private static final int QUAD_STRIDE = CanvasVertexFormats.MATERIAL_QUAD_STRIDE;
+	private static final int COLOR = CanvasVertexFormats.MATERIAL_COLOR_INDEX;
+	private static final int UV = CanvasVertexFormats.MATERIAL_TEXTURE_INDEX;
+	private static final int SPRITE = CanvasVertexFormats.MATERIAL_MATERIAL_INDEX;
+	private static final int LIGHT = CanvasVertexFormats.MATERIAL_LIGHT_INDEX;
+	private static final int NORMAL = CanvasVertexFormats.MATERIAL_NORMAL_INDEX;
+
+	private final int quadCount;
+	private final int[] data;
+	private final RenderMaterialImpl[] materials;
+	private final int[] colorIndexes;
+
+	private ItemMesh(Builder builder) {
+		quadCount = builder.quadCount;
+		data = Arrays.copyOf(builder.data, quadCount * QUAD_STRIDE);
+		materials = Arrays.copyOf(builder.materials, quadCount);
+		colorIndexes = Arrays.copyOf(builder.colorIndexes, quadCount);
+	}
+
+	int quadCount() {
+		return quadCount;
+	}
+
+	void draw(AbstractRenderContext context, VertexCollectorList collectors, int lightmap) {
+		final int[] data = this.data;
+		final int[] appendData = context.appendData;
+		final float[] transform = context.transformData;
+		EncoderUtils.loadTransform((Matrix4fExt) (Object) context.matrix(), context.normalMatrix(), transform);
+
+		int lastColorIndex = -1;
+		int indexedColor = -1;
+
+		for (int q = 0; q < quadCount; ++q) {
+			final RenderMaterialImpl mat = materials[q];
+			final int shaderFlags = mat.shaderFlags << 24;
+			final int colorIndex = colorIndexes[q];
+
+			if (colorIndex != -1 && colorIndex != lastColorIndex) {
+				lastColorIndex = colorIndex;
+				indexedColor = context.indexedColor(colorIndex);
+			}
+
+			final int base = q * QUAD_STRIDE;
+			System.arraycopy(data, base, appendData, 0, QUAD_STRIDE);
+
+			for (int k = 0; k < QUAD_STRIDE; k += VERTEX_STRIDE) {
+				if (colorIndex != -1) {
+					appendData[k + COLOR] = ColorHelper.swapRedBlueIfNeeded(ColorHelper.multiplyColor(indexedColor, appendData[k + COLOR]));
+				}
+
+				final int normalAo = appendData[k + NORMAL];
+				final int light = ColorHelper.maxBrightness(appendData[k + LIGHT], lightmap);
+				appendData[k + LIGHT] = (light & 0xFF) | (((light >> 16) & 0xFF) << 8) | ((normalAo >>> 24) << 16);
+				appendData[k + NORMAL] = (normalAo & 0xFFFFFF) | shaderFlags;
+			}
+
+			VertexTransform.transform(transform, appendData, 0, 4, VERTEX_STRIDE, NORMAL);
+			collectors.get(mat).add(appendData, QUAD_STRIDE);
+		}
+	}
+
+	/**
+	 * Records quads as they would be encoded by {@link grondag.canvas.buffer.encoding.EncoderUtils#bufferQuadDirect}
+	 * before item coloring, lighting and transformation. Reusable.
+	 */
+	static class Builder {
+		private int quadCount;
+		private int[] data = new int[QUAD_STRIDE * 64];
+		private RenderMaterialImpl[] materials = new RenderMaterialImpl[64];
+		private int[] colorIndexes = new int[64];
+
+		void clear() {
+			quadCount = 0;
+		}
+
+		/**
+		 * @param quad material must already be adjusted for the context
+		 */
+		void add(MutableQuadViewImpl quad) {
+			final int index = quadCount;
+
+			if (index == materials.length) {
+				data = Arrays.copyOf(data, index * 2 * QUAD_STRIDE);
+				materials = Arrays.copyOf(materials, index * 2);
+				colorIndexes = Arrays.copyOf(colorIndexes, index * 2);
+			}
+
+			final RenderMaterialImpl mat = quad.material();
+			assert mat.blendMode != BlendMode.DEFAULT;
+
+			final int colorIndex = mat.disableColorIndex ? -1 : quad.colorIndex();
+			materials[index] = mat;
+			colorIndexes[index] = colorIndex;
+
+			final float[] aoData = quad.ao;
+			int packedNormal = 0;
+			final boolean useNormals = quad.hasVertexNormals();
+
+			if (useNormals) {
+				quad.populateMissingNormals();
+			} else {
+				packedNormal = quad.packedFaceNormal();
+			}
+
+			int spriteIdCoord = SpriteInfoTexture.BLOCKS.coordinate(quad.spriteId());
+			assert spriteIdCoord <= 0xFFFF;
+			spriteIdCoord |= (mat.index << 16);
+
+			final int uvShift;
+
+			if (quad.uvRepeat()) {
+				spriteIdCoord |= CanvasVertexFormats.MATERIAL_UV_REPEAT_FLAG;
+				uvShift = CanvasVertexFormats.UV_REPEAT_SHIFT;
+			} else {
+				uvShift = 0;
+			}
+
+			final int[] data = this.data;
+			int k = index * QUAD_STRIDE;
+
+			for (int i = 0; i < 4; i++) {
+				data[k] = Float.floatToRawIntBits(quad.x(i));
+				data[k + 1] = Float.floatToRawIntBits(quad.y(i));
+				data[k + 2] = Float.floatToRawIntBits(quad.z(i));
+
+				final int color = quad.vertexColor(i);
+				data[k + COLOR] = colorIndex == -1 ? ColorHelper.swapRedBlueIfNeeded(color) : color;
+				data[k + UV] = (quad.spriteBufferU(i) >> uvShift) | ((quad.spriteBufferV(i) >> uvShift) << 16);
+				data[k + SPRITE] = spriteIdCoord;
+				data[k + LIGHT] = quad.lightmap(i);
+
+				final int ao = aoData == null ? 255 : (Math.round(aoData[i] * 255));
+				data[k + NORMAL] = ((useNormals ? quad.packedNormal(i) : packedNormal) & 0xFFFFFF) | (ao << 24);
+				k += VERTEX_STRIDE;
+			}
+
+			quadCount = index + 1;
+		}
+
+		ItemMesh build() {
+			return new ItemMesh(this);
+		}
+	}
+}
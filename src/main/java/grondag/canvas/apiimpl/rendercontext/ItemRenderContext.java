@@ -24,6 +24,7 @@ import static grondag.canvas.buffer.encoding.EncoderUtils.colorizeQuad;
 import java.util.Random;
 import java.util.function.Supplier;
 
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
 import org.jetbrains.annotations.Nullable;
 
 import net.minecraft.block.AbstractBannerBlock;
@@ -51,6 +52,7 @@ import net.fabricmc.fabric.api.renderer.v1.material.BlendMode;
 import net.fabricmc.fabric.api.renderer.v1.model.FabricBakedModel;
 import net.fabricmc.fabric.api.renderer.v1.render.RenderContext;
 
+import grondag.canvas.Configurator;
 import grondag.canvas.apiimpl.mesh.MutableQuadViewImpl;
 import grondag.canvas.buffer.encoding.CanvasImmediate;
 import grondag.canvas.material.state.MaterialFinderImpl;
@@ -59,6 +61,7 @@ import grondag.canvas.material.state.RenderContextState.GuiMode;
 import grondag.canvas.material.state.RenderLayerHelper;
 import grondag.canvas.mixinterface.Matrix3fExt;
 import grondag.canvas.mixinterface.MinecraftClientExt;
+import grondag.canvas.perf.ItemEncodeCounters;
 import grondag.fermion.sc.concurrency.SimpleConcurrentList;
 import grondag.frex.api.material.MaterialFinder;
 import grondag.frex.api.material.MaterialMap;
@@ -95,6 +98,12 @@ public class ItemRenderContext extends AbstractRenderContext implements RenderCo
 	private int lightmap;
 	private ItemStack itemStack;
 
+	/** Meshes for vanilla models, discarded with the context on reload. */
+	private final Object2ObjectOpenHashMap<MeshKey, ItemMesh> meshes = new Object2ObjectOpenHashMap<>();
+	private final MeshKey searchKey = new MeshKey();
+	private final ItemMesh.Builder meshBuilder = new ItemMesh.Builder();
+	private boolean isRecording;
+
 	public ItemRenderContext(ItemColors colorMap) {
 		super("ItemRenderContext");
 		this.colorMap = colorMap;
@@ -208,12 +217,56 @@ public class ItemRenderContext extends AbstractRenderContext implements RenderCo
 				defaultConsumer = vertexConsumers.getBuffer(defaultRenderLayer);
 			}
 
-			((FabricBakedModel) model).emitItemQuads(itemStack, randomSupplier, this);
+			if (collectors != null && glintConsumer == null && Configurator.cacheItemMeshes && !hasTransform() && ((FabricBakedModel) model).isVanillaAdapter()) {
+				renderCached(model);
+			} else {
+				final long start = ItemEncodeCounters.ENABLED ? System.nanoTime() : 0;
+
+				((FabricBakedModel) model).emitItemQuads(itemStack, randomSupplier, this);
+
+				if (ItemEncodeCounters.ENABLED && collectors != null) {
+					ItemEncodeCounters.addEncoded(System.nanoTime() - start);
+				}
+			}
 		}
 
 		matrices.pop();
 	}
 
+	/**
+	 * Vanilla models always emit the same quads, so the encoded result only depends on
+	 * the model and how materials are mapped and adjusted.
+	 */
+	private void renderCached(BakedModel model) {
+		final long start = ItemEncodeCounters.ENABLED ? System.nanoTime() : 0;
+		ItemMesh mesh = meshes.get(searchKey.set(model, materialAdjustmentKey(), materialMap));
+
+		if (mesh == null) {
+			final ItemMesh.Builder builder = meshBuilder;
+			builder.clear();
+			isRecording = true;
+
+			try {
+				((FabricBakedModel) model).emitItemQuads(itemStack, randomSupplier, this);
+			} finally {
+				isRecording = false;
+			}
+
+			mesh = builder.build();
+			meshes.put(new MeshKey().set(model, materialAdjustmentKey(), materialMap), mesh);
+
+			if (ItemEncodeCounters.ENABLED) {
+				ItemEncodeCounters.addBuild();
+			}
+		}
+
+		mesh.draw(this, collectors, lightmap);
+
+		if (ItemEncodeCounters.ENABLED) {
+			ItemEncodeCounters.addCached(mesh.quadCount(), System.nanoTime() - start);
+		}
+	}
+
 	private VertexConsumer getGlintConsumer(RenderLayer layer) {
 		if (!itemStack.hasGlint()) {
 			return null;
@@ -317,6 +370,18 @@ public class ItemRenderContext extends AbstractRenderContext implements RenderCo
 		finder.disableAo(true);
 	}
 
+	@Override
+	protected int materialAdjustmentKey() {
+		int result = super.materialAdjustmentKey();
+
+		if (isBlockItem) result |= 8;
+		if (drawTranslucencyDirectToMainTarget) result |= 16;
+		if (isGui) result |= 32;
+		if (isFrontLit) result |= 64;
+
+		return result;
+	}
+
 	@Override
 	public void computeAo(MutableQuadViewImpl quad) {
 		// NOOP
@@ -329,6 +394,11 @@ public class ItemRenderContext extends AbstractRenderContext implements RenderCo
 
 	@Override
 	protected void encodeQuad(MutableQuadViewImpl quad) {
+		if (isRecording) {
+			meshBuilder.add(quad);
+			return;
+		}
+
 		colorizeQuad(quad, this);
 		applyItemLighting(quad, this);
 
@@ -360,4 +430,34 @@ public class ItemRenderContext extends AbstractRenderContext implements RenderCo
 	private static VertexConsumer getDirectItemGlintConsumer(VertexConsumerProvider provider, RenderLayer layer) {
 		return provider.getBuffer(RenderLayer.getDirectGlint());
 	}
+
+	private static class MeshKey {
+		private BakedModel model;
+		private int adjustmentKey;
+		private MaterialMap materialMap;
+		private int hash;
+
+		MeshKey set(BakedModel model, int adjustmentKey, MaterialMap materialMap) {
+			this.model = model;
+			this.adjustmentKey = adjustmentKey;
+			this.materialMap = materialMap;
+			hash = (System.identityHashCode(model) * 31 + adjustmentKey) * 31 + System.identityHashCode(materialMap);
+			return this;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof MeshKey)) {
+				return false;
+			}
+
+			final MeshKey other = (MeshKey) obj;
+			return model == other.model && adjustmentKey == other.adjustmentKey && materialMap == other.materialMap;
+		}
+	}
 }
@@ -22,6 +22,7 @@ import net.fabricmc.fabric.api.renderer.v1.mesh.Mesh;
 import net.fabricmc.fabric.api.renderer.v1.mesh.QuadEmitter;
 
 import grondag.canvas.apiimpl.Canvas;
+import grondag.canvas.apiimpl.mesh.CompactMeshCodec;
 import grondag.canvas.apiimpl.mesh.MeshEncodingHelper;
 import grondag.canvas.apiimpl.mesh.MeshImpl;
 import grondag.canvas.apiimpl.mesh.MutableQuadViewImpl;
@@ -33,6 +34,7 @@ import grondag.canvas.apiimpl.mesh.MutableQuadViewImpl;
 public class MeshConsumer implements Consumer<Mesh> {
 	public final Maker editorQuad = new Maker();
 	private final AbstractRenderContext context;
+	private final CompactMeshCodec.Reader reader = new CompactMeshCodec.Reader();
 
 	protected MeshConsumer(AbstractRenderContext context) {
 		this.context = context;
@@ -41,10 +43,25 @@ public class MeshConsumer implements Consumer<Mesh> {
 	@Override
 	public void accept(Mesh mesh) {
 		final MeshImpl m = (MeshImpl) mesh;
+		final MutableQuadViewImpl quad = editorQuad;
+
+		if (m.isCompact()) {
+			final CompactMeshCodec.Reader reader = this.reader;
+			reader.begin(m.compactData());
+
+			while (reader.hasNext()) {
+				// editor quad is always at index zero
+				reader.next(quad.data(), 0);
+				quad.load();
+				context.renderQuad();
+			}
+
+			return;
+		}
+
 		final int[] data = m.data();
 		final int limit = data.length;
 		int index = 0;
-		final MutableQuadViewImpl quad = editorQuad;
 
 		while (index < limit) {
 			final int stride = MeshEncodingHelper.stride();
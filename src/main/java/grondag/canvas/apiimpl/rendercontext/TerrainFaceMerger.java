@@ -0,0 +1,297 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.apiimpl.rendercontext;
+
+import static grondag.canvas.buffer.encoding.EncoderUtils.bufferQuadDirect;
+
+import java.util.Arrays;
+
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.client.util.math.MatrixStack;
+import net.minecraft.util.math.BlockPos;
+
+import net.fabricmc.fabric.api.renderer.v1.material.BlendMode;
+import net.fabricmc.fabric.api.renderer.v1.model.ModelHelper;
+
+import grondag.canvas.apiimpl.mesh.MutableQuadViewImpl;
+import grondag.canvas.apiimpl.util.GeometryHelper;
+import grondag.canvas.apiimpl.util.GreedyMerge;
+import grondag.canvas.material.state.RenderMaterialImpl;
+import grondag.canvas.mixinterface.Matrix3fExt;
+import grondag.canvas.perf.ChunkRebuildCounters;
+
+/**
+ * Greedy mesher for distant terrain. Collects full, axis-aligned block faces after lighting
+ * and color have been applied and emits coplanar runs with the same sprite, material, color,
+ * light and AO as single quads that tile their sprite.
+ *
+ * <p>Only faces with the default (unrotated) block face texture mapping are accepted, so the
+ * merged quad samples the sprite exactly as the individual faces would. Everything else,
+ * including translucent quads and quads with vertex normals, is buffered normally.
+ */
+public class TerrainFaceMerger {
+	private static final int FACE_SIZE = 4096;
+	private static final int CELL_COUNT = FACE_SIZE * 6;
+	private static final int REQUIRED_FLAGS = GeometryHelper.CUBIC_FLAG | GeometryHelper.LIGHT_FACE_FLAG;
+	private static final float EPS = 0.0001f;
+	private static final int UV_TOLERANCE = 2;
+
+	// Axis that maps to u and v and whether it runs in the opposite direction,
+	// matching vanilla default UVs for full block faces.  Indexed by face.
+	private static final int[] U_AXIS = {0, 0, 0, 0, 2, 2};
+	private static final boolean[] U_FLIP = {false, false, true, false, false, true};
+	private static final int[] V_AXIS = {2, 2, 1, 1, 1, 1};
+	private static final boolean[] V_FLIP = {true, false, true, true, true, true};
+	private static final int[] NORMAL_AXIS = {1, 1, 2, 2, 0, 0};
+
+	// Vanilla corner order for each face, as x, y, z unit offsets.
+	private static final int[][] CORNERS = {
+		{0, 0, 1, 0, 0, 0, 1, 0, 0, 1, 0, 1},
+		{0, 1, 0, 0, 1, 1, 1, 1, 1, 1, 1, 0},
+		{1, 1, 0, 1, 0, 0, 0, 0, 0, 0, 1, 0},
+		{0, 1, 1, 0, 0, 1, 1, 0, 1, 1, 1, 1},
+		{0, 1, 0, 0, 0, 0, 0, 0, 1, 0, 1, 1},
+		{1, 1, 1, 1, 0, 1, 1, 0, 0, 1, 1, 0}
+	};
+
+	// zero means empty, otherwise material index + 1
+	private final int[] materials = new int[CELL_COUNT];
+	private final int[] sprites = new int[CELL_COUNT];
+	private final int[] colors = new int[CELL_COUNT];
+	private final int[] lights = new int[CELL_COUNT];
+	private final int[] aos = new int[CELL_COUNT];
+	private final int[] layerCounts = new int[6 * 16];
+	private final int[] xyz = new int[3];
+	private final MatrixStack matrixStack = new MatrixStack();
+	private final GreedyMerge.CellMatcher matcher = this::matches;
+	private int faceCount = 0;
+	private boolean isEnabled = false;
+	private int originX, originY, originZ;
+
+	public boolean isEnabled() {
+		return isEnabled;
+	}
+
+	/**
+	 * Call before the region block loop. When disabled, {@link #accept(MutableQuadViewImpl, BlockState, BlockPos)}
+	 * always returns false.
+	 */
+	public void begin(boolean enabled, BlockPos origin) {
+		if (faceCount != 0) {
+			Arrays.fill(materials, 0);
+			Arrays.fill(layerCounts, 0);
+			faceCount = 0;
+		}
+
+		isEnabled = enabled;
+		originX = origin.getX();
+		originY = origin.getY();
+		originZ = origin.getZ();
+	}
+
+	/**
+	 * Records the quad for merging if it qualifies. Expects lighting and color
+	 * to be final and sprite coordinates to be normalized.
+	 *
+	 * @return true if the quad was recorded and should not be buffered.
+	 */
+	boolean accept(MutableQuadViewImpl quad, BlockState blockState, BlockPos blockPos) {
+		if (!isEnabled || quad.hasVertexNormals() || quad.uvRepeat()) {
+			return false;
+		}
+
+		final RenderMaterialImpl mat = quad.material();
+
+		if (mat.blendMode == BlendMode.TRANSLUCENT || (quad.geometryFlags() & REQUIRED_FLAGS) != REQUIRED_FLAGS) {
+			return false;
+		}
+
+		final int face = quad.lightFaceId();
+
+		if (face == ModelHelper.NULL_FACE_ID || blockState.getBlock().getOffsetType() != Block.OffsetType.NONE) {
+			return false;
+		}
+
+		final int color = quad.vertexColor(0);
+		final int light = quad.lightmap(0);
+		final float ao = quad.ao[0];
+		final int uAxis = U_AXIS[face];
+		final int vAxis = V_AXIS[face];
+		final boolean uFlip = U_FLIP[face];
+		final boolean vFlip = V_FLIP[face];
+
+		for (int i = 0; i < 4; ++i) {
+			if (quad.vertexColor(i) != color || quad.lightmap(i) != light || quad.ao[i] != ao) {
+				return false;
+			}
+
+			// must be exactly on block corners, not merely cubic
+			if (!isUnit(quad.posByIndex(i, 0)) || !isUnit(quad.posByIndex(i, 1)) || !isUnit(quad.posByIndex(i, 2))) {
+				return false;
+			}
+
+			final boolean uHigh = (quad.posByIndex(i, uAxis) > 0.5f) != uFlip;
+			final boolean vHigh = (quad.posByIndex(i, vAxis) > 0.5f) != vFlip;
+
+			if (!isUvMatch(quad.spriteBufferU(i), uHigh) || !isUvMatch(quad.spriteBufferV(i), vHigh)) {
+				return false;
+			}
+		}
+
+		final int[] xyz = this.xyz;
+		xyz[0] = blockPos.getX() - originX;
+		xyz[1] = blockPos.getY() - originY;
+		xyz[2] = blockPos.getZ() - originZ;
+
+		final int depth = xyz[NORMAL_AXIS[face]];
+		final int index = face * FACE_SIZE + (depth << 8) + (xyz[vAxis] << 4) + xyz[uAxis];
+
+		materials[index] = mat.index + 1;
+		sprites[index] = quad.spriteId();
+		colors[index] = color;
+		lights[index] = light;
+		aos[index] = Math.round(ao * 255);
+		++layerCounts[face * 16 + depth];
+		++faceCount;
+		return true;
+	}
+
+	private static boolean isUnit(float val) {
+		return (val >= -EPS && val <= EPS) || (val >= 1 - EPS && val <= 1 + EPS);
+	}
+
+	private static boolean isUvMatch(int bufferVal, boolean high) {
+		return high ? bufferVal >= 0xFFFF - UV_TOLERANCE : bufferVal <= UV_TOLERANCE;
+	}
+
+	private boolean matches(int i, int j) {
+		return materials[j] != 0
+			&& materials[j] == materials[i]
+			&& sprites[j] == sprites[i]
+			&& colors[j] == colors[i]
+			&& lights[j] == lights[i]
+			&& aos[j] == aos[i];
+	}
+
+	/**
+	 * Buffers all recorded faces as merged quads. Model offsets are the same
+	 * as those used for individual blocks.
+	 */
+	public void emit(TerrainRenderContext context, int xModelOffset, int yModelOffset, int zModelOffset) {
+		if (faceCount == 0) {
+			return;
+		}
+
+		final int[] materials = this.materials;
+		final int[] xyz = this.xyz;
+		int quadCount = 0;
+
+		for (int face = 0; face < 6; ++face) {
+			final int uAxis = U_AXIS[face];
+			final int vAxis = V_AXIS[face];
+			final int normalAxis = NORMAL_AXIS[face];
+
+			for (int depth = 0; depth < 16; ++depth) {
+				if (layerCounts[face * 16 + depth] == 0) {
+					continue;
+				}
+
+				final int layerStart = face * FACE_SIZE + (depth << 8);
+
+				for (int v = 0; v < 16; ++v) {
+					for (int u = 0; u < 16; ++u) {
+						final int i = layerStart + (v << 4) + u;
+
+						if (materials[i] == 0) {
+							continue;
+						}
+
+						final int w = GreedyMerge.width(matcher, i, u);
+						final int h = GreedyMerge.height(matcher, i, v, w);
+
+						xyz[uAxis] = u;
+						xyz[vAxis] = v;
+						xyz[normalAxis] = depth;
+						bufferMerged(context, face, i, w, h, xyz[0] + xModelOffset, xyz[1] + yModelOffset, xyz[2] + zModelOffset);
+						++quadCount;
+
+						for (int dv = 0; dv < h; ++dv) {
+							final int rowStart = layerStart + ((v + dv) << 4) + u;
+							Arrays.fill(materials, rowStart, rowStart + w, 0);
+						}
+					}
+				}
+			}
+		}
+
+		if (ChunkRebuildCounters.ENABLED) {
+			ChunkRebuildCounters.addMergedFaces(faceCount, quadCount);
+		}
+
+		context.addQuadCount(quadCount);
+
+		Arrays.fill(layerCounts, 0);
+		faceCount = 0;
+	}
+
+	private void bufferMerged(TerrainRenderContext context, int face, int cell, int uSpan, int vSpan, int x, int y, int z) {
+		final MatrixStack matrixStack = this.matrixStack;
+		matrixStack.push();
+		matrixStack.translate(x, y, z);
+		context.matrix = matrixStack.peek().getModel();
+		context.normalMatrix = (Matrix3fExt) (Object) matrixStack.peek().getNormal();
+
+		final int uAxis = U_AXIS[face];
+		final int vAxis = V_AXIS[face];
+		final boolean uFlip = U_FLIP[face];
+		final boolean vFlip = V_FLIP[face];
+		final int[] corners = CORNERS[face];
+		final float[] pos = context.vecData;
+		final int color = colors[cell];
+		final int light = lights[cell];
+		final float ao = aos[cell] / 255f;
+		final RenderMaterialImpl mat = RenderMaterialImpl.fromIndex(materials[cell] - 1);
+
+		final MutableQuadViewImpl quad = context.makerQuad;
+		quad.clear();
+		quad.material(mat);
+		quad.spriteId(sprites[cell]);
+		quad.uvRepeat(true);
+
+		for (int i = 0; i < 4; ++i) {
+			final int c = i * 3;
+			pos[0] = corners[c];
+			pos[1] = corners[c + 1];
+			pos[2] = corners[c + 2];
+			pos[uAxis] *= uSpan;
+			pos[vAxis] *= vSpan;
+
+			quad.pos(i, pos[0], pos[1], pos[2]);
+			quad.spriteFloat(i, uFlip ? uSpan - pos[uAxis] : pos[uAxis], vFlip ? vSpan - pos[vAxis] : pos[vAxis]);
+			quad.vertexColor(i, color);
+			quad.lightmap(i, light);
+			quad.ao[i] = ao;
+		}
+
+		quad.nominalFace(face);
+		quad.complete();
+		bufferQuadDirect(quad, context, context.collectors.get(mat));
+		quad.clear();
+		matrixStack.pop();
+	}
+}
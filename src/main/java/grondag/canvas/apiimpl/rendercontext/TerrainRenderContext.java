@@ -24,18 +24,23 @@ import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
 
 import net.minecraft.block.Block;
 import net.minecraft.block.BlockState;
+import net.minecraft.block.LeavesBlock;
 import net.minecraft.block.entity.BlockEntity;
 import net.minecraft.client.util.math.MatrixStack;
 import net.minecraft.util.crash.CrashException;
 import net.minecraft.util.crash.CrashReport;
 import net.minecraft.util.crash.CrashReportSection;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Direction;
 
 import net.fabricmc.fabric.api.renderer.v1.model.FabricBakedModel;
 import net.fabricmc.fabric.api.renderer.v1.model.ModelHelper;
 import net.fabricmc.fabric.api.renderer.v1.render.RenderContext;
 
 import grondag.canvas.Configurator;
+import grondag.canvas.apiimpl.fluid.CanvasFluidModel;
+import grondag.canvas.apiimpl.fluid.FluidCornerCache;
+import grondag.canvas.apiimpl.fluid.FluidSurfaceMerger;
 import grondag.canvas.apiimpl.mesh.MutableQuadViewImpl;
 import grondag.canvas.buffer.encoding.VertexCollectorList;
 import grondag.canvas.light.AoCalculator;
@@ -55,6 +60,10 @@ public class TerrainRenderContext extends AbstractBlockRenderContext<FastRenderR
 	public final ObjectOpenHashSet<BlockEntity> nonCullBlockEntities = new ObjectOpenHashSet<>();
 	public final ObjectOpenHashSet<BlockEntity> addedBlockEntities = new ObjectOpenHashSet<>();
 	public final ObjectOpenHashSet<BlockEntity> removedBlockEntities = new ObjectOpenHashSet<>();
+	public final FluidCornerCache fluidCorners = new FluidCornerCache();
+	public final FluidSurfaceMerger fluidSurfaces = new FluidSurfaceMerger();
+	public final TerrainFaceMerger faceMerger = new TerrainFaceMerger();
+	public final BlockPos.Mutable fluidSearchPos = new BlockPos.Mutable();
 	private final AoCalculator aoCalc = new AoCalculator() {
 		@Override
 		protected int ao(int cacheIndex) {
@@ -73,6 +82,10 @@ public class TerrainRenderContext extends AbstractBlockRenderContext<FastRenderR
 	};
 	private int cullCompletionFlags;
 	private int cullResultFlags;
+	private boolean isLightPrecomputed = false;
+	private boolean isReducedDetail = false;
+	private int quadCount;
+	private int leafCulledFaceCount;
 
 	public TerrainRenderContext() {
 		super("TerrainRenderContext");
@@ -80,11 +93,21 @@ public class TerrainRenderContext extends AbstractBlockRenderContext<FastRenderR
 		collectors = new VertexCollectorList();
 	}
 
-	public TerrainRenderContext prepareRegion(ProtoRenderRegion protoRegion) {
+	/**
+	 * @param reducedDetail True for distant regions. Leaves are drawn as solid, opaque blocks and
+	 * treated as such for occlusion and face culling. Must be set before the region is prepared
+	 * because occlusion is computed during preparation.
+	 */
+	public TerrainRenderContext prepareRegion(ProtoRenderRegion protoRegion, boolean reducedDetail) {
 		nonCullBlockEntities.clear();
 		addedBlockEntities.clear();
 		removedBlockEntities.clear();
+		isReducedDetail = reducedDetail;
+		quadCount = 0;
+		leafCulledFaceCount = 0;
 		region.prepare(protoRegion);
+		fluidCorners.prepare(region);
+		fluidSurfaces.clear();
 
 		if (Configurator.lightSmoothing) {
 			//            final long start = counter.startRun();
@@ -125,6 +148,45 @@ public class TerrainRenderContext extends AbstractBlockRenderContext<FastRenderR
 		}
 	}
 
+	/**
+	 * Emits a fluid top face merged by {@link FluidSurfaceMerger}. Coordinates are relative to the region origin
+	 * and the matrix stack should already be translated to the north-west block of the merged area.
+	 */
+	public void renderFluidSurface(CanvasFluidModel model, BlockState blockState, int x, int y, int z, int width, int depth, float height, int color, int light, boolean backFace, MatrixStack matrixStack) {
+		isFluidModel = true;
+		matrix = matrixStack.peek().getModel();
+		normalMatrix = (Matrix3fExt) (Object) matrixStack.peek().getNormal();
+		final BlockPos blockPos = fluidSearchPos.set(region.originX() + x, region.originY() + y, region.originZ() + z);
+		isLightPrecomputed = true;
+
+		try {
+			prepareForBlock(blockState, blockPos, false, -1);
+			cullCompletionFlags = 0;
+			cullResultFlags = 0;
+			model.emitMergedSurface(this, blockState, blockPos, width, depth, height, color, light, backFace);
+		} finally {
+			isLightPrecomputed = false;
+		}
+	}
+
+	public boolean isReducedDetail() {
+		return isReducedDetail;
+	}
+
+	/** Quads buffered since the region was prepared, including merged quads. */
+	public int quadCount() {
+		return quadCount;
+	}
+
+	/** Block faces culled since the region was prepared because they face leaves at reduced detail. */
+	public int leafCulledFaceCount() {
+		return leafCulledFaceCount;
+	}
+
+	void addQuadCount(int count) {
+		quadCount += count;
+	}
+
 	@Override
 	public int brightness() {
 		return 0;
@@ -164,7 +226,10 @@ public class TerrainRenderContext extends AbstractBlockRenderContext<FastRenderR
 		if ((cullCompletionFlags & mask) == 0) {
 			cullCompletionFlags |= mask;
 
-			if (Block.shouldDrawSide(blockState, region, blockPos, ModelHelper.faceFromIndex(faceIndex))) {
+			if (isReducedDetail && !isFluidModel && isLeavesNeighbor(faceIndex)) {
+				++leafCulledFaceCount;
+				return false;
+			} else if (Block.shouldDrawSide(blockState, region, blockPos, ModelHelper.faceFromIndex(faceIndex))) {
 				cullResultFlags |= mask;
 				return true;
 			} else {
@@ -175,11 +240,62 @@ public class TerrainRenderContext extends AbstractBlockRenderContext<FastRenderR
 		}
 	}
 
+	/**
+	 * Only neighbors in this region count. Neighbors in other regions may be rendered at
+	 * full detail, where leaves don't hide the faces behind them.
+	 */
+	private boolean isLeavesNeighbor(int faceIndex) {
+		final Direction face = ModelHelper.faceFromIndex(faceIndex);
+		final int x = blockPos.getX() + face.getOffsetX();
+		final int y = blockPos.getY() + face.getOffsetY();
+		final int z = blockPos.getZ() + face.getOffsetZ();
+
+		if (((x - region.originX()) | (y - region.originY()) | (z - region.originZ())) >>> 4 != 0) {
+			return false;
+		}
+
+		return region.getBlockState(x, y, z).getBlock() instanceof LeavesBlock;
+	}
+
+	@Override
+	protected void adjustMaterial() {
+		super.adjustMaterial();
+
+		// like vanilla fast graphics - leaves become solid
+		if (isSolidLeaves()) {
+			finder.cutout(false).unmipped(false);
+		}
+	}
+
+	@Override
+	protected int materialAdjustmentKey() {
+		return isSolidLeaves() ? super.materialAdjustmentKey() | 8 : super.materialAdjustmentKey();
+	}
+
+	private boolean isSolidLeaves() {
+		return isReducedDetail && !isFluidModel && blockState.getBlock() instanceof LeavesBlock;
+	}
+
 	@Override
 	protected void encodeQuad(MutableQuadViewImpl quad) {
 		// needs to happen before offsets are applied
-		applyBlockLighting(quad, this);
+		if (isLightPrecomputed) {
+			final float[] ao = quad.ao;
+			ao[0] = 1f;
+			ao[1] = 1f;
+			ao[2] = 1f;
+			ao[3] = 1f;
+		} else {
+			applyBlockLighting(quad, this);
+		}
+
 		colorizeQuad(quad, this);
+
+		if (faceMerger.accept(quad, blockState, blockPos)) {
+			return;
+		}
+
 		bufferQuadDirect(quad, this, collectors.get(quad.material()));
+		++quadCount;
 	}
 }
@@ -0,0 +1,75 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.apiimpl.util;
+
+/**
+ * Greedy rectangle expansion over a 16 x 16 layer of cells shared by the terrain face
+ * and fluid surface mergers. Rows are 16 cells apart in the cell index.
+ */
+public final class GreedyMerge {
+	private GreedyMerge() {
+	}
+
+	@FunctionalInterface
+	public interface CellMatcher {
+		/**
+		 * @return true if cell j is occupied and can be merged into a quad started at cell i
+		 */
+		boolean matches(int i, int j);
+	}
+
+	/**
+	 * @param i index of the first cell of the run
+	 * @param u position of the first cell within its row
+	 * @return number of consecutive cells in the row, starting with i, that merge with it
+	 */
+	public static int width(CellMatcher matcher, int i, int u) {
+		int w = 1;
+
+		while (u + w < 16 && matcher.matches(i, i + w)) {
+			++w;
+		}
+
+		return w;
+	}
+
+	/**
+	 * @param i index of the first cell of the run
+	 * @param v row of the first cell
+	 * @param w width of the run from {@link #width(CellMatcher, int, int)}
+	 * @return number of consecutive rows, starting with v, in which all w cells merge with i
+	 */
+	public static int height(CellMatcher matcher, int i, int v, int w) {
+		int h = 1;
+
+		while (v + h < 16 && rowMatches(matcher, i, i + (h << 4), w)) {
+			++h;
+		}
+
+		return h;
+	}
+
+	private static boolean rowMatches(CellMatcher matcher, int i, int rowStart, int w) {
+		for (int k = 0; k < w; ++k) {
+			if (!matcher.matches(i, rowStart + k)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+}
@@ -18,13 +18,17 @@ package grondag.canvas.buffer;
 
 import org.lwjgl.opengl.GL21;
 
+import grondag.canvas.perf.GlStateCounters;
+
 public class BindStateManager {
 	private static int boundBufferId = -1;
 
 	public static boolean bind(int glBufferId) {
 		if (glBufferId == boundBufferId) {
+			if (GlStateCounters.ENABLED) GlStateCounters.addElided();
 			return false;
 		} else {
+			if (GlStateCounters.ENABLED) GlStateCounters.addIssued();
 			boundBufferId = glBufferId;
 			GL21.glBindBuffer(GL21.GL_ARRAY_BUFFER, glBufferId);
 			return true;
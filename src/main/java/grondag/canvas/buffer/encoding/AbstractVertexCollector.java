@@ -91,13 +91,20 @@ public abstract class AbstractVertexCollector implements VertexCollector {
 	}
 
 	protected void setOverlay (int u, int v) {
+		overlayFlags = overlayFlags(u, v);
+	}
+
+	/**
+	 * Shader flags for vanilla overlay texture coordinates, pre-shifted to the most significant byte.
+	 */
+	public static int overlayFlags(int u, int v) {
 		if (v == 3) {
 			// NB: these are pre-shifted to msb
-			overlayFlags = RenderStateData.HURT_OVERLAY_FLAG;
+			return RenderStateData.HURT_OVERLAY_FLAG;
 		} else if (v == 10) {
-			overlayFlags = u > 7 ? RenderStateData.FLASH_OVERLAY_FLAG : 0;
+			return u > 7 ? RenderStateData.FLASH_OVERLAY_FLAG : 0;
 		} else {
-			overlayFlags = 0;
+			return 0;
 		}
 	}
 
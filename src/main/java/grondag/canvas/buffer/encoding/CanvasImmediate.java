@@ -34,6 +34,7 @@ import grondag.canvas.material.property.MaterialTarget;
 import grondag.canvas.material.state.RenderContextState;
 import grondag.canvas.material.state.RenderLayerHelper;
 import grondag.canvas.material.state.RenderMaterialImpl;
+import grondag.canvas.material.state.RenderState;
 import grondag.canvas.mixinterface.MultiPhaseExt;
 import grondag.frex.api.material.FrexVertexConsumerProvider;
 import grondag.frex.api.material.RenderMaterial;
@@ -97,12 +98,14 @@ public class CanvasImmediate extends Immediate implements FrexVertexConsumerProv
 			VertexCollectorImpl.drawAndClear(drawList);
 		}
 
+		RenderState.flushDisable();
 		super.draw();
 	}
 
 	@Override
 	public void draw(RenderLayer layer) {
 		if (RenderLayerHelper.isExcluded(layer)) {
+			RenderState.flushDisable();
 			super.draw(layer);
 		} else {
 			final VertexCollectorImpl collector = collectors.getIfExists(((MultiPhaseExt) layer).canvas_materialState());
@@ -25,6 +25,7 @@ import grondag.canvas.apiimpl.mesh.MutableQuadViewImpl;
 import grondag.canvas.apiimpl.rendercontext.AbstractRenderContext;
 import grondag.canvas.apiimpl.util.ColorHelper;
 import grondag.canvas.apiimpl.util.NormalHelper;
+import grondag.canvas.buffer.format.CanvasVertexFormats;
 import grondag.canvas.material.state.RenderMaterialImpl;
 import grondag.canvas.mixinterface.Matrix3fExt;
 import grondag.canvas.mixinterface.Matrix4fExt;
@@ -103,8 +104,6 @@ public abstract class EncoderUtils {
 	}
 
 	public static void bufferQuadDirect(MutableQuadViewImpl quad, AbstractRenderContext context, VertexCollectorImpl buff) {
-		final Matrix4fExt matrix = (Matrix4fExt) (Object) context.matrix();
-		final Matrix3fExt normalMatrix = context.normalMatrix();
 		final float[] aoData = quad.ao;
 		final RenderMaterialImpl mat = quad.material();
 		final int[] appendData = context.appendData;
@@ -114,14 +113,12 @@ public abstract class EncoderUtils {
 		final int shaderFlags = mat.shaderFlags << 24;
 
 		int packedNormal = 0;
-		int transformedNormal = 0;
 		final boolean useNormals = quad.hasVertexNormals();
 
 		if (useNormals) {
 			quad.populateMissingNormals();
 		} else {
 			packedNormal = quad.packedFaceNormal();
-			transformedNormal = normalMatrix.canvas_transform(packedNormal);
 		}
 
 		int spriteIdCoord = SpriteInfoTexture.BLOCKS.coordinate(quad.spriteId());
@@ -130,14 +127,25 @@ public abstract class EncoderUtils {
 
 		spriteIdCoord |= (mat.index << 16);
 
+		final boolean uvRepeat = quad.uvRepeat();
+		final int uvShift;
+
+		if (uvRepeat) {
+			spriteIdCoord |= CanvasVertexFormats.MATERIAL_UV_REPEAT_FLAG;
+			uvShift = CanvasVertexFormats.UV_REPEAT_SHIFT;
+		} else {
+			uvShift = 0;
+		}
+
 		int k = 0;
 
+		// positions and normals are untransformed until the whole quad is written
 		for (int i = 0; i < 4; i++) {
-			quad.transformAndAppend(i, matrix, appendData, k);
-			k += 3;
-
+			appendData[k++] = Float.floatToRawIntBits(quad.x(i));
+			appendData[k++] = Float.floatToRawIntBits(quad.y(i));
+			appendData[k++] = Float.floatToRawIntBits(quad.z(i));
 			appendData[k++] = quad.vertexColor(i);
-			appendData[k++] = quad.spriteBufferU(i) | (quad.spriteBufferV(i) << 16);
+			appendData[k++] = (quad.spriteBufferU(i) >> uvShift) | ((quad.spriteBufferV(i) >> uvShift) << 16);
 			appendData[k++] = spriteIdCoord;
 
 			final int packedLight = quad.lightmap(i);
@@ -145,22 +153,43 @@ public abstract class EncoderUtils {
 			final int skyLight = ((packedLight >> 16) & 0xFF);
 			final int ao = aoData == null ? 255 : (Math.round(aoData[i] * 255));
 			appendData[k++] = blockLight | (skyLight << 8) | (ao << 16);
-
-			if (useNormals) {
-				final int p = quad.packedNormal(i);
-
-				if (p != packedNormal) {
-					packedNormal = p;
-					transformedNormal = normalMatrix.canvas_transform(packedNormal);
-				}
-			}
-
-			appendData[k++] = transformedNormal | shaderFlags;
+			appendData[k++] = ((useNormals ? quad.packedNormal(i) : packedNormal) & 0xFFFFFF) | shaderFlags;
 		}
 
+		final float[] transform = context.transformData;
+		loadTransform((Matrix4fExt) (Object) context.matrix(), context.normalMatrix(), transform);
+		VertexTransform.transform(transform, appendData, 0, 4, CanvasVertexFormats.MATERIAL_VERTEX_STRIDE, CanvasVertexFormats.MATERIAL_NORMAL_INDEX);
 		buff.add(appendData, k);
 	}
 
+	/**
+	 * Packs matrices for {@link VertexTransform#transform(float[], int[], int, int, int, int)}.
+	 */
+	public static void loadTransform(Matrix4fExt matrix, Matrix3fExt normalMatrix, float[] target) {
+		target[0] = matrix.a00();
+		target[1] = matrix.a01();
+		target[2] = matrix.a02();
+		target[3] = matrix.a03();
+		target[4] = matrix.a10();
+		target[5] = matrix.a11();
+		target[6] = matrix.a12();
+		target[7] = matrix.a13();
+		target[8] = matrix.a20();
+		target[9] = matrix.a21();
+		target[10] = matrix.a22();
+		target[11] = matrix.a23();
+
+		target[12] = normalMatrix.a00();
+		target[13] = normalMatrix.a01();
+		target[14] = normalMatrix.a02();
+		target[15] = normalMatrix.a10();
+		target[16] = normalMatrix.a11();
+		target[17] = normalMatrix.a12();
+		target[18] = normalMatrix.a20();
+		target[19] = normalMatrix.a21();
+		target[20] = normalMatrix.a22();
+	}
+
 	public static void applyBlockLighting(MutableQuadViewImpl quad, AbstractRenderContext context) {
 		if (!quad.material().disableAo() && MinecraftClient.isAmbientOcclusionEnabled()) {
 			context.computeAo(quad);
@@ -54,6 +54,23 @@ public class VertexCollectorImpl extends AbstractVertexCollector {
 		return integerSize;
 	}
 
+	/**
+	 * Discards anything added after the collector had the given size.
+	 */
+	public void truncate(int integerSize) {
+		assert integerSize <= this.integerSize;
+		this.integerSize = integerSize;
+		currentVertexIndex = integerSize;
+	}
+
+	/**
+	 * Adds all vertex data from a collector with the same material.
+	 */
+	public void append(VertexCollectorImpl source) {
+		assert source.materialState.collectorIndex == materialState.collectorIndex;
+		add(source.vertexData, source.integerSize);
+	}
+
 	public int byteSize() {
 		return integerSize * 4;
 	}
@@ -66,6 +83,13 @@ public class VertexCollectorImpl extends AbstractVertexCollector {
 		return materialState;
 	}
 
+	/**
+	 * Material flags included in the normal of each vertex, not including overlay.
+	 */
+	public int vertexFlags() {
+		return normalBase;
+	}
+
 	public int vertexCount() {
 		return integerSize / CanvasVertexFormats.MATERIAL_VERTEX_STRIDE;
 	}
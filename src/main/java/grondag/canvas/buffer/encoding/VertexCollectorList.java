@@ -152,6 +152,9 @@ public class VertexCollectorList {
 
 	private static final Comparator<VertexCollectorImpl> DRAW_SORT = (a, b) -> {
 		// note reverse argument order - higher priority wins
-		return Long.compare(b.materialState.drawPriority, a.materialState.drawPriority);
+		final int result = Long.compare(b.materialState.drawPriority, a.materialState.drawPriority);
+
+		// draw priority doesn't cover texture - keep same texture together to save binds
+		return result == 0 ? Integer.compare(a.materialState.texture.index, b.materialState.texture.index) : result;
 	};
 }
@@ -0,0 +1,98 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.buffer.encoding;
+
+/**
+ * Transforms positions and packed normals of encoded vertices in place, one primitive
+ * loop per quad or mesh slice instead of matrix method calls per vertex.
+ *
+ * <p>Transforms are packed by the caller into {@link #TRANSFORM_LENGTH} floats: position
+ * matrix rows 0-2 (12 values) followed by normal matrix rows 0-2 (9 values).
+ *
+ * <p>Results are bit-for-bit the same as transforming each vertex through {@code Matrix4fExt}
+ * and {@code Matrix3fExt.canvas_transform}: the same float operations in the same order.
+ *
+ * <p>Has no game dependencies so output can be tested directly.
+ */
+public final class VertexTransform {
+	public static final int TRANSFORM_LENGTH = 21;
+
+	private VertexTransform() {
+	}
+
+	/**
+	 * @param transform packed as described in class header
+	 * @param data vertices with position floats as int bits at offsets 0-2 and a packed normal in the low
+	 * three bytes at {@code normalIndex}. The high byte of the normal is preserved.
+	 * @param start index of the first vertex in data
+	 * @param vertexCount number of vertices to transform
+	 * @param stride ints per vertex
+	 */
+	public static void transform(float[] transform, int[] data, int start, int vertexCount, int stride, int normalIndex) {
+		final float a00 = transform[0], a01 = transform[1], a02 = transform[2], a03 = transform[3];
+		final float a10 = transform[4], a11 = transform[5], a12 = transform[6], a13 = transform[7];
+		final float a20 = transform[8], a21 = transform[9], a22 = transform[10], a23 = transform[11];
+		final float n00 = transform[12], n01 = transform[13], n02 = transform[14];
+		final float n10 = transform[15], n11 = transform[16], n12 = transform[17];
+		final float n20 = transform[18], n21 = transform[19], n22 = transform[20];
+
+		// quads usually share one normal
+		int lastNormal = -1;
+		int transformedNormal = 0;
+		final int end = start + vertexCount * stride;
+
+		for (int i = start; i < end; i += stride) {
+			final float x = Float.intBitsToFloat(data[i]);
+			final float y = Float.intBitsToFloat(data[i + 1]);
+			final float z = Float.intBitsToFloat(data[i + 2]);
+
+			data[i] = Float.floatToRawIntBits(a00 * x + a01 * y + a02 * z + a03);
+			data[i + 1] = Float.floatToRawIntBits(a10 * x + a11 * y + a12 * z + a13);
+			data[i + 2] = Float.floatToRawIntBits(a20 * x + a21 * y + a22 * z + a23);
+
+			final int n = i + normalIndex;
+			final int packed = data[n];
+			final int normal = packed & 0xFFFFFF;
+
+			if (normal != lastNormal) {
+				lastNormal = normal;
+
+				final float nx = ((normal & 0xFF) - 127f) / 127f;
+				final float ny = (((normal >>> 8) & 0xFF) - 127f) / 127f;
+				final float nz = (((normal >>> 16) & 0xFF) - 127f) / 127f;
+
+				transformedNormal = packNormal(
+					n00 * nx + n01 * ny + n02 * nz,
+					n10 * nx + n11 * ny + n12 * nz,
+					n20 * nx + n21 * ny + n22 * nz);
+			}
+
+			data[n] = transformedNormal | (packed & 0xFF000000);
+		}
+	}
+
+	/**
+	 * Same result as {@code NormalHelper.packNormal(float, float, float)}.
+	 */
+	private static int packNormal(float x, float y, float z) {
+		x = x < -1 ? -1 : (x > 1 ? 1 : x);
+		y = y < -1 ? -1 : (y > 1 ? 1 : y);
+		z = z < -1 ? -1 : (z > 1 ? 1 : z);
+
+		return ((int) ((x * 127) + 127) & 255) | (((int) ((y * 127) + 127) & 255) << 8) | (((int) ((z * 127) + 127) & 255) << 16);
+	}
+}
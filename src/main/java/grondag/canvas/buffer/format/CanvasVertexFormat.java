@@ -128,6 +128,57 @@ public class CanvasVertexFormat {
 		}
 	}
 
+	/**
+	 * Enables attributes that advance once per instance, numbered from the given index.
+	 * Pointers are set by {@link #bindInstanceAttributes(int, long)}. Must be undone with
+	 * {@link #disableInstanceAttributes(int)} before other draws.
+	 */
+	public void enableInstanceAttributes(int firstIndex) {
+		final int limit = firstIndex + attributeCount;
+
+		for (int i = firstIndex; i < limit; i++) {
+			if (Configurator.logGlStateChanges) {
+				CanvasMod.LOG.info(String.format("GlState: glEnableVertexAttribArray(%d) [instanced]", i));
+			}
+
+			GL20.glEnableVertexAttribArray(i);
+			CanvasGlHelper.glVertexAttribDivisor(i, 1);
+		}
+	}
+
+	/**
+	 * Binds locations of instance attributes enabled by {@link #enableInstanceAttributes(int)}
+	 * in the currently bound buffer.
+	 */
+	public void bindInstanceAttributes(int firstIndex, long bufferOffset) {
+		int offset = 0;
+		int index = firstIndex;
+
+		for (final CanvasVertextFormatElement e : elements) {
+			assert e.attributeName != null : "instance formats have no position element";
+
+			if (Configurator.logGlStateChanges) {
+				CanvasMod.LOG.info(String.format("GlState: glVertexAttribPointer(%d, %d, %d, %b, %d, %d) [instanced]", index, e.elementCount, e.glConstant, e.isNormalized, vertexStrideBytes, bufferOffset + offset));
+			}
+
+			GL20.glVertexAttribPointer(index++, e.elementCount, e.glConstant, e.isNormalized, vertexStrideBytes, bufferOffset + offset);
+			offset += e.byteSize;
+		}
+	}
+
+	public void disableInstanceAttributes(int firstIndex) {
+		final int limit = firstIndex + attributeCount;
+
+		for (int i = firstIndex; i < limit; i++) {
+			if (Configurator.logGlStateChanges) {
+				CanvasMod.LOG.info(String.format("GlState: glDisableVertexAttribArray(%d) [instanced]", i));
+			}
+
+			CanvasGlHelper.glVertexAttribDivisor(i, 0);
+			GL20.glDisableVertexAttribArray(i);
+		}
+	}
+
 	/**
 	 * Used by shader to bind attribute names.
 	 */
@@ -140,4 +191,20 @@ public class CanvasVertexFormat {
 			}
 		}
 	}
+
+	/**
+	 * Attribute names in binding order, as bound by {@link #bindProgramAttributes(int)}.
+	 * Identifies attribute locations baked into a linked program.
+	 */
+	public String attributeBindings() {
+		final StringBuilder builder = new StringBuilder();
+
+		for (final CanvasVertextFormatElement e : elements) {
+			if (e.attributeName != null) {
+				builder.append(e.attributeName).append(';');
+			}
+		}
+
+		return builder.toString();
+	}
 }
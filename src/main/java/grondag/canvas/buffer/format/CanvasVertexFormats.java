@@ -19,6 +19,14 @@ package grondag.canvas.buffer.format;
 import static grondag.canvas.buffer.format.CanvasVertextFormatElement.BASE_RGBA_4UB;
 import static grondag.canvas.buffer.format.CanvasVertextFormatElement.BASE_TEX_2F;
 import static grondag.canvas.buffer.format.CanvasVertextFormatElement.BASE_TEX_2US;
+import static grondag.canvas.buffer.format.CanvasVertextFormatElement.INSTANCE_COLOR_4UB;
+import static grondag.canvas.buffer.format.CanvasVertextFormatElement.INSTANCE_LIGHTMAP_4UB;
+import static grondag.canvas.buffer.format.CanvasVertextFormatElement.INSTANCE_MODEL_0_4F;
+import static grondag.canvas.buffer.format.CanvasVertextFormatElement.INSTANCE_MODEL_1_4F;
+import static grondag.canvas.buffer.format.CanvasVertextFormatElement.INSTANCE_MODEL_2_4F;
+import static grondag.canvas.buffer.format.CanvasVertextFormatElement.INSTANCE_NORMAL_0_3F;
+import static grondag.canvas.buffer.format.CanvasVertextFormatElement.INSTANCE_NORMAL_1_3F;
+import static grondag.canvas.buffer.format.CanvasVertextFormatElement.INSTANCE_NORMAL_2_3F;
 import static grondag.canvas.buffer.format.CanvasVertextFormatElement.LIGHTMAPS_4UB;
 import static grondag.canvas.buffer.format.CanvasVertextFormatElement.MATERIAL_2US;
 import static grondag.canvas.buffer.format.CanvasVertextFormatElement.NORMAL_FLAGS_4UB;
@@ -53,6 +61,31 @@ public final class CanvasVertexFormats {
 	public static final int MATERIAL_LIGHT_INDEX = 6;
 	public static final int MATERIAL_NORMAL_INDEX = 7;
 
+	/**
+	 * Set in the material attribute (above the material index) for quads that tile their sprite.
+	 * Texture coordinates of these quads are divided by {@link #UV_REPEAT_SPAN} before buffering
+	 * and the shader scales them back up and wraps them within the sprite.
+	 */
+	public static final int MATERIAL_UV_REPEAT_FLAG = 0x80000000;
+	public static final int UV_REPEAT_SHIFT = 4;
+	public static final int UV_REPEAT_SPAN = 1 << UV_REPEAT_SHIFT;
+
+	/**
+	 * Per-instance data for instanced models: rows of the model matrix, columns of the
+	 * normal matrix, color and lightmap. Attributes follow those of the vertex format,
+	 * starting at {@link #MATERIAL_INSTANCE_FIRST_ATTRIBUTE}.
+	 */
+	public static final CanvasVertexFormat MATERIAL_INSTANCE = new CanvasVertexFormat(INSTANCE_MODEL_0_4F, INSTANCE_MODEL_1_4F, INSTANCE_MODEL_2_4F,
+			INSTANCE_NORMAL_0_3F, INSTANCE_NORMAL_1_3F, INSTANCE_NORMAL_2_3F, INSTANCE_COLOR_4UB, INSTANCE_LIGHTMAP_4UB);
+
+	/**
+	 * Attribute bindings of programs that draw instanced models. Not a buffer layout.
+	 */
+	public static final CanvasVertexFormat MATERIAL_INSTANCED_PROGRAM = new CanvasVertexFormat(POSITION_3F, BASE_RGBA_4UB, BASE_TEX_2US, MATERIAL_2US, LIGHTMAPS_4UB, NORMAL_FLAGS_4UB,
+			INSTANCE_MODEL_0_4F, INSTANCE_MODEL_1_4F, INSTANCE_MODEL_2_4F, INSTANCE_NORMAL_0_3F, INSTANCE_NORMAL_1_3F, INSTANCE_NORMAL_2_3F, INSTANCE_COLOR_4UB, INSTANCE_LIGHTMAP_4UB);
+
+	public static final int MATERIAL_INSTANCE_FIRST_ATTRIBUTE = POSITION_COLOR_TEXTURE_MATERIAL_LIGHT_NORMAL.attributeCount + 1;
+
 	public static final int MATERIAL_VERTEX_STRIDE = POSITION_COLOR_TEXTURE_MATERIAL_LIGHT_NORMAL.vertexStrideInts;
 	public static final int MATERIAL_QUAD_STRIDE = MATERIAL_VERTEX_STRIDE * 4;
 }
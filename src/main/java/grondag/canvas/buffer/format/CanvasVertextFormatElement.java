@@ -47,6 +47,34 @@ public class CanvasVertextFormatElement {
 	public static final CanvasVertextFormatElement MATERIAL_2US = new CanvasVertextFormatElement(
 		VertexFormatElement.Format.USHORT, 2, "in_material", false);
 
+	// per-instance attributes of instanced models - see CanvasVertexFormats.MATERIAL_INSTANCE
+	public static final CanvasVertextFormatElement INSTANCE_MODEL_0_4F = new CanvasVertextFormatElement(
+		VertexFormatElement.Format.FLOAT, 4, "in_inst_model_0", false);
+
+	public static final CanvasVertextFormatElement INSTANCE_MODEL_1_4F = new CanvasVertextFormatElement(
+		VertexFormatElement.Format.FLOAT, 4, "in_inst_model_1", false);
+
+	public static final CanvasVertextFormatElement INSTANCE_MODEL_2_4F = new CanvasVertextFormatElement(
+		VertexFormatElement.Format.FLOAT, 4, "in_inst_model_2", false);
+
+	public static final CanvasVertextFormatElement INSTANCE_NORMAL_0_3F = new CanvasVertextFormatElement(
+		VertexFormatElement.Format.FLOAT, 3, "in_inst_normal_0", false);
+
+	public static final CanvasVertextFormatElement INSTANCE_NORMAL_1_3F = new CanvasVertextFormatElement(
+		VertexFormatElement.Format.FLOAT, 3, "in_inst_normal_1", false);
+
+	public static final CanvasVertextFormatElement INSTANCE_NORMAL_2_3F = new CanvasVertextFormatElement(
+		VertexFormatElement.Format.FLOAT, 3, "in_inst_normal_2", false);
+
+	public static final CanvasVertextFormatElement INSTANCE_COLOR_4UB = new CanvasVertextFormatElement(
+		VertexFormatElement.Format.UBYTE, 4, "in_inst_color");
+
+	/**
+	 * Block and sky lightmap coordinates in bytes 1-2. 4th byte has overlay flags.
+	 */
+	public static final CanvasVertextFormatElement INSTANCE_LIGHTMAP_4UB = new CanvasVertextFormatElement(
+		VertexFormatElement.Format.UBYTE, 4, "in_inst_lightmap", false);
+
 	public final String attributeName;
 	public final int elementCount;
 	public final int glConstant;
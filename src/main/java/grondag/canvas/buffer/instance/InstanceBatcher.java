@@ -0,0 +1,211 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.buffer.instance;
+
+import java.util.Arrays;
+
+/**
+ * Collects model instances for a frame and groups them into one batch per mesh and
+ * material so each batch is a single instanced draw.
+ *
+ * <p>Instances are added in any order with a key from {@link #batchKey(int, int)}.
+ * After {@link #sort()} instance data is packed contiguously by key - material order
+ * first so state changes are minimized, then mesh - and instances with the same key keep
+ * the order they were added.
+ *
+ * <p>Each instance is {@link #INSTANCE_STRIDE} integers in the layout of
+ * {@code CanvasVertexFormats.MATERIAL_INSTANCE}: model matrix rows, normal matrix
+ * columns, color and lightmap.
+ *
+ * <p>Not thread-safe. Has no game dependencies so batching can be tested directly.
+ */
+public class InstanceBatcher {
+	public static final int ORDER_BITS = 12;
+	// keys stay positive so they sort as unsigned
+	public static final int MESH_BITS = 31 - ORDER_BITS;
+
+	/** Exclusive upper bound of order values accepted by {@link #batchKey(int, int)}. */
+	public static final int MAX_ORDERS = 1 << ORDER_BITS;
+
+	/** Maximum number of distinct meshes. */
+	public static final int MAX_MESHES = 1 << MESH_BITS;
+
+	/** Floats of model and normal matrix data passed to {@link #add(int, float[], int, int)}. */
+	public static final int TRANSFORM_LENGTH = 21;
+	public static final int COLOR_OFFSET = TRANSFORM_LENGTH;
+	public static final int LIGHT_OFFSET = COLOR_OFFSET + 1;
+	public static final int INSTANCE_STRIDE = LIGHT_OFFSET + 1;
+
+	private static final int MESH_MASK = MAX_MESHES - 1;
+
+	private long[] sortKeys = new long[1024];
+	private int[] data = new int[1024 * INSTANCE_STRIDE];
+	private int[] sortedData = new int[1024 * INSTANCE_STRIDE];
+	private int size = 0;
+
+	private int[] batchKeys = new int[256];
+	private int[] batchStarts = new int[256];
+	private int[] batchSizes = new int[256];
+	private int batchCount = 0;
+
+	/**
+	 * @param order draws with lower order come first. Identifies the material's draw state.
+	 * @param mesh identifies the geometry drawn for each instance
+	 * @return key to pass to {@link #add(int, float[], int, int)}
+	 * @throws IllegalArgumentException if order or mesh is out of range. Callers should
+	 * check against {@link #MAX_ORDERS} and {@link #MAX_MESHES} and draw normally instead.
+	 */
+	public static int batchKey(int order, int mesh) {
+		if (order < 0 || order >= MAX_ORDERS || mesh < 0 || mesh >= MAX_MESHES) {
+			throw new IllegalArgumentException("Instance batch key element out of range");
+		}
+
+		return (order << MESH_BITS) | mesh;
+	}
+
+	public static int keyOrder(int key) {
+		return key >>> MESH_BITS;
+	}
+
+	public static int keyMesh(int key) {
+		return key & MESH_MASK;
+	}
+
+	/**
+	 * Packs vanilla light and overlay flags for the lightmap attribute.
+	 *
+	 * @param light vanilla packed light coordinates, block in low bits and sky in high bits
+	 * @param overlayFlags flags pre-shifted to the most significant byte, as encoded in vertex normals
+	 */
+	public static int packLight(int light, int overlayFlags) {
+		assert (overlayFlags & 0xFFFFFF) == 0;
+		return (light & 0xFF) | ((light >> 8) & 0xFF00) | overlayFlags;
+	}
+
+	public void clear() {
+		size = 0;
+		batchCount = 0;
+	}
+
+	/**
+	 * @param transform model matrix rows 0-2 (12 values) followed by normal matrix columns 0-2 (9 values)
+	 * @param color packed as in vertex data, red in the low byte
+	 * @param light from {@link #packLight(int, int)}
+	 */
+	public void add(int key, float[] transform, int color, int light) {
+		final int index = size;
+
+		if (index == sortKeys.length) {
+			sortKeys = Arrays.copyOf(sortKeys, index * 2);
+			data = Arrays.copyOf(data, index * 2 * INSTANCE_STRIDE);
+		}
+
+		final int[] data = this.data;
+		final int base = index * INSTANCE_STRIDE;
+
+		for (int i = 0; i < TRANSFORM_LENGTH; ++i) {
+			data[base + i] = Float.floatToRawIntBits(transform[i]);
+		}
+
+		data[base + COLOR_OFFSET] = color;
+		data[base + LIGHT_OFFSET] = light;
+		sortKeys[index] = ((long) key << 32) | index;
+		size = index + 1;
+	}
+
+	/**
+	 * Groups instances into batches and packs their data in batch order.
+	 */
+	public void sort() {
+		final int size = this.size;
+		batchCount = 0;
+
+		if (size == 0) {
+			return;
+		}
+
+		final long[] sortKeys = this.sortKeys;
+		Arrays.sort(sortKeys, 0, size);
+
+		if (sortedData.length < size * INSTANCE_STRIDE) {
+			sortedData = new int[data.length];
+		}
+
+		final int[] data = this.data;
+		final int[] sortedData = this.sortedData;
+		int lastKey = -1;
+
+		for (int i = 0; i < size; ++i) {
+			final long sortKey = sortKeys[i];
+			final int key = (int) (sortKey >>> 32);
+			System.arraycopy(data, (int) sortKey * INSTANCE_STRIDE, sortedData, i * INSTANCE_STRIDE, INSTANCE_STRIDE);
+
+			if (key == lastKey) {
+				++batchSizes[batchCount - 1];
+			} else {
+				addBatch(key, i);
+				lastKey = key;
+			}
+		}
+	}
+
+	private void addBatch(int key, int start) {
+		final int index = batchCount;
+
+		if (index == batchKeys.length) {
+			batchKeys = Arrays.copyOf(batchKeys, index * 2);
+			batchStarts = Arrays.copyOf(batchStarts, index * 2);
+			batchSizes = Arrays.copyOf(batchSizes, index * 2);
+		}
+
+		batchKeys[index] = key;
+		batchStarts[index] = start;
+		batchSizes[index] = 1;
+		batchCount = index + 1;
+	}
+
+	/** Number of instances added since last cleared. */
+	public int size() {
+		return size;
+	}
+
+	/** Valid after {@link #sort()}. */
+	public int batchCount() {
+		return batchCount;
+	}
+
+	public int batchKey(int batchIndex) {
+		return batchKeys[batchIndex];
+	}
+
+	/** Index of the first instance of the batch in {@link #sortedData()}. */
+	public int batchStart(int batchIndex) {
+		return batchStarts[batchIndex];
+	}
+
+	public int batchSize(int batchIndex) {
+		return batchSizes[batchIndex];
+	}
+
+	/**
+	 * Instance data in batch order after {@link #sort()}. Only the first
+	 * {@code size() * INSTANCE_STRIDE} values are meaningful. DO NOT RETAIN A REFERENCE.
+	 */
+	public int[] sortedData() {
+		return sortedData;
+	}
+}
@@ -0,0 +1,351 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.buffer.instance;
+
+import java.nio.ByteBuffer;
+
+import com.mojang.blaze3d.platform.GlStateManager;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+import org.jetbrains.annotations.Nullable;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL21;
+
+import net.minecraft.client.model.ModelPart;
+import net.minecraft.client.render.OverlayTexture;
+import net.minecraft.client.render.VertexConsumer;
+import net.minecraft.client.util.math.MatrixStack;
+
+import grondag.canvas.Configurator;
+import grondag.canvas.apiimpl.MaterialConditionImpl;
+import grondag.canvas.buffer.BindStateManager;
+import grondag.canvas.buffer.GlBufferAllocator;
+import grondag.canvas.buffer.TransferBufferAllocator;
+import grondag.canvas.buffer.encoding.AbstractVertexCollector;
+import grondag.canvas.buffer.encoding.VertexCollector;
+import grondag.canvas.buffer.encoding.VertexCollectorImpl;
+import grondag.canvas.buffer.encoding.VertexCollectorList;
+import grondag.canvas.buffer.format.CanvasVertexFormat;
+import grondag.canvas.buffer.format.CanvasVertexFormats;
+import grondag.canvas.material.property.MaterialTarget;
+import grondag.canvas.material.state.RenderMaterialImpl;
+import grondag.canvas.material.state.RenderState;
+import grondag.canvas.mixin.AccessModelPart;
+import grondag.canvas.mixinterface.Matrix3fExt;
+import grondag.canvas.mixinterface.Matrix4fExt;
+import grondag.canvas.perf.InstancingCounters;
+import grondag.canvas.shader.ProgramType;
+import grondag.canvas.varia.CanvasGlHelper;
+
+/**
+ * Draws entity model parts with GPU instancing. The cuboids of each model part are
+ * captured once per material into a static vertex buffer and each time the part renders
+ * only its transform, color, light and overlay are recorded. Recorded instances are drawn
+ * in one instanced call per part and material before other entity output.
+ *
+ * <p>Model part geometry doesn't change after the model is built - vanilla animation is
+ * done with the transform - so any part can be instanced. Output not from model parts,
+ * such as models that emit deformed vertices directly, and output for materials that
+ * need sorting, conditions, other targets or wrapped consumers (outlines, glint) is
+ * rendered normally.
+ *
+ * <p>Render thread only.
+ */
+public final class ModelInstancer {
+	private static final MatrixStack.Entry IDENTITY = new MatrixStack().peek();
+	private static final int INSTANCE_BYTES = CanvasVertexFormats.MATERIAL_INSTANCE.vertexStrideBytes;
+
+	private static final Reference2ObjectOpenHashMap<ModelPart, Mesh> PART_MESHES = new Reference2ObjectOpenHashMap<>();
+	private static final ObjectArrayList<Mesh> MESHES = new ObjectArrayList<>();
+	private static final InstanceBatcher BATCHER = new InstanceBatcher();
+	private static final VertexCollectorImpl CAPTURE = new VertexCollectorImpl();
+	private static final float[] TRANSFORM = new float[InstanceBatcher.TRANSFORM_LENGTH];
+
+	private static boolean isEnabled;
+	private static int instanceBufferId;
+
+	/** Non-null while entities are rendering. */
+	private static VertexCollectorList collectors;
+
+	private ModelInstancer() {
+	}
+
+	private static class Mesh {
+		private final int id;
+		private final ModelPart part;
+		private final RenderMaterialImpl material;
+		/** Next mesh for the same part with a different material. */
+		private Mesh next;
+		private int cuboidCount;
+		private int glBufferId;
+		private int byteCount;
+		private int vertexCount;
+
+		private Mesh(int id, ModelPart part, RenderMaterialImpl material) {
+			this.id = id;
+			this.part = part;
+			this.material = material;
+		}
+
+		private void releaseBuffer() {
+			if (glBufferId != 0) {
+				GlBufferAllocator.releaseBuffer(glBufferId, byteCount);
+				glBufferId = 0;
+				byteCount = 0;
+			}
+		}
+	}
+
+	public static void reload() {
+		for (final Mesh mesh : MESHES) {
+			mesh.releaseBuffer();
+		}
+
+		MESHES.clear();
+		PART_MESHES.clear();
+		BATCHER.clear();
+		collectors = null;
+
+		if (instanceBufferId != 0) {
+			GlBufferAllocator.releaseBuffer(instanceBufferId, 0);
+			instanceBufferId = 0;
+		}
+
+		isEnabled = Configurator.instanceEntityModels && CanvasGlHelper.supportsInstancing();
+	}
+
+	public static boolean isEnabled() {
+		return isEnabled;
+	}
+
+	/**
+	 * Starts recording instances for model parts rendered to the given collectors.
+	 */
+	public static void beginFrame(VertexCollectorList collectors) {
+		if (isEnabled) {
+			ModelInstancer.collectors = collectors;
+		}
+	}
+
+	/**
+	 * Called when a model part renders its cuboids.
+	 *
+	 * @return true if the part will be drawn with instancing and should not render normally.
+	 */
+	public static boolean tryAdd(ModelPart part, MatrixStack.Entry entry, VertexConsumer consumer, int light, int overlay, float red, float green, float blue, float alpha) {
+		final VertexCollectorList collectors = ModelInstancer.collectors;
+
+		if (collectors == null) {
+			return false;
+		}
+
+		final Mesh mesh = findMesh(part, consumer, collectors);
+
+		if (mesh == null) {
+			if (InstancingCounters.ENABLED) InstancingCounters.addFallback();
+			return false;
+		}
+
+		if (mesh.vertexCount == 0) {
+			return true;
+		}
+
+		final float[] t = TRANSFORM;
+		final Matrix4fExt model = (Matrix4fExt) (Object) entry.getModel();
+		t[0] = model.a00();
+		t[1] = model.a01();
+		t[2] = model.a02();
+		t[3] = model.a03();
+		t[4] = model.a10();
+		t[5] = model.a11();
+		t[6] = model.a12();
+		t[7] = model.a13();
+		t[8] = model.a20();
+		t[9] = model.a21();
+		t[10] = model.a22();
+		t[11] = model.a23();
+
+		final Matrix3fExt normal = (Matrix3fExt) (Object) entry.getNormal();
+		t[12] = normal.a00();
+		t[13] = normal.a10();
+		t[14] = normal.a20();
+		t[15] = normal.a01();
+		t[16] = normal.a11();
+		t[17] = normal.a21();
+		t[18] = normal.a02();
+		t[19] = normal.a12();
+		t[20] = normal.a22();
+
+		final int overlayFlags = AbstractVertexCollector.overlayFlags(overlay & 0xFFFF, overlay >> 16 & 0xFFFF);
+		BATCHER.add(InstanceBatcher.batchKey(mesh.material.collectorIndex, mesh.id), t, VertexCollector.packColor(red, green, blue, alpha), InstanceBatcher.packLight(light, overlayFlags));
+		if (InstancingCounters.ENABLED) InstancingCounters.addInstanced();
+		return true;
+	}
+
+	private static boolean canInstance(RenderMaterialImpl mat) {
+		return mat.programType == ProgramType.MATERIAL_UNIFORM_LOGIC
+			&& !mat.sorted
+			&& mat.target == MaterialTarget.MAIN
+			&& mat.condition == MaterialConditionImpl.ALWAYS
+			&& mat.primitive == GL11.GL_QUADS
+			&& !mat.lines
+			&& !mat.gui;
+	}
+
+	@Nullable
+	private static Mesh findMesh(ModelPart part, VertexConsumer consumer, VertexCollectorList collectors) {
+		if (!(consumer instanceof VertexCollectorImpl)) {
+			return null;
+		}
+
+		final VertexCollectorImpl collector = (VertexCollectorImpl) consumer;
+		final RenderMaterialImpl mat = collector.materialState();
+
+		// must be the collector normally used for the material, without flags from some other material
+		if (collectors.getIfExists(mat) != collector || !canInstance(mat) || collector.vertexFlags() != mat.shaderFlags << 24) {
+			return null;
+		}
+
+		// order must fit the batch key
+		if (mat.collectorIndex >= InstanceBatcher.MAX_ORDERS) {
+			return null;
+		}
+
+		final Mesh head = PART_MESHES.get(part);
+		Mesh mesh = head;
+
+		while (mesh != null && mesh.material != mat) {
+			mesh = mesh.next;
+		}
+
+		final int cuboidCount = ((AccessModelPart) part).canvas_cuboids().size();
+
+		if (mesh == null) {
+			if (MESHES.size() >= InstanceBatcher.MAX_MESHES) {
+				return null;
+			}
+
+			mesh = new Mesh(MESHES.size(), part, mat);
+			mesh.next = head;
+			MESHES.add(mesh);
+			PART_MESHES.put(part, mesh);
+			capture(mesh, cuboidCount);
+		} else if (mesh.cuboidCount != cuboidCount) {
+			capture(mesh, cuboidCount);
+		}
+
+		return mesh;
+	}
+
+	private static void capture(Mesh mesh, int cuboidCount) {
+		final VertexCollectorImpl capture = CAPTURE.prepare(mesh.material);
+		final VertexCollectorList collectors = ModelInstancer.collectors;
+
+		// the part will call back here
+		ModelInstancer.collectors = null;
+
+		try {
+			((AccessModelPart) mesh.part).canvas_renderCuboids(IDENTITY, capture, 0, OverlayTexture.DEFAULT_UV, 1f, 1f, 1f, 1f);
+		} finally {
+			ModelInstancer.collectors = collectors;
+		}
+
+		mesh.releaseBuffer();
+		mesh.cuboidCount = cuboidCount;
+		mesh.vertexCount = capture.vertexCount();
+
+		if (mesh.vertexCount == 0) {
+			return;
+		}
+
+		final int bytes = capture.byteSize();
+		final ByteBuffer buffer = TransferBufferAllocator.claim(bytes);
+		buffer.clear();
+		capture.toBuffer(buffer.asIntBuffer());
+		buffer.limit(bytes);
+
+		mesh.byteCount = bytes;
+		mesh.glBufferId = GlBufferAllocator.claimBuffer(bytes);
+		BindStateManager.bind(mesh.glBufferId);
+		GL21.glBufferData(GL21.GL_ARRAY_BUFFER, buffer, GL21.GL_STATIC_DRAW);
+		// entity output drawn from client memory expects no bound buffer
+		BindStateManager.unbind();
+		TransferBufferAllocator.release(buffer);
+		capture.clear();
+	}
+
+	/**
+	 * Stops recording and draws instances recorded since {@link #beginFrame(VertexCollectorList)}.
+	 */
+	public static void draw() {
+		collectors = null;
+		final InstanceBatcher batcher = BATCHER;
+		final int instanceCount = batcher.size();
+
+		if (instanceCount == 0) {
+			return;
+		}
+
+		final long start = InstancingCounters.ENABLED ? System.nanoTime() : 0;
+		batcher.sort();
+
+		final int bytes = instanceCount * INSTANCE_BYTES;
+		final ByteBuffer buffer = TransferBufferAllocator.claim(bytes);
+		buffer.clear();
+		buffer.asIntBuffer().put(batcher.sortedData(), 0, instanceCount * InstanceBatcher.INSTANCE_STRIDE);
+		buffer.limit(bytes);
+
+		if (CanvasGlHelper.isVaoEnabled()) {
+			CanvasGlHelper.glBindVertexArray(0);
+		}
+
+		if (instanceBufferId == 0) {
+			instanceBufferId = GlBufferAllocator.claimBuffer(0);
+		}
+
+		BindStateManager.bind(instanceBufferId);
+		GL21.glBufferData(GL21.GL_ARRAY_BUFFER, buffer, GL21.GL_STREAM_DRAW);
+		TransferBufferAllocator.release(buffer);
+
+		final CanvasVertexFormat meshFormat = CanvasVertexFormats.POSITION_COLOR_TEXTURE_MATERIAL_LIGHT_NORMAL;
+		final CanvasVertexFormat instanceFormat = CanvasVertexFormats.MATERIAL_INSTANCE;
+		final int firstInstanceAttribute = CanvasVertexFormats.MATERIAL_INSTANCE_FIRST_ATTRIBUTE;
+		final int batchCount = batcher.batchCount();
+		instanceFormat.enableInstanceAttributes(firstInstanceAttribute);
+
+		for (int i = 0; i < batchCount; ++i) {
+			final Mesh mesh = MESHES.get(InstanceBatcher.keyMesh(batcher.batchKey(i)));
+			mesh.material.renderState.enableInstanced();
+
+			BindStateManager.bind(mesh.glBufferId);
+			GlStateManager.enableClientState(GL11.GL_VERTEX_ARRAY);
+			GlStateManager.vertexPointer(3, GL11.GL_FLOAT, meshFormat.vertexStrideBytes, 0);
+			meshFormat.enableAndBindAttributes(0);
+
+			BindStateManager.bind(instanceBufferId);
+			instanceFormat.bindInstanceAttributes(firstInstanceAttribute, (long) batcher.batchStart(i) * INSTANCE_BYTES);
+			CanvasGlHelper.glDrawArraysInstanced(mesh.material.primitive, 0, mesh.vertexCount, batcher.batchSize(i));
+		}
+
+		instanceFormat.disableInstanceAttributes(firstInstanceAttribute);
+		BindStateManager.unbind();
+		RenderState.disable();
+		batcher.clear();
+
+		if (InstancingCounters.ENABLED) InstancingCounters.addDraw(batchCount, bytes, System.nanoTime() - start);
+	}
+}
@@ -22,6 +22,7 @@ import com.mojang.blaze3d.systems.RenderSystem;
 import net.minecraft.client.render.RenderPhase;
 import net.minecraft.client.render.RenderPhase.Layering;
 
+import grondag.canvas.varia.GlStateTracker;
 import grondag.frex.api.material.MaterialFinder;
 
 public final class MaterialDecal {
@@ -43,14 +44,8 @@ public final class MaterialDecal {
 		MaterialFinder.DECAL_POLYGON_OFFSET,
 		"polygon_offset",
 		1,
-		() -> {
-			RenderSystem.polygonOffset(-1.0F, -10.0F);
-			RenderSystem.enablePolygonOffset();
-		},
-		() -> {
-			RenderSystem.polygonOffset(0.0F, 0.0F);
-			RenderSystem.disablePolygonOffset();
-		});
+		() -> GlStateTracker.polygonOffset(true, -1.0F, -10.0F),
+		() -> GlStateTracker.polygonOffset(false, 0.0F, 0.0F));
 
 	public static final MaterialDecal VIEW_OFFSET = new MaterialDecal(
 		MaterialFinder.DECAL_VIEW_OFFSET,
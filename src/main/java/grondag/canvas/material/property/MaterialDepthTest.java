@@ -16,12 +16,12 @@
 
 package grondag.canvas.material.property;
 
-import com.mojang.blaze3d.systems.RenderSystem;
 import org.lwjgl.opengl.GL11;
 
 import net.minecraft.client.render.RenderPhase;
 import net.minecraft.client.render.RenderPhase.DepthTest;
 
+import grondag.canvas.varia.GlStateTracker;
 import grondag.frex.api.material.MaterialFinder;
 
 public class MaterialDepthTest {
@@ -29,32 +29,32 @@ public class MaterialDepthTest {
 		MaterialFinder.DEPTH_TEST_DISABLE,
 		"disable",
 		() -> {
-			RenderSystem.disableDepthTest();
-			RenderSystem.depthFunc(GL11.GL_LEQUAL);
+			GlStateTracker.depthTest(false);
+			GlStateTracker.depthFunc(GL11.GL_LEQUAL);
 		});
 
 	public static final MaterialDepthTest ALWAYS = new MaterialDepthTest(
 		MaterialFinder.DEPTH_TEST_ALWAYS,
 		"disable",
 		() -> {
-			RenderSystem.enableDepthTest();
-			RenderSystem.depthFunc(GL11.GL_ALWAYS);
+			GlStateTracker.depthTest(true);
+			GlStateTracker.depthFunc(GL11.GL_ALWAYS);
 		});
 
 	public static final MaterialDepthTest EQUAL = new MaterialDepthTest(
 		MaterialFinder.DEPTH_TEST_EQUAL,
 		"disable",
 		() -> {
-			RenderSystem.enableDepthTest();
-			RenderSystem.depthFunc(GL11.GL_EQUAL);
+			GlStateTracker.depthTest(true);
+			GlStateTracker.depthFunc(GL11.GL_EQUAL);
 		});
 
 	public static final MaterialDepthTest LEQUAL = new MaterialDepthTest(
 		MaterialFinder.DEPTH_TEST_LEQUAL,
 		"disable",
 		() -> {
-			RenderSystem.enableDepthTest();
-			RenderSystem.depthFunc(GL11.GL_LEQUAL);
+			GlStateTracker.depthTest(true);
+			GlStateTracker.depthFunc(GL11.GL_LEQUAL);
 		});
 
 	public static final int DEPTH_TEST_COUNT = 4;
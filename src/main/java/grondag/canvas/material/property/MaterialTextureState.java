@@ -17,7 +17,6 @@
 package grondag.canvas.material.property;
 
 import com.mojang.blaze3d.platform.GlStateManager;
-import com.mojang.blaze3d.systems.RenderSystem;
 import it.unimi.dsi.fastutil.Hash;
 import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
 import org.lwjgl.opengl.GL21;
@@ -29,6 +28,7 @@ import net.minecraft.client.texture.TextureManager;
 import net.minecraft.util.Identifier;
 
 import grondag.canvas.texture.SpriteInfoTexture;
+import grondag.canvas.varia.GlStateTracker;
 
 public class MaterialTextureState {
 	public final int index;
@@ -78,17 +78,17 @@ public class MaterialTextureState {
 		if (activeState == this) {
 			if (bilinear != activeIsBilinearFilter) {
 				final AbstractTexture tex = texture();
-				tex.bindTexture();
+				GlStateTracker.bindTexture(0, tex.getGlId());
 				setFilter(bilinear);
 				activeIsBilinearFilter = bilinear;
 			}
 		} else {
 			if (this == MaterialTextureState.NO_TEXTURE) {
-				RenderSystem.disableTexture();
+				GlStateTracker.texture(0, false);
 			} else {
-				RenderSystem.enableTexture();
+				GlStateTracker.texture(0, true);
 				final AbstractTexture tex = texture();
-				tex.bindTexture();
+				GlStateTracker.bindTexture(0, tex.getGlId());
 				setFilter(bilinear);
 
 				if (isAtlas()) {
@@ -150,7 +150,7 @@ public class MaterialTextureState {
 		@Override
 		public void enable(boolean bilinear) {
 			if (activeState != this) {
-				RenderSystem.disableTexture();
+				GlStateTracker.texture(0, false);
 				activeState = this;
 			}
 		}
@@ -161,7 +161,7 @@ public class MaterialTextureState {
 
 	public static void disable() {
 		if (activeState != null) {
-			RenderSystem.enableTexture();
+			GlStateTracker.texture(0, true);
 			activeState = null;
 		}
 	}
@@ -16,12 +16,12 @@
 
 package grondag.canvas.material.property;
 
-import com.mojang.blaze3d.platform.GlStateManager;
-import com.mojang.blaze3d.systems.RenderSystem;
+import org.lwjgl.opengl.GL11;
 
 import net.minecraft.client.render.RenderPhase;
 import net.minecraft.client.render.RenderPhase.Transparency;
 
+import grondag.canvas.varia.GlStateTracker;
 import grondag.frex.api.material.MaterialFinder;
 
 public class MaterialTransparency {
@@ -30,7 +30,7 @@ public class MaterialTransparency {
 		"none",
 		6,
 		() -> {
-			RenderSystem.disableBlend();
+			GlStateTracker.blend(false);
 		});
 
 	public static final MaterialTransparency ADDITIVE = new MaterialTransparency(
@@ -38,8 +38,8 @@ public class MaterialTransparency {
 		"additive",
 		2,
 		() -> {
-			RenderSystem.enableBlend();
-			RenderSystem.blendFunc(GlStateManager.SrcFactor.ONE, GlStateManager.DstFactor.ONE);
+			GlStateTracker.blend(true);
+			GlStateTracker.blendFunc(GL11.GL_ONE, GL11.GL_ONE);
 		});
 
 	public static final MaterialTransparency LIGHTNING = new MaterialTransparency(
@@ -47,8 +47,8 @@ public class MaterialTransparency {
 		"lightning",
 		5,
 		() -> {
-			RenderSystem.enableBlend();
-			RenderSystem.blendFunc(GlStateManager.SrcFactor.SRC_ALPHA, GlStateManager.DstFactor.ONE);
+			GlStateTracker.blend(true);
+			GlStateTracker.blendFunc(GL11.GL_SRC_ALPHA, GL11.GL_ONE);
 		});
 
 	public static final MaterialTransparency GLINT = new MaterialTransparency(
@@ -56,8 +56,8 @@ public class MaterialTransparency {
 		"glint",
 		1,
 		() -> {
-			RenderSystem.enableBlend();
-			RenderSystem.blendFuncSeparate(GlStateManager.SrcFactor.SRC_COLOR, GlStateManager.DstFactor.ONE, GlStateManager.SrcFactor.ZERO, GlStateManager.DstFactor.ONE);
+			GlStateTracker.blend(true);
+			GlStateTracker.blendFuncSeparate(GL11.GL_SRC_COLOR, GL11.GL_ONE, GL11.GL_ZERO, GL11.GL_ONE);
 		});
 
 	public static final MaterialTransparency CRUMBLING = new MaterialTransparency(
@@ -65,8 +65,8 @@ public class MaterialTransparency {
 		"crumbling",
 		0,
 		() -> {
-			RenderSystem.enableBlend();
-			RenderSystem.blendFuncSeparate(GlStateManager.SrcFactor.DST_COLOR, GlStateManager.DstFactor.SRC_COLOR, GlStateManager.SrcFactor.ONE, GlStateManager.DstFactor.ZERO);
+			GlStateTracker.blend(true);
+			GlStateTracker.blendFuncSeparate(GL11.GL_DST_COLOR, GL11.GL_SRC_COLOR, GL11.GL_ONE, GL11.GL_ZERO);
 		});
 
 	public static final MaterialTransparency TRANSLUCENT = new MaterialTransparency(
@@ -74,8 +74,8 @@ public class MaterialTransparency {
 		"translucent",
 		4,
 		() -> {
-			RenderSystem.enableBlend();
-			RenderSystem.blendFuncSeparate(GlStateManager.SrcFactor.SRC_ALPHA, GlStateManager.DstFactor.ONE_MINUS_SRC_ALPHA, GlStateManager.SrcFactor.ONE, GlStateManager.DstFactor.ONE_MINUS_SRC_ALPHA);
+			GlStateTracker.blend(true);
+			GlStateTracker.blendFuncSeparate(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA, GL11.GL_ONE, GL11.GL_ONE_MINUS_SRC_ALPHA);
 		});
 
 	/** Used for terrain particles. */
@@ -84,8 +84,8 @@ public class MaterialTransparency {
 		"default",
 		3,
 		() -> {
-			RenderSystem.enableBlend();
-			RenderSystem.blendFuncSeparate(GlStateManager.SrcFactor.SRC_ALPHA, GlStateManager.DstFactor.ONE_MINUS_SRC_ALPHA, GlStateManager.SrcFactor.ONE, GlStateManager.DstFactor.ZERO);
+			GlStateTracker.blend(true);
+			GlStateTracker.blendFuncSeparate(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA, GL11.GL_ONE, GL11.GL_ZERO);
 		});
 
 	public static final int TRANSPARENCY_COUNT = 7;
@@ -146,8 +146,8 @@ public class MaterialTransparency {
 
 	public static void disable() {
 		if (active != null) {
-			RenderSystem.disableBlend();
-			RenderSystem.defaultBlendFunc();
+			GlStateTracker.blend(false);
+			GlStateTracker.defaultBlendFunc();
 			active = null;
 		}
 	}
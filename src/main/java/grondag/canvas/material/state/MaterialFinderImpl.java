@@ -34,16 +34,9 @@ public class MaterialFinderImpl extends AbstractStateFinder<MaterialFinderImpl,
 	}
 
 	@Override
-	protected synchronized RenderMaterialImpl findInner() {
-		RenderMaterialImpl result = RenderMaterialImpl.MAP.get(bits);
-
-		if (result == null) {
-			result = new RenderMaterialImpl(bits, renderLayerName);
-			RenderMaterialImpl.MAP.put(bits, result);
-			RenderMaterialImpl.VALUES[result.index] = result;
-		}
-
-		return result;
+	protected RenderMaterialImpl findInner() {
+		final RenderMaterialImpl result = RenderMaterialImpl.CACHE.get(bits);
+		return result == null ? RenderMaterialImpl.create(bits, renderLayerName) : result;
 	}
 
 	@Override
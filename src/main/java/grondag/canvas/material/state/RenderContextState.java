@@ -42,7 +42,13 @@ public class RenderContextState {
 	private Function<RenderMaterialImpl, RenderMaterialImpl> activeFunc = defaultFunc;
 	private BiFunction<MaterialFinderImpl, RenderMaterialImpl, RenderMaterialImpl> guiFunc = GuiMode.NONE.func;
 
+	// last mapping is reused while inputs are unchanged - consecutive block entities of the same type and state often share it
+	private RenderMaterialImpl lastMaterial;
+	private RenderMaterialImpl lastMapped;
+
 	public void setCurrentEntity(@Nullable Entity entity) {
+		lastMaterial = null;
+
 		if (entity == null) {
 			entityMap = null;
 			activeFunc = defaultFunc;
@@ -54,21 +60,40 @@ public class RenderContextState {
 
 	public void setCurrentBlockEntity(@Nullable BlockEntity blockEntity) {
 		if (blockEntity == null) {
+			if (activeFunc != defaultFunc) {
+				lastMaterial = null;
+			}
+
 			blockEntityMap = null;
 			activeFunc = defaultFunc;
 		} else {
-			blockState = blockEntity.getCachedState();
-			blockEntityMap = BlockEntityMaterialMap.get(blockEntity.getType());
+			final BlockState blockState = blockEntity.getCachedState();
+			final BlockEntityMaterialMap blockEntityMap = BlockEntityMaterialMap.get(blockEntity.getType());
+
+			if (activeFunc != blockEntityFunc || blockState != this.blockState || blockEntityMap != this.blockEntityMap) {
+				lastMaterial = null;
+			}
+
+			this.blockState = blockState;
+			this.blockEntityMap = blockEntityMap;
 			activeFunc = blockEntityFunc;
 		}
 	}
 
 	public void guiMode(GuiMode guiMode) {
+		lastMaterial = null;
 		guiFunc = guiMode.func;
 	}
 
 	public RenderMaterialImpl mapMaterial(RenderMaterialImpl mat) {
-		return guiFunc.apply(finder, activeFunc.apply(mat));
+		if (mat == lastMaterial) {
+			return lastMapped;
+		}
+
+		final RenderMaterialImpl result = guiFunc.apply(finder, activeFunc.apply(mat));
+		lastMaterial = mat;
+		lastMapped = result;
+		return result;
 	}
 
 	public enum GuiMode {
@@ -19,8 +19,6 @@ package grondag.canvas.material.state;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import com.google.common.base.Strings;
-import it.unimi.dsi.fastutil.Hash;
-import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 
 import net.minecraft.util.Identifier;
 
@@ -92,7 +90,7 @@ public final class RenderMaterialImpl extends AbstractRenderState implements Ren
 
 	static AtomicInteger nextIndex = new AtomicInteger();
 	static final RenderMaterialImpl[] VALUES = new RenderMaterialImpl[MAX_MATERIAL_COUNT];
-	static final Long2ObjectOpenHashMap<RenderMaterialImpl> MAP = new Long2ObjectOpenHashMap<>(4096, Hash.VERY_FAST_LOAD_FACTOR);
+	static final StateBitsCache<RenderMaterialImpl> CACHE = new StateBitsCache<>(MAX_MATERIAL_COUNT);
 
 	public static final RenderMaterialImpl MISSING = new RenderMaterialImpl(0, "<canvas missing>");
 
@@ -100,6 +98,22 @@ public final class RenderMaterialImpl extends AbstractRenderState implements Ren
 		VALUES[MISSING.index] = MISSING;
 	}
 
+	/**
+	 * Creation is serialized so each material gets one index and one info texture entry.
+	 * Lookups go through {@link #CACHE} without locking.
+	 */
+	static synchronized RenderMaterialImpl create(long bits, String renderLayerName) {
+		RenderMaterialImpl result = CACHE.get(bits);
+
+		if (result == null) {
+			result = new RenderMaterialImpl(bits, renderLayerName);
+			VALUES[result.index] = result;
+			CACHE.putIfAbsent(bits, result);
+		}
+
+		return result;
+	}
+
 	public static RenderMaterialImpl fromIndex(int index) {
 		return VALUES[index];
 	}
@@ -17,8 +17,6 @@
 package grondag.canvas.material.state;
 
 import com.mojang.blaze3d.systems.RenderSystem;
-import it.unimi.dsi.fastutil.Hash;
-import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import org.lwjgl.opengl.GL11;
 
 import net.minecraft.client.MinecraftClient;
@@ -33,11 +31,13 @@ import grondag.canvas.material.property.MaterialTarget;
 import grondag.canvas.material.property.MaterialTextureState;
 import grondag.canvas.material.property.MaterialTransparency;
 import grondag.canvas.material.property.MaterialWriteMask;
+import grondag.canvas.perf.GlStateCounters;
 import grondag.canvas.render.CanvasFrameBufferHacks;
 import grondag.canvas.shader.GlProgram;
 import grondag.canvas.shader.ProgramType;
 import grondag.canvas.texture.MaterialInfoTexture;
 import grondag.canvas.texture.SpriteInfoTexture;
+import grondag.canvas.varia.GlStateTracker;
 
 /**
  * Primitives with the same state have the same vertex encoding,
@@ -59,7 +59,32 @@ public final class RenderState extends AbstractRenderState {
 	}
 
 	public void enable() {
+		enable(false);
+	}
+
+	/**
+	 * Like {@link #enable()} but for instanced models, which use a different program.
+	 * Only valid for states with {@link ProgramType#MATERIAL_UNIFORM_LOGIC}.
+	 */
+	public void enableInstanced() {
+		assert programType == ProgramType.MATERIAL_UNIFORM_LOGIC;
+		enable(true);
+	}
+
+	private void enable(boolean instanced) {
+		if (isDisablePending) {
+			// previous state is still in place, so only differences need to change
+			isDisablePending = false;
+			if (GlStateCounters.ENABLED) GlStateCounters.addSkippedTeardown();
+		}
+
 		if (active == this) {
+			if (isInstancedActive != instanced) {
+				// only the program differs
+				isInstancedActive = instanced;
+				activateShader(instanced);
+			}
+
 			return;
 		}
 
@@ -68,15 +93,17 @@ public final class RenderState extends AbstractRenderState {
 		//		}
 
 		if (active == null) {
+			// other code may have changed GL state since we last had control
+			GlStateTracker.invalidate();
 			// same for all, so only do 1X
-			RenderSystem.shadeModel(GL11.GL_SMOOTH);
+			GlStateTracker.shadeModel(GL11.GL_SMOOTH);
 			target.enable();
 			// NB: must be after frame-buffer target switch
-			if (Configurator.enableBloom) CanvasFrameBufferHacks.startEmissiveCapture();
+			if (Configurator.enableBloom) CanvasFrameBufferHacks.startEmissiveCapture(target);
 		} else if (active.target != target) {
 			if (Configurator.enableBloom) CanvasFrameBufferHacks.endEmissiveCapture();
 			target.enable();
-			if (Configurator.enableBloom) CanvasFrameBufferHacks.startEmissiveCapture();
+			if (Configurator.enableBloom) CanvasFrameBufferHacks.startEmissiveCapture(target);
 		}
 
 		active = this;
@@ -101,7 +128,17 @@ public final class RenderState extends AbstractRenderState {
 		LIGHTMAP_STATE.setEnabled(enableLightmap);
 		LINE_STATE.setEnabled(lines);
 
-		shader.activate(this);
+		isInstancedActive = instanced;
+		activateShader(instanced);
+	}
+
+	private void activateShader(boolean instanced) {
+		if (instanced) {
+			shader.activateInstanced(this);
+		} else {
+			shader.activate(this);
+		}
+
 		shader.setAtlasInfo(texture.atlasInfo());
 	}
 
@@ -110,29 +147,68 @@ public final class RenderState extends AbstractRenderState {
 		shader.setModelOrigin(x, y, z);
 	}
 
-	private static final BinaryMaterialState CULL_STATE = new BinaryMaterialState(RenderSystem::enableCull, RenderSystem::disableCull);
+	private static final BinaryMaterialState CULL_STATE = new BinaryMaterialState(() -> GlStateTracker.cull(true), () -> GlStateTracker.cull(false));
 
 	private static final BinaryMaterialState LIGHTMAP_STATE = new BinaryMaterialState(
 		() -> MinecraftClient.getInstance().gameRenderer.getLightmapTextureManager().enable(),
 		() -> MinecraftClient.getInstance().gameRenderer.getLightmapTextureManager().disable());
 
 	private static final BinaryMaterialState LINE_STATE = new BinaryMaterialState(
-		() -> RenderSystem.lineWidth(Math.max(2.5F, MinecraftClient.getInstance().getWindow().getFramebufferWidth() / 1920.0F * 2.5F)),
-		() -> RenderSystem.lineWidth(1.0F));
+		() -> GlStateTracker.lineWidth(Math.max(2.5F, MinecraftClient.getInstance().getWindow().getFramebufferWidth() / 1920.0F * 2.5F)),
+		() -> GlStateTracker.lineWidth(1.0F));
 
+	/**
+	 * Restores default GL state after canvas draws. Inside {@link #beginDeferredDisable()} the
+	 * restore waits until {@link #endDeferredDisable()}, {@link #flushDisable()} or until
+	 * the next state is enabled, in which case only the state that differs is changed.
+	 */
 	public static void disable() {
 		if (active == null) {
 			return;
 		}
 
+		if (isDeferringDisable) {
+			isDisablePending = true;
+		} else {
+			teardown();
+		}
+	}
+
+	/**
+	 * Starts a sequence of canvas draws with no other rendering in between, so that
+	 * {@link #disable()} can be deferred. Any non-canvas rendering inside the sequence
+	 * must be preceded by {@link #flushDisable()}.
+	 */
+	public static void beginDeferredDisable() {
+		isDeferringDisable = true;
+	}
+
+	public static void endDeferredDisable() {
+		isDeferringDisable = false;
+		flushDisable();
+	}
+
+	/**
+	 * Completes a deferred {@link #disable()}, if any.
+	 */
+	public static void flushDisable() {
+		if (isDisablePending) {
+			isDisablePending = false;
+			teardown();
+		}
+	}
+
+	private static void teardown() {
 		active = null;
+		isInstancedActive = false;
+		if (GlStateCounters.ENABLED) GlStateCounters.addTeardown();
 
 		// NB: must be before frame-buffer target switch
 		if (Configurator.enableBloom) CanvasFrameBufferHacks.endEmissiveCapture();
 
 		CanvasVertexFormat.disableDirect();
 		GlProgram.deactivate();
-		RenderSystem.shadeModel(GL11.GL_FLAT);
+		GlStateTracker.shadeModel(GL11.GL_FLAT);
 		SpriteInfoTexture.disable();
 		MaterialDecal.disable();
 		MaterialTransparency.disable();
@@ -157,9 +233,12 @@ public final class RenderState extends AbstractRenderState {
 	public static final int MAX_COUNT = 4096;
 	static int nextIndex = 0;
 	static final RenderState[] STATES = new RenderState[MAX_COUNT];
-	static final Long2ObjectOpenHashMap<RenderState> MAP = new Long2ObjectOpenHashMap<>(4096, Hash.VERY_FAST_LOAD_FACTOR);
+	static final StateBitsCache<RenderState> CACHE = new StateBitsCache<>(MAX_COUNT);
 
 	private static RenderState active = null;
+	private static boolean isInstancedActive = false;
+	private static boolean isDeferringDisable = false;
+	private static boolean isDisablePending = false;
 
 	public static final RenderState MISSING = new RenderState(0);
 
@@ -167,6 +246,19 @@ public final class RenderState extends AbstractRenderState {
 		STATES[0] = MISSING;
 	}
 
+	/** Creation is serialized so indexes are unique. Lookups go through {@link #CACHE} without locking. */
+	static synchronized RenderState create(long bits) {
+		RenderState result = CACHE.get(bits);
+
+		if (result == null) {
+			result = new RenderState(bits);
+			STATES[result.index] = result;
+			CACHE.putIfAbsent(bits, result);
+		}
+
+		return result;
+	}
+
 	public static RenderState fromIndex(int index) {
 		return STATES[index];
 	}
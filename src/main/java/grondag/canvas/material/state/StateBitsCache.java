@@ -0,0 +1,109 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.material.state;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Maps packed state bits to the state instance created for them. Lookups are lock-free
+ * so finders on chunk build threads don't contend for a shared map.
+ *
+ * <p>Open addressing with linear probing in a fixed table sized for at most half full
+ * at the maximum state count. Entries are never removed, so a reader that finds an
+ * empty slot knows the key is absent at that moment.
+ */
+public final class StateBitsCache<V> {
+	private final int mask;
+	private final AtomicReferenceArray<Entry<V>> entries;
+
+	/**
+	 * @param maxCount most states that will ever be added
+	 */
+	public StateBitsCache(int maxCount) {
+		final int capacity = Integer.highestOneBit(Math.max(2, maxCount) * 4 - 1);
+		mask = capacity - 1;
+		entries = new AtomicReferenceArray<>(capacity);
+	}
+
+	/**
+	 * @return the value for the given bits, or null if none has been added
+	 */
+	public V get(long bits) {
+		int i = hash(bits) & mask;
+
+		while (true) {
+			final Entry<V> entry = entries.get(i);
+
+			if (entry == null) {
+				return null;
+			} else if (entry.bits == bits) {
+				return entry.value;
+			}
+
+			i = (i + 1) & mask;
+		}
+	}
+
+	/**
+	 * Adds the value unless one is already present for the bits.
+	 *
+	 * @return the value now mapped to the bits - the existing value if there was one
+	 */
+	public V putIfAbsent(long bits, V value) {
+		final Entry<V> newEntry = new Entry<>(bits, value);
+		int i = hash(bits) & mask;
+		int probes = 0;
+
+		while (true) {
+			final Entry<V> entry = entries.get(i);
+
+			if (entry == null) {
+				if (entries.compareAndSet(i, null, newEntry)) {
+					return value;
+				}
+
+				// lost the race - check the winner again before moving on
+				continue;
+			} else if (entry.bits == bits) {
+				return entry.value;
+			}
+
+			if (++probes > mask) {
+				throw new IllegalStateException("Render state cache is full");
+			}
+
+			i = (i + 1) & mask;
+		}
+	}
+
+	/** Same mixing as fastutil HashCommon.mix, so sequential bit patterns spread out. */
+	private static int hash(long bits) {
+		long h = bits * 0x9E3779B97F4A7C15L;
+		h ^= h >>> 32;
+		return (int) (h ^ (h >>> 16));
+	}
+
+	private static final class Entry<V> {
+		private final long bits;
+		private final V value;
+
+		private Entry(long bits, V value) {
+			this.bits = bits;
+			this.value = value;
+		}
+	}
+}
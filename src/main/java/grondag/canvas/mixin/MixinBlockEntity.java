@@ -0,0 +1,44 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.mixin;
+
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.block.entity.BlockEntity;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.world.World;
+
+import grondag.canvas.terrain.region.StaticBlockEntities;
+
+@Mixin(BlockEntity.class)
+public class MixinBlockEntity {
+	@Shadow
+	protected World world;
+
+	// baked output must be rebuilt when the server sends new data
+	@Inject(method = "fromTag", at = @At("RETURN"))
+	private void onFromTag(BlockState state, CompoundTag tag, CallbackInfo ci) {
+		if (world != null && world.isClient) {
+			StaticBlockEntities.onDataChanged((BlockEntity) (Object) this);
+		}
+	}
+}
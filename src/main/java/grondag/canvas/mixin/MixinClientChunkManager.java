@@ -22,12 +22,13 @@ import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
 
 import net.minecraft.client.world.ClientChunkManager;
+import net.minecraft.client.world.ClientWorld;
 import net.minecraft.world.chunk.WorldChunk;
 
 import net.fabricmc.api.EnvType;
 import net.fabricmc.api.Environment;
 
-import grondag.canvas.mixinterface.WorldChunkExt;
+import grondag.canvas.terrain.util.ChunkColorCache;
 
 @Environment(EnvType.CLIENT)
 @Mixin(ClientChunkManager.class)
@@ -37,7 +38,7 @@ public class MixinClientChunkManager {
 		final WorldChunk chunk = ci.getReturnValue();
 
 		if (chunk != null) {
-			((WorldChunkExt) chunk).canvas_clearColorCache();
+			ChunkColorCache.onChunkLoaded((ClientWorld) chunk.getWorld(), chunk);
 		}
 	}
 }
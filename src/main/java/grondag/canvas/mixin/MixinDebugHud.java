@@ -30,6 +30,8 @@ import grondag.canvas.buffer.GlBufferAllocator;
 import grondag.canvas.buffer.TransferBufferAllocator;
 import grondag.canvas.buffer.encoding.VertexCollectorImpl;
 import grondag.canvas.light.LightmapHd;
+import grondag.canvas.perf.GpuProfiler;
+import grondag.canvas.render.CanvasWorldRenderer;
 
 @Mixin(DebugHud.class)
 public class MixinDebugHud {
@@ -44,5 +46,10 @@ public class MixinDebugHud {
 		list.add(TransferBufferAllocator.debugString());
 		list.add(GlBufferAllocator.debugString());
 		list.add(VertexCollectorImpl.debugReport());
+		GpuProfiler.addDebugText(list);
+
+		if (CanvasWorldRenderer.instance() != null) {
+			CanvasWorldRenderer.instance().addDebugText(list);
+		}
 	}
 }
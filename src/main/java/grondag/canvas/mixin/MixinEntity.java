@@ -0,0 +1,85 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.mixin;
+
+import org.spongepowered.asm.mixin.Mixin;
+
+import net.minecraft.entity.Entity;
+
+import grondag.canvas.mixinterface.EntityExt;
+
+@Mixin(Entity.class)
+public class MixinEntity implements EntityExt {
+	// versions start out never matching, so the first test always runs
+	private int canvas_visibilityFrustumVersion = Integer.MIN_VALUE;
+	private int canvas_visibilitySeenVersion;
+	private long canvas_visibilityPos;
+	private boolean canvas_visibilityResult;
+	private int canvas_occlusionVersion = Integer.MIN_VALUE;
+	private long canvas_occlusionPos;
+	private boolean canvas_occlusionResult;
+
+	@Override
+	public int canvas_visibilityFrustumVersion() {
+		return canvas_visibilityFrustumVersion;
+	}
+
+	@Override
+	public int canvas_visibilitySeenVersion() {
+		return canvas_visibilitySeenVersion;
+	}
+
+	@Override
+	public long canvas_visibilityPos() {
+		return canvas_visibilityPos;
+	}
+
+	@Override
+	public boolean canvas_visibilityResult() {
+		return canvas_visibilityResult;
+	}
+
+	@Override
+	public void canvas_visibility(int frustumVersion, int seenVersion, long pos, boolean result) {
+		canvas_visibilityFrustumVersion = frustumVersion;
+		canvas_visibilitySeenVersion = seenVersion;
+		canvas_visibilityPos = pos;
+		canvas_visibilityResult = result;
+	}
+
+	@Override
+	public int canvas_occlusionVersion() {
+		return canvas_occlusionVersion;
+	}
+
+	@Override
+	public long canvas_occlusionPos() {
+		return canvas_occlusionPos;
+	}
+
+	@Override
+	public boolean canvas_occlusionResult() {
+		return canvas_occlusionResult;
+	}
+
+	@Override
+	public void canvas_occlusion(int rasterVersion, long pos, boolean result) {
+		canvas_occlusionVersion = rasterVersion;
+		canvas_occlusionPos = pos;
+		canvas_occlusionResult = result;
+	}
+}
@@ -31,9 +31,11 @@ import net.minecraft.util.math.Matrix4f;
 
 import grondag.canvas.Configurator;
 import grondag.canvas.mixinterface.GameRendererExt;
+import grondag.canvas.perf.ItemEncodeCounters;
 import grondag.canvas.render.BufferDebug;
 import grondag.canvas.render.CanvasFrameBufferHacks;
 import grondag.canvas.render.CanvasWorldRenderer;
+import grondag.canvas.texture.GuiItemIconCache;
 
 @Mixin(GameRenderer.class)
 public abstract class MixinGameRenderer implements GameRendererExt {
@@ -46,6 +48,15 @@ public abstract class MixinGameRenderer implements GameRendererExt {
 	@Shadow protected abstract void bobView(MatrixStack matrixStack, float f);
 	@Shadow private MinecraftClient client;
 
+	@Inject(method = "render", require = 1, at = @At("HEAD"))
+	private void beforeRender(CallbackInfo ci) {
+		GuiItemIconCache.beginFrame();
+
+		if (ItemEncodeCounters.ENABLED) {
+			ItemEncodeCounters.endFrame();
+		}
+	}
+
 	@Inject(method = "renderHand", require = 1, at = @At("RETURN"))
 	private void afterRenderHand(CallbackInfo ci) {
 		if (Configurator.enableBloom) {
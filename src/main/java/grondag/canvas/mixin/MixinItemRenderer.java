@@ -19,6 +19,9 @@ package grondag.canvas.mixin;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Overwrite;
 import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
 
 import net.minecraft.client.render.VertexConsumerProvider;
 import net.minecraft.client.render.item.ItemModels;
@@ -29,10 +32,14 @@ import net.minecraft.client.util.math.MatrixStack;
 import net.minecraft.item.ItemStack;
 
 import grondag.canvas.apiimpl.rendercontext.ItemRenderContext;
+import grondag.canvas.mixinterface.ItemRendererExt;
+import grondag.canvas.texture.GuiItemIconCache;
 
 @Mixin(ItemRenderer.class)
-public abstract class MixinItemRenderer {
+public abstract class MixinItemRenderer implements ItemRendererExt {
 	@Shadow private ItemModels models;
+	@Shadow public float zOffset;
+	@Shadow protected abstract void renderGuiItemModel(ItemStack stack, int x, int y, BakedModel model);
 
 	/**
 	 * @author grondag
@@ -42,4 +49,31 @@ public abstract class MixinItemRenderer {
 	public void renderItem(ItemStack stack, ModelTransformation.Mode renderMode, boolean leftHanded, MatrixStack matrices, VertexConsumerProvider vertexConsumers, int light, int overlay, BakedModel model) {
 		ItemRenderContext.get().renderItem(models, stack, renderMode, leftHanded, matrices, vertexConsumers, light, overlay, model);
 	}
+
+	@Inject(method = "renderGuiItemModel", require = 1, at = @At("HEAD"), cancellable = true)
+	private void onRenderGuiItemModel(ItemStack stack, int x, int y, BakedModel model, CallbackInfo ci) {
+		if (GuiItemIconCache.draw(this, stack, x, y, model)) {
+			ci.cancel();
+		}
+	}
+
+	@Inject(method = "renderGuiItemModel", require = 1, at = @At("RETURN"))
+	private void afterRenderGuiItemModel(ItemStack stack, int x, int y, BakedModel model, CallbackInfo ci) {
+		GuiItemIconCache.afterRender();
+	}
+
+	@Override
+	public float canvas_zOffset() {
+		return zOffset;
+	}
+
+	@Override
+	public void canvas_zOffset(float zOffset) {
+		this.zOffset = zOffset;
+	}
+
+	@Override
+	public void canvas_renderGuiItemModel(ItemStack stack, int x, int y, BakedModel model) {
+		renderGuiItemModel(stack, x, y, model);
+	}
 }
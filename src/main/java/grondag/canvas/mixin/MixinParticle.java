@@ -22,18 +22,26 @@ import net.minecraft.client.particle.Particle;
 import net.minecraft.particle.ParticleType;
 
 import grondag.canvas.mixinterface.ParticleExt;
+import grondag.canvas.render.CanvasParticleRenderer;
 
 @Mixin(Particle.class)
 public class MixinParticle implements ParticleExt {
 	private ParticleType<?> canvas_particleType;
+	private boolean canvas_emissive;
 
 	@Override
 	public void canvas_particleType(ParticleType<?> particleType) {
 		canvas_particleType = particleType;
+		canvas_emissive = CanvasParticleRenderer.isEmissive(particleType);
 	}
 
 	@Override
 	public ParticleType<?> canvas_particleType() {
 		return canvas_particleType;
 	}
+
+	@Override
+	public boolean canvas_emissive() {
+		return canvas_emissive;
+	}
 }
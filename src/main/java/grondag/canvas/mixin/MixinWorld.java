@@ -0,0 +1,42 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.mixin;
+
+import org.spongepowered.asm.mixin.Final;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Redirect;
+
+import net.minecraft.block.entity.BlockEntity;
+import net.minecraft.util.Tickable;
+import net.minecraft.world.World;
+
+import grondag.canvas.render.BlockEntityRenderScheduler;
+
+@Mixin(World.class)
+public class MixinWorld {
+	@Shadow @Final public boolean isClient;
+
+	// distant animated block entities on the client can skip ticks
+	@Redirect(method = "tickBlockEntities", at = @At(value = "INVOKE", target = "Lnet/minecraft/util/Tickable;tick()V"))
+	private void onTickBlockEntity(Tickable tickable) {
+		if (!isClient || BlockEntityRenderScheduler.shouldTick((BlockEntity) tickable)) {
+			tickable.tick();
+		}
+	}
+}
@@ -48,4 +48,13 @@ public class MixinWorldChunk implements WorldChunkExt {
 	public void canvas_clearColorCache() {
 		colorCache = null;
 	}
+
+	@Override
+	public void canvas_invalidateBlendedColors() {
+		final ChunkColorCache cache = colorCache;
+
+		if (cache != null) {
+			cache.invalidateBlendedColors();
+		}
+	}
 }
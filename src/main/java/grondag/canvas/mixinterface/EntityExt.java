@@ -0,0 +1,40 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.mixinterface;
+
+/**
+ * Holds the last entity culling results and the state they were computed from.
+ */
+public interface EntityExt {
+	int canvas_visibilityFrustumVersion();
+
+	int canvas_visibilitySeenVersion();
+
+	long canvas_visibilityPos();
+
+	boolean canvas_visibilityResult();
+
+	void canvas_visibility(int frustumVersion, int seenVersion, long pos, boolean result);
+
+	int canvas_occlusionVersion();
+
+	long canvas_occlusionPos();
+
+	boolean canvas_occlusionResult();
+
+	void canvas_occlusion(int rasterVersion, long pos, boolean result);
+}
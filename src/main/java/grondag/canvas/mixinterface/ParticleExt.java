@@ -22,4 +22,10 @@ public interface ParticleExt {
 	void canvas_particleType(ParticleType<?> particleType);
 
 	ParticleType<?> canvas_particleType();
+
+	/**
+	 * True if the material map for the particle type makes it emissive.
+	 * Resolved when the type is set so rendering doesn't repeat the lookup.
+	 */
+	boolean canvas_emissive();
 }
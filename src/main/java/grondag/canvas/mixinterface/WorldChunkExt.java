@@ -22,4 +22,6 @@ public interface WorldChunkExt {
 	ChunkColorCache canvas_colorCache();
 
 	void canvas_clearColorCache();
+
+	void canvas_invalidateBlendedColors();
 }
@@ -0,0 +1,110 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.perf;
+
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.Reference2ObjectOpenHashMap;
+
+import net.minecraft.block.entity.BlockEntityType;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.registry.Registry;
+
+import grondag.canvas.CanvasMod;
+import grondag.canvas.Configurator;
+
+/**
+ * Tracks block entity render time by type so expensive renderers can be found.
+ * Logs the slowest types every {@value #SAMPLE_FRAMES} frames. Render thread only.
+ */
+public abstract class BlockEntityCounters {
+	public static final boolean ENABLED = Configurator.enablePerformanceTrace;
+	private static final int SAMPLE_FRAMES = 600;
+	private static final int REPORT_LIMIT = 10;
+	private static final Reference2ObjectOpenHashMap<BlockEntityType<?>, Entry> ENTRIES = new Reference2ObjectOpenHashMap<>();
+	private static final ObjectArrayList<Entry> SORTED = new ObjectArrayList<>();
+	private static long totalNanos;
+	private static long groupCount;
+	private static int frames;
+
+	private BlockEntityCounters() {
+	}
+
+	/**
+	 * @param renderer class of the renderer, included in the report because it identifies the mod
+	 * @param count block entities rendered in the group
+	 */
+	public static void addGroup(BlockEntityType<?> type, Class<?> renderer, int count, long nanos) {
+		Entry entry = ENTRIES.get(type);
+
+		if (entry == null) {
+			final Identifier id = Registry.BLOCK_ENTITY_TYPE.getId(type);
+			entry = new Entry((id == null ? "unregistered" : id.toString()) + " (" + renderer.getSimpleName() + ")");
+			ENTRIES.put(type, entry);
+		}
+
+		entry.count += count;
+		entry.nanos += nanos;
+		totalNanos += nanos;
+		++groupCount;
+	}
+
+	public static void endFrame() {
+		if (++frames == SAMPLE_FRAMES) {
+			final ObjectArrayList<Entry> sorted = SORTED;
+			sorted.addAll(ENTRIES.values());
+			sorted.sort((a, b) -> Long.compare(b.nanos, a.nanos));
+
+			final StringBuilder builder = new StringBuilder(String.format("Block entity rendering per frame for last %d frames: %.3f ms in %.1f groups",
+				SAMPLE_FRAMES, totalNanos / 1000000.0 / SAMPLE_FRAMES, (double) groupCount / SAMPLE_FRAMES));
+
+			final int limit = Math.min(REPORT_LIMIT, sorted.size());
+
+			for (int i = 0; i < limit; ++i) {
+				final Entry entry = sorted.get(i);
+
+				if (entry.count == 0) {
+					break;
+				}
+
+				builder.append(String.format("%n    %s: %.1f in %.3f ms (%.0f ns each)", entry.label, (double) entry.count / SAMPLE_FRAMES,
+					entry.nanos / 1000000.0 / SAMPLE_FRAMES, (double) entry.nanos / entry.count));
+			}
+
+			CanvasMod.LOG.info(builder.toString());
+
+			for (final Entry entry : sorted) {
+				entry.count = 0;
+				entry.nanos = 0;
+			}
+
+			sorted.clear();
+			totalNanos = 0;
+			groupCount = 0;
+			frames = 0;
+		}
+	}
+
+	private static class Entry {
+		private final String label;
+		private long count;
+		private long nanos;
+
+		private Entry(String label) {
+			this.label = label;
+		}
+	}
+}
@@ -0,0 +1,115 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.perf;
+
+import grondag.canvas.CanvasMod;
+import grondag.canvas.Configurator;
+
+/**
+ * Times each stage of the bloom pass. CPU time covers command submission only, so GPU
+ * time is also measured with timestamp queries from a {@link TimerQueryRing} when supported.
+ * Render thread only.
+ */
+public abstract class BloomCounters {
+	public static final boolean ENABLED = Configurator.enablePerformanceTrace;
+
+	public static final int COPY = 0;
+	public static final int SELECT = 1;
+	public static final int DOWNSAMPLE = 2;
+	public static final int UPSAMPLE = 3;
+	public static final int COMBINE = 4;
+
+	private static final String[] STAGE_NAMES = {"copy", "select", "downsample", "upsample", "combine"};
+	private static final int STAGE_COUNT = STAGE_NAMES.length;
+	private static final int SAMPLE_FRAMES = 600;
+
+	/** Frames of queries in flight. */
+	private static final int QUERY_FRAMES = 4;
+	private static final int QUERIES_PER_FRAME = STAGE_COUNT + 1;
+
+	private static final long[] cpuNanos = new long[STAGE_COUNT];
+	private static final long[] gpuNanos = new long[STAGE_COUNT];
+	private static final TimerQueryRing queries = new TimerQueryRing(QUERY_FRAMES, QUERIES_PER_FRAME);
+	private static final long[] timestamps = new long[QUERIES_PER_FRAME];
+	private static boolean hasQueries;
+	private static long lastNanos;
+	private static int frames;
+	private static int gpuFrames;
+
+	private BloomCounters() {
+	}
+
+	public static void begin() {
+		hasQueries = queries.allocate();
+
+		if (hasQueries) {
+			queries.advance(timestamps);
+			addGpuTimes();
+			queries.timestamp(0);
+		}
+
+		lastNanos = System.nanoTime();
+	}
+
+	/**
+	 * Call after the commands for a stage are issued.
+	 */
+	public static void endStage(int stage) {
+		final long now = System.nanoTime();
+		cpuNanos[stage] += now - lastNanos;
+		lastNanos = now;
+
+		if (hasQueries) {
+			queries.timestamp(stage + 1);
+		}
+	}
+
+	public static void endFrame() {
+		if (++frames == SAMPLE_FRAMES) {
+			final StringBuilder sb = new StringBuilder();
+			sb.append(String.format("Bloom stage time per frame for last %d frames (ms, cpu/gpu):", SAMPLE_FRAMES));
+
+			for (int i = 0; i < STAGE_COUNT; ++i) {
+				sb.append(String.format("  %s = %.3f/", STAGE_NAMES[i], cpuNanos[i] / 1000000.0 / SAMPLE_FRAMES));
+				sb.append(gpuFrames == 0 ? "n/a" : String.format("%.3f", gpuNanos[i] / 1000000.0 / gpuFrames));
+				cpuNanos[i] = 0;
+				gpuNanos[i] = 0;
+			}
+
+			CanvasMod.LOG.info(sb.toString());
+			frames = 0;
+			gpuFrames = 0;
+		}
+	}
+
+	/** Accumulates stage times from a completed frame of timestamps. */
+	private static void addGpuTimes() {
+		final long[] timestamps = BloomCounters.timestamps;
+
+		for (final long t : timestamps) {
+			if (t < 0) {
+				return;
+			}
+		}
+
+		for (int i = 0; i < STAGE_COUNT; ++i) {
+			gpuNanos[i] += timestamps[i + 1] - timestamps[i];
+		}
+
+		++gpuFrames;
+	}
+}
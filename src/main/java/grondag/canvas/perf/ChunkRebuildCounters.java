@@ -16,8 +16,11 @@
 
 package grondag.canvas.perf;
 
+import java.util.concurrent.atomic.LongAdder;
+
 import grondag.canvas.CanvasMod;
 import grondag.canvas.Configurator;
+import grondag.canvas.buffer.format.CanvasVertexFormats;
 import grondag.fermion.sc.concurrency.ConcurrentPerformanceCounter;
 
 public abstract class ChunkRebuildCounters {
@@ -25,9 +28,16 @@ public abstract class ChunkRebuildCounters {
 	private static final ConcurrentPerformanceCounter buildCounter = new ConcurrentPerformanceCounter();
 	private static final ConcurrentPerformanceCounter copyCounter = new ConcurrentPerformanceCounter();
 	private static final ConcurrentPerformanceCounter uploadCounter = new ConcurrentPerformanceCounter();
-	private static final ThreadLocal<Long> chunkStart = ThreadLocal.withInitial(() -> 0L);
-	private static final ThreadLocal<Long> copyStart = ThreadLocal.withInitial(() -> 0L);
-	private static final ThreadLocal<Long> uploadStart = ThreadLocal.withInitial(() -> 0L);
+	private static final LongAdder fluidFaces = new LongAdder();
+	private static final LongAdder fluidQuads = new LongAdder();
+	private static final LongAdder mergedFaces = new LongAdder();
+	private static final LongAdder mergedQuads = new LongAdder();
+	private static final LongAdder fullRegions = new LongAdder();
+	private static final LongAdder fullQuads = new LongAdder();
+	private static final LongAdder reducedRegions = new LongAdder();
+	private static final LongAdder reducedQuads = new LongAdder();
+	private static final LongAdder droppedBlocks = new LongAdder();
+	private static final LongAdder leafCulledFaces = new LongAdder();
 
 	private ChunkRebuildCounters() {
 	}
@@ -36,14 +46,23 @@ public abstract class ChunkRebuildCounters {
 		buildCounter.clearStats();
 		copyCounter.clearStats();
 		uploadCounter.clearStats();
+		fluidFaces.reset();
+		fluidQuads.reset();
+		mergedFaces.reset();
+		mergedQuads.reset();
+		fullRegions.reset();
+		fullQuads.reset();
+		reducedRegions.reset();
+		reducedQuads.reset();
+		droppedBlocks.reset();
+		leafCulledFaces.reset();
 	}
 
-	public static void startChunk() {
-		chunkStart.set(System.nanoTime());
-	}
-
-	public static void completeChunk() {
-		buildCounter.endRun(chunkStart.get());
+	/**
+	 * @param startNanos {@link System#nanoTime()} when the build started
+	 */
+	public static void completeChunk(long startNanos) {
+		buildCounter.endRun(startNanos);
 		final int chunkCount = buildCounter.addCount(1);
 
 		if (chunkCount == 2000) {
@@ -54,27 +73,65 @@ public abstract class ChunkRebuildCounters {
 
 			final int uploadCount = uploadCounter.runCount();
 			CanvasMod.LOG.info(String.format("Upload time per region for last %d regions = %,dns  total time: %fs", uploadCount, uploadCount == 0 ? 0 : uploadCounter.runTime() / uploadCount, uploadCounter.runTime() / 1000000000d));
+
+			final long faces = fluidFaces.sum();
+
+			if (faces != 0) {
+				CanvasMod.LOG.info(String.format("Merged %,d still fluid faces into %,d quads", faces, fluidQuads.sum()));
+			}
+
+			final long lodFaces = mergedFaces.sum();
+
+			if (lodFaces != 0) {
+				final long lodQuads = mergedQuads.sum();
+				final long savedBytes = (lodFaces - lodQuads) * 4L * CanvasVertexFormats.MATERIAL_VERTEX_STRIDE * 4L;
+				CanvasMod.LOG.info(String.format("Far terrain merged %,d block faces into %,d quads, saving %,d vertices (%,d KB)", lodFaces, lodQuads, (lodFaces - lodQuads) * 4, savedBytes / 1024));
+			}
+
+			final long reduced = reducedRegions.sum();
+
+			if (reduced != 0) {
+				final long full = fullRegions.sum();
+				CanvasMod.LOG.info(String.format("Full detail regions: %,d  avg quads: %,d  avg vertices: %,d", full, full == 0 ? 0 : fullQuads.sum() / full, full == 0 ? 0 : fullQuads.sum() * 4 / full));
+				CanvasMod.LOG.info(String.format("Reduced detail regions: %,d  avg quads: %,d  avg vertices: %,d  dropped blocks: %,d  leaf-culled faces: %,d",
+					reduced, reducedQuads.sum() / reduced, reducedQuads.sum() * 4 / reduced, droppedBlocks.sum(), leafCulledFaces.sum()));
+			}
+
 			reset();
 
 			CanvasMod.LOG.info("");
 		}
 	}
 
-	public static void startCopy() {
-		copyStart.set(System.nanoTime());
+	public static void addFluidSurfaces(int faceCount, int quadCount) {
+		fluidFaces.add(faceCount);
+		fluidQuads.add(quadCount);
 	}
 
-	public static void completeCopy() {
-		copyCounter.endRun(copyStart.get());
-		copyCounter.addCount(1);
+	public static void addMergedFaces(int faceCount, int quadCount) {
+		mergedFaces.add(faceCount);
+		mergedQuads.add(quadCount);
 	}
 
-	public static void startUpload() {
-		uploadStart.set(System.nanoTime());
+	public static void addDetailStats(boolean reducedDetail, int quadCount, int droppedBlockCount, int leafCulledFaceCount) {
+		if (reducedDetail) {
+			reducedRegions.increment();
+			reducedQuads.add(quadCount);
+			droppedBlocks.add(droppedBlockCount);
+			leafCulledFaces.add(leafCulledFaceCount);
+		} else {
+			fullRegions.increment();
+			fullQuads.add(quadCount);
+		}
+	}
+
+	public static void completeCopy(long startNanos) {
+		copyCounter.endRun(startNanos);
+		copyCounter.addCount(1);
 	}
 
-	public static void completeUpload() {
-		uploadCounter.endRun(uploadStart.get());
+	public static void completeUpload(long startNanos) {
+		uploadCounter.endRun(startNanos);
 		uploadCounter.addCount(1);
 	}
 }
@@ -0,0 +1,66 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.perf;
+
+import grondag.canvas.CanvasMod;
+import grondag.canvas.Configurator;
+
+/**
+ * Counts GL state calls issued and elided by {@link grondag.canvas.varia.GlStateTracker}
+ * and render state teardowns skipped by deferred disable. Render thread only.
+ */
+public abstract class GlStateCounters {
+	public static final boolean ENABLED = Configurator.enablePerformanceTrace;
+	private static final int SAMPLE_FRAMES = 600;
+	private static int issued;
+	private static int elided;
+	private static int teardowns;
+	private static int skippedTeardowns;
+	private static int frames;
+
+	private GlStateCounters() {
+	}
+
+	public static void addIssued() {
+		++issued;
+	}
+
+	public static void addElided() {
+		++elided;
+	}
+
+	public static void addTeardown() {
+		++teardowns;
+	}
+
+	public static void addSkippedTeardown() {
+		++skippedTeardowns;
+	}
+
+	public static void endFrame() {
+		if (++frames == SAMPLE_FRAMES) {
+			CanvasMod.LOG.info(String.format("GL state calls per frame for last %d frames: issued = %.1f  elided = %.1f  teardowns = %.1f  skipped teardowns = %.1f",
+				SAMPLE_FRAMES, (double) issued / SAMPLE_FRAMES, (double) elided / SAMPLE_FRAMES, (double) teardowns / SAMPLE_FRAMES, (double) skippedTeardowns / SAMPLE_FRAMES));
+
+			issued = 0;
+			elided = 0;
+			teardowns = 0;
+			skippedTeardowns = 0;
+			frames = 0;
+		}
+	}
+}
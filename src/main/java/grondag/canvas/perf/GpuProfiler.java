@@ -0,0 +1,240 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.perf;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import grondag.canvas.CanvasMod;
+import grondag.canvas.Configurator;
+import grondag.canvas.varia.CanvasGlHelper;
+
+/**
+ * Measures GPU time of major render stages with elapsed time queries from a
+ * {@link TimerQueryRing}, so the profiler never waits on the GPU. Stages can't overlap.
+ *
+ * <p>Rolling averages and percentiles are published every few frames for the F3 screen
+ * and JMX. Everything else is render thread only.
+ */
+public final class GpuProfiler {
+	public enum Stage {
+		SOLID_TERRAIN("solid terrain"),
+		ENTITIES("entities"),
+		TRANSLUCENT_TERRAIN("translucent terrain"),
+		PARTICLES("particles"),
+		BLOOM("bloom");
+
+		public final String label;
+
+		Stage(String label) {
+			this.label = label;
+		}
+	}
+
+	private static final Stage[] STAGES = Stage.values();
+	private static final int STAGE_COUNT = STAGES.length;
+
+	/** Frames of queries in flight. */
+	private static final int QUERY_FRAMES = 3;
+	private static final int HISTORY_FRAMES = 300;
+	private static final int PUBLISH_FRAMES = 30;
+
+	private static final RollingStats[] stats = new RollingStats[STAGE_COUNT];
+	private static final TimerQueryRing queries = new TimerQueryRing(QUERY_FRAMES, STAGE_COUNT);
+	private static final long[] results = new long[STAGE_COUNT];
+	private static Stage activeStage;
+	private static boolean isFrameActive;
+	private static int framesSincePublish;
+	private static boolean isBeanRegistered;
+	private static volatile Snapshot snapshot = new Snapshot();
+
+	static {
+		for (int i = 0; i < STAGE_COUNT; ++i) {
+			stats[i] = new RollingStats(HISTORY_FRAMES);
+		}
+	}
+
+	private GpuProfiler() {
+	}
+
+	/**
+	 * Call at the start of each world render, before any stage.
+	 */
+	public static void beginFrame() {
+		isFrameActive = Configurator.gpuProfiler && CanvasGlHelper.supportsTimerQuery();
+		activeStage = null;
+
+		if (!isFrameActive) {
+			if (queries.isAllocated()) {
+				// drop anything in flight - may be stale by the time profiling resumes
+				queries.release();
+
+				for (final RollingStats s : stats) {
+					s.clear();
+				}
+
+				snapshot = new Snapshot();
+			}
+
+			return;
+		}
+
+		if (!queries.isAllocated()) {
+			queries.allocate();
+			registerBean();
+		}
+
+		queries.advance(results);
+
+		for (int i = 0; i < STAGE_COUNT; ++i) {
+			if (results[i] >= 0) {
+				stats[i].add(results[i] / 1000000.0);
+			}
+		}
+
+		if (++framesSincePublish >= PUBLISH_FRAMES) {
+			framesSincePublish = 0;
+			snapshot = new Snapshot(stats);
+		}
+	}
+
+	public static void begin(Stage stage) {
+		if (!isFrameActive || activeStage != null) {
+			assert activeStage == null : "GPU profiler stages can't overlap";
+			return;
+		}
+
+		// only the first pass of a stage in a frame is measured
+		if (!queries.isIssued(stage.ordinal())) {
+			activeStage = stage;
+			queries.beginElapsed(stage.ordinal());
+		}
+	}
+
+	public static void end(Stage stage) {
+		if (activeStage == stage) {
+			activeStage = null;
+			queries.endElapsed();
+		}
+	}
+
+	/**
+	 * Adds a line per stage to the F3 screen. Safe from any thread.
+	 */
+	public static void addDebugText(List<String> lines) {
+		if (!Configurator.gpuProfiler) {
+			return;
+		}
+
+		if (!CanvasGlHelper.supportsTimerQuery()) {
+			lines.add("GPU profiler: timer queries not supported");
+			return;
+		}
+
+		final Snapshot s = snapshot;
+
+		for (int i = 0; i < STAGE_COUNT; ++i) {
+			if (s.counts[i] > 0) {
+				lines.add(String.format("GPU %s: %.2f ms avg  p50 %.2f  p95 %.2f  p99 %.2f", STAGES[i].label, s.mean[i], s.p50[i], s.p95[i], s.p99[i]));
+			}
+		}
+	}
+
+	private static void registerBean() {
+		if (isBeanRegistered) {
+			return;
+		}
+
+		isBeanRegistered = true;
+
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(new Bean(), new ObjectName("grondag.canvas:type=GpuProfiler"));
+		} catch (final JMException e) {
+			CanvasMod.LOG.warn("Unable to register GPU profiler MBean due to exception:", e);
+		}
+	}
+
+	/** Immutable so readers on other threads see consistent values. */
+	private static class Snapshot {
+		private final int[] counts = new int[STAGE_COUNT];
+		private final double[] mean = new double[STAGE_COUNT];
+		private final double[] p50 = new double[STAGE_COUNT];
+		private final double[] p95 = new double[STAGE_COUNT];
+		private final double[] p99 = new double[STAGE_COUNT];
+
+		private Snapshot() {
+		}
+
+		private Snapshot(RollingStats[] stats) {
+			for (int i = 0; i < STAGE_COUNT; ++i) {
+				final RollingStats s = stats[i];
+				final double[] p = s.percentiles(50, 95, 99);
+				counts[i] = s.count();
+				mean[i] = s.mean();
+				p50[i] = p[0];
+				p95[i] = p[1];
+				p99[i] = p[2];
+			}
+		}
+	}
+
+	private static class Bean implements GpuProfilerMXBean {
+		@Override
+		public boolean isEnabled() {
+			return Configurator.gpuProfiler && CanvasGlHelper.supportsTimerQuery();
+		}
+
+		@Override
+		public String[] getStages() {
+			final String[] result = new String[STAGE_COUNT];
+
+			for (int i = 0; i < STAGE_COUNT; ++i) {
+				result[i] = STAGES[i].label;
+			}
+
+			return result;
+		}
+
+		@Override
+		public int[] getSampleCounts() {
+			return snapshot.counts.clone();
+		}
+
+		@Override
+		public double[] getAverageMillis() {
+			return snapshot.mean.clone();
+		}
+
+		@Override
+		public double[] getP50Millis() {
+			return snapshot.p50.clone();
+		}
+
+		@Override
+		public double[] getP95Millis() {
+			return snapshot.p95.clone();
+		}
+
+		@Override
+		public double[] getP99Millis() {
+			return snapshot.p99.clone();
+		}
+	}
+}
@@ -0,0 +1,37 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.perf;
+
+/**
+ * Exposes {@link GpuProfiler} results through JMX. Arrays are indexed by stage,
+ * in the order of {@link #getStages()}. Times are in milliseconds.
+ */
+public interface GpuProfilerMXBean {
+	boolean isEnabled();
+
+	String[] getStages();
+
+	int[] getSampleCounts();
+
+	double[] getAverageMillis();
+
+	double[] getP50Millis();
+
+	double[] getP95Millis();
+
+	double[] getP99Millis();
+}
@@ -0,0 +1,77 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.perf;
+
+import grondag.canvas.CanvasMod;
+import grondag.canvas.Configurator;
+
+/**
+ * Tracks time spent drawing items in screens, with and without the icon cache.
+ * Compare logged time with the cache on and off while a full inventory is open.
+ * Render thread only.
+ */
+public abstract class GuiItemCounters {
+	public static final boolean ENABLED = Configurator.enablePerformanceTrace;
+	private static final int SAMPLE_FRAMES = 600;
+	private static long cachedCount;
+	private static long cachedNanos;
+	private static long renderedCount;
+	private static long renderedNanos;
+	private static long captureCount;
+	private static long evictionCount;
+	private static int frames;
+
+	private GuiItemCounters() {
+	}
+
+	/**
+	 * @param nanos includes time to render the icon if it was captured for this draw
+	 */
+	public static void addCached(long nanos) {
+		++cachedCount;
+		cachedNanos += nanos;
+	}
+
+	public static void addRendered(long nanos) {
+		++renderedCount;
+		renderedNanos += nanos;
+	}
+
+	public static void addCapture() {
+		++captureCount;
+	}
+
+	public static void endFrame(int evictions) {
+		evictionCount += evictions;
+
+		if (++frames == SAMPLE_FRAMES) {
+			CanvasMod.LOG.info(String.format("GUI items per frame for last %d frames: %.1f from cache in %.3f ms  %.1f rendered in %.3f ms  Total: %.3f ms  %.2f captures  %.2f evictions",
+				SAMPLE_FRAMES, (double) cachedCount / SAMPLE_FRAMES, cachedNanos / 1000000.0 / SAMPLE_FRAMES,
+				(double) renderedCount / SAMPLE_FRAMES, renderedNanos / 1000000.0 / SAMPLE_FRAMES,
+				(cachedNanos + renderedNanos) / 1000000.0 / SAMPLE_FRAMES,
+				(double) captureCount / SAMPLE_FRAMES, (double) evictionCount / SAMPLE_FRAMES));
+
+			cachedCount = 0;
+			cachedNanos = 0;
+			renderedCount = 0;
+			renderedNanos = 0;
+			captureCount = 0;
+			evictionCount = 0;
+			frames = 0;
+		}
+	}
+}
@@ -0,0 +1,79 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.perf;
+
+import grondag.canvas.CanvasMod;
+import grondag.canvas.Configurator;
+
+/**
+ * Tracks entity render time along with how many model parts were drawn with
+ * instancing versus the normal path. Render thread only.
+ */
+public abstract class InstancingCounters {
+	public static final boolean ENABLED = Configurator.enablePerformanceTrace;
+	private static final int SAMPLE_FRAMES = 600;
+	private static long entityNanos;
+	private static int entityCount;
+	private static int instancedParts;
+	private static int fallbackParts;
+	private static int batches;
+	private static long instanceBytes;
+	private static long drawNanos;
+	private static int frames;
+
+	private InstancingCounters() {
+	}
+
+	public static void addInstanced() {
+		++instancedParts;
+	}
+
+	public static void addFallback() {
+		++fallbackParts;
+	}
+
+	public static void addDraw(int batchCount, int bytes, long nanos) {
+		batches += batchCount;
+		instanceBytes += bytes;
+		drawNanos += nanos;
+	}
+
+	/**
+	 * Call once per frame.
+	 *
+	 * @param entityNanos CPU time spent submitting entities this frame, not including instanced draws.
+	 */
+	public static void endFrame(long entityNanos, int entityCount, boolean isInstancingEnabled) {
+		InstancingCounters.entityNanos += entityNanos;
+		InstancingCounters.entityCount += entityCount;
+
+		if (++frames == SAMPLE_FRAMES) {
+			CanvasMod.LOG.info(String.format("Entity rendering per frame for last %d frames (instancing %s): %.3f ms for %.1f entities + %.3f ms instanced draws  Model parts: instanced = %.1f  fallback = %.1f  Batches: %.1f  Instance data: %.1f KB",
+				SAMPLE_FRAMES, isInstancingEnabled ? "on" : "off", InstancingCounters.entityNanos / 1000000.0 / SAMPLE_FRAMES, (double) InstancingCounters.entityCount / SAMPLE_FRAMES, drawNanos / 1000000.0 / SAMPLE_FRAMES,
+				(double) instancedParts / SAMPLE_FRAMES, (double) fallbackParts / SAMPLE_FRAMES, (double) batches / SAMPLE_FRAMES, instanceBytes / 1024.0 / SAMPLE_FRAMES));
+
+			InstancingCounters.entityNanos = 0;
+			InstancingCounters.entityCount = 0;
+			instancedParts = 0;
+			fallbackParts = 0;
+			batches = 0;
+			instanceBytes = 0;
+			drawNanos = 0;
+			frames = 0;
+		}
+	}
+}
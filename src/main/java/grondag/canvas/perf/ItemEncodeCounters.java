@@ -0,0 +1,76 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.perf;
+
+import grondag.canvas.CanvasMod;
+import grondag.canvas.Configurator;
+
+/**
+ * Tracks time spent encoding item models drawn directly to Canvas collectors, from
+ * cached meshes versus emitted and encoded quad by quad. Per-item cost of the two
+ * paths can be compared with the same scene and the cache on and off. Render thread only.
+ */
+public abstract class ItemEncodeCounters {
+	public static final boolean ENABLED = Configurator.enablePerformanceTrace;
+	private static final int SAMPLE_FRAMES = 600;
+	private static long cachedCount;
+	private static long cachedQuads;
+	private static long cachedNanos;
+	private static long encodedCount;
+	private static long encodedNanos;
+	private static long buildCount;
+	private static int frames;
+
+	private ItemEncodeCounters() {
+	}
+
+	public static void addCached(int quadCount, long nanos) {
+		++cachedCount;
+		cachedQuads += quadCount;
+		cachedNanos += nanos;
+	}
+
+	/**
+	 * @param nanos includes building a cached mesh if one was built
+	 */
+	public static void addEncoded(long nanos) {
+		++encodedCount;
+		encodedNanos += nanos;
+	}
+
+	public static void addBuild() {
+		++buildCount;
+	}
+
+	public static void endFrame() {
+		if (++frames == SAMPLE_FRAMES) {
+			CanvasMod.LOG.info(String.format("Item encoding per frame for last %d frames: %.1f cached in %.3f ms (%.0f ns/item, %.1f quads)  %.1f encoded in %.3f ms (%.0f ns/item)  %.2f meshes built",
+				SAMPLE_FRAMES, (double) cachedCount / SAMPLE_FRAMES, cachedNanos / 1000000.0 / SAMPLE_FRAMES,
+				cachedCount == 0 ? 0.0 : (double) cachedNanos / cachedCount, cachedCount == 0 ? 0.0 : (double) cachedQuads / cachedCount,
+				(double) encodedCount / SAMPLE_FRAMES, encodedNanos / 1000000.0 / SAMPLE_FRAMES,
+				encodedCount == 0 ? 0.0 : (double) encodedNanos / encodedCount, (double) buildCount / SAMPLE_FRAMES));
+
+			cachedCount = 0;
+			cachedQuads = 0;
+			cachedNanos = 0;
+			encodedCount = 0;
+			encodedNanos = 0;
+			buildCount = 0;
+			frames = 0;
+		}
+	}
+}
@@ -0,0 +1,116 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.perf;
+
+import java.util.Arrays;
+
+/**
+ * Log-linear histogram of non-negative durations. Each power of two is split into
+ * eight buckets, so reported percentiles are within 12.5% of the true value while
+ * memory stays fixed no matter how many values are added. Not thread-safe.
+ */
+public final class LatencyHistogram {
+	private static final int SUB_BITS = 3;
+	private static final int SUB_COUNT = 1 << SUB_BITS;
+	private static final int BUCKET_COUNT = (64 - SUB_BITS) * SUB_COUNT;
+
+	private final long[] counts = new long[BUCKET_COUNT];
+	private long count;
+	private long total;
+	private long max;
+
+	public void add(long value) {
+		if (value < 0) {
+			value = 0;
+		}
+
+		++counts[bucket(value)];
+		++count;
+		total += value;
+
+		if (value > max) {
+			max = value;
+		}
+	}
+
+	public void clear() {
+		Arrays.fill(counts, 0);
+		count = 0;
+		total = 0;
+		max = 0;
+	}
+
+	public long count() {
+		return count;
+	}
+
+	public long max() {
+		return max;
+	}
+
+	/**
+	 * @return mean of added values, or zero if there are none
+	 */
+	public double mean() {
+		return count == 0 ? 0 : (double) total / count;
+	}
+
+	/**
+	 * Nearest-rank percentile, reported as the largest value in the bucket that holds it.
+	 *
+	 * @param percentile value from 0 to 100
+	 * @return value at the percentile, or zero if there are no values
+	 */
+	public long percentile(double percentile) {
+		if (count == 0) {
+			return 0;
+		}
+
+		final long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+		long seen = 0;
+
+		for (int i = 0; i < BUCKET_COUNT; ++i) {
+			seen += counts[i];
+
+			if (seen >= rank) {
+				return Math.min(max, bucketMax(i));
+			}
+		}
+
+		return max;
+	}
+
+	static int bucket(long value) {
+		if (value < SUB_COUNT) {
+			return (int) value;
+		}
+
+		final int exp = 63 - Long.numberOfLeadingZeros(value);
+		final int sub = (int) (value >>> (exp - SUB_BITS)) & (SUB_COUNT - 1);
+		return (exp - SUB_BITS + 1) * SUB_COUNT + sub;
+	}
+
+	static long bucketMax(int bucket) {
+		if (bucket < SUB_COUNT * 2) {
+			return bucket;
+		}
+
+		final int shift = bucket / SUB_COUNT - 1;
+		final long low = (long) (SUB_COUNT + (bucket & (SUB_COUNT - 1))) << shift;
+		return low + (1L << shift) - 1;
+	}
+}
@@ -0,0 +1,88 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.perf;
+
+import grondag.canvas.CanvasMod;
+import grondag.canvas.Configurator;
+
+/**
+ * Tracks particle geometry building and drawing. Render thread only.
+ */
+public abstract class ParticleCounters {
+	public static final boolean ENABLED = Configurator.enablePerformanceTrace;
+	private static final int SAMPLE_FRAMES = 600;
+	private static long particleCount;
+	private static long parallelCount;
+	private static long renderedCount;
+	private static long frustumCulledCount;
+	private static long occludedCount;
+	private static long thinnedCount;
+	private static long buildNanos;
+	private static long drawNanos;
+	private static int drawCount;
+	private static int frames;
+
+	private ParticleCounters() {
+	}
+
+	/**
+	 * @param particleCount particles on sheets drawn by Canvas
+	 * @param parallelCount particles tested and built off the render thread
+	 * @param buildNanos time the render thread waited for geometry, including its own share
+	 */
+	public static void addBuild(int particleCount, int parallelCount, long buildNanos) {
+		ParticleCounters.particleCount += particleCount;
+		ParticleCounters.parallelCount += parallelCount;
+		ParticleCounters.buildNanos += buildNanos;
+	}
+
+	public static void addDraw(int drawCount, long drawNanos) {
+		ParticleCounters.drawCount += drawCount;
+		ParticleCounters.drawNanos += drawNanos;
+	}
+
+	/**
+	 * Call once per frame with counts for all sheets.
+	 */
+	public static void endFrame(int rendered, int frustumCulled, int occluded, int thinned) {
+		renderedCount += rendered;
+		frustumCulledCount += frustumCulled;
+		occludedCount += occluded;
+		thinnedCount += thinned;
+
+		if (++frames == SAMPLE_FRAMES) {
+			CanvasMod.LOG.info(String.format("Particles per frame for last %d frames: %.0f on Canvas sheets  %.0f built in parallel  Build: %.3f ms  Draw: %.3f ms in %.1f draws",
+				SAMPLE_FRAMES, (double) particleCount / SAMPLE_FRAMES, (double) parallelCount / SAMPLE_FRAMES,
+				buildNanos / 1000000.0 / SAMPLE_FRAMES, drawNanos / 1000000.0 / SAMPLE_FRAMES, (double) drawCount / SAMPLE_FRAMES));
+
+			CanvasMod.LOG.info(String.format("Particle culling per frame for last %d frames: %.0f rendered  %.0f out of view  %.0f occluded  %.0f thinned",
+				SAMPLE_FRAMES, (double) renderedCount / SAMPLE_FRAMES, (double) frustumCulledCount / SAMPLE_FRAMES,
+				(double) occludedCount / SAMPLE_FRAMES, (double) thinnedCount / SAMPLE_FRAMES));
+
+			particleCount = 0;
+			parallelCount = 0;
+			renderedCount = 0;
+			frustumCulledCount = 0;
+			occludedCount = 0;
+			thinnedCount = 0;
+			buildNanos = 0;
+			drawNanos = 0;
+			drawCount = 0;
+			frames = 0;
+		}
+	}
+}
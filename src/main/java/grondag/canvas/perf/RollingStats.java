@@ -0,0 +1,95 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.perf;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the most recent samples of a measurement for averages and percentiles.
+ * Not thread-safe.
+ */
+public final class RollingStats {
+	private final double[] samples;
+	private int next;
+	private int count;
+
+	public RollingStats(int capacity) {
+		samples = new double[capacity];
+	}
+
+	public void add(double sample) {
+		samples[next] = sample;
+		next = (next + 1) % samples.length;
+
+		if (count < samples.length) {
+			++count;
+		}
+	}
+
+	public void clear() {
+		next = 0;
+		count = 0;
+	}
+
+	/**
+	 * @return number of samples retained, at most the capacity
+	 */
+	public int count() {
+		return count;
+	}
+
+	/**
+	 * @return mean of retained samples, or zero if there are none
+	 */
+	public double mean() {
+		if (count == 0) {
+			return 0;
+		}
+
+		double sum = 0;
+
+		for (int i = 0; i < count; ++i) {
+			sum += samples[i];
+		}
+
+		return sum / count;
+	}
+
+	/**
+	 * Nearest-rank percentiles of retained samples, sorting once for all of them.
+	 *
+	 * @param percentiles values from 0 to 100
+	 * @return value at each percentile, or zeros if there are no samples
+	 */
+	public double[] percentiles(double... percentiles) {
+		final double[] result = new double[percentiles.length];
+
+		if (count == 0) {
+			return result;
+		}
+
+		final double[] sorted = Arrays.copyOf(samples, count);
+		Arrays.sort(sorted);
+
+		for (int i = 0; i < percentiles.length; ++i) {
+			final int rank = (int) Math.ceil(percentiles[i] / 100.0 * count);
+			result[i] = sorted[Math.max(0, Math.min(count - 1, rank - 1))];
+		}
+
+		return result;
+	}
+}
@@ -0,0 +1,90 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.perf;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import grondag.canvas.CanvasMod;
+import grondag.canvas.Configurator;
+
+/**
+ * Measures time from a renderer reload to the first frame rendered after it, and the
+ * shader work done in that time. Compare runs with the program binary cache on and off
+ * to see its effect. The first reload happens at startup, so the first report
+ * covers time to first frame.
+ *
+ * <p>Source counters may be updated from shader assembly threads. Others are render thread only.
+ */
+public abstract class ShaderLoadCounters {
+	public static final boolean ENABLED = Configurator.enablePerformanceTrace;
+	private static final LongAdder sourceHits = new LongAdder();
+	private static final LongAdder sourceMisses = new LongAdder();
+	private static long reloadStartNanos;
+	private static boolean isReloadPending = false;
+	private static int programLoads;
+	private static int binaryLoads;
+	private static long programLoadNanos;
+	private static long sourceWaitNanos;
+
+	private ShaderLoadCounters() {
+	}
+
+	public static void beginReload() {
+		reloadStartNanos = System.nanoTime();
+		isReloadPending = true;
+		programLoads = 0;
+		binaryLoads = 0;
+		programLoadNanos = 0;
+		sourceWaitNanos = 0;
+		sourceHits.reset();
+		sourceMisses.reset();
+	}
+
+	public static void addSourceHit() {
+		sourceHits.increment();
+	}
+
+	public static void addSourceMiss() {
+		sourceMisses.increment();
+	}
+
+	public static void addSourceWait(long nanos) {
+		sourceWaitNanos += nanos;
+	}
+
+	public static void addProgramLoad(long nanos, boolean fromBinary) {
+		++programLoads;
+		programLoadNanos += nanos;
+
+		if (fromBinary) {
+			++binaryLoads;
+		}
+	}
+
+	/**
+	 * Call at the end of each world render. Reports on the first frame after a reload.
+	 */
+	public static void endFrame() {
+		if (isReloadPending) {
+			isReloadPending = false;
+
+			CanvasMod.LOG.info(String.format("Renderer reload to first frame: %d ms. Programs loaded: %d (%d from binary cache) in %d ms. Waited %d ms for shader source. Processed source cache hits: %d  misses: %d  Binary cache: %s",
+				(System.nanoTime() - reloadStartNanos) / 1000000, programLoads, binaryLoads, programLoadNanos / 1000000, sourceWaitNanos / 1000000,
+				sourceHits.sum(), sourceMisses.sum(), Configurator.programBinaryCache ? "on" : "off"));
+		}
+	}
+}
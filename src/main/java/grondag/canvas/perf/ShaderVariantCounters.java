@@ -0,0 +1,55 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.perf;
+
+import grondag.canvas.CanvasMod;
+import grondag.canvas.Configurator;
+
+/**
+ * Counts material shader activations that use a specialized program
+ * versus the shared program. Render thread only.
+ */
+public abstract class ShaderVariantCounters {
+	public static final boolean ENABLED = Configurator.enablePerformanceTrace;
+	private static final int SAMPLE_FRAMES = 600;
+	private static int specializedActivations;
+	private static int sharedActivations;
+	private static int frames;
+
+	private ShaderVariantCounters() {
+	}
+
+	public static void addActivation(boolean isSpecialized) {
+		if (isSpecialized) {
+			++specializedActivations;
+		} else {
+			++sharedActivations;
+		}
+	}
+
+	/** Call once per frame. */
+	public static void endFrame(int variantCount, int pendingVariantCount) {
+		if (++frames == SAMPLE_FRAMES) {
+			CanvasMod.LOG.info(String.format("Material shader activations per frame for last %d frames: specialized = %.1f  shared = %.1f  Specialized programs: %d (%d pending)",
+				SAMPLE_FRAMES, (double) specializedActivations / SAMPLE_FRAMES, (double) sharedActivations / SAMPLE_FRAMES, variantCount, pendingVariantCount));
+
+			specializedActivations = 0;
+			sharedActivations = 0;
+			frames = 0;
+		}
+	}
+}
@@ -0,0 +1,295 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.perf;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.text.LiteralText;
+
+import net.fabricmc.loader.api.FabricLoader;
+
+import grondag.canvas.CanvasMod;
+import grondag.canvas.Configurator;
+
+/**
+ * Records timing events into per-thread rings for export and percentiles.
+ *
+ * <p>Unlike the other counters this isn't fixed at startup - it can be switched on
+ * at any time. Callers take a start time with {@link System#nanoTime()} and pass it
+ * to {@link #record(Event, long)} which does nothing when disabled. When enabled,
+ * recording costs one more clock read and a few array stores.
+ *
+ * <p>The telemetry key writes retained events to a Chrome trace file. The same
+ * events feed percentiles published through JMX as "grondag.canvas:type=Telemetry".
+ *
+ * <p>With performance tracing also enabled, the cost of recording is measured
+ * periodically on a scratch ring and logged as nanoseconds per event.
+ */
+public final class Telemetry {
+	public enum Event {
+		CHUNK_COPY("chunk copy"),
+		CHUNK_BUILD("chunk build"),
+		TRANSLUCENT_SORT("translucent sort"),
+		UPLOAD("upload"),
+		TERRAIN_ITERATION("terrain iteration"),
+		OCCLUDER_REDRAW("occluder redraw"),
+		SOLID_DRAW("solid terrain draw"),
+		TRANSLUCENT_DRAW("translucent terrain draw"),
+		WORLD_RENDER("world render");
+
+		public final String label;
+
+		Event(String label) {
+			this.label = label;
+		}
+	}
+
+	private static final Event[] EVENTS = Event.values();
+	private static final String[] LABELS = new String[EVENTS.length];
+
+	/** Events retained per thread. Covers many seconds of render thread activity. */
+	private static final int RING_CAPACITY = 1 << 14;
+
+	/** Rings of threads that have ended are pruned each frame. */
+	private static final CopyOnWriteArrayList<ThreadRing> RINGS = new CopyOnWriteArrayList<>();
+
+	private static final ThreadLocal<TelemetryRing> RING = ThreadLocal.withInitial(() -> {
+		final Thread thread = Thread.currentThread();
+		final TelemetryRing result = new TelemetryRing(RING_CAPACITY, thread.getName(), thread.getId());
+		RINGS.add(new ThreadRing(thread, result));
+		return result;
+	});
+
+	private static final int SAMPLE_FRAMES = 600;
+	private static final int OVERHEAD_SAMPLE_EVENTS = 4096;
+	private static final TelemetryRing OVERHEAD_RING = new TelemetryRing(OVERHEAD_SAMPLE_EVENTS, "overhead", -1);
+
+	private static boolean isBeanRegistered;
+	private static int frames;
+
+	static {
+		for (int i = 0; i < EVENTS.length; ++i) {
+			LABELS[i] = EVENTS[i].label;
+		}
+	}
+
+	private Telemetry() {
+	}
+
+	public static void record(Event event, long startNanos) {
+		if (Configurator.enableTelemetry) {
+			RING.get().record(event.ordinal(), startNanos, System.nanoTime());
+		}
+	}
+
+	/**
+	 * Call once per frame from the render thread to handle the dump key.
+	 */
+	@SuppressWarnings("resource")
+	public static void beginFrame() {
+		if (!RINGS.isEmpty()) {
+			RINGS.removeIf(ThreadRing::isThreadEnded);
+		}
+
+		if (Configurator.enableTelemetry && !isBeanRegistered) {
+			registerBean();
+		}
+
+		if (Configurator.enableTelemetry && Configurator.enablePerformanceTrace && ++frames == SAMPLE_FRAMES) {
+			frames = 0;
+			logOverhead();
+		}
+
+		while (CanvasMod.TELEMETRY_KEY.wasPressed()) {
+			final MinecraftClient mc = MinecraftClient.getInstance();
+
+			if (Configurator.enableTelemetry) {
+				final File file = dumpFile();
+				final TelemetryTrace trace = capture();
+
+				// writing can take a moment for full buffers
+				final Thread thread = new Thread(() -> write(trace, file), "Canvas Telemetry Export");
+				thread.setDaemon(true);
+				thread.start();
+
+				mc.player.sendMessage(new LiteralText("Writing " + trace.eventCount() + " telemetry events to " + file.getName()), true);
+			} else {
+				mc.player.sendMessage(new LiteralText("Telemetry is disabled in Canvas debug settings"), true);
+			}
+		}
+	}
+
+	/**
+	 * Times a burst of records on a ring no one reads, using the same path as {@link #record(Event, long)}.
+	 */
+	private static void logOverhead() {
+		final TelemetryRing ring = OVERHEAD_RING;
+		final long start = System.nanoTime();
+
+		for (int i = 0; i < OVERHEAD_SAMPLE_EVENTS; ++i) {
+			ring.record(i & 7, start, System.nanoTime());
+		}
+
+		final long nanos = System.nanoTime() - start;
+		CanvasMod.LOG.info(String.format("Telemetry recording overhead: %.1f ns per event", (double) nanos / OVERHEAD_SAMPLE_EVENTS));
+	}
+
+	public static TelemetryTrace capture() {
+		final ArrayList<TelemetryRing.Events> threads = new ArrayList<>();
+
+		for (final ThreadRing ring : RINGS) {
+			threads.add(ring.ring.snapshot());
+		}
+
+		return new TelemetryTrace(LABELS, threads);
+	}
+
+	private static File dumpFile() {
+		final File dir = FabricLoader.getInstance().getGameDirectory().toPath().normalize().resolve("canvas_telemetry").toFile();
+		return new File(dir, "telemetry-" + new SimpleDateFormat("yyyyMMdd-HHmmss-SSS").format(new Date()) + ".json");
+	}
+
+	private static boolean write(TelemetryTrace trace, File file) {
+		final File dir = file.getParentFile();
+
+		if (!dir.exists() && !dir.mkdirs()) {
+			CanvasMod.LOG.warn("Unable to create telemetry folder " + dir.toString());
+			return false;
+		}
+
+		try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+			trace.writeChromeJson(writer);
+			CanvasMod.LOG.info("Wrote " + trace.eventCount() + " telemetry events to " + file.toString());
+			return true;
+		} catch (final IOException e) {
+			CanvasMod.LOG.warn("Unable to write telemetry file " + file.toString(), e);
+			return false;
+		}
+	}
+
+	private static void registerBean() {
+		isBeanRegistered = true;
+
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(new Bean(), new ObjectName("grondag.canvas:type=Telemetry"));
+		} catch (final JMException e) {
+			CanvasMod.LOG.warn("Unable to register telemetry MBean due to exception:", e);
+		}
+	}
+
+	private static class ThreadRing {
+		private final WeakReference<Thread> thread;
+		private final TelemetryRing ring;
+
+		private ThreadRing(Thread thread, TelemetryRing ring) {
+			this.thread = new WeakReference<>(thread);
+			this.ring = ring;
+		}
+
+		private boolean isThreadEnded() {
+			final Thread t = thread.get();
+			return t == null || !t.isAlive();
+		}
+	}
+
+	private static class Bean implements TelemetryMXBean {
+		@Override
+		public boolean isEnabled() {
+			return Configurator.enableTelemetry;
+		}
+
+		@Override
+		public String[] getEvents() {
+			return LABELS.clone();
+		}
+
+		@Override
+		public long[] getSampleCounts() {
+			final LatencyHistogram[] h = capture().histograms();
+			final long[] result = new long[h.length];
+
+			for (int i = 0; i < h.length; ++i) {
+				result[i] = h[i].count();
+			}
+
+			return result;
+		}
+
+		@Override
+		public double[] getAverageMicros() {
+			final LatencyHistogram[] h = capture().histograms();
+			final double[] result = new double[h.length];
+
+			for (int i = 0; i < h.length; ++i) {
+				result[i] = h[i].mean() / 1000.0;
+			}
+
+			return result;
+		}
+
+		@Override
+		public double[] getP50Micros() {
+			return percentile(50);
+		}
+
+		@Override
+		public double[] getP95Micros() {
+			return percentile(95);
+		}
+
+		@Override
+		public double[] getP99Micros() {
+			return percentile(99);
+		}
+
+		@Override
+		public double[] getMaxMicros() {
+			return percentile(100);
+		}
+
+		@Override
+		public String dump() {
+			final File file = dumpFile();
+			return write(capture(), file) ? file.toString() : "failed - see log";
+		}
+
+		private static double[] percentile(double p) {
+			final LatencyHistogram[] h = capture().histograms();
+			final double[] result = new double[h.length];
+
+			for (int i = 0; i < h.length; ++i) {
+				result[i] = h[i].percentile(p) / 1000.0;
+			}
+
+			return result;
+		}
+	}
+}
@@ -0,0 +1,47 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.perf;
+
+/**
+ * Exposes {@link Telemetry} percentiles through JMX. Arrays are indexed by event,
+ * in the order of {@link #getEvents()}, and cover events still held in the
+ * per-thread buffers. Times are in microseconds.
+ */
+public interface TelemetryMXBean {
+	boolean isEnabled();
+
+	String[] getEvents();
+
+	long[] getSampleCounts();
+
+	double[] getAverageMicros();
+
+	double[] getP50Micros();
+
+	double[] getP95Micros();
+
+	double[] getP99Micros();
+
+	double[] getMaxMicros();
+
+	/**
+	 * Writes retained events to a Chrome trace file.
+	 *
+	 * @return path of the file written
+	 */
+	String dump();
+}
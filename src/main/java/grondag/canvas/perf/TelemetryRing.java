@@ -0,0 +1,143 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.perf;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.atomic.AtomicLong;
+
+import sun.misc.Unsafe;
+
+/**
+ * Fixed-size buffer of the most recent timing events recorded by one thread.
+ * Storage is preallocated and recording never allocates or locks.
+ *
+ * <p>Only the owning thread may record. Any thread may take a snapshot - entries
+ * overwritten while being copied are detected and dropped.
+ */
+public final class TelemetryRing {
+	private static final Unsafe UNSAFE;
+
+	static {
+		try {
+			final Field field = Unsafe.class.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			UNSAFE = (Unsafe) field.get(null);
+		} catch (final ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	public final String threadName;
+	public final long threadId;
+
+	private final int mask;
+	private final long[] startNanos;
+	private final long[] durationNanos;
+	private final byte[] types;
+
+	/** Count of events ever recorded. Written only by the owning thread. */
+	private final AtomicLong head = new AtomicLong();
+
+	/**
+	 * @param capacity rounded up to a power of two
+	 */
+	public TelemetryRing(int capacity, String threadName, long threadId) {
+		final int size = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+		mask = size - 1;
+		startNanos = new long[size];
+		durationNanos = new long[size];
+		types = new byte[size];
+		this.threadName = threadName;
+		this.threadId = threadId;
+	}
+
+	public int capacity() {
+		return mask + 1;
+	}
+
+	/**
+	 * @param type must fit in a byte
+	 */
+	public void record(int type, long startNanos, long endNanos) {
+		final long h = head.get();
+		final int i = (int) h & mask;
+		this.startNanos[i] = startNanos;
+		durationNanos[i] = endNanos - startNanos;
+		types[i] = (byte) type;
+
+		// publishes the entry - ordered store, no fence needed
+		head.lazySet(h + 1);
+	}
+
+	/**
+	 * Copies retained events, oldest first.
+	 */
+	public Events snapshot() {
+		final long end = head.get();
+		final long begin = Math.max(0, end - mask - 1);
+		final int count = (int) (end - begin);
+		final Events result = new Events(threadName, threadId, count);
+
+		for (int n = 0; n < count; ++n) {
+			final int i = (int) (begin + n) & mask;
+			result.startNanos[n] = startNanos[i];
+			result.durationNanos[n] = durationNanos[i];
+			result.types[n] = types[i];
+		}
+
+		// Volatile reads don't keep earlier plain reads from moving after them, so
+		// the fence is needed for the check below to cover the whole copy.
+		UNSAFE.loadFence();
+
+		// Anything the writer may have reached since the copy started is unreliable,
+		// including the entry it could be partway through writing now.
+		final long validBegin = head.get() - mask;
+		return validBegin > begin ? result.dropFirst((int) Math.min(count, validBegin - begin)) : result;
+	}
+
+	/** Events copied from a ring, indexed in recording order. */
+	public static final class Events {
+		public final String threadName;
+		public final long threadId;
+		public final int count;
+		public final long[] startNanos;
+		public final long[] durationNanos;
+		public final byte[] types;
+
+		public Events(String threadName, long threadId, int count) {
+			this(threadName, threadId, count, new long[count], new long[count], new byte[count]);
+		}
+
+		private Events(String threadName, long threadId, int count, long[] startNanos, long[] durationNanos, byte[] types) {
+			this.threadName = threadName;
+			this.threadId = threadId;
+			this.count = count;
+			this.startNanos = startNanos;
+			this.durationNanos = durationNanos;
+			this.types = types;
+		}
+
+		private Events dropFirst(int n) {
+			final int c = count - n;
+			final Events result = new Events(threadName, threadId, c);
+			System.arraycopy(startNanos, n, result.startNanos, 0, c);
+			System.arraycopy(durationNanos, n, result.durationNanos, 0, c);
+			System.arraycopy(types, n, result.types, 0, c);
+			return result;
+		}
+	}
+}
@@ -0,0 +1,149 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.perf;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Events captured from all telemetry rings at one moment. Feeds both trace export
+ * and percentile histograms so they always describe the same data.
+ */
+public final class TelemetryTrace {
+	private final String[] labels;
+	private final List<TelemetryRing.Events> threads;
+
+	/**
+	 * @param labels event names, indexed by event type
+	 */
+	public TelemetryTrace(String[] labels, List<TelemetryRing.Events> threads) {
+		this.labels = labels;
+		this.threads = threads;
+	}
+
+	public int eventCount() {
+		int result = 0;
+
+		for (final TelemetryRing.Events e : threads) {
+			result += e.count;
+		}
+
+		return result;
+	}
+
+	/**
+	 * @return one histogram of durations in nanoseconds per event type
+	 */
+	public LatencyHistogram[] histograms() {
+		final LatencyHistogram[] result = new LatencyHistogram[labels.length];
+
+		for (int i = 0; i < labels.length; ++i) {
+			result[i] = new LatencyHistogram();
+		}
+
+		for (final TelemetryRing.Events e : threads) {
+			for (int i = 0; i < e.count; ++i) {
+				final int type = e.types[i];
+
+				if (type >= 0 && type < labels.length) {
+					result[type].add(e.durationNanos[i]);
+				}
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Writes Chrome trace event format, readable by chrome://tracing and Perfetto.
+	 * Times are in microseconds relative to the earliest event.
+	 */
+	public void writeChromeJson(Appendable out) throws IOException {
+		long origin = Long.MAX_VALUE;
+
+		for (final TelemetryRing.Events e : threads) {
+			if (e.count > 0) {
+				origin = Math.min(origin, e.startNanos[0]);
+			}
+		}
+
+		out.append("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+		boolean first = true;
+
+		for (final TelemetryRing.Events e : threads) {
+			if (e.count == 0) {
+				continue;
+			}
+
+			if (!first) {
+				out.append(',');
+			}
+
+			first = false;
+			out.append("\n{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":").append(Long.toString(e.threadId)).append(",\"args\":{\"name\":");
+			appendString(out, e.threadName);
+			out.append("}}");
+
+			for (int i = 0; i < e.count; ++i) {
+				final int type = e.types[i];
+				out.append(",\n{\"name\":");
+				appendString(out, type >= 0 && type < labels.length ? labels[type] : "unknown");
+				out.append(",\"cat\":\"canvas\",\"ph\":\"X\",\"pid\":1,\"tid\":").append(Long.toString(e.threadId)).append(",\"ts\":");
+				appendMicros(out, e.startNanos[i] - origin);
+				out.append(",\"dur\":");
+				appendMicros(out, e.durationNanos[i]);
+				out.append('}');
+			}
+		}
+
+		out.append("\n]}\n");
+	}
+
+	private static void appendMicros(Appendable out, long nanos) throws IOException {
+		if (nanos < 0) {
+			out.append('-');
+			nanos = -nanos;
+		}
+
+		final int frac = (int) (nanos % 1000);
+		out.append(Long.toString(nanos / 1000)).append('.');
+
+		if (frac < 100) {
+			out.append(frac < 10 ? "00" : "0");
+		}
+
+		out.append(Integer.toString(frac));
+	}
+
+	private static void appendString(Appendable out, String s) throws IOException {
+		out.append('"');
+
+		for (int i = 0; i < s.length(); ++i) {
+			final char c = s.charAt(i);
+
+			if (c == '"' || c == '\\') {
+				out.append('\\').append(c);
+			} else if (c < 0x20) {
+				out.append(String.format("\\u%04x", (int) c));
+			} else {
+				out.append(c);
+			}
+		}
+
+		out.append('"');
+	}
+}
@@ -0,0 +1,53 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.perf;
+
+import grondag.canvas.CanvasMod;
+import grondag.canvas.Configurator;
+
+/**
+ * Compares render state switches for solid terrain drawn in region order
+ * and in grouped order. Render thread only.
+ */
+public abstract class TerrainDrawCounters {
+	public static final boolean ENABLED = Configurator.enablePerformanceTrace;
+	private static final int SAMPLE_FRAMES = 600;
+	private static int draws;
+	private static int regionOrderSwitches;
+	private static int groupedSwitches;
+	private static int frames;
+
+	private TerrainDrawCounters() {
+	}
+
+	/** Call once per solid terrain pass. */
+	public static void addSolidPass(int drawCount, int regionOrderSwitchCount, int groupedSwitchCount) {
+		draws += drawCount;
+		regionOrderSwitches += regionOrderSwitchCount;
+		groupedSwitches += groupedSwitchCount;
+
+		if (++frames == SAMPLE_FRAMES) {
+			CanvasMod.LOG.info(String.format("Solid terrain per frame for last %d frames: draws = %.1f  state switches in region order = %.1f  grouped = %.1f",
+				SAMPLE_FRAMES, (double) draws / SAMPLE_FRAMES, (double) regionOrderSwitches / SAMPLE_FRAMES, (double) groupedSwitches / SAMPLE_FRAMES));
+
+			draws = 0;
+			regionOrderSwitches = 0;
+			groupedSwitches = 0;
+			frames = 0;
+		}
+	}
+}
@@ -0,0 +1,135 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.perf;
+
+import java.util.Arrays;
+
+import org.lwjgl.opengl.ARBTimerQuery;
+import org.lwjgl.opengl.GL15;
+
+import grondag.canvas.varia.CanvasGlHelper;
+
+/**
+ * Ring of GL timer queries with a fixed number of queries per frame. A frame's queries
+ * are read when their slot comes up for reuse a few frames later, and only if the
+ * results are already available, so reading never waits on the GPU. Results that
+ * aren't ready in time are dropped.
+ *
+ * <p>Queries are indexed within the current frame. Each can be issued once per frame,
+ * either as an elapsed time query or a timestamp. Render thread only.
+ */
+final class TimerQueryRing {
+	private final int frameCount;
+	private final int queriesPerFrame;
+	private final boolean[] isIssued;
+	private int[] queries;
+	private int slot;
+
+	/**
+	 * @param frameCount frames of queries in flight
+	 */
+	TimerQueryRing(int frameCount, int queriesPerFrame) {
+		this.frameCount = frameCount;
+		this.queriesPerFrame = queriesPerFrame;
+		isIssued = new boolean[frameCount * queriesPerFrame];
+	}
+
+	/**
+	 * Creates queries if needed.
+	 *
+	 * @return false if timer queries are not supported
+	 */
+	boolean allocate() {
+		if (queries == null) {
+			if (!CanvasGlHelper.supportsTimerQuery()) {
+				return false;
+			}
+
+			queries = new int[frameCount * queriesPerFrame];
+			GL15.glGenQueries(queries);
+			Arrays.fill(isIssued, false);
+		}
+
+		return true;
+	}
+
+	boolean isAllocated() {
+		return queries != null;
+	}
+
+	/**
+	 * Deletes queries, dropping anything in flight.
+	 */
+	void release() {
+		if (queries != null) {
+			GL15.glDeleteQueries(queries);
+			queries = null;
+		}
+	}
+
+	/**
+	 * Moves to the next frame slot, reading results of queries issued when it was last used.
+	 * Call once per frame before issuing queries.
+	 *
+	 * @param results receives elapsed nanoseconds or timestamps for each query in the frame,
+	 * or -1 for queries that weren't issued or weren't ready
+	 */
+	void advance(long[] results) {
+		slot = (slot + 1) % frameCount;
+		final int base = slot * queriesPerFrame;
+
+		for (int i = 0; i < queriesPerFrame; ++i) {
+			final int index = base + i;
+			results[i] = -1;
+
+			if (isIssued[index]) {
+				isIssued[index] = false;
+				final int query = queries[index];
+
+				if (GL15.glGetQueryObjecti(query, GL15.GL_QUERY_RESULT_AVAILABLE) != 0) {
+					results[i] = ARBTimerQuery.glGetQueryObjectui64(query, GL15.GL_QUERY_RESULT);
+				}
+			}
+		}
+	}
+
+	boolean isIssued(int query) {
+		return isIssued[slot * queriesPerFrame + query];
+	}
+
+	/**
+	 * Starts an elapsed time query. Elapsed time queries can't overlap.
+	 */
+	void beginElapsed(int query) {
+		final int index = slot * queriesPerFrame + query;
+		isIssued[index] = true;
+		GL15.glBeginQuery(ARBTimerQuery.GL_TIME_ELAPSED, queries[index]);
+	}
+
+	void endElapsed() {
+		GL15.glEndQuery(ARBTimerQuery.GL_TIME_ELAPSED);
+	}
+
+	/**
+	 * Records the GPU time when all prior commands have completed.
+	 */
+	void timestamp(int query) {
+		final int index = slot * queriesPerFrame + query;
+		isIssued[index] = true;
+		ARBTimerQuery.glQueryCounter(queries[index], ARBTimerQuery.GL_TIMESTAMP);
+	}
+}
@@ -0,0 +1,54 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.perf;
+
+import grondag.canvas.CanvasMod;
+import grondag.canvas.Configurator;
+
+/**
+ * Counts glUniform* calls made by programs and uniform buffer uploads.
+ * Render thread only.
+ */
+public abstract class UniformUploadCounters {
+	public static final boolean ENABLED = Configurator.enablePerformanceTrace;
+	private static final int SAMPLE_FRAMES = 600;
+	private static int programUploads;
+	private static int bufferUploads;
+	private static int frames;
+
+	private UniformUploadCounters() {
+	}
+
+	public static void addProgramUpload() {
+		++programUploads;
+	}
+
+	public static void addBufferUpload() {
+		++bufferUploads;
+	}
+
+	public static void endFrame() {
+		if (++frames == SAMPLE_FRAMES) {
+			CanvasMod.LOG.info(String.format("Uniform uploads per frame for last %d frames: program uniforms = %.1f  uniform buffers = %.1f",
+				SAMPLE_FRAMES, (double) programUploads / SAMPLE_FRAMES, (double) bufferUploads / SAMPLE_FRAMES));
+
+			programUploads = 0;
+			bufferUploads = 0;
+			frames = 0;
+		}
+	}
+}
@@ -0,0 +1,262 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.render;
+
+import java.util.Arrays;
+
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
+
+import net.minecraft.block.Block;
+import net.minecraft.block.entity.BlockEntity;
+import net.minecraft.block.entity.BlockEntityType;
+import net.minecraft.client.render.block.entity.BlockEntityRenderDispatcher;
+import net.minecraft.client.render.block.entity.BlockEntityRenderer;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+
+import grondag.canvas.Configurator;
+
+/**
+ * Collects the block entities rendered in a frame and orders them so those drawn by the
+ * same renderer, and within that with the same block state, render contiguously. Block
+ * state stands in for texture because renderers choose textures and layers from it - bed
+ * color, sign wood, chest type. Consecutive block entities then repeat the same material
+ * lookups and mapping instead of alternating between them.
+ *
+ * <p>After {@link #sort()} block entities are split into groups with the same renderer and
+ * type so render time can be attributed to each type.
+ *
+ * <p>Also decides which distant animated block entities skip client ticks. Only block entities
+ * that were not rendered in the last frame skip ticks, because renderers interpolate between
+ * the previous and current tick and would jump back on every skipped tick. Render thread only.
+ */
+public class BlockEntityRenderScheduler {
+	private static final int INDEX_BITS = 24;
+	private static final int STATE_BITS = 24;
+	private static final int MAX_RENDERERS = 1 << (63 - INDEX_BITS - STATE_BITS);
+	private static final long INDEX_MASK = (1L << INDEX_BITS) - 1;
+	private static final long STATE_MASK = (1L << STATE_BITS) - 1;
+
+	/** Interval of client ticks for block entities beyond the skip distance. Must be a power of two. */
+	private static final int SKIP_TICK_INTERVAL = 4;
+
+	/**
+	 * Vanilla types with client ticks that only advance animations. Types that update on
+	 * specific world times, like beacons and conduits, are not included because skipped
+	 * ticks could miss the update indefinitely.
+	 */
+	private static final ReferenceOpenHashSet<BlockEntityType<?>> TICK_SKIPPABLE = new ReferenceOpenHashSet<>();
+
+	private static double cameraX;
+	private static double cameraY;
+	private static double cameraZ;
+
+	/** Block entities rendered in the last frame. Only populated while tick skipping is enabled. */
+	private static final ReferenceOpenHashSet<BlockEntity> LAST_RENDERED = new ReferenceOpenHashSet<>();
+
+	private final Reference2IntOpenHashMap<BlockEntityRenderer<?>> rendererIds = new Reference2IntOpenHashMap<>();
+	private final ObjectArrayList<BlockEntity> blockEntities = new ObjectArrayList<>();
+	private BlockEntity[] sorted = new BlockEntity[1024];
+	private long[] sortKeys = new long[1024];
+	private int[] groupStarts = new int[64];
+	private int groupCount;
+
+	static {
+		TICK_SKIPPABLE.add(BlockEntityType.CHEST);
+		TICK_SKIPPABLE.add(BlockEntityType.TRAPPED_CHEST);
+		TICK_SKIPPABLE.add(BlockEntityType.ENDER_CHEST);
+		TICK_SKIPPABLE.add(BlockEntityType.ENCHANTING_TABLE);
+		TICK_SKIPPABLE.add(BlockEntityType.BELL);
+		TICK_SKIPPABLE.add(BlockEntityType.MOB_SPAWNER);
+	}
+
+	public BlockEntityRenderScheduler() {
+		rendererIds.defaultReturnValue(-1);
+	}
+
+	/**
+	 * Declares that client ticks of a block entity type only advance animations and can be
+	 * skipped at a distance. Call during client initialization.
+	 */
+	public static synchronized void registerTickSkippable(BlockEntityType<?> type) {
+		TICK_SKIPPABLE.add(type);
+	}
+
+	/**
+	 * Called for each ticking block entity in a client world.
+	 *
+	 * @return false if the block entity is beyond the tick skip distance, was not rendered
+	 * in the last frame and this isn't its tick
+	 */
+	public static boolean shouldTick(BlockEntity blockEntity) {
+		final int distance = Configurator.blockEntityTickSkipDistance;
+
+		if (distance == 0 || !TICK_SKIPPABLE.contains(blockEntity.getType()) || LAST_RENDERED.contains(blockEntity)) {
+			return true;
+		}
+
+		final BlockPos pos = blockEntity.getPos();
+		final double dx = pos.getX() + 0.5 - cameraX;
+		final double dy = pos.getY() + 0.5 - cameraY;
+		final double dz = pos.getZ() + 0.5 - cameraZ;
+
+		if (dx * dx + dy * dy + dz * dz <= distance * distance) {
+			return true;
+		}
+
+		final World world = blockEntity.getWorld();
+
+		// staggered by position so skipped work is spread evenly over ticks
+		return world == null || ((world.getTime() + pos.getX() + pos.getY() + pos.getZ()) & (SKIP_TICK_INTERVAL - 1)) == 0;
+	}
+
+	/**
+	 * Call before adding block entities. Camera position is retained for tick skipping.
+	 */
+	public void beginFrame(double cameraX, double cameraY, double cameraZ) {
+		BlockEntityRenderScheduler.cameraX = cameraX;
+		BlockEntityRenderScheduler.cameraY = cameraY;
+		BlockEntityRenderScheduler.cameraZ = cameraZ;
+	}
+
+	/**
+	 * Adds a visible block entity. Block entities without a renderer are ignored.
+	 *
+	 * @return true if the block entity will be rendered
+	 */
+	public boolean add(BlockEntity blockEntity) {
+		final BlockEntityRenderer<?> renderer = BlockEntityRenderDispatcher.INSTANCE.get(blockEntity);
+
+		if (renderer == null) {
+			return false;
+		}
+
+		int rendererId = rendererIds.getInt(renderer);
+
+		if (rendererId == -1) {
+			// ids are only used for ordering, so sharing after the limit only splits groups
+			rendererId = Math.min(rendererIds.size(), MAX_RENDERERS - 1);
+			rendererIds.put(renderer, rendererId);
+		}
+
+		final int index = blockEntities.size();
+		assert index <= INDEX_MASK;
+
+		if (index == sortKeys.length) {
+			sortKeys = Arrays.copyOf(sortKeys, index * 2);
+		}
+
+		final long stateId = Block.getRawIdFromState(blockEntity.getCachedState()) & STATE_MASK;
+		sortKeys[index] = ((long) rendererId << (INDEX_BITS + STATE_BITS)) | (stateId << INDEX_BITS) | index;
+		blockEntities.add(blockEntity);
+		return true;
+	}
+
+	/**
+	 * Orders block entities for rendering and splits them into groups. Order is unchanged
+	 * if batching is disabled in configuration.
+	 */
+	public void sort() {
+		final int size = blockEntities.size();
+		groupCount = 0;
+
+		if (size == 0) {
+			return;
+		}
+
+		final long[] sortKeys = this.sortKeys;
+
+		if (Configurator.batchBlockEntities) {
+			Arrays.sort(sortKeys, 0, size);
+		}
+
+		if (sorted.length < size) {
+			sorted = new BlockEntity[sortKeys.length];
+		}
+
+		final BlockEntity[] sorted = this.sorted;
+		long lastRenderer = -1;
+		BlockEntityType<?> lastType = null;
+
+		for (int i = 0; i < size; ++i) {
+			final long sortKey = sortKeys[i];
+			final BlockEntity blockEntity = blockEntities.get((int) (sortKey & INDEX_MASK));
+			final long renderer = sortKey >>> (INDEX_BITS + STATE_BITS);
+			sorted[i] = blockEntity;
+
+			if (renderer != lastRenderer || blockEntity.getType() != lastType) {
+				addGroup(i);
+				lastRenderer = renderer;
+				lastType = blockEntity.getType();
+			}
+		}
+	}
+
+	private void addGroup(int start) {
+		if (groupCount == groupStarts.length) {
+			groupStarts = Arrays.copyOf(groupStarts, groupCount * 2);
+		}
+
+		groupStarts[groupCount++] = start;
+	}
+
+	/**
+	 * Retains rendered block entities for tick skipping and releases other references. Call after rendering.
+	 */
+	public void endFrame() {
+		final int size = blockEntities.size();
+
+		if (!LAST_RENDERED.isEmpty()) {
+			LAST_RENDERED.clear();
+		}
+
+		if (Configurator.blockEntityTickSkipDistance != 0) {
+			for (int i = 0; i < size; ++i) {
+				LAST_RENDERED.add(blockEntities.get(i));
+			}
+		}
+
+		if (size > 0) {
+			Arrays.fill(sorted, 0, size, null);
+			blockEntities.clear();
+		}
+
+		groupCount = 0;
+	}
+
+	/** Valid after {@link #sort()}. */
+	public int groupCount() {
+		return groupCount;
+	}
+
+	/** Index in sorted order of the first block entity in the group. */
+	public int groupStart(int groupIndex) {
+		return groupStarts[groupIndex];
+	}
+
+	/** Index in sorted order after the last block entity in the group. */
+	public int groupEnd(int groupIndex) {
+		return groupIndex + 1 == groupCount ? blockEntities.size() : groupStarts[groupIndex + 1];
+	}
+
+	/** Block entity at the given index in sorted order. */
+	public BlockEntity get(int index) {
+		return sorted[index];
+	}
+}
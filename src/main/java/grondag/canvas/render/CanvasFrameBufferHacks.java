@@ -23,6 +23,7 @@ import org.lwjgl.glfw.GLFW;
 import org.lwjgl.opengl.ARBTextureFloat;
 import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GL21;
+import org.lwjgl.opengl.GL30;
 
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.gl.Framebuffer;
@@ -34,10 +35,14 @@ import grondag.canvas.Configurator;
 import grondag.canvas.buffer.VboBuffer;
 import grondag.canvas.buffer.encoding.VertexCollectorImpl;
 import grondag.canvas.buffer.format.CanvasVertexFormats;
+import grondag.canvas.material.property.MaterialTarget;
 import grondag.canvas.mixinterface.FrameBufferExt;
+import grondag.canvas.perf.BloomCounters;
+import grondag.canvas.perf.GpuProfiler;
 import grondag.canvas.shader.GlProgram;
 import grondag.canvas.shader.ProcessShader;
 import grondag.canvas.shader.ProcessShaders;
+import grondag.canvas.varia.CanvasGlHelper;
 
 //PERF: handle VAO properly here before re-enabling VAO
 public class CanvasFrameBufferHacks {
@@ -68,10 +73,16 @@ public class CanvasFrameBufferHacks {
 	static VboBuffer drawBuffer;
 	static int h;
 	static int w;
+	/** Bloom selection and blur run at this mip level of the full-size image. */
+	static int downscale;
+	private static int frameIndex;
+	/** Frame when emissive was last attached to each target's frame buffer. */
+	private static final int[] emissiveAttachFrame = new int[MaterialTarget.TARGET_COUNT];
 	private static int oldTex0;
 	private static int oldTex1;
 
 	private static boolean active = false;
+	private static boolean suspended = false;
 
 	private static void clearAttachments() {
 		GlStateManager.bindFramebuffer(FramebufferInfo.FRAME_BUFFER, canvasFboId);
@@ -85,24 +96,46 @@ public class CanvasFrameBufferHacks {
 		assert !active;
 		sync();
 		clearAttachments();
+		++frameIndex;
 	}
 
-	public static void startEmissiveCapture() {
-		if (!active) {
+	/**
+	 * Call after the target's frame buffer is bound. Emissive is attached to each target's
+	 * frame buffer once per frame and left attached - only draw buffers change when
+	 * capture starts and ends, which is much cheaper than changing attachments.
+	 */
+	public static void startEmissiveCapture(MaterialTarget target) {
+		if (!active && !suspended) {
 			active = true;
+
+			if (emissiveAttachFrame[target.index] != frameIndex) {
+				emissiveAttachFrame[target.index] = frameIndex;
+				GlStateManager.framebufferTexture2D(FramebufferInfo.FRAME_BUFFER, FramebufferInfo.COLOR_ATTACHMENT + 1, GL21.GL_TEXTURE_2D, texEmissive, 0);
+			}
+
 			GL21.glDrawBuffers(ATTACHMENTS_DOUBLE);
-			GlStateManager.framebufferTexture2D(FramebufferInfo.FRAME_BUFFER, FramebufferInfo.COLOR_ATTACHMENT + 1, GL21.GL_TEXTURE_2D, texEmissive, 0);
 		}
 	}
 
+	/**
+	 * Call before the target's frame buffer is unbound. Other code that draws to it
+	 * will only write the first attachment.
+	 */
 	public static void endEmissiveCapture() {
 		if (active) {
 			active = false;
 			GL21.glDrawBuffers(FramebufferInfo.COLOR_ATTACHMENT);
-			GlStateManager.framebufferTexture2D(FramebufferInfo.FRAME_BUFFER, FramebufferInfo.COLOR_ATTACHMENT + 1, GL21.GL_TEXTURE_2D, 0, 0);
 		}
 	}
 
+	/**
+	 * Suspend while drawing to a frame buffer that is not a material target and has no
+	 * emissive output, so emissive is never attached to it.
+	 */
+	public static void suspendEmissiveCapture(boolean suspend) {
+		suspended = suspend;
+	}
+
 	private static void startCopy() {
 		GlStateManager.activeTexture(GL21.GL_TEXTURE1);
 		oldTex1 = GlStateManager.getActiveBoundTexture();
@@ -115,13 +148,6 @@ public class CanvasFrameBufferHacks {
 		RenderSystem.disableCull();
 		RenderSystem.disableAlphaTest();
 		RenderSystem.disableDepthTest();
-		GlStateManager.matrixMode(GL11.GL_PROJECTION);
-		RenderSystem.pushMatrix();
-	}
-
-	private static void setProjection(int pixelWidth, int pixelHeight) {
-		RenderSystem.loadIdentity();
-		GlStateManager.ortho(0.0D, pixelWidth, pixelHeight, 0.0D, 1000.0, 3000.0);
 	}
 
 	private static void endCopy() {
@@ -132,8 +158,6 @@ public class CanvasFrameBufferHacks {
 		GlStateManager.activeTexture(GL21.GL_TEXTURE0);
 		GlStateManager.bindTexture(oldTex0);
 		GlProgram.deactivate();
-		RenderSystem.popMatrix();
-		GlStateManager.matrixMode(GL11.GL_MODELVIEW);
 		RenderSystem.depthMask(true);
 		RenderSystem.enableDepthTest();
 		RenderSystem.enableCull();
@@ -151,51 +175,69 @@ public class CanvasFrameBufferHacks {
 			}
 		}
 
+		GpuProfiler.begin(GpuProfiler.Stage.BLOOM);
+		if (BloomCounters.ENABLED) BloomCounters.begin();
+
 		GlStateManager.bindFramebuffer(FramebufferInfo.FRAME_BUFFER, canvasFboId);
 		startCopy();
 
 		drawBuffer.bind();
-
-		setProjection(w, h);
 		RenderSystem.viewport(0, 0, w, h);
 
 		// copy MC fbo color attachment - need it at end for combine step
 		GlStateManager.framebufferTexture2D(FramebufferInfo.FRAME_BUFFER, FramebufferInfo.COLOR_ATTACHMENT, GL21.GL_TEXTURE_2D, texMainCopy, 0);
-		GlStateManager.bindTexture(mainColor);
-		copy.activate().size(w, h);
-		GlStateManager.drawArrays(GL11.GL_QUADS, 0, 4);
 
-		// select emissive portions for blur
+		if (CanvasGlHelper.supportsFramebufferBlit()) {
+			// no program or texture changes needed
+			GlStateManager.bindFramebuffer(GL30.GL_READ_FRAMEBUFFER, mainFbo);
+			GL30.glBlitFramebuffer(0, 0, w, h, 0, 0, w, h, GL11.GL_COLOR_BUFFER_BIT, GL11.GL_NEAREST);
+			GlStateManager.bindFramebuffer(FramebufferInfo.FRAME_BUFFER, canvasFboId);
+		} else {
+			GlStateManager.bindTexture(mainColor);
+			copy.activate().size(w, h);
+			GlStateManager.drawArrays(GL11.GL_QUADS, 0, 4);
+		}
+
+		if (BloomCounters.ENABLED) BloomCounters.endStage(BloomCounters.COPY);
+
+		// select emissive portions for blur, scaled down in the same pass if configured
+		final int downscale = CanvasFrameBufferHacks.downscale;
+		final int dw = w >> downscale;
+		final int dh = h >> downscale;
+		RenderSystem.viewport(0, 0, dw, dh);
 		GlStateManager.framebufferTexture2D(FramebufferInfo.FRAME_BUFFER, FramebufferInfo.COLOR_ATTACHMENT, GL21.GL_TEXTURE_2D, texEmissiveColor, 0);
+		GlStateManager.bindTexture(mainColor);
 		GlStateManager.activeTexture(GL21.GL_TEXTURE1);
 		GlStateManager.enableTexture();
 		GlStateManager.bindTexture(texEmissive);
-		emissiveColor.activate().size(w, h);
+		emissiveColor.activate().size(dw, dh);
 		GlStateManager.drawArrays(GL11.GL_QUADS, 0, 4);
 		GlStateManager.bindTexture(0);
 		GlStateManager.disableTexture();
 		GlStateManager.activeTexture(GL21.GL_TEXTURE0);
 
+		if (BloomCounters.ENABLED) BloomCounters.endStage(BloomCounters.SELECT);
+
 		// build bloom mipmaps, blurring as part of downscale
-		GlStateManager.framebufferTexture2D(FramebufferInfo.FRAME_BUFFER, FramebufferInfo.COLOR_ATTACHMENT, GL21.GL_TEXTURE_2D, texBloomDownsample, 0);
+		// levels below the downscale level are not used
+		GlStateManager.framebufferTexture2D(FramebufferInfo.FRAME_BUFFER, FramebufferInfo.COLOR_ATTACHMENT, GL21.GL_TEXTURE_2D, texBloomDownsample, downscale);
 		GlStateManager.bindTexture(texEmissiveColor);
-		downsample.activate().distance(1f, 1f).size(w, h).lod(0);
-		setProjection(w, h);
-		RenderSystem.viewport(0, 0, w, h);
+		downsample.activate().distance(1f, 1f).size(dw, dh).lod(0);
 		GlStateManager.drawArrays(GL11.GL_QUADS, 0, 4);
 
 		GlStateManager.bindTexture(texBloomDownsample);
 
-		for (int d = 1; d <= 6; ++d) {
+		for (int d = downscale + 1; d <= 6; ++d) {
 			final int sw = (w >> d);
 			final int sh = (h >> d);
 			downsample.size(sw, sh).lod(d - 1);
-			setProjection(sw, sh);
 			RenderSystem.viewport(0, 0, sw, sh);
 			GlStateManager.framebufferTexture2D(FramebufferInfo.FRAME_BUFFER, FramebufferInfo.COLOR_ATTACHMENT, GL21.GL_TEXTURE_2D, texBloomDownsample, d);
 			GlStateManager.drawArrays(GL11.GL_QUADS, 0, 4);
 		}
 
+		if (BloomCounters.ENABLED) BloomCounters.endStage(BloomCounters.DOWNSAMPLE);
+
 		final float bloomScale = Configurator.bloomScale;
 
 		// upscale bloom mipmaps, bluring again as we go
@@ -204,21 +246,21 @@ public class CanvasFrameBufferHacks {
 		GlStateManager.bindTexture(texBloomUpsample);
 		upsample.activate();
 
-		for (int d = 6; d >= 0; --d) {
+		for (int d = 6; d >= downscale; --d) {
 			final int sw = (w >> d);
 			final int sh = (h >> d);
 			upsample.distance(bloomScale, bloomScale).size(sw, sh).lod(d);
-			setProjection(sw, sh);
 			RenderSystem.viewport(0, 0, sw, sh);
 			GlStateManager.framebufferTexture2D(FramebufferInfo.FRAME_BUFFER, FramebufferInfo.COLOR_ATTACHMENT, GL21.GL_TEXTURE_2D, texBloomUpsample, d);
 			GlStateManager.drawArrays(GL11.GL_QUADS, 0, 4);
 		}
 
+		if (BloomCounters.ENABLED) BloomCounters.endStage(BloomCounters.UPSAMPLE);
+
 		// Switch back to MC fbo to draw combined color + bloom
 		GlStateManager.bindFramebuffer(FramebufferInfo.FRAME_BUFFER, mainFbo);
 		RenderSystem.viewport(0, 0, w, h);
-		bloom.activate().size(w, h).distance(bloomScale, bloomScale).intensity(Configurator.bloomIntensity);
-		setProjection(w, h);
+		bloom.activate().size(w, h).distance(bloomScale, bloomScale).intensity(Configurator.bloomIntensity).lod(downscale);
 
 		GlStateManager.activeTexture(GL21.GL_TEXTURE1);
 		GlStateManager.enableTexture();
@@ -230,7 +272,12 @@ public class CanvasFrameBufferHacks {
 
 		GlStateManager.drawArrays(GL11.GL_QUADS, 0, 4);
 
+		if (BloomCounters.ENABLED) BloomCounters.endStage(BloomCounters.COMBINE);
+
 		endCopy();
+
+		if (BloomCounters.ENABLED) BloomCounters.endFrame();
+		GpuProfiler.end(GpuProfiler.Stage.BLOOM);
 	}
 
 	public static void debugEmissive() {
@@ -249,7 +296,6 @@ public class CanvasFrameBufferHacks {
 			GlStateManager.bindTexture(texEmissive);
 		}
 
-		setProjection(w, h);
 		copyLod.activate().size(w, h).lod(0).activate();
 		GlStateManager.drawArrays(GL11.GL_QUADS, 0, 4);
 
@@ -271,7 +317,6 @@ public class CanvasFrameBufferHacks {
 			GlStateManager.bindTexture(texBloomUpsample);
 		}
 
-		setProjection(w, h);
 		copyLod.activate().size(w, h).lod(level);
 		GlStateManager.drawArrays(GL11.GL_QUADS, 0, 4);
 
@@ -300,7 +345,7 @@ public class CanvasFrameBufferHacks {
 		mcFbo = MinecraftClient.getInstance().getFramebuffer();
 		mcFboExt = ((FrameBufferExt) mcFbo);
 
-		if (mcFboExt.canvas_colorAttachment() != mainColor || mcFbo.textureHeight != h || mcFbo.textureWidth != w) {
+		if (mcFboExt.canvas_colorAttachment() != mainColor || mcFbo.textureHeight != h || mcFbo.textureWidth != w || Configurator.bloomDownscale != downscale) {
 			tearDown();
 			mainFbo = mcFbo.fbo;
 
@@ -310,10 +355,11 @@ public class CanvasFrameBufferHacks {
 
 			w = mcFbo.textureWidth;
 			h = mcFbo.textureHeight;
+			downscale = Configurator.bloomDownscale;
 
 			//			mainHDR = createColorAttachment(w, h, true);
 			texEmissive = createColorAttachment(w, h);
-			texEmissiveColor = createColorAttachment(w, h);
+			texEmissiveColor = createColorAttachment(w >> downscale, h >> downscale);
 			texMainCopy = createColorAttachment(w, h);
 
 			texBloomDownsample = createColorAttachment(w, h);
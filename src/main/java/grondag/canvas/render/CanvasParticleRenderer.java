@@ -16,10 +16,22 @@
 
 package grondag.canvas.render;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import com.google.common.util.concurrent.Runnables;
 import com.mojang.blaze3d.systems.RenderSystem;
+import it.unimi.dsi.fastutil.bytes.ByteArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.Reference2BooleanOpenHashMap;
+import org.jetbrains.annotations.Nullable;
 import org.lwjgl.opengl.GL11;
 
 import net.minecraft.client.particle.Particle;
@@ -29,35 +41,130 @@ import net.minecraft.client.render.BufferBuilder;
 import net.minecraft.client.render.Camera;
 import net.minecraft.client.render.LightmapTextureManager;
 import net.minecraft.client.render.Tessellator;
-import net.minecraft.client.render.VertexConsumer;
 import net.minecraft.client.render.VertexConsumerProvider;
 import net.minecraft.client.texture.SpriteAtlasTexture;
 import net.minecraft.client.util.math.MatrixStack;
+import net.minecraft.particle.ParticleType;
 import net.minecraft.util.crash.CrashException;
 import net.minecraft.util.crash.CrashReport;
 import net.minecraft.util.crash.CrashReportSection;
+import net.minecraft.util.math.Box;
+import net.minecraft.util.math.Vec3d;
 
+import grondag.canvas.CanvasMod;
+import grondag.canvas.Configurator;
 import grondag.canvas.buffer.encoding.VertexCollectorImpl;
 import grondag.canvas.material.state.MaterialFinderImpl;
 import grondag.canvas.material.state.RenderMaterialImpl;
 import grondag.canvas.mixinterface.ParticleExt;
 import grondag.canvas.mixinterface.ParticleManagerExt;
+import grondag.canvas.perf.ParticleCounters;
+import grondag.canvas.terrain.region.RenderRegionStorage;
 import grondag.frex.api.material.MaterialFinder;
 import grondag.frex.api.material.MaterialMap;
 import grondag.frex.api.material.RenderMaterial;
 
+/**
+ * Particles on sheets with Canvas materials are culled and built into one
+ * collector per sheet, with large counts split across worker threads, and then drawn
+ * from a single buffer. Other sheets render as in vanilla, in the same order.
+ *
+ * <p>Only vanilla particle classes are built off the render thread. Their geometry depends
+ * only on the particle, camera and world, which the render thread doesn't change while
+ * waiting for the workers. Particles from mods may keep shared state and are always
+ * built on the render thread.
+ *
+ * <p>Particles are culled by the view frustum, then by whether the terrain regions
+ * containing them were seen in the last terrain iteration, and then small distant
+ * particles are thinned per {@link ParticleThinning}.
+ */
 public class CanvasParticleRenderer {
-	private final VertexCollectorImpl collector = new VertexCollectorImpl();
+	/** Below this many particles all geometry is built on the render thread. */
+	private static final int MIN_PARALLEL_COUNT = 4096;
+	private static final int MIN_BATCH_SIZE = 2048;
+
+	private static final ParticleTextureSheet[] CANVAS_SHEETS = {
+		ParticleTextureSheet.TERRAIN_SHEET,
+		ParticleTextureSheet.PARTICLE_SHEET_OPAQUE,
+		ParticleTextureSheet.PARTICLE_SHEET_LIT,
+		ParticleTextureSheet.PARTICLE_SHEET_TRANSLUCENT
+	};
+
+	private static final int SHEET_COUNT = CANVAS_SHEETS.length;
+	private static final int VANILLA_SHEET = -1;
+
+	private static final int VISIBLE = 0;
+	private static final int FRUSTUM_CULLED = 1;
+	private static final int OCCLUDED = 2;
+	private static final int THINNED = 3;
+	private static final int RESULT_COUNT = 4;
+
+	/** Render thread only. */
+	private static final Reference2BooleanOpenHashMap<ParticleType<?>> EMISSIVE_TYPES = new Reference2BooleanOpenHashMap<>();
+
+	private final int workerCount = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+
+	/** First batch is built by the render thread. */
+	private final Batch[] batches = new Batch[workerCount + 1];
+	private final ArrayList<Future<?>> futures = new ArrayList<>();
+	private ExecutorService executor;
+
+	private Particle[] particles = new Particle[1024];
+	private byte[] particleSheets = new byte[1024];
+	private int particleCount;
+
+	/** Particles that must be built on the render thread. */
+	private final ObjectArrayList<Particle> serialParticles = new ObjectArrayList<>();
+	private final ByteArrayList serialSheets = new ByteArrayList();
+
+	private final ObjectArrayList<VertexCollectorImpl> drawList = new ObjectArrayList<>();
+
+	private final RenderRegionStorage regions;
+
+	// read by workers, set before they start
+	private boolean cullOccluded;
+	private int thinningDistance;
+	private double cameraX;
+	private double cameraY;
+	private double cameraZ;
+
+	private final int[] frameCounts = new int[RESULT_COUNT];
+	private final double[] avgCounts = new double[RESULT_COUNT];
 
 	private Tessellator tessellator;
 	private BufferBuilder bufferBuilder;
 	private LightmapTextureManager lightmapTextureManager;
 	private ParticleManagerExt ext;
-	private Runnable drawHandler = Runnables.doNothing();
-	private RenderMaterialImpl baseMat;
-	private RenderMaterialImpl emissiveMat;
 	public final ParticleFrustum frustum = new ParticleFrustum();
 
+	public CanvasParticleRenderer(RenderRegionStorage regions) {
+		this.regions = regions;
+
+		for (int i = 0; i <= workerCount; ++i) {
+			batches[i] = new Batch();
+		}
+	}
+
+	/**
+	 * True if the material map for the particle type makes it emissive. Results are
+	 * cached until the next reload. Render thread only.
+	 */
+	public static boolean isEmissive(@Nullable ParticleType<?> particleType) {
+		if (EMISSIVE_TYPES.containsKey(particleType)) {
+			return EMISSIVE_TYPES.getBoolean(particleType);
+		}
+
+		// FEAT: enhanced material maps for particles - shaders for animation in particular
+		final RenderMaterial mat = (RenderMaterial) MaterialMap.getForParticle(particleType).getMapped(null);
+		final boolean result = mat != null && mat.emissive();
+		EMISSIVE_TYPES.put(particleType, result);
+		return result;
+	}
+
+	public static void reload() {
+		EMISSIVE_TYPES.clear();
+	}
+
 	public void renderParticles(ParticleManager pm, MatrixStack matrixStack, VertexConsumerProvider.Immediate immediate, LightmapTextureManager lightmapTextureManager, Camera camera, float tickDelta) {
 		RenderSystem.pushMatrix();
 		RenderSystem.multMatrix(matrixStack.peek().getModel());
@@ -66,51 +173,285 @@ public class CanvasParticleRenderer {
 		tessellator = Tessellator.getInstance();
 		bufferBuilder = tessellator.getBuffer();
 		ext = (ParticleManagerExt) pm;
+
+		cullOccluded = Configurator.cullParticles;
+		thinningDistance = Configurator.particleThinningDistance;
+		final Vec3d cameraPos = camera.getPos();
+		cameraX = cameraPos.x;
+		cameraY = cameraPos.y;
+		cameraZ = cameraPos.z;
+		Arrays.fill(frameCounts, 0);
+
 		final Iterator<ParticleTextureSheet> sheets = ext.canvas_textureSheets().iterator();
 
 		while (sheets.hasNext()) {
 			final ParticleTextureSheet particleTextureSheet = sheets.next();
-			final Iterable<Particle> iterable = ext.canvas_particles().get(particleTextureSheet);
+			final Queue<Particle> queue = ext.canvas_particles().get(particleTextureSheet);
 
-			if (iterable == null) {
+			if (queue == null || queue.isEmpty()) {
 				continue;
 			}
 
-			final Iterator<Particle> particles = iterable.iterator();
+			final int sheet = canvasSheetIndex(particleTextureSheet);
 
-			if (!particles.hasNext()) continue;
+			if (sheet == VANILLA_SHEET) {
+				// keep draw order with sheets drawn by vanilla
+				drawCanvasSheets(camera, tickDelta);
+				renderVanillaSheet(particleTextureSheet, queue, camera, tickDelta);
+			} else {
+				gather(queue, sheet);
+			}
+		}
 
-			final VertexConsumer consumer = beginSheet(particleTextureSheet);
+		drawCanvasSheets(camera, tickDelta);
 
-			while (particles.hasNext()) {
-				final Particle particle = particles.next();
+		RenderSystem.popMatrix();
+		teardownVanillParticleRender();
 
-				if (!frustum.isVisible(particle.getBoundingBox())) {
-					continue;
-				}
+		final int[] frameCounts = this.frameCounts;
 
-				try {
-					if (baseMat != null) {
-						// FEAT: enhanced material maps for particles - shaders for animation in particular
-						final RenderMaterial mat = (RenderMaterial) MaterialMap.getForParticle(((ParticleExt) particle).canvas_particleType()).getMapped(null);
-						collector.vertexState(mat == null || !mat.emissive() ? baseMat : emissiveMat);
-					}
-
-					particle.buildGeometry(consumer, camera, tickDelta);
-				} catch (final Throwable exception) {
-					final CrashReport crashReport = CrashReport.create(exception, "Rendering Particle");
-					final CrashReportSection crashReportSection = crashReport.addElement("Particle being rendered");
-					crashReportSection.add("Particle", particle::toString);
-					crashReportSection.add("Particle Type", particleTextureSheet::toString);
-					throw new CrashException(crashReport);
+		// smoothed so the F3 screen is readable
+		for (int i = 0; i < RESULT_COUNT; ++i) {
+			avgCounts[i] += (frameCounts[i] - avgCounts[i]) * 0.05;
+		}
+
+		if (ParticleCounters.ENABLED) {
+			ParticleCounters.endFrame(frameCounts[VISIBLE], frameCounts[FRUSTUM_CULLED], frameCounts[OCCLUDED], frameCounts[THINNED]);
+		}
+	}
+
+	public void addDebugText(List<String> lines) {
+		if (!Configurator.cullParticles && Configurator.particleThinningDistance == 0) {
+			return;
+		}
+
+		lines.add(String.format("Particles: %.0f rendered  %.0f out of view  %.0f occluded  %.0f thinned",
+				avgCounts[VISIBLE], avgCounts[FRUSTUM_CULLED], avgCounts[OCCLUDED], avgCounts[THINNED]));
+	}
+
+	/**
+	 * Safe to call from workers.
+	 *
+	 * @return {@link #VISIBLE} or the reason the particle should be skipped.
+	 */
+	private int cullResult(Particle particle) {
+		final Box box = particle.getBoundingBox();
+
+		if (!frustum.isVisible(box)) {
+			return FRUSTUM_CULLED;
+		}
+
+		// padded like entities; boxes entirely outside the world height have no regions
+		if (cullOccluded && box.maxY >= 0 && box.minY < 256
+				&& !regions.wasBoxSeen(box.minX - 1.0, box.minY - 1.0, box.minZ - 1.0, box.maxX + 1.0, box.maxY + 1.0, box.maxZ + 1.0)) {
+			return OCCLUDED;
+		}
+
+		final int thinningDistance = this.thinningDistance;
+
+		if (thinningDistance > 0 && box.getXLength() <= ParticleThinning.MAX_THINNED_SIZE
+				&& box.getYLength() <= ParticleThinning.MAX_THINNED_SIZE && box.getZLength() <= ParticleThinning.MAX_THINNED_SIZE) {
+			final double dx = (box.minX + box.maxX) * 0.5 - cameraX;
+			final double dy = (box.minY + box.maxY) * 0.5 - cameraY;
+			final double dz = (box.minZ + box.maxZ) * 0.5 - cameraZ;
+			final float keepFraction = ParticleThinning.keepFraction((float) (dx * dx + dy * dy + dz * dz), thinningDistance);
+
+			if (!ParticleThinning.isKept(System.identityHashCode(particle), keepFraction)) {
+				return THINNED;
+			}
+		}
+
+		return VISIBLE;
+	}
+
+	private static int canvasSheetIndex(ParticleTextureSheet particleTextureSheet) {
+		for (int i = 0; i < SHEET_COUNT; ++i) {
+			if (CANVAS_SHEETS[i] == particleTextureSheet) {
+				return i;
+			}
+		}
+
+		return VANILLA_SHEET;
+	}
+
+	private void gather(Queue<Particle> queue, int sheet) {
+		final boolean allowParallel = Configurator.parallelParticles;
+		int count = particleCount;
+		final int limit = count + queue.size();
+
+		if (limit > particles.length) {
+			final int newSize = Math.max(limit, particles.length * 2);
+			particles = Arrays.copyOf(particles, newSize);
+			particleSheets = Arrays.copyOf(particleSheets, newSize);
+		}
+
+		final Particle[] particles = this.particles;
+		final byte[] particleSheets = this.particleSheets;
+
+		for (final Particle particle : queue) {
+			// true for vanilla classes in every mapping environment
+			if (allowParallel && particle.getClass().getName().startsWith("net.minecraft.")) {
+				particles[count] = particle;
+				particleSheets[count++] = (byte) sheet;
+			} else {
+				serialParticles.add(particle);
+				serialSheets.add((byte) sheet);
+			}
+		}
+
+		particleCount = count;
+	}
+
+	private void drawCanvasSheets(Camera camera, float tickDelta) {
+		final int count = particleCount;
+		final int serialCount = serialParticles.size();
+
+		if (count + serialCount == 0) {
+			return;
+		}
+
+		final long start = ParticleCounters.ENABLED ? System.nanoTime() : 0;
+		final Batch[] batches = this.batches;
+		final int batchCount = count < MIN_PARALLEL_COUNT ? 1 : Math.min(workerCount + 1, (count + MIN_BATCH_SIZE - 1) / MIN_BATCH_SIZE);
+		final int batchSize = (count + batchCount - 1) / batchCount;
+
+		for (int i = 0; i < batchCount; ++i) {
+			final int from = Math.min(count, i * batchSize);
+			batches[i].prepare(particles, particleSheets, from, Math.min(count, from + batchSize), camera, tickDelta);
+		}
+
+		if (batchCount > 1) {
+			runParallel(batchCount);
+		} else {
+			batches[0].run();
+		}
+
+		// render thread also builds particles from mods, after its share of the others
+		final Batch local = batches[0];
+
+		for (int i = 0; i < serialCount && local.failedParticle == null; ++i) {
+			local.test(serialParticles.get(i), serialSheets.getByte(i));
+		}
+
+		Arrays.fill(particles, 0, count, null);
+		particleCount = 0;
+		serialParticles.clear();
+		serialSheets.clear();
+
+		for (int i = 0; i < batchCount; ++i) {
+			final Batch batch = batches[i];
+
+			if (batch.failedParticle != null) {
+				throw crash(batch.failedParticle, CANVAS_SHEETS[batch.failedSheet], batch.failure);
+			}
+		}
+
+		// merge in particle order so sorting and blending match serial building
+		final ObjectArrayList<VertexCollectorImpl> drawList = this.drawList;
+		final int[] frameCounts = this.frameCounts;
+
+		for (int i = 0; i < batchCount; ++i) {
+			final int[] counts = batches[i].counts;
+
+			for (int j = 0; j < RESULT_COUNT; ++j) {
+				frameCounts[j] += counts[j];
+			}
+		}
+
+		for (int sheet = 0; sheet < SHEET_COUNT; ++sheet) {
+			final VertexCollectorImpl target = local.collectors[sheet];
+
+			for (int i = 1; i < batchCount; ++i) {
+				final VertexCollectorImpl source = batches[i].collectors[sheet];
+
+				if (!source.isEmpty()) {
+					target.append(source);
+					source.clear();
 				}
 			}
 
-			drawHandler.run();
+			if (!target.isEmpty()) {
+				drawList.add(target);
+			}
 		}
 
-		RenderSystem.popMatrix();
-		teardownVanillParticleRender();
+		final int drawCount = drawList.size();
+		final long drawStart = ParticleCounters.ENABLED ? System.nanoTime() : 0;
+
+		if (drawCount > 0) {
+			RenderSystem.color4f(1.0F, 1.0F, 1.0F, 1.0F);
+			VertexCollectorImpl.drawAndClear(drawList);
+		}
+
+		if (ParticleCounters.ENABLED) {
+			ParticleCounters.addBuild(count + serialCount, batchCount > 1 ? count - local.to : 0, drawStart - start);
+			ParticleCounters.addDraw(drawCount, System.nanoTime() - drawStart);
+		}
+	}
+
+	private void runParallel(int batchCount) {
+		if (executor == null) {
+			final AtomicInteger threadCount = new AtomicInteger();
+
+			executor = Executors.newFixedThreadPool(workerCount, r -> {
+				final Thread thread = new Thread(r, "Canvas Particle Builder " + threadCount.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+
+		final ArrayList<Future<?>> futures = this.futures;
+
+		for (int i = 1; i < batchCount; ++i) {
+			futures.add(executor.submit(batches[i]));
+		}
+
+		// render thread takes a share too
+		batches[0].run();
+
+		for (final Future<?> f : futures) {
+			try {
+				f.get();
+			} catch (final InterruptedException | ExecutionException e) {
+				// batch has caught anything from particles, so this is unexpected
+				CanvasMod.LOG.warn("Unable to complete particle geometry due to exception:", e);
+			}
+		}
+
+		futures.clear();
+	}
+
+	private void renderVanillaSheet(ParticleTextureSheet particleTextureSheet, Queue<Particle> queue, Camera camera, float tickDelta) {
+		RenderSystem.color4f(1.0F, 1.0F, 1.0F, 1.0F);
+		setupVanillaParticleRender();
+		particleTextureSheet.begin(bufferBuilder, ext.canvas_textureManager());
+
+		final int[] frameCounts = this.frameCounts;
+
+		for (final Particle particle : queue) {
+			final int result = cullResult(particle);
+			++frameCounts[result];
+
+			if (result != VISIBLE) {
+				continue;
+			}
+
+			try {
+				particle.buildGeometry(bufferBuilder, camera, tickDelta);
+			} catch (final Throwable exception) {
+				throw crash(particle, particleTextureSheet, exception);
+			}
+		}
+
+		particleTextureSheet.draw(tessellator);
+	}
+
+	private static CrashException crash(Particle particle, ParticleTextureSheet particleTextureSheet, Throwable exception) {
+		final CrashReport crashReport = CrashReport.create(exception, "Rendering Particle");
+		final CrashReportSection crashReportSection = crashReport.addElement("Particle being rendered");
+		crashReportSection.add("Particle", particle::toString);
+		crashReportSection.add("Particle Type", particleTextureSheet::toString);
+		return new CrashException(crashReport);
 	}
 
 	private void setupVanillaParticleRender() {
@@ -130,36 +471,93 @@ public class CanvasParticleRenderer {
 		RenderSystem.disableFog();
 	}
 
-	private VertexConsumer beginSheet(ParticleTextureSheet particleTextureSheet) {
-		RenderSystem.color4f(1.0F, 1.0F, 1.0F, 1.0F);
+	/**
+	 * Tests and builds a range of particles into collectors for each sheet.
+	 */
+	private class Batch implements Runnable {
+		private final int[] counts = new int[RESULT_COUNT];
+		private final VertexCollectorImpl[] collectors = new VertexCollectorImpl[SHEET_COUNT];
+		private Particle[] particles;
+		private byte[] sheets;
+		private int from;
+		private int to;
+		private Camera camera;
+		private float tickDelta;
+		private Particle failedParticle;
+		private int failedSheet;
+		private Throwable failure;
+
+		private Batch() {
+			for (int i = 0; i < SHEET_COUNT; ++i) {
+				collectors[i] = new VertexCollectorImpl();
+			}
+		}
 
-		// PERF: consolidate these draws
-		if (particleTextureSheet == ParticleTextureSheet.TERRAIN_SHEET) {
-			baseMat = RENDER_STATE_TERRAIN;
-			emissiveMat = RENDER_STATE_TERRAIN_EMISSIVE;
-			collector.prepare(baseMat);
-			drawHandler = () -> collector.drawAndClear();
-			return collector;
-		} else if (particleTextureSheet == ParticleTextureSheet.PARTICLE_SHEET_LIT || particleTextureSheet == ParticleTextureSheet.PARTICLE_SHEET_OPAQUE) {
-			baseMat = RENDER_STATE_OPAQUE_OR_LIT;
-			emissiveMat = RENDER_STATE_OPAQUE_OR_LIT_EMISSIVE;
-			collector.prepare(baseMat);
-			drawHandler = () -> collector.drawAndClear();
-			return collector;
-		} else if (particleTextureSheet == ParticleTextureSheet.PARTICLE_SHEET_TRANSLUCENT) {
-			baseMat = RENDER_STATE_TRANSLUCENT;
-			emissiveMat = RENDER_STATE_TRANSLUCENT_EMISSIVE;
-			collector.prepare(baseMat);
-			drawHandler = () -> collector.drawAndClear();
-			return collector;
+		private void prepare(Particle[] particles, byte[] sheets, int from, int to, Camera camera, float tickDelta) {
+			this.particles = particles;
+			this.sheets = sheets;
+			this.from = from;
+			this.to = to;
+			this.camera = camera;
+			this.tickDelta = tickDelta;
+			Arrays.fill(counts, 0);
+			failedParticle = null;
+			failure = null;
+
+			for (int i = 0; i < SHEET_COUNT; ++i) {
+				collectors[i].prepare(BASE_MATERIALS[i]);
+			}
 		}
 
-		setupVanillaParticleRender();
-		particleTextureSheet.begin(bufferBuilder, ext.canvas_textureManager());
-		drawHandler = () -> particleTextureSheet.draw(tessellator);
-		baseMat = null;
-		emissiveMat = null;
-		return bufferBuilder;
+		@Override
+		public void run() {
+			final Particle[] particles = this.particles;
+			final byte[] sheets = this.sheets;
+			final int to = this.to;
+
+			for (int i = from; i < to; ++i) {
+				if (!test(particles[i], sheets[i])) {
+					return;
+				}
+			}
+		}
+
+		/**
+		 * Builds the particle if it isn't culled.
+		 *
+		 * @return false if the particle failed.
+		 */
+		private boolean test(Particle particle, int sheet) {
+			final int result = cullResult(particle);
+
+			if (result == VISIBLE) {
+				return build(particle, sheet);
+			} else {
+				++counts[result];
+				return true;
+			}
+		}
+
+		/**
+		 * Failures are kept so the render thread can report them.
+		 *
+		 * @return false if the particle failed.
+		 */
+		private boolean build(Particle particle, int sheet) {
+			final VertexCollectorImpl collector = collectors[sheet];
+
+			try {
+				collector.vertexState(((ParticleExt) particle).canvas_emissive() ? EMISSIVE_MATERIALS[sheet] : BASE_MATERIALS[sheet]);
+				particle.buildGeometry(collector, camera, tickDelta);
+				++counts[VISIBLE];
+				return true;
+			} catch (final Throwable exception) {
+				failedParticle = particle;
+				failedSheet = sheet;
+				failure = exception;
+				return false;
+			}
+		}
 	}
 
 	private static MaterialFinderImpl baseFinder() {
@@ -206,4 +604,18 @@ public class CanvasParticleRenderer {
 	private static final RenderMaterialImpl RENDER_STATE_TRANSLUCENT_EMISSIVE = baseFinder().copyFrom(RENDER_STATE_TRANSLUCENT)
 			.emissive(true)
 			.find();
+
+	private static final RenderMaterialImpl[] BASE_MATERIALS = {
+		RENDER_STATE_TERRAIN,
+		RENDER_STATE_OPAQUE_OR_LIT,
+		RENDER_STATE_OPAQUE_OR_LIT,
+		RENDER_STATE_TRANSLUCENT
+	};
+
+	private static final RenderMaterialImpl[] EMISSIVE_MATERIALS = {
+		RENDER_STATE_TERRAIN_EMISSIVE,
+		RENDER_STATE_OPAQUE_OR_LIT_EMISSIVE,
+		RENDER_STATE_OPAQUE_OR_LIT_EMISSIVE,
+		RENDER_STATE_TRANSLUCENT_EMISSIVE
+	};
 }
@@ -25,6 +25,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 import com.google.common.collect.Sets;
 import com.mojang.blaze3d.systems.RenderSystem;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
 import it.unimi.dsi.fastutil.longs.Long2ObjectMap.Entry;
 import it.unimi.dsi.fastutil.objects.ObjectIterator;
 import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
@@ -83,6 +84,7 @@ import grondag.canvas.apiimpl.rendercontext.EntityBlockRenderContext;
 import grondag.canvas.buffer.BindStateManager;
 import grondag.canvas.buffer.VboBuffer;
 import grondag.canvas.buffer.encoding.CanvasImmediate;
+import grondag.canvas.buffer.instance.ModelInstancer;
 import grondag.canvas.compat.FirstPersonModelHolder;
 import grondag.canvas.light.LightmapHdTexture;
 import grondag.canvas.material.property.MaterialFog;
@@ -91,18 +93,30 @@ import grondag.canvas.material.property.MaterialTarget;
 import grondag.canvas.material.state.RenderContextState;
 import grondag.canvas.material.state.RenderState;
 import grondag.canvas.mixinterface.BufferBuilderStorageExt;
+import grondag.canvas.mixinterface.EntityExt;
 import grondag.canvas.mixinterface.MatrixStackExt;
 import grondag.canvas.mixinterface.WorldRendererExt;
+import grondag.canvas.perf.BlockEntityCounters;
+import grondag.canvas.perf.GlStateCounters;
+import grondag.canvas.perf.GpuProfiler;
+import grondag.canvas.perf.InstancingCounters;
+import grondag.canvas.perf.ShaderLoadCounters;
+import grondag.canvas.perf.Telemetry;
+import grondag.canvas.perf.UniformUploadCounters;
 import grondag.canvas.shader.MaterialShaderManager;
+import grondag.canvas.shader.WorldDataUniformBuffer;
+import grondag.canvas.terrain.occlusion.EntityOcclusionCuller;
 import grondag.canvas.terrain.occlusion.PotentiallyVisibleRegionSorter;
 import grondag.canvas.terrain.occlusion.TerrainIterator;
 import grondag.canvas.terrain.occlusion.TerrainOccluder;
 import grondag.canvas.terrain.occlusion.geometry.OcclusionRegion;
 import grondag.canvas.terrain.occlusion.geometry.PackedBox;
 import grondag.canvas.terrain.region.BuiltRenderRegion;
+import grondag.canvas.terrain.region.RegionData;
 import grondag.canvas.terrain.region.RenderRegionBuilder;
 import grondag.canvas.terrain.region.RenderRegionPruner;
 import grondag.canvas.terrain.region.RenderRegionStorage;
+import grondag.canvas.terrain.region.StaticBlockEntities;
 import grondag.canvas.terrain.render.TerrainLayerRenderer;
 import grondag.canvas.texture.DitherTexture;
 import grondag.canvas.varia.CanvasGlHelper;
@@ -122,6 +136,8 @@ public class CanvasWorldRenderer extends WorldRenderer {
 	private final RenderRegionPruner pruner = new RenderRegionPruner(terrainOccluder, distanceSorter);
 	private final RenderRegionStorage renderRegionStorage = new RenderRegionStorage(this, pruner);
 	private final TerrainIterator terrainIterator = new TerrainIterator(renderRegionStorage, terrainOccluder, distanceSorter);
+	private final EntityOcclusionCuller entityOcclusionCuller = new EntityOcclusionCuller();
+	private final BlockEntityRenderScheduler blockEntityScheduler = new BlockEntityRenderScheduler();
 	public final TerrainFrustum terrainFrustum = new TerrainFrustum();
 
 	/**
@@ -147,7 +163,7 @@ public class CanvasWorldRenderer extends WorldRenderer {
 
 	private final RenderContextState contextState = new RenderContextState();
 	public final CanvasImmediate worldRenderImmediate = new CanvasImmediate(new BufferBuilder(256), CanvasImmediate.entityBuilders(), contextState);
-	private final CanvasParticleRenderer particleRenderer = new CanvasParticleRenderer();
+	private final CanvasParticleRenderer particleRenderer = new CanvasParticleRenderer(renderRegionStorage);
 	public final WorldRenderContextImpl eventContext = new WorldRenderContextImpl();
 
 	public CanvasWorldRenderer(MinecraftClient client, BufferBuilderStorage bufferBuilders) {
@@ -163,10 +179,7 @@ public class CanvasWorldRenderer extends WorldRenderer {
 	}
 
 	// PERF: render larger cubes - avoid matrix state changes
-	// PERF: cull particle rendering?
 	// PERF: reduce garbage generation
-	// PERF: lod culling: don't render grass, cobwebs, flowers, etc. at longer ranges
-	// PERF: render leaves as solid at distance - omit interior faces
 	// PERF: get VAO working again
 	// PERF: consider trying backface culling again but at draw time w/ glMultiDrawArrays
 
@@ -195,6 +208,20 @@ public class CanvasWorldRenderer extends WorldRenderer {
 		return instance;
 	}
 
+	/**
+	 * True if the block at the position has a breaking overlay. Render thread only.
+	 */
+	public boolean isBlockBreaking(BlockPos pos) {
+		final SortedSet<BlockBreakingInfo> breaking = wr.canvas_blockBreakingProgressions().get(pos.asLong());
+		return breaking != null && !breaking.isEmpty();
+	}
+
+	public void addDebugText(List<String> lines) {
+		entityOcclusionCuller.addDebugText(lines);
+		StaticBlockEntities.addDebugText(lines);
+		particleRenderer.addDebugText(lines);
+	}
+
 	private void computeDistances() {
 		int renderDistance = wr.canvas_renderDistance();
 		squaredChunkRenderDistance = renderDistance * renderDistance;
@@ -264,6 +291,16 @@ public class CanvasWorldRenderer extends WorldRenderer {
 		mc.getProfiler().push("camera");
 		WorldDataManager.update(camera);
 		MaterialConditionImpl.update();
+
+		if (UniformUploadCounters.ENABLED) {
+			UniformUploadCounters.endFrame();
+		}
+
+		if (GlStateCounters.ENABLED) {
+			GlStateCounters.endFrame();
+		}
+
+		WorldDataUniformBuffer.update();
 		MaterialShaderManager.INSTANCE.onRenderTick();
 		final BlockPos cameraBlockPos = camera.getBlockPos();
 		final BuiltRenderRegion cameraRegion = cameraBlockPos.getY() < 0 || cameraBlockPos.getY() > 255 ? null : regionStorage.getOrCreateRegion(cameraBlockPos);
@@ -296,6 +333,7 @@ public class CanvasWorldRenderer extends WorldRenderer {
 				System.arraycopy(terrainIterator.visibleRegions, 0, visibleRegions, 0, size);
 				assert size == 0 || visibleRegions[0] != null;
 				scheduleOrBuild(terrainIterator.updateRegions);
+				entityOcclusionCuller.updateRaster(terrainOccluder, terrainIterator.isChunkCullingEnabled());
 				terrainIterator.reset();
 				state = TerrainIterator.IDLE;
 			}
@@ -322,6 +360,7 @@ public class CanvasWorldRenderer extends WorldRenderer {
 				visibleRegionCount = size;
 				System.arraycopy(terrainIterator.visibleRegions, 0, visibleRegions, 0, size);
 				scheduleOrBuild(terrainIterator.updateRegions);
+				entityOcclusionCuller.updateRaster(terrainOccluder, terrainIterator.isChunkCullingEnabled());
 				terrainIterator.reset();
 			}
 		}
@@ -383,7 +422,10 @@ public class CanvasWorldRenderer extends WorldRenderer {
 		final Framebuffer mcfb = mc.getFramebuffer();
 		final BlockRenderContext blockContext = BlockRenderContext.get();
 		final EntityBlockRenderContext entityBlockContext = EntityBlockRenderContext.get();
+		final long renderStart = System.nanoTime();
 		MaterialFog.allow(true);
+		GpuProfiler.beginFrame();
+		Telemetry.beginFrame();
 
 		updatePlayerLightmap(mc, tickDelta);
 		final ClientWorld world = this.world;
@@ -459,7 +501,9 @@ public class CanvasWorldRenderer extends WorldRenderer {
 		if (Configurator.enableBloom) CanvasFrameBufferHacks.prepareForFrame();
 
 		MaterialMatrixState.set(MaterialMatrixState.REGION, null);
+		GpuProfiler.begin(GpuProfiler.Stage.SOLID_TERRAIN);
 		renderTerrainLayer(false, matrixStack, cameraX, cameraY, cameraZ);
+		GpuProfiler.end(GpuProfiler.Stage.SOLID_TERRAIN);
 		MaterialMatrixState.set(MaterialMatrixState.ENTITY, matrixStack.peek().getNormal());
 
 		// Note these don't have an effect when canvas pipeline is active - lighting happens in the shader
@@ -473,10 +517,11 @@ public class CanvasWorldRenderer extends WorldRenderer {
 		}
 
 		profiler.swap("entities");
+		GpuProfiler.begin(GpuProfiler.Stage.ENTITIES);
 		WorldRenderEvents.BEFORE_ENTITIES.invoker().beforeEntities(eventContext);
 		profiler.push("prepare");
 		int entityCount = 0;
-		final int blockEntityCount = 0;
+		int blockEntityCount = 0;
 
 		profiler.swap("entities");
 
@@ -507,10 +552,36 @@ public class CanvasWorldRenderer extends WorldRenderer {
 		blockContext.collectors = immediate.collectors;
 
 		final int stackDepth = ((MatrixStackExt) matrixStack).canvas_size();
+		final EntityOcclusionCuller occlusionCuller = entityOcclusionCuller;
+		final int visibleRegionCount = this.visibleRegionCount;
+
+		occlusionCuller.beginFrame(cameraX, cameraY, cameraZ);
+
+		if (occlusionCuller.isActive()) {
+			profiler.swap("occlusion");
+
+			for (final Entity entity : world.getEntities()) {
+				if (isEntityVisible(entity)) {
+					occlusionCuller.queue(entity);
+				}
+			}
+
+			for (int regionIndex = 0; regionIndex < visibleRegionCount; ++regionIndex) {
+				for (final BlockEntity blockEntity : visibleRegions[regionIndex].getBuildData().getBlockEntities()) {
+					occlusionCuller.queue(blockEntity);
+				}
+			}
+
+			occlusionCuller.runQueued();
+			profiler.swap("entities");
+		}
+
+		final long entityStartNanos = System.nanoTime();
+		ModelInstancer.beginFrame(immediate.collectors);
 
 		while (entities.hasNext()) {
 			final Entity entity = entities.next();
-			if ((!entityRenderDispatcher.shouldRender(entity, frustum, cameraX, cameraY, cameraZ) && !entity.hasPassengerDeep(mc.player))
+			if (((!entityRenderDispatcher.shouldRender(entity, frustum, cameraX, cameraY, cameraZ) || !occlusionCuller.isVisible(entity)) && !entity.hasPassengerDeep(mc.player))
 					|| (entity == camera.getFocusedEntity() && !FirstPersonModelHolder.handler.isThirdPerson(this, camera, matrixStack) && (!(camera.getFocusedEntity() instanceof LivingEntity) || !((LivingEntity) camera.getFocusedEntity()).isSleeping()))
 					|| (entity instanceof ClientPlayerEntity && camera.getFocusedEntity() != entity)) {
 				continue;
@@ -548,47 +619,75 @@ public class CanvasWorldRenderer extends WorldRenderer {
 
 		contextState.setCurrentEntity(null);
 
+		final long entityNanos = System.nanoTime() - entityStartNanos;
 		profiler.swap("blockentities");
 
-		final int visibleRegionCount = this.visibleRegionCount;
+		final long blockEntityStartNanos = System.nanoTime();
 		final Set<BlockEntity> noCullingBlockEntities = wr.canvas_noCullingBlockEntities();
 
+		final Long2ObjectMap<SortedSet<BlockBreakingInfo>> breakingProgress = wr.canvas_blockBreakingProgressions();
+		final BlockEntityRenderScheduler blockEntityScheduler = this.blockEntityScheduler;
+		blockEntityScheduler.beginFrame(cameraX, cameraY, cameraZ);
+		StaticBlockEntities.beginFrame();
+
 		for (int regionIndex = 0; regionIndex < visibleRegionCount; ++regionIndex) {
 			assert visibleRegions[regionIndex] != null;
 
-			final List<BlockEntity> list = visibleRegions[regionIndex].getBuildData().getBlockEntities();
-
+			final BuiltRenderRegion builtRegion = visibleRegions[regionIndex];
+			final RegionData regionData = builtRegion.getBuildData();
+			final List<BlockEntity> list = regionData.getBlockEntities();
 			final Iterator<BlockEntity> itBER = list.iterator();
 
 			while (itBER.hasNext()) {
 				final BlockEntity blockEntity = itBER.next();
-				final BlockPos blockPos = blockEntity.getPos();
-				VertexConsumerProvider outputConsumer = immediate;
-				contextState.setCurrentBlockEntity(blockEntity);
 
-				matrixStack.push();
-				matrixStack.translate(blockPos.getX() - cameraX, blockPos.getY() - cameraY, blockPos.getZ() - cameraZ);
-				final SortedSet<BlockBreakingInfo> sortedSet = wr.canvas_blockBreakingProgressions().get(blockPos.asLong());
+				if (occlusionCuller.isVisible(blockEntity) && blockEntityScheduler.add(blockEntity)) {
+					++blockEntityCount;
+				}
+			}
 
-				if (sortedSet != null && !sortedSet.isEmpty()) {
-					final int stage = sortedSet.last().getStage();
+			if (regionData.hasBakedBlockEntities()) {
+				if (regionData.updateWatched(breakingProgress)) {
+					final BlockPos origin = builtRegion.getOrigin();
+					scheduleRegionRender(origin.getX() >> 4, origin.getY() >> 4, origin.getZ() >> 4, true);
+				}
 
-					if (stage >= 0) {
-						final MatrixStack.Entry xform = matrixStack.peek();
-						final VertexConsumer overlayConsumer = new OverlayVertexConsumer(bufferBuilders.getEffectVertexConsumers().getBuffer(ModelLoader.BLOCK_DESTRUCTION_RENDER_LAYERS.get(stage)), xform.getModel(), xform.getNormal());
+				StaticBlockEntities.addVisible(regionData.bakedBlockEntityCount(), regionData.bakedNanos(), regionData.staleBakedCount());
+			}
+		}
 
-						outputConsumer = (renderLayer) -> {
-							final VertexConsumer baseConsumer = immediate.getBuffer(renderLayer);
-							return renderLayer.hasCrumbling() ? VertexConsumers.dual(overlayConsumer, baseConsumer) : baseConsumer;
-						};
-					}
-				}
+		blockEntityScheduler.sort();
+		final int blockEntityGroupCount = blockEntityScheduler.groupCount();
 
-				BlockEntityRenderDispatcher.INSTANCE.render(blockEntity, tickDelta, matrixStack, outputConsumer);
-				matrixStack.pop();
+		for (int groupIndex = 0; groupIndex < blockEntityGroupCount; ++groupIndex) {
+			final long groupStartNanos = BlockEntityCounters.ENABLED ? System.nanoTime() : 0;
+			final int start = blockEntityScheduler.groupStart(groupIndex);
+			final int end = blockEntityScheduler.groupEnd(groupIndex);
+
+			for (int i = start; i < end; ++i) {
+				renderBlockEntity(blockEntityScheduler.get(i), tickDelta, matrixStack, cameraX, cameraY, cameraZ, breakingProgress);
+			}
+
+			if (BlockEntityCounters.ENABLED) {
+				final BlockEntity first = blockEntityScheduler.get(start);
+				BlockEntityCounters.addGroup(first.getType(), BlockEntityRenderDispatcher.INSTANCE.get(first).getClass(), end - start, System.nanoTime() - groupStartNanos);
 			}
 		}
 
+		blockEntityScheduler.endFrame();
+		final long blockEntityNanos = System.nanoTime() - blockEntityStartNanos;
+		StaticBlockEntities.endFrame(blockEntityNanos);
+
+		occlusionCuller.endFrame(entityNanos, entityCount, blockEntityNanos, blockEntityCount);
+
+		if (InstancingCounters.ENABLED) {
+			InstancingCounters.endFrame(entityNanos, entityCount, ModelInstancer.isEnabled());
+		}
+
+		if (BlockEntityCounters.ENABLED) {
+			BlockEntityCounters.endFrame();
+		}
+
 		assert ((MatrixStackExt) matrixStack).canvas_size() == stackDepth;
 
 		synchronized (noCullingBlockEntities) {
@@ -609,6 +708,7 @@ public class CanvasWorldRenderer extends WorldRenderer {
 
 		assert matrixStack.isEmpty() : "Matrix stack not empty in world render when expected";
 
+		ModelInstancer.draw();
 		immediate.drawCollectors(MaterialTarget.MAIN);
 
 		WorldRenderEvents.AFTER_ENTITIES.invoker().afterEntities(eventContext);
@@ -620,6 +720,7 @@ public class CanvasWorldRenderer extends WorldRenderer {
 			mcfb.beginWrite(false);
 		}
 
+		GpuProfiler.end(GpuProfiler.Stage.ENTITIES);
 		profiler.swap("destroyProgress");
 
 		// honor damage render layer irrespective of model material
@@ -687,6 +788,7 @@ public class CanvasWorldRenderer extends WorldRenderer {
 		RenderSystem.popMatrix();
 
 		// Should generally not have anything here but draw in case content injected in hooks
+		RenderState.beginDeferredDisable();
 		immediate.drawCollectors(MaterialTarget.MAIN);
 
 		immediate.draw(RenderLayer.getArmorGlint());
@@ -698,6 +800,7 @@ public class CanvasWorldRenderer extends WorldRenderer {
 		immediate.draw(RenderLayer.getDirectEntityGlint());
 		// draw order is important and our sorting mechanism doesn't cover
 		immediate.draw(RenderLayer.getWaterMask());
+		RenderState.endDeferredDisable();
 
 		bufferBuilders.getEffectVertexConsumers().draw();
 
@@ -713,6 +816,7 @@ public class CanvasWorldRenderer extends WorldRenderer {
 			// is terrain itself - so everything else can be rendered first
 
 			// Lines draw to entity (item) target
+			RenderState.beginDeferredDisable();
 			immediate.draw(RenderLayer.getLines());
 
 			// PERF: Why is this here? Should be empty
@@ -720,9 +824,12 @@ public class CanvasWorldRenderer extends WorldRenderer {
 
 			// This catches entity layer and any remaining non-main layers
 			immediate.draw();
+			RenderState.endDeferredDisable();
 
 			MaterialMatrixState.set(MaterialMatrixState.REGION, null);
+			GpuProfiler.begin(GpuProfiler.Stage.TRANSLUCENT_TERRAIN);
 			renderTerrainLayer(true, matrixStack, cameraX, cameraY, cameraZ);
+			GpuProfiler.end(GpuProfiler.Stage.TRANSLUCENT_TERRAIN);
 			MaterialMatrixState.set(MaterialMatrixState.ENTITY, matrixStack.peek().getNormal());
 
 			// NB: vanilla renders tripwire here but we combine into translucent
@@ -734,18 +841,23 @@ public class CanvasWorldRenderer extends WorldRenderer {
 
 			profiler.swap("particles");
 			MaterialMatrixState.set(MaterialMatrixState.PARTICLE, null);
+			GpuProfiler.begin(GpuProfiler.Stage.PARTICLES);
 			particleRenderer.renderParticles(mc.particleManager, matrixStack, immediate, lightmapTextureManager, camera, tickDelta);
+			GpuProfiler.end(GpuProfiler.Stage.PARTICLES);
 			MaterialMatrixState.set(MaterialMatrixState.ENTITY, matrixStack.peek().getNormal());
 
 			mcfb.beginWrite(false);
 		} else {
 			profiler.swap("translucent");
 			MaterialMatrixState.set(MaterialMatrixState.REGION, null);
+			GpuProfiler.begin(GpuProfiler.Stage.TRANSLUCENT_TERRAIN);
 			renderTerrainLayer(true, matrixStack, cameraX, cameraY, cameraZ);
+			GpuProfiler.end(GpuProfiler.Stage.TRANSLUCENT_TERRAIN);
 			MaterialMatrixState.set(MaterialMatrixState.ENTITY, matrixStack.peek().getNormal());
 
 			// without fabulous transparency important that lines
 			// and other translucent elements get drawn on top of terrain
+			RenderState.beginDeferredDisable();
 			immediate.draw(RenderLayer.getLines());
 
 			// PERF: how is this needed? - would either have been drawn above or will be drawn below
@@ -753,10 +865,13 @@ public class CanvasWorldRenderer extends WorldRenderer {
 
 			// This catches entity layer and any remaining non-main layers
 			immediate.draw();
+			RenderState.endDeferredDisable();
 
 			profiler.swap("particles");
 			MaterialMatrixState.set(MaterialMatrixState.PARTICLE, null);
+			GpuProfiler.begin(GpuProfiler.Stage.PARTICLES);
 			particleRenderer.renderParticles(mc.particleManager, matrixStack, immediate, lightmapTextureManager, camera, tickDelta);
+			GpuProfiler.end(GpuProfiler.Stage.PARTICLES);
 			MaterialMatrixState.set(MaterialMatrixState.ENTITY, matrixStack.peek().getNormal());
 		}
 
@@ -817,10 +932,39 @@ public class CanvasWorldRenderer extends WorldRenderer {
 
 		// prevents fog in GUI
 		MaterialFog.allow(false);
+		Telemetry.record(Telemetry.Event.WORLD_RENDER, renderStart);
 
 		//RenderState.enablePrint = true;
 	}
 
+	private void renderBlockEntity(BlockEntity blockEntity, float tickDelta, MatrixStack matrixStack, double cameraX, double cameraY, double cameraZ, Long2ObjectMap<SortedSet<BlockBreakingInfo>> breakingProgress) {
+		final CanvasImmediate immediate = worldRenderImmediate;
+		final BlockPos blockPos = blockEntity.getPos();
+		VertexConsumerProvider outputConsumer = immediate;
+		contextState.setCurrentBlockEntity(blockEntity);
+
+		matrixStack.push();
+		matrixStack.translate(blockPos.getX() - cameraX, blockPos.getY() - cameraY, blockPos.getZ() - cameraZ);
+		final SortedSet<BlockBreakingInfo> sortedSet = breakingProgress.get(blockPos.asLong());
+
+		if (sortedSet != null && !sortedSet.isEmpty()) {
+			final int stage = sortedSet.last().getStage();
+
+			if (stage >= 0) {
+				final MatrixStack.Entry xform = matrixStack.peek();
+				final VertexConsumer overlayConsumer = new OverlayVertexConsumer(wr.canvas_bufferBuilders().getEffectVertexConsumers().getBuffer(ModelLoader.BLOCK_DESTRUCTION_RENDER_LAYERS.get(stage)), xform.getModel(), xform.getNormal());
+
+				outputConsumer = (renderLayer) -> {
+					final VertexConsumer baseConsumer = immediate.getBuffer(renderLayer);
+					return renderLayer.hasCrumbling() ? VertexConsumers.dual(overlayConsumer, baseConsumer) : baseConsumer;
+				};
+			}
+		}
+
+		BlockEntityRenderDispatcher.INSTANCE.render(blockEntity, tickDelta, matrixStack, outputConsumer);
+		matrixStack.pop();
+	}
+
 	private void renderCullBoxes(MatrixStack matrixStack, Immediate immediate, double cameraX, double cameraY, double cameraZ, float tickDelta) {
 		@SuppressWarnings("resource") final Entity entity = MinecraftClient.getInstance().gameRenderer.getCamera().getFocusedEntity();
 
@@ -965,6 +1109,8 @@ public class CanvasWorldRenderer extends WorldRenderer {
 			return;
 		}
 
+		final long startNanos = System.nanoTime();
+
 		if (isTranslucent) {
 			TRANSLUCENT.render(visibleRegions, visibleRegionCount, matrixStack, x, y, z);
 		} else {
@@ -986,6 +1132,7 @@ public class CanvasWorldRenderer extends WorldRenderer {
 		VboBuffer.unbind();
 		RenderSystem.clearCurrentColor();
 		BindStateManager.unbind();
+		Telemetry.record(isTranslucent ? Telemetry.Event.TRANSLUCENT_DRAW : Telemetry.Event.SOLID_DRAW, startNanos);
 	}
 
 	private void updateRegions(long endNanos) {
@@ -1050,8 +1197,27 @@ public class CanvasWorldRenderer extends WorldRenderer {
 		((WorldRenderer) wr).updateNoCullingBlockEntities(removedBlockEntities, addedBlockEntities);
 	}
 
-	// PERF: stash frustum version and terrain version in entity - only retest when changed
+	/**
+	 * Result is cached in the entity until the view, terrain visibility or entity block
+	 * position changes. Bounds are padded by a block so movement within a block can't
+	 * invalidate a cached result.
+	 */
 	public <T extends Entity> boolean isEntityVisible(T entity) {
+		final EntityExt ext = (EntityExt) entity;
+		final int frustumVersion = terrainFrustum.viewVersion();
+		final int seenVersion = renderRegionStorage.seenBits.version();
+		final long pos = entity.getBlockPos().asLong();
+
+		if (ext.canvas_visibilityFrustumVersion() == frustumVersion && ext.canvas_visibilitySeenVersion() == seenVersion && ext.canvas_visibilityPos() == pos) {
+			return ext.canvas_visibilityResult();
+		}
+
+		final boolean result = testEntityVisibility(entity);
+		ext.canvas_visibility(frustumVersion, seenVersion, pos, result);
+		return result;
+	}
+
+	private boolean testEntityVisibility(Entity entity) {
 		final Box box = entity.getVisibilityBoundingBox();
 
 		final double x0, y0, z0, x1, y1, z1;
@@ -1073,56 +1239,11 @@ public class CanvasWorldRenderer extends WorldRenderer {
 			z1 = box.maxZ;
 		}
 
-		if (!terrainFrustum.isVisible(x0 - 0.5, y0 - 0.5, z0 - 0.5, x1 + 0.5, y1 + 0.5, z1 + 0.5)) {
+		if (!terrainFrustum.isVisible(x0 - 1.5, y0 - 1.5, z0 - 1.5, x1 + 1.5, y1 + 1.5, z1 + 1.5)) {
 			return false;
 		}
 
-		final int rx0 = MathHelper.floor(x0) & 0xFFFFFFF0;
-		final int ry0 = MathHelper.floor(y0) & 0xFFFFFFF0;
-		final int rz0 = MathHelper.floor(z0) & 0xFFFFFFF0;
-		final int rx1 = MathHelper.floor(x1) & 0xFFFFFFF0;
-		final int ry1 = MathHelper.floor(y1) & 0xFFFFFFF0;
-		final int rz1 = MathHelper.floor(z1) & 0xFFFFFFF0;
-
-		int flags = rx0 == rz1 ? 0 : 1;
-		if (ry0 != ry1) flags |= 2;
-		if (rz0 != rz1) flags |= 4;
-
-		final RenderRegionStorage regions = renderRegionStorage;
-
-		switch (flags) {
-			case 0b000:
-				return regions.wasSeen(rx0, ry0, rz0);
-
-			case 0b001:
-				return regions.wasSeen(rx0, ry0, rz0) || regions.wasSeen(rx1, ry0, rz0);
-
-			case 0b010:
-				return regions.wasSeen(rx0, ry0, rz0) || regions.wasSeen(rx0, ry1, rz0);
-
-			case 0b011:
-				return regions.wasSeen(rx0, ry0, rz0) || regions.wasSeen(rx1, ry0, rz0)
-						|| regions.wasSeen(rx0, ry1, rz0) || regions.wasSeen(rx1, ry1, rz0);
-
-			case 0b100:
-				return regions.wasSeen(rx0, ry0, rz0) || regions.wasSeen(rx0, ry0, rz1);
-
-			case 0b101:
-				return regions.wasSeen(rx0, ry0, rz0) || regions.wasSeen(rx1, ry0, rz0)
-						|| regions.wasSeen(rx0, ry0, rz1) || regions.wasSeen(rx1, ry0, rz1);
-
-			case 0b110:
-				return regions.wasSeen(rx0, ry0, rz0) || regions.wasSeen(rx0, ry1, rz0)
-						|| regions.wasSeen(rx0, ry0, rz1) || regions.wasSeen(rx0, ry1, rz1);
-
-			case 0b111:
-				return regions.wasSeen(rx0, ry0, rz0) || regions.wasSeen(rx1, ry0, rz0)
-						|| regions.wasSeen(rx0, ry1, rz0) || regions.wasSeen(rx1, ry1, rz0)
-						|| regions.wasSeen(rx0, ry0, rz1) || regions.wasSeen(rx1, ry0, rz1)
-						|| regions.wasSeen(rx0, ry1, rz1) || regions.wasSeen(rx1, ry1, rz1);
-		}
-
-		return true;
+		return renderRegionStorage.wasBoxSeen(x0 - 1.0, y0 - 1.0, z0 - 1.0, x1 + 1.0, y1 + 1.0, z1 + 1.0);
 	}
 
 	public void scheduleRegionRender(int x, int y, int z, boolean urgent) {
@@ -1137,6 +1258,10 @@ public class CanvasWorldRenderer extends WorldRenderer {
 		WorldRenderEvents.START.invoker().onStart(eventContext);
 		renderWorld(matrices, tickDelta, frameStartNanos, renderBlockOutline, camera, gameRenderer, lightmapTextureManager, matrix4f);
 		WorldRenderEvents.END.invoker().onEnd(eventContext);
+
+		if (ShaderLoadCounters.ENABLED) {
+			ShaderLoadCounters.endFrame();
+		}
 	}
 
 	@Override
@@ -1146,6 +1271,7 @@ public class CanvasWorldRenderer extends WorldRenderer {
 		computeDistances();
 		terrainIterator.reset();
 		terrainOccluder.invalidate();
+		entityOcclusionCuller.clear();
 		terrainSetupOffThread = Configurator.terrainSetupOffThread;
 		regionsToRebuild.clear();
 
@@ -0,0 +1,61 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.render;
+
+import it.unimi.dsi.fastutil.HashCommon;
+
+/**
+ * Distance-based thinning of small particles. Beyond the start distance the fraction
+ * of particles kept falls with the square of distance, so about the same number cover
+ * a given area of the screen, down to {@link #MIN_KEEP_FRACTION}.
+ *
+ * <p>Which particles are skipped depends only on a per-particle hash and the distance,
+ * so the same particles stay hidden from frame to frame instead of flickering.
+ */
+public final class ParticleThinning {
+	/** Particles larger than this in any dimension are never thinned. */
+	public static final double MAX_THINNED_SIZE = 0.5;
+	public static final float MIN_KEEP_FRACTION = 1f / 8f;
+
+	private ParticleThinning() {
+	}
+
+	/**
+	 * @param startDistance blocks beyond which particles are thinned. Zero or less disables thinning.
+	 * @return fraction of particles to keep, from {@link #MIN_KEEP_FRACTION} to 1.
+	 */
+	public static float keepFraction(float distanceSquared, int startDistance) {
+		if (startDistance <= 0) {
+			return 1f;
+		}
+
+		final float startSquared = startDistance * startDistance;
+		return distanceSquared <= startSquared ? 1f : Math.max(MIN_KEEP_FRACTION, startSquared / distanceSquared);
+	}
+
+	/**
+	 * @param hash stable for the life of the particle, for example its identity hash code.
+	 * Needn't be well distributed.
+	 */
+	public static boolean isKept(int hash, float keepFraction) {
+		if (keepFraction >= 1f) {
+			return true;
+		}
+
+		return (HashCommon.murmurHash3(hash) >>> 8) < keepFraction * (1 << 24);
+	}
+}
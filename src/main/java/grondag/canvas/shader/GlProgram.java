@@ -38,7 +38,10 @@ import grondag.canvas.Configurator;
 import grondag.canvas.buffer.format.CanvasVertexFormat;
 import grondag.canvas.mixinterface.Matrix3fExt;
 import grondag.canvas.mixinterface.Matrix4fExt;
+import grondag.canvas.perf.ShaderLoadCounters;
+import grondag.canvas.perf.UniformUploadCounters;
 import grondag.canvas.varia.CanvasGlHelper;
+import grondag.canvas.varia.GlStateTracker;
 import grondag.frex.api.material.Uniform;
 import grondag.frex.api.material.Uniform.Uniform1f;
 import grondag.frex.api.material.Uniform.Uniform1i;
@@ -91,7 +94,7 @@ public class GlProgram {
 	public static void deactivate() {
 		if (activeProgram != null) {
 			activeProgram = null;
-			GL21.glUseProgram(0);
+			GlStateTracker.useProgram(0);
 		}
 	}
 
@@ -168,10 +171,7 @@ public class GlProgram {
 	}
 
 	public final void activate() {
-		if (needsLoad) {
-			load();
-			needsLoad = false;
-		}
+		ensureLoaded();
 
 		if (isErrored) {
 			return;
@@ -188,7 +188,7 @@ public class GlProgram {
 			return;
 		}
 
-		GL21.glUseProgram(progID);
+		GlStateTracker.useProgram(progID);
 
 		if (hasDirty) {
 			final int count = activeUniforms.size();
@@ -249,6 +249,8 @@ public class GlProgram {
 		try {
 			if (progID > 0) {
 				GL21.glDeleteProgram(progID);
+				// new program may reuse the id
+				GlStateTracker.invalidate();
 			}
 
 			progID = GL21.glCreateProgram();
@@ -264,6 +266,7 @@ public class GlProgram {
 		}
 
 		if (!isErrored) {
+			WorldDataUniformBuffer.bindProgram(progID);
 			loadUniforms();
 			final int limit = activeUniforms.size();
 
@@ -275,8 +278,14 @@ public class GlProgram {
 
 	public final void unload() {
 		if (progID > 0) {
+			if (activeProgram == this) {
+				activeProgram = null;
+			}
+
 			GL21.glDeleteProgram(progID);
 			progID = -1;
+			// new program may reuse the id
+			GlStateTracker.invalidate();
 		}
 	}
 
@@ -290,6 +299,18 @@ public class GlProgram {
 			return false;
 		}
 
+		final long start = ShaderLoadCounters.ENABLED ? System.nanoTime() : 0;
+		final String binaryKey = ProgramBinaryCache.key(vertexShader, fragmentShader, vertexFormat.attributeBindings(), programType);
+
+		if (binaryKey != null) {
+			if (ProgramBinaryCache.tryLoad(programID, binaryKey)) {
+				if (ShaderLoadCounters.ENABLED) ShaderLoadCounters.addProgramLoad(System.nanoTime() - start, true);
+				return true;
+			}
+
+			ProgramBinaryCache.prepareForStore(programID);
+		}
+
 		if (!vertexShader.attach(programID) || !fragmentShader.attach(programID)) {
 			return false;
 		}
@@ -303,6 +324,11 @@ public class GlProgram {
 			return false;
 		}
 
+		if (binaryKey != null) {
+			ProgramBinaryCache.store(programID, binaryKey);
+		}
+
+		if (ShaderLoadCounters.ENABLED) ShaderLoadCounters.addProgramLoad(System.nanoTime() - start, false);
 		return true;
 	}
 
@@ -326,6 +352,10 @@ public class GlProgram {
 		final String type = uniform.searchString();
 		final String name = uniform.name;
 
+		if (WorldDataUniformBuffer.isBlockMember(name)) {
+			return false;
+		}
+
 		return vertexShader.containsUniformSpec(type, name)
 				|| fragmentShader.containsUniformSpec(type, name);
 	}
@@ -384,6 +414,10 @@ public class GlProgram {
 
 			if ((this.flags & FLAG_NEEDS_UPLOAD) == FLAG_NEEDS_UPLOAD) {
 				this.uploadInner();
+
+				if (UniformUploadCounters.ENABLED) {
+					UniformUploadCounters.addProgramUpload();
+				}
 			}
 
 			this.flags = 0;
@@ -1063,4 +1097,37 @@ public class GlProgram {
 		vertexShader.forceReload();
 		needsLoad = true;
 	}
+
+	/**
+	 * Starts assembling shader source in the background. Call after {@link #forceReload()}.
+	 */
+	public void prepare() {
+		vertexShader.prepare();
+		fragmentShader.prepare();
+	}
+
+	/**
+	 * @return True if shader source is ready and loading will not wait for it
+	 */
+	public boolean isPrepared() {
+		return vertexShader.isPrepared() && fragmentShader.isPrepared();
+	}
+
+	/**
+	 * Compiles and links the program if needed, without activating it.
+	 */
+	public final void ensureLoaded() {
+		if (needsLoad) {
+			load();
+			needsLoad = false;
+		}
+	}
+
+	public boolean isLoaded() {
+		return !needsLoad;
+	}
+
+	public boolean isErrored() {
+		return isErrored;
+	}
 }
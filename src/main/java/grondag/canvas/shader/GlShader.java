@@ -23,12 +23,10 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.nio.file.Path;
-import java.util.HashSet;
-import java.util.regex.Matcher;
+import java.util.concurrent.CompletableFuture;
 import java.util.regex.Pattern;
 
 import com.google.common.io.CharStreams;
-import org.apache.commons.lang3.StringUtils;
 import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GL21;
 
@@ -43,22 +41,21 @@ import net.fabricmc.loader.api.FabricLoader;
 import grondag.canvas.CanvasMod;
 import grondag.canvas.Configurator;
 import grondag.canvas.Configurator.AoMode;
-import grondag.canvas.Configurator.DiffuseMode;
-import grondag.canvas.Configurator.FogMode;
+import grondag.canvas.perf.ShaderLoadCounters;
+import grondag.canvas.shader.glsl.GlslDefines;
 import grondag.canvas.texture.MaterialInfoTexture;
 import grondag.canvas.varia.CanvasGlHelper;
 import grondag.frex.api.config.ShaderConfig;
 
 public class GlShader implements Shader {
-	static final Pattern PATTERN = Pattern.compile("^#include\\s+(\\\"*[\\w]+:[\\w/\\.]+)[ \\t]*.*", Pattern.MULTILINE);
-	private static final HashSet<String> INCLUDED = new HashSet<>();
 	private static boolean isErrorNoticeComplete = false;
 	private static boolean needsClearDebugOutputWarning = true;
 	private static boolean needsDebugOutputWarning = true;
 	private final Identifier shaderSourceId;
 	protected final int shaderType;
 	protected final ProgramType programType;
-	private String source = null;
+	private volatile String source = null;
+	private volatile CompletableFuture<String> pendingSource = null;
 	private int glId = -1;
 	private boolean needsLoad = true;
 	private boolean isErrored = false;
@@ -216,66 +213,96 @@ public class GlShader implements Shader {
 		}
 	}
 
-	private String getSource() {
+	@Override
+	public String getSource() {
 		String result = source;
 
 		if (result == null) {
-			result = getCombinedShaderSource();
+			final CompletableFuture<String> pending = pendingSource;
 
-			if (programType == ProgramType.MATERIAL_VERTEX_LOGIC) {
-				result = StringUtils.replace(result, "#define PROGRAM_BY_UNIFORM", "//#define PROGRAM_BY_UNIFORM");
-			}
+			if (pending != null) {
+				final long start = System.nanoTime();
 
-			if (shaderType == GL21.GL_FRAGMENT_SHADER) {
-				result = StringUtils.replace(result, "#define VERTEX_SHADER", "#define FRAGMENT_SHADER");
-			}
+				try {
+					result = pending.join();
+				} catch (final Exception e) {
+					CanvasMod.LOG.warn("Unable to prepare shader source " + shaderSourceId.toString() + " in background due to exception. Retrying on render thread.", e);
+				}
 
-			if (!Configurator.wavyGrass) {
-				result = StringUtils.replace(result, "#define ANIMATED_FOLIAGE", "//#define ANIMATED_FOLIAGE");
+				if (ShaderLoadCounters.ENABLED) ShaderLoadCounters.addSourceWait(System.nanoTime() - start);
 			}
 
-			if (Configurator.fogMode != FogMode.VANILLA) {
-				result = StringUtils.replace(result, "#define _CV_FOG_CONFIG _CV_FOG_CONFIG_VANILLA",
-					"#define _CV_FOG_CONFIG _CV_FOG_CONFIG_" + Configurator.fogMode.name());
+			if (result == null) {
+				result = assembleSource();
 			}
 
-			if (Configurator.enableBloom) {
-				result = StringUtils.replace(result, "#define TARGET_EMISSIVE -1", "#define TARGET_EMISSIVE 1");
-			}
+			pendingSource = null;
+			source = result;
+		}
 
-			result = StringUtils.replace(result, "#define HANDHELD_LIGHT_RADIUS 0", "#define HANDHELD_LIGHT_RADIUS " + Configurator.handheldLightRadius);
+		return result;
+	}
 
-			result = StringUtils.replace(result, "#define _CV_MATERIAL_INFO_TEXTURE_SIZE 0", "#define _CV_MATERIAL_INFO_TEXTURE_SIZE " + MaterialInfoTexture.INSTANCE.squareSizePixels());
-			result = StringUtils.replace(result, "#define _CV_MAX_SHADER_COUNT 0", "#define _CV_MAX_SHADER_COUNT " + MaterialShaderImpl.MAX_SHADERS);
+	@Override
+	public void prepare() {
+		if (source == null && pendingSource == null) {
+			pendingSource = ShaderSourceCache.submit(this::assembleSource);
+		}
+	}
 
-			if (Configurator.hdLightmaps()) {
-				result = StringUtils.replace(result, "#define VANILLA_LIGHTING", "//#define VANILLA_LIGHTING");
+	@Override
+	public boolean isPrepared() {
+		final CompletableFuture<String> pending = pendingSource;
+		return source != null || (pending != null && pending.isDone());
+	}
 
-				if (Configurator.lightmapNoise) {
-					result = StringUtils.replace(result, "//#define ENABLE_LIGHT_NOISE", "#define ENABLE_LIGHT_NOISE");
-				}
-			}
+	/**
+	 * Safe to call from any thread.
+	 */
+	private String assembleSource() {
+		return ShaderSourceCache.processed(getCombinedShaderSource(), defines());
+	}
 
-			if (!MinecraftClient.isAmbientOcclusionEnabled()) {
-				// disable ao for particles or if disabled by player
-				result = StringUtils.replace(result, "#define AO_SHADING_MODE AO_MODE_NORMAL",
-					"#define AO_SHADING_MODE AO_MODE_" + AoMode.NONE.name());
-			} else if (Configurator.aoShadingMode != AoMode.NORMAL) {
-				result = StringUtils.replace(result, "#define AO_SHADING_MODE AO_MODE_NORMAL",
-					"#define AO_SHADING_MODE AO_MODE_" + Configurator.aoShadingMode.name());
-			}
+	/**
+	 * Every input to shader source other than the source text itself.
+	 */
+	private GlslDefines defines() {
+		final GlslDefines result = new GlslDefines();
 
-			if (Configurator.diffuseShadingMode != DiffuseMode.NORMAL) {
-				result = StringUtils.replace(result, "#define DIFFUSE_SHADING_MODE DIFFUSE_MODE_NORMAL",
-					"#define DIFFUSE_SHADING_MODE DIFFUSE_MODE_" + Configurator.diffuseShadingMode.name());
-			}
+		if (shaderType == GL21.GL_FRAGMENT_SHADER) {
+			result.undefine("VERTEX_SHADER").define("FRAGMENT_SHADER");
+		} else {
+			result.define("VERTEX_SHADER").undefine("FRAGMENT_SHADER");
+		}
 
-			if (!MinecraftClient.IS_SYSTEM_MAC) {
-				result = StringUtils.replace(result, "#version 120", "#version 130");
-				result = StringUtils.replace(result, "#extension GL_EXT_gpu_shader4 : require", "//#extension GL_EXT_gpu_shader4 : require");
+		result.flag("PROGRAM_BY_UNIFORM", programType != ProgramType.MATERIAL_VERTEX_LOGIC);
+		result.flag("_CV_INSTANCED", programType == ProgramType.MATERIAL_INSTANCED);
+		result.flag("ANIMATED_FOLIAGE", Configurator.wavyGrass);
+		result.define("_CV_FOG_CONFIG", "_CV_FOG_CONFIG_" + Configurator.fogMode.name());
+		result.define("TARGET_EMISSIVE", Configurator.enableBloom ? 1 : -1);
+		result.define("HANDHELD_LIGHT_RADIUS", Configurator.handheldLightRadius);
+		result.define("_CV_MATERIAL_INFO_TEXTURE_SIZE", MaterialInfoTexture.INSTANCE.squareSizePixels());
+		result.define("_CV_MAX_SHADER_COUNT", MaterialShaderImpl.MAX_SHADERS);
+		result.flag("VANILLA_LIGHTING", !Configurator.hdLightmaps());
+		result.flag("ENABLE_LIGHT_NOISE", Configurator.hdLightmaps() && Configurator.lightmapNoise);
+
+		// disable ao for particles or if disabled by player
+		final AoMode aoMode = MinecraftClient.isAmbientOcclusionEnabled() ? Configurator.aoShadingMode : AoMode.NONE;
+		result.define("AO_SHADING_MODE", "AO_MODE_" + aoMode.name());
+		result.define("DIFFUSE_SHADING_MODE", "DIFFUSE_MODE_" + Configurator.diffuseShadingMode.name());
+
+		final boolean worldUbo = WorldDataUniformBuffer.isActive();
+		result.flag("_CV_WORLD_UBO", worldUbo);
+		result.extension("GL_ARB_uniform_buffer_object", worldUbo ? "require" : null);
+
+		if (!MinecraftClient.IS_SYSTEM_MAC) {
+			result.version(130);
+
+			// features required from this extension are core in 130
+			// process shaders have always only enabled it, so leave those as they are
+			if (programType != ProgramType.PROCESS) {
+				result.extension("GL_EXT_gpu_shader4", null);
 			}
-
-			source = result;
 		}
 
 		return result;
@@ -283,10 +310,9 @@ public class GlShader implements Shader {
 
 	private String getCombinedShaderSource() {
 		final ResourceManager resourceManager = MinecraftClient.getInstance().getResourceManager();
-		INCLUDED.clear();
 		String result = loadShaderSource(resourceManager, shaderSourceId);
 		result = preprocessSource(resourceManager, result);
-		return processSourceIncludes(resourceManager, result);
+		return ShaderSourceCache.includes().resolve(result);
 	}
 
 	protected String preprocessSource(ResourceManager resourceManager, String baseSource) {
@@ -294,6 +320,10 @@ public class GlShader implements Shader {
 	}
 
 	protected static String loadShaderSource(ResourceManager resourceManager, Identifier shaderSourceId) {
+		return ShaderSourceCache.resource(shaderSourceId, id -> readShaderSource(resourceManager, id));
+	}
+
+	private static String readShaderSource(ResourceManager resourceManager, Identifier shaderSourceId) {
 		try (Resource resource = resourceManager.getResource(shaderSourceId)) {
 			try (Reader reader = new InputStreamReader(resource.getInputStream())) {
 				return CharStreams.toString(reader);
@@ -306,25 +336,6 @@ public class GlShader implements Shader {
 		}
 	}
 
-	private String processSourceIncludes(ResourceManager resourceManager, String source) {
-		final Matcher m = PATTERN.matcher(source);
-
-		while (m.find()) {
-			// allow quoted arguments to #include for nicer IDE support
-			final String id = StringUtils.replace(m.group(1), "\"", "");
-
-			if (INCLUDED.contains(id)) {
-				source = StringUtils.replace(source, m.group(0), "");
-			} else {
-				INCLUDED.add(id);
-				final String src = processSourceIncludes(resourceManager, loadShaderSource(resourceManager, new Identifier(id)));
-				source = StringUtils.replace(source, m.group(0), src, 1);
-			}
-		}
-
-		return source;
-	}
-
 	/**
 	 * Call after render / resource refresh to force shader reload.
 	 */
@@ -332,6 +343,7 @@ public class GlShader implements Shader {
 	public final void forceReload() {
 		needsLoad = true;
 		source = null;
+		pendingSource = null;
 	}
 
 	@Override
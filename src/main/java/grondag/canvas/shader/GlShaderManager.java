@@ -72,7 +72,12 @@ public enum GlShaderManager {
 
 	public void reload() {
 		GlShader.forceReloadErrors();
+		ShaderSourceCache.reload();
 		fragmentShaders.values().forEach(s -> s.forceReload());
 		vertexShaders.values().forEach(s -> s.forceReload());
+
+		// start assembling source for shaders already in use so it is ready when programs load
+		fragmentShaders.values().forEach(s -> s.prepare());
+		vertexShaders.values().forEach(s -> s.prepare());
 	}
 }
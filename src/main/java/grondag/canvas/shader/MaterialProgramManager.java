@@ -17,10 +17,13 @@
 package grondag.canvas.shader;
 
 import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import org.lwjgl.opengl.GL21;
 
 import grondag.canvas.CanvasMod;
 import grondag.canvas.Configurator;
+import grondag.canvas.buffer.format.CanvasVertexFormat;
 import grondag.canvas.buffer.format.CanvasVertexFormats;
 
 public enum MaterialProgramManager {
@@ -34,24 +37,90 @@ public enum MaterialProgramManager {
 
 	private final Int2ObjectOpenHashMap<GlMaterialProgram> materialPrograms = new Int2ObjectOpenHashMap<>();
 
+	/** Programs specialized to one vertex and one fragment material shader, by shader index pair. Render thread only. */
+	private final Long2ObjectOpenHashMap<GlMaterialProgram> variants = new Long2ObjectOpenHashMap<>();
+	private final ObjectArrayList<GlMaterialProgram> pendingVariants = new ObjectArrayList<>();
+
 	public void reload() {
 		GlShader.forceReloadErrors();
-		materialPrograms.values().forEach(s -> s.forceReload());
+		materialPrograms.values().forEach(s -> {
+			s.forceReload();
+			s.prepare();
+		});
 	}
 
 	GlMaterialProgram getOrCreateMaterialProgram(ProgramType programType) {
-		assert programType == ProgramType.MATERIAL_UNIFORM_LOGIC || programType == ProgramType.MATERIAL_VERTEX_LOGIC;
+		assert programType != ProgramType.PROCESS;
 		final int key = programType.ordinal();
 		GlMaterialProgram result = materialPrograms.get(key);
 
 		if (result == null) {
 			final Shader vs = new GlMaterialShader(ShaderData.MATERIAL_MAIN_VERTEX, GL21.GL_VERTEX_SHADER, programType);
 			final Shader fs = new GlMaterialShader(ShaderData.MATERIAL_MAIN_FRAGMENT, GL21.GL_FRAGMENT_SHADER, programType);
-			result = new GlMaterialProgram(vs, fs, CanvasVertexFormats.POSITION_COLOR_TEXTURE_MATERIAL_LIGHT_NORMAL, programType);
+			final CanvasVertexFormat format = programType == ProgramType.MATERIAL_INSTANCED ? CanvasVertexFormats.MATERIAL_INSTANCED_PROGRAM : CanvasVertexFormats.POSITION_COLOR_TEXTURE_MATERIAL_LIGHT_NORMAL;
+			result = new GlMaterialProgram(vs, fs, format, programType);
 			ShaderData.STANDARD_UNIFORM_SETUP.accept(result);
 			materialPrograms.put(key, result);
 		}
 
 		return result;
 	}
+
+	/**
+	 * Returns a program that includes only the given material shaders. New programs start assembling
+	 * source in the background and are loaded by {@link #loadPendingVariant()} - use only once loaded.
+	 */
+	GlMaterialProgram getOrCreateVariant(int vertexShaderIndex, int fragmentShaderIndex) {
+		final long key = ((long) vertexShaderIndex << 32) | fragmentShaderIndex;
+		GlMaterialProgram result = variants.get(key);
+
+		if (result == null) {
+			final ProgramType programType = ProgramType.MATERIAL_UNIFORM_LOGIC;
+			final Shader vs = new GlMaterialShader(ShaderData.MATERIAL_MAIN_VERTEX, GL21.GL_VERTEX_SHADER, programType, vertexShaderIndex);
+			final Shader fs = new GlMaterialShader(ShaderData.MATERIAL_MAIN_FRAGMENT, GL21.GL_FRAGMENT_SHADER, programType, fragmentShaderIndex);
+			result = new GlMaterialProgram(vs, fs, CanvasVertexFormats.POSITION_COLOR_TEXTURE_MATERIAL_LIGHT_NORMAL, programType);
+			ShaderData.STANDARD_UNIFORM_SETUP.accept(result);
+			result.prepare();
+			variants.put(key, result);
+			pendingVariants.add(result);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Loads at most one specialized program with source ready, so that compiling
+	 * them is spread over frames. Call once per frame.
+	 */
+	public void loadPendingVariant() {
+		final int limit = pendingVariants.size();
+
+		for (int i = 0; i < limit; ++i) {
+			final GlMaterialProgram program = pendingVariants.get(i);
+
+			if (program.isPrepared()) {
+				pendingVariants.remove(i);
+				program.ensureLoaded();
+				return;
+			}
+		}
+	}
+
+	public int variantCount() {
+		return variants.size();
+	}
+
+	public int pendingVariantCount() {
+		return pendingVariants.size();
+	}
+
+	/**
+	 * Discards specialized programs. They are chosen again from usage after reload. Render thread only.
+	 */
+	public void reloadVariants() {
+		MaterialShaderManager.INSTANCE.clearVariants();
+		variants.values().forEach(p -> p.unload());
+		variants.clear();
+		pendingVariants.clear();
+	}
 }
@@ -16,9 +16,11 @@
 
 package grondag.canvas.shader;
 
+import grondag.canvas.Configurator;
 import grondag.canvas.material.property.MaterialFog;
 import grondag.canvas.material.property.MaterialMatrixState;
 import grondag.canvas.material.state.RenderState;
+import grondag.canvas.perf.ShaderVariantCounters;
 import grondag.canvas.texture.SpriteInfoTexture;
 
 public final class MaterialShaderImpl {
@@ -31,6 +33,18 @@ public final class MaterialShaderImpl {
 	public final ProgramType programType;
 	private GlMaterialProgram program;
 
+	/** Program with only this shader's material shaders, if one has been requested. */
+	private GlMaterialProgram variant;
+
+	/** Shared program for instanced models, if one has been requested. */
+	private GlMaterialProgram instancedProgram;
+
+	/** Program used by the last activation. */
+	private GlMaterialProgram activeProgram;
+
+	/** Activations since the last call to {@link #sampleActivations()}. */
+	private int activations;
+
 	public MaterialShaderImpl(int index, int vertexShaderIndex, int fragmentShaderIndex, ProgramType programType) {
 		this.vertexShaderIndex = vertexShaderIndex;
 		this.fragmentShaderIndex = fragmentShaderIndex;
@@ -53,7 +67,7 @@ public final class MaterialShaderImpl {
 
 	// UGLY: all of this activation stuff is trash code
 	// these should probably happen before program activation - change detection should upload as needed
-	private void updateCommonUniforms(RenderState renderState) {
+	private void updateCommonUniforms(GlMaterialProgram program, RenderState renderState) {
 		program.programInfo.set(vertexShaderIndex, fragmentShaderIndex, renderState.gui ? 1 : 0);
 		program.programInfo.upload();
 
@@ -68,16 +82,53 @@ public final class MaterialShaderImpl {
 	}
 
 	public void setModelOrigin(int x, int y, int z) {
-		getOrCreate().setModelOrigin(x, y, z);
+		activeProgram().setModelOrigin(x, y, z);
 	}
 
 	public void activate(RenderState renderState) {
-		getOrCreate().activate();
-		updateCommonUniforms(renderState);
+		final GlMaterialProgram variant = this.variant;
+		final GlMaterialProgram program;
+
+		// use the shared program until the specialized one is ready
+		if (variant != null && variant.isLoaded() && !variant.isErrored() && Configurator.shaderSpecialization) {
+			program = variant;
+		} else {
+			program = getOrCreate();
+		}
+
+		activeProgram = program;
+		program.activate();
+		updateCommonUniforms(program, renderState);
+		++activations;
+
+		if (ShaderVariantCounters.ENABLED) ShaderVariantCounters.addActivation(program == variant);
+	}
+
+	/**
+	 * Activates the shared program for instanced models. Never specialized - instanced
+	 * draws are few and the program would only add to compile time.
+	 */
+	public void activateInstanced(RenderState renderState) {
+		GlMaterialProgram program = instancedProgram;
+
+		if (program == null) {
+			program = MaterialProgramManager.INSTANCE.getOrCreateMaterialProgram(ProgramType.MATERIAL_INSTANCED);
+			instancedProgram = program;
+		}
+
+		activeProgram = program;
+		program.activate();
+		updateCommonUniforms(program, renderState);
+		++activations;
+	}
+
+	private GlMaterialProgram activeProgram() {
+		final GlMaterialProgram result = activeProgram;
+		return result == null ? getOrCreate() : result;
 	}
 
 	public void setAtlasInfo(SpriteInfoTexture atlasInfo) {
-		getOrCreate().setAtlasInfo(atlasInfo);
+		activeProgram().setAtlasInfo(atlasInfo);
 	}
 
 	public void reload() {
@@ -85,6 +136,47 @@ public final class MaterialShaderImpl {
 			program.unload();
 			program = null;
 		}
+
+		if (instancedProgram != null) {
+			instancedProgram.unload();
+			instancedProgram = null;
+		}
+
+		activeProgram = null;
+	}
+
+	/**
+	 * Requests a program that includes only this shader's material shaders. It is used once loaded.
+	 * Only meaningful for {@link ProgramType#MATERIAL_UNIFORM_LOGIC} - with vertex logic a single
+	 * draw can mix material shaders.
+	 */
+	void specialize() {
+		assert programType == ProgramType.MATERIAL_UNIFORM_LOGIC;
+
+		if (variant == null) {
+			variant = MaterialProgramManager.INSTANCE.getOrCreateVariant(vertexShaderIndex, fragmentShaderIndex);
+		}
+	}
+
+	boolean isSpecialized() {
+		return variant != null;
+	}
+
+	void clearVariant() {
+		if (activeProgram == variant) {
+			activeProgram = null;
+		}
+
+		variant = null;
+	}
+
+	/**
+	 * @return Activations since the last call
+	 */
+	int sampleActivations() {
+		final int result = activations;
+		activations = 0;
+		return result;
 	}
 
 	public int getIndex() {
@@ -95,12 +187,28 @@ public final class MaterialShaderImpl {
 		if (program != null) {
 			program.onRenderTick();
 		}
+
+		if (instancedProgram != null) {
+			instancedProgram.onRenderTick();
+		}
+
+		if (variant != null) {
+			variant.onRenderTick();
+		}
 	}
 
 	public void onGameTick() {
 		if (program != null) {
 			program.onGameTick();
 		}
+
+		if (instancedProgram != null) {
+			instancedProgram.onGameTick();
+		}
+
+		if (variant != null) {
+			variant.onGameTick();
+		}
 	}
 
 	@Override
@@ -26,6 +26,7 @@ import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientTickEvents;
 
 import grondag.canvas.CanvasMod;
 import grondag.canvas.Configurator;
+import grondag.canvas.perf.ShaderVariantCounters;
 import grondag.fermion.sc.unordered.SimpleUnorderedArrayList;
 import grondag.fermion.varia.IndexedInterner;
 
@@ -115,8 +116,64 @@ public enum MaterialShaderManager implements ClientTickEvents.EndTick {
 		for (int i = 0; i < limit; i++) {
 			shaders.get(i).onRenderTick();
 		}
+
+		if (Configurator.shaderSpecialization) {
+			if (frameIndex % VARIANT_SAMPLE_FRAMES == 0) {
+				selectVariants();
+			}
+
+			MaterialProgramManager.INSTANCE.loadPendingVariant();
+		}
+
+		if (ShaderVariantCounters.ENABLED) {
+			ShaderVariantCounters.endFrame(MaterialProgramManager.INSTANCE.variantCount(), MaterialProgramManager.INSTANCE.pendingVariantCount());
+		}
 	}
 
+	/**
+	 * Requests specialized programs for the material shaders used most in the last sample.
+	 * Only shaders with uniform logic are candidates - with vertex logic a single draw can mix
+	 * material shaders.
+	 */
+	private synchronized void selectVariants() {
+		final int limit = shaders.size();
+		final int[] counts = new int[limit];
+		final boolean[] isSpecialized = new boolean[limit];
+
+		for (int i = 0; i < limit; i++) {
+			final MaterialShaderImpl shader = shaders.get(i);
+			final int count = shader.sampleActivations();
+
+			if (shader.programType == ProgramType.MATERIAL_UNIFORM_LOGIC) {
+				counts[i] = count;
+				isSpecialized[i] = shader.isSpecialized();
+			}
+		}
+
+		for (final int index : ShaderVariantSelector.select(counts, isSpecialized, Configurator.specializedShaderLimit, VARIANT_SAMPLE_FRAMES)) {
+			shaders.get(index).specialize();
+		}
+	}
+
+	/**
+	 * Drops references to specialized programs. Call only from {@link MaterialProgramManager#reloadVariants()}.
+	 */
+	synchronized void clearVariants() {
+		final int limit = shaders.size();
+
+		for (int i = 0; i < limit; i++) {
+			final MaterialShaderImpl shader = shaders.get(i);
+			shader.clearVariant();
+			shader.sampleActivations();
+		}
+	}
+
+	/**
+	 * Frames in each usage sample for choosing specialized programs. Shaders must average at least
+	 * one activation per frame to be chosen.
+	 */
+	private static final int VARIANT_SAMPLE_FRAMES = 120;
+
 	/** Tracks which vertex sub-shaders are in use by materials. */
 	public static final IntOpenHashSet VERTEX_INDEXES = new IntOpenHashSet();
 
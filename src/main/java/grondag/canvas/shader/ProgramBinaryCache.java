@@ -0,0 +1,279 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.shader;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.ARBGetProgramBinary;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL21;
+
+import net.fabricmc.loader.api.FabricLoader;
+
+import grondag.canvas.CanvasMod;
+import grondag.canvas.Configurator;
+import grondag.canvas.varia.CanvasGlHelper;
+
+/**
+ * Saves linked program binaries to disk and loads them in place of compiling and linking.
+ *
+ * <p>Binaries are only valid for the driver that created them, so each driver gets its own
+ * folder and folders for other drivers are removed. Within a folder, files are named
+ * by a hash of everything that goes into the program: processed source, attribute
+ * bindings and program type. Drivers may still reject a binary, for example after an
+ * update that doesn't change the version string. Rejected binaries are deleted and the
+ * program is compiled normally.
+ *
+ * <p>Render thread only.
+ */
+final class ProgramBinaryCache {
+	/** Change when anything affecting program binaries changes outside of shader source. */
+	private static final int FORMAT_VERSION = 1;
+	private static final int MAGIC = 0x43504243;
+
+	private static Path cacheDir = null;
+	private static boolean isCacheDirFailed = false;
+
+	private ProgramBinaryCache() {
+	}
+
+	static boolean isActive() {
+		return Configurator.programBinaryCache && CanvasGlHelper.supportsProgramBinary();
+	}
+
+	/**
+	 * @return Identifies the program for {@link #tryLoad(int, String)} and {@link #store(int, String)}, or null if not active
+	 */
+	static String key(Shader vertexShader, Shader fragmentShader, String attributeBindings, ProgramType programType) {
+		if (!isActive()) {
+			return null;
+		}
+
+		final MessageDigest digest = sha1();
+
+		if (digest == null) {
+			return null;
+		}
+
+		update(digest, Integer.toString(FORMAT_VERSION));
+		update(digest, programType.name);
+		update(digest, attributeBindings);
+		update(digest, vertexShader.getSource());
+		update(digest, fragmentShader.getSource());
+		return hex(digest.digest());
+	}
+
+	/**
+	 * Call on a newly created program before it is linked.
+	 */
+	static void prepareForStore(int programId) {
+		ARBGetProgramBinary.glProgramParameteri(programId, ARBGetProgramBinary.GL_PROGRAM_BINARY_RETRIEVABLE_HINT, GL11.GL_TRUE);
+	}
+
+	/**
+	 * Loads a saved binary into the given program, which must not have shaders attached.
+	 *
+	 * @return True if the program is linked and ready to use
+	 */
+	static boolean tryLoad(int programId, String key) {
+		final File file = file(key);
+
+		if (file == null || !file.exists()) {
+			return false;
+		}
+
+		boolean result = false;
+
+		try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+			if (in.readInt() == MAGIC) {
+				final int binaryFormat = in.readInt();
+				final int length = in.readInt();
+
+				if (length > 0 && length == file.length() - 12) {
+					final byte[] bytes = new byte[length];
+					in.readFully(bytes);
+					final ByteBuffer binary = BufferUtils.createByteBuffer(length);
+					binary.put(bytes).flip();
+					ARBGetProgramBinary.glProgramBinary(programId, binaryFormat, binary);
+					result = GL21.glGetProgrami(programId, GL21.GL_LINK_STATUS) == GL11.GL_TRUE;
+				}
+			}
+		} catch (final IOException e) {
+			CanvasMod.LOG.warn("Unable to read program binary cache file " + file.toString(), e);
+		}
+
+		if (!result) {
+			file.delete();
+		}
+
+		return result;
+	}
+
+	/**
+	 * Saves the binary of a successfully linked program.
+	 */
+	static void store(int programId, String key) {
+		final File file = file(key);
+
+		if (file == null) {
+			return;
+		}
+
+		final int length = GL21.glGetProgrami(programId, ARBGetProgramBinary.GL_PROGRAM_BINARY_LENGTH);
+
+		if (length <= 0) {
+			return;
+		}
+
+		final ByteBuffer binary = BufferUtils.createByteBuffer(length);
+		final IntBuffer lengthOut = BufferUtils.createIntBuffer(1);
+		final IntBuffer formatOut = BufferUtils.createIntBuffer(1);
+		ARBGetProgramBinary.glGetProgramBinary(programId, lengthOut, formatOut, binary);
+
+		final int actualLength = lengthOut.get(0);
+
+		if (actualLength <= 0) {
+			return;
+		}
+
+		final byte[] bytes = new byte[actualLength];
+		binary.get(bytes, 0, actualLength);
+
+		final File temp = new File(file.getParentFile(), file.getName() + ".tmp");
+
+		try (DataOutputStream out = new DataOutputStream(new FileOutputStream(temp))) {
+			out.writeInt(MAGIC);
+			out.writeInt(formatOut.get(0));
+			out.writeInt(actualLength);
+			out.write(bytes);
+		} catch (final IOException e) {
+			CanvasMod.LOG.warn("Unable to write program binary cache file " + file.toString(), e);
+			temp.delete();
+			return;
+		}
+
+		try {
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (final IOException e) {
+			CanvasMod.LOG.warn("Unable to write program binary cache file " + file.toString(), e);
+			temp.delete();
+		}
+	}
+
+	private static File file(String key) {
+		final Path dir = cacheDir();
+		return dir == null ? null : dir.resolve(key + ".bin").toFile();
+	}
+
+	private static Path cacheDir() {
+		if (cacheDir == null && !isCacheDirFailed) {
+			final Path root = FabricLoader.getInstance().getGameDirectory().toPath().normalize().resolve("canvas_program_cache");
+			final MessageDigest digest = sha1();
+
+			if (digest == null) {
+				isCacheDirFailed = true;
+				return null;
+			}
+
+			update(digest, GL11.glGetString(GL11.GL_VENDOR));
+			update(digest, GL11.glGetString(GL11.GL_RENDERER));
+			update(digest, GL11.glGetString(GL11.GL_VERSION));
+			final String driverName = hex(digest.digest());
+			final File rootDir = root.toFile();
+
+			// binaries from other drivers can never be used again
+			if (rootDir.exists()) {
+				final File[] files = rootDir.listFiles();
+
+				if (files != null) {
+					for (final File f : files) {
+						if (!f.getName().equals(driverName)) {
+							delete(f);
+						}
+					}
+				}
+			}
+
+			final File dir = root.resolve(driverName).toFile();
+
+			if (dir.exists() || dir.mkdirs()) {
+				cacheDir = dir.toPath();
+			} else {
+				CanvasMod.LOG.warn("Unable to create program binary cache folder " + dir.toString() + ". Programs will not be cached.");
+				isCacheDirFailed = true;
+			}
+		}
+
+		return cacheDir;
+	}
+
+	private static void delete(File file) {
+		if (file.isDirectory()) {
+			final File[] files = file.listFiles();
+
+			if (files != null) {
+				for (final File f : files) {
+					delete(f);
+				}
+			}
+		}
+
+		file.delete();
+	}
+
+	private static MessageDigest sha1() {
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		} catch (final NoSuchAlgorithmException e) {
+			CanvasMod.LOG.warn("Unable to hash program binaries. Programs will not be cached.", e);
+			return null;
+		}
+	}
+
+	private static void update(MessageDigest digest, String s) {
+		if (s != null) {
+			digest.update(s.getBytes(StandardCharsets.UTF_8));
+		}
+
+		// separator so adjacent inputs can't run together
+		digest.update((byte) 0);
+	}
+
+	private static String hex(byte[] bytes) {
+		final StringBuilder builder = new StringBuilder(bytes.length * 2);
+
+		for (final byte b : bytes) {
+			builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+
+		return builder.toString();
+	}
+}
@@ -19,6 +19,8 @@ package grondag.canvas.shader;
 public enum ProgramType {
 	MATERIAL_UNIFORM_LOGIC,
 	MATERIAL_VERTEX_LOGIC,
+	/** Like {@link #MATERIAL_UNIFORM_LOGIC} with per-instance transform, color and light. */
+	MATERIAL_INSTANCED,
 	PROCESS;
 
 	public final String name;
@@ -24,6 +24,22 @@ public interface Shader {
 	 */
 	void forceReload();
 
+	/**
+	 * Starts preparing shader source in the background so it is ready, or
+	 * nearly so, when the shader is first attached.
+	 */
+	void prepare();
+
+	/**
+	 * @return True if source is ready and attaching will not wait for it
+	 */
+	boolean isPrepared();
+
+	/**
+	 * @return Processed source ready for compilation
+	 */
+	String getSource();
+
 	/**
 	 * Binds this shader.
 	 *
@@ -34,11 +34,6 @@ public class ShaderData {
 	public static final Identifier MATERIAL_MAIN_VERTEX = new Identifier("canvas:shaders/internal/material_main.vert");
 	public static final Identifier MATERIAL_MAIN_FRAGMENT = new Identifier("canvas:shaders/internal/material_main.frag");
 
-	public static final String API_TARGET = "#include canvas:apitarget";
-	public static final String FRAGMENT_START = "#include canvas:startfragment";
-	public static final String VERTEX_START = "#include canvas:startvertex";
-	public static final String VEREX_END = "#include canvas:endvertex";
-
 	public static final Consumer<GlProgram> STANDARD_UNIFORM_SETUP = program -> {
 		program.uniformArrayf("_cvu_world", UniformRefreshFrequency.PER_TICK, u -> u.set(WorldDataManager.data()), WorldDataManager.LENGTH);
 
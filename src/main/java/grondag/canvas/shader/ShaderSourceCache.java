@@ -0,0 +1,132 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.shader;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.util.Identifier;
+
+import grondag.canvas.perf.ShaderLoadCounters;
+import grondag.canvas.shader.glsl.GlslDefines;
+import grondag.canvas.shader.glsl.GlslIncludeGraph;
+import grondag.canvas.shader.glsl.GlslPreprocessor;
+
+/**
+ * Caches shader source text so that shaders can be assembled off the render thread
+ * and in parallel, with repeated work done once.
+ *
+ * <p>Raw resource text and parsed includes are cached by id until the next renderer reload, because
+ * resource packs may have changed. Processed source is cached by content: the combined source text
+ * plus the key of the defines applied to it. It is retained across reloads, so an unchanged
+ * shader with unchanged configuration is not processed again.
+ */
+final class ShaderSourceCache {
+	private static final int MAX_PROCESSED = 256;
+
+	private static final ConcurrentHashMap<Identifier, String> RESOURCES = new ConcurrentHashMap<>();
+	private static final ConcurrentHashMap<ProcessedKey, String> PROCESSED = new ConcurrentHashMap<>();
+	private static final GlslIncludeGraph INCLUDES = new GlslIncludeGraph(id -> GlShader.loadShaderSource(MinecraftClient.getInstance().getResourceManager(), new Identifier(id)));
+
+	private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2)), new ThreadFactory() {
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable r) {
+			final Thread thread = new Thread(r, "Canvas Shader Source " + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	private ShaderSourceCache() {
+	}
+
+	static String resource(Identifier id, Function<Identifier, String> loader) {
+		return RESOURCES.computeIfAbsent(id, loader);
+	}
+
+	static GlslIncludeGraph includes() {
+		return INCLUDES;
+	}
+
+	static String processed(String combinedSource, GlslDefines defines) {
+		final ProcessedKey key = new ProcessedKey(combinedSource, defines.key());
+		String result = PROCESSED.get(key);
+
+		if (result == null) {
+			if (ShaderLoadCounters.ENABLED) ShaderLoadCounters.addSourceMiss();
+			result = GlslPreprocessor.process(combinedSource, defines);
+
+			if (PROCESSED.size() >= MAX_PROCESSED) {
+				PROCESSED.clear();
+			}
+
+			PROCESSED.put(key, result);
+		} else {
+			if (ShaderLoadCounters.ENABLED) ShaderLoadCounters.addSourceHit();
+		}
+
+		return result;
+	}
+
+	static CompletableFuture<String> submit(Supplier<String> task) {
+		return CompletableFuture.supplyAsync(task, EXECUTOR);
+	}
+
+	/**
+	 * Drops raw resource text and parsed includes so they are read again from current resource packs.
+	 */
+	static void reload() {
+		RESOURCES.clear();
+		INCLUDES.clear();
+	}
+
+	private static class ProcessedKey {
+		private final String source;
+		private final String variant;
+		private final int hashCode;
+
+		ProcessedKey(String source, String variant) {
+			this.source = source;
+			this.variant = variant;
+			hashCode = source.hashCode() * 31 + variant.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof ProcessedKey)) {
+				return false;
+			}
+
+			final ProcessedKey other = (ProcessedKey) obj;
+			return other.hashCode == hashCode && other.variant.equals(variant) && other.source.equals(source);
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+	}
+}
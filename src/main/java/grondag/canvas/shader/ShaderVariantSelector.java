@@ -0,0 +1,66 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.shader;
+
+import java.util.Arrays;
+
+/**
+ * Chooses which material shaders get a specialized program, based on how often each
+ * was activated in the last sample. Specialized programs are kept until the next
+ * reload, so only new choices are returned and the total never exceeds the limit.
+ *
+ * <p>Has no game dependencies so selection can be tested directly.
+ */
+public final class ShaderVariantSelector {
+	private ShaderVariantSelector() {
+	}
+
+	/**
+	 * @param counts activations in the last sample, by material shader index
+	 * @param isSpecialized true for material shader indexes that already have a specialized program
+	 * @param limit maximum number of specialized programs, including existing ones
+	 * @param minCount activations needed in the sample to be chosen
+	 * @return material shader indexes to specialize, most used first. Ties go to the lower index.
+	 */
+	public static int[] select(int[] counts, boolean[] isSpecialized, int limit, int minCount) {
+		int available = limit;
+		int candidateCount = 0;
+		final long[] candidates = new long[counts.length];
+
+		for (int i = 0; i < counts.length; ++i) {
+			if (isSpecialized[i]) {
+				--available;
+			} else if (counts[i] >= minCount && counts[i] > 0) {
+				// sort by count descending, then index ascending
+				candidates[candidateCount++] = ((long) (Integer.MAX_VALUE - counts[i]) << 32) | i;
+			}
+		}
+
+		if (available <= 0 || candidateCount == 0) {
+			return new int[0];
+		}
+
+		Arrays.sort(candidates, 0, candidateCount);
+		final int[] result = new int[Math.min(available, candidateCount)];
+
+		for (int i = 0; i < result.length; ++i) {
+			result[i] = (int) candidates[i];
+		}
+
+		return result;
+	}
+}
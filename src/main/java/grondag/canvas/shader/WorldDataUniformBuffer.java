@@ -0,0 +1,142 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.shader;
+
+import java.nio.ByteBuffer;
+
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.ARBUniformBufferObject;
+import org.lwjgl.opengl.GL15;
+
+import net.minecraft.client.MinecraftClient;
+
+import grondag.canvas.Configurator;
+import grondag.canvas.apiimpl.MaterialConditionImpl;
+import grondag.canvas.perf.UniformUploadCounters;
+import grondag.canvas.varia.CanvasGlHelper;
+import grondag.canvas.varia.WorldDataManager;
+
+/**
+ * Uniform buffer holding world data and condition flags, uploaded once per frame and
+ * shared by all material programs. Replaces the per-program {@code _cvu_world},
+ * {@code _cvu_world_flags} and {@code _cvu_condition_flags} uniforms when supported.
+ *
+ * <p>Layout is std140 and must match the {@code _cvu_world_block} declaration in
+ * {@code canvas:shaders/internal/world.glsl}. Scalar array elements are padded to 16 bytes.
+ */
+public final class WorldDataUniformBuffer {
+	public static final String BLOCK_NAME = "_cvu_world_block";
+	private static final int BINDING = 0;
+	private static final int ARRAY_STRIDE = 16;
+	private static final int WORLD_FLAGS_OFFSET = WorldDataManager.LENGTH * ARRAY_STRIDE;
+	private static final int CONDITION_FLAGS_OFFSET = WORLD_FLAGS_OFFSET + ARRAY_STRIDE;
+	private static final int SIZE_BYTES = CONDITION_FLAGS_OFFSET + MaterialConditionImpl.CONDITION_FLAG_ARRAY_LENGTH * ARRAY_STRIDE;
+
+	private static final ByteBuffer DATA = BufferUtils.createByteBuffer(SIZE_BYTES);
+	private static int bufferId = -1;
+	private static boolean isActive = false;
+
+	private WorldDataUniformBuffer() {
+	}
+
+	/**
+	 * True when shaders should declare the uniform block instead of individual uniforms.
+	 * Fixed until the next reload so shader source and programs stay consistent.
+	 */
+	public static boolean isActive() {
+		return isActive;
+	}
+
+	/**
+	 * True for uniforms that are part of the shared block while it is active,
+	 * so programs don't look them up or upload them individually.
+	 */
+	static boolean isBlockMember(String uniformName) {
+		return isActive && ("_cvu_world".equals(uniformName) || "_cvu_world_flags".equals(uniformName) || "_cvu_condition_flags".equals(uniformName));
+	}
+
+	public static void reload() {
+		if (bufferId != -1) {
+			GL15.glDeleteBuffers(bufferId);
+			bufferId = -1;
+		}
+
+		// mac shaders remain on GLSL 1.20 without uint support
+		isActive = Configurator.worldDataUniformBuffer && CanvasGlHelper.supportsUniformBuffers() && !MinecraftClient.IS_SYSTEM_MAC;
+	}
+
+	private static void ensureBuffer() {
+		if (bufferId == -1) {
+			bufferId = GL15.glGenBuffers();
+			GL15.glBindBuffer(ARBUniformBufferObject.GL_UNIFORM_BUFFER, bufferId);
+			GL15.glBufferData(ARBUniformBufferObject.GL_UNIFORM_BUFFER, SIZE_BYTES, GL15.GL_DYNAMIC_DRAW);
+			GL15.glBindBuffer(ARBUniformBufferObject.GL_UNIFORM_BUFFER, 0);
+			ARBUniformBufferObject.glBindBufferBase(ARBUniformBufferObject.GL_UNIFORM_BUFFER, BINDING, bufferId);
+		}
+	}
+
+	/**
+	 * Connects the uniform block of a newly linked program to the shared buffer.
+	 */
+	static void bindProgram(int programId) {
+		if (!isActive) {
+			return;
+		}
+
+		ensureBuffer();
+		final int blockIndex = ARBUniformBufferObject.glGetUniformBlockIndex(programId, BLOCK_NAME);
+
+		if (blockIndex != ARBUniformBufferObject.GL_INVALID_INDEX) {
+			ARBUniformBufferObject.glUniformBlockBinding(programId, blockIndex, BINDING);
+		}
+	}
+
+	/**
+	 * Call once per frame after world data and material conditions are updated.
+	 */
+	public static void update() {
+		if (!isActive) {
+			return;
+		}
+
+		ensureBuffer();
+
+		final ByteBuffer data = DATA;
+		final float[] world = WorldDataManager.data();
+
+		for (int i = 0; i < WorldDataManager.LENGTH; ++i) {
+			data.putFloat(i * ARRAY_STRIDE, world[i]);
+		}
+
+		data.putInt(WORLD_FLAGS_OFFSET, WorldDataManager.flags());
+
+		for (int i = 0; i < MaterialConditionImpl.CONDITION_FLAG_ARRAY_LENGTH; ++i) {
+			data.putInt(CONDITION_FLAGS_OFFSET + i * ARRAY_STRIDE, MaterialConditionImpl.CONDITION_FLAGS[i]);
+		}
+
+		GL15.glBindBuffer(ARBUniformBufferObject.GL_UNIFORM_BUFFER, bufferId);
+		GL15.glBufferSubData(ARBUniformBufferObject.GL_UNIFORM_BUFFER, 0, data);
+		GL15.glBindBuffer(ARBUniformBufferObject.GL_UNIFORM_BUFFER, 0);
+
+		// rebound each frame in case another mod used the same binding point
+		ARBUniformBufferObject.glBindBufferBase(ARBUniformBufferObject.GL_UNIFORM_BUFFER, BINDING, bufferId);
+
+		if (UniformUploadCounters.ENABLED) {
+			UniformUploadCounters.addBufferUpload();
+		}
+	}
+}
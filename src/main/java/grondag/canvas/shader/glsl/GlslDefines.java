@@ -0,0 +1,131 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.shader.glsl;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Configuration applied to shader source by {@link GlslPreprocessor}.
+ *
+ * <p>Defines set here replace any definition of the same name in source, and names
+ * set as undefined are removed from source. The same applies to extensions. A define
+ * only needs to be set here when configuration controls it - other defines in source
+ * are left as they are.
+ */
+public class GlslDefines {
+	private int version = -1;
+	private final TreeMap<String, String> extensions = new TreeMap<>();
+	private final TreeMap<String, String> defines = new TreeMap<>();
+	private String key = null;
+
+	/**
+	 * Replaces the version in the source {@code #version} directive.
+	 */
+	public GlslDefines version(int version) {
+		this.version = version;
+		key = null;
+		return this;
+	}
+
+	/**
+	 * @param behavior Extension behavior, for example "require". Null removes the extension.
+	 */
+	public GlslDefines extension(String name, String behavior) {
+		extensions.put(name, behavior);
+		key = null;
+		return this;
+	}
+
+	public GlslDefines define(String name) {
+		return define(name, "");
+	}
+
+	public GlslDefines define(String name, int value) {
+		return define(name, Integer.toString(value));
+	}
+
+	public GlslDefines define(String name, String value) {
+		defines.put(name, value);
+		key = null;
+		return this;
+	}
+
+	public GlslDefines undefine(String name) {
+		defines.put(name, null);
+		key = null;
+		return this;
+	}
+
+	/**
+	 * Sets or removes a flag define.
+	 */
+	public GlslDefines flag(String name, boolean isDefined) {
+		return isDefined ? define(name) : undefine(name);
+	}
+
+	int version() {
+		return version;
+	}
+
+	/** Null values are removed extensions. */
+	Map<String, String> extensions() {
+		return extensions;
+	}
+
+	/** Null values are undefined names. */
+	Map<String, String> defines() {
+		return defines;
+	}
+
+	/**
+	 * Identifies this configuration. Two instances with the same key produce
+	 * the same output for the same source.
+	 */
+	public String key() {
+		String result = key;
+
+		if (result == null) {
+			final StringBuilder builder = new StringBuilder();
+			builder.append(version);
+
+			for (final Map.Entry<String, String> e : extensions.entrySet()) {
+				builder.append("|#").append(e.getKey()).append(':').append(e.getValue() == null ? "-" : e.getValue());
+			}
+
+			for (final Map.Entry<String, String> e : defines.entrySet()) {
+				builder.append('|').append(e.getKey());
+
+				if (e.getValue() == null) {
+					builder.append('-');
+				} else {
+					builder.append('=').append(e.getValue());
+				}
+			}
+
+			result = builder.toString();
+			key = result;
+		}
+
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return key();
+	}
+}
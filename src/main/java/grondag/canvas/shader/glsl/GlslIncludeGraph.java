@@ -0,0 +1,181 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.shader.glsl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Resolves {@code #include} directives. Each file is loaded and split at its
+ * includes once, and the result is kept until {@link #clear()}. Resolving
+ * a shader then only walks the graph and appends text.
+ *
+ * <p>As with the C preprocessor {@code #pragma once}, each file is included
+ * at its first reference only and later references are removed.
+ *
+ * <p>Include ids must have a namespace, for example {@code canvas:shaders/internal/header.glsl},
+ * and may be quoted. Lines that don't have that form are left in source.
+ *
+ * <p>Thread-safe.
+ */
+public class GlslIncludeGraph {
+	private static final String INCLUDE = "#include";
+
+	private final Function<String, String> loader;
+	private final ConcurrentHashMap<String, Node> nodes = new ConcurrentHashMap<>();
+
+	/**
+	 * @param loader returns source for an include id, or null if not found
+	 */
+	public GlslIncludeGraph(Function<String, String> loader) {
+		this.loader = loader;
+	}
+
+	/**
+	 * @return Source with all includes replaced by the source they reference
+	 */
+	public String resolve(String source) {
+		final Node root = parse(source);
+		final StringBuilder builder = new StringBuilder(source.length() * 8);
+		append(root, builder, new HashSet<>());
+		return builder.toString();
+	}
+
+	/**
+	 * @return Ids directly included by the given file, in order
+	 */
+	public List<String> includes(String id) {
+		return Collections.unmodifiableList(Arrays.asList(node(id).includes));
+	}
+
+	/**
+	 * @return Ids included by the given file, directly or indirectly, in the order they are resolved
+	 */
+	public Set<String> dependencies(String id) {
+		final LinkedHashSet<String> result = new LinkedHashSet<>();
+		collect(node(id), result);
+		return result;
+	}
+
+	public void clear() {
+		nodes.clear();
+	}
+
+	private void collect(Node node, Set<String> result) {
+		for (final String id : node.includes) {
+			if (result.add(id)) {
+				collect(node(id), result);
+			}
+		}
+	}
+
+	private void append(Node node, StringBuilder builder, Set<String> included) {
+		final int limit = node.includes.length;
+
+		for (int i = 0; i < limit; ++i) {
+			builder.append(node.text[i]);
+			final String id = node.includes[i];
+
+			if (included.add(id)) {
+				append(node(id), builder, included);
+			}
+		}
+
+		builder.append(node.text[limit]);
+	}
+
+	private Node node(String id) {
+		return nodes.computeIfAbsent(id, k -> {
+			final String source = loader.apply(k);
+			return parse(source == null ? "" : source);
+		});
+	}
+
+	private static Node parse(String source) {
+		final ArrayList<String> text = new ArrayList<>();
+		final ArrayList<String> includes = new ArrayList<>();
+		final int length = source.length();
+		int segmentStart = 0;
+		int lineStart = 0;
+
+		while (lineStart < length) {
+			int lineEnd = source.indexOf('\n', lineStart);
+
+			if (lineEnd == -1) {
+				lineEnd = length;
+			}
+
+			final String id = includeId(source, lineStart, lineEnd);
+
+			if (id != null) {
+				// the line break stays in source after the included text
+				text.add(source.substring(segmentStart, lineStart));
+				includes.add(id);
+				segmentStart = lineEnd;
+			}
+
+			lineStart = lineEnd + 1;
+		}
+
+		text.add(source.substring(segmentStart));
+		return new Node(text.toArray(new String[text.size()]), includes.toArray(new String[includes.size()]));
+	}
+
+	private static String includeId(String source, int lineStart, int lineEnd) {
+		if (!source.startsWith(INCLUDE, lineStart)) {
+			return null;
+		}
+
+		int start = lineStart + INCLUDE.length();
+
+		if (start >= lineEnd || !Character.isWhitespace(source.charAt(start))) {
+			return null;
+		}
+
+		while (start < lineEnd && Character.isWhitespace(source.charAt(start))) {
+			++start;
+		}
+
+		int end = start;
+
+		while (end < lineEnd && !Character.isWhitespace(source.charAt(end))) {
+			++end;
+		}
+
+		final String id = source.substring(start, end).replace("\"", "");
+		final int colon = id.indexOf(':');
+		return colon > 0 && colon < id.length() - 1 ? id : null;
+	}
+
+	private static class Node {
+		/** Text before each include, and after the last. Always one longer than includes. */
+		private final String[] text;
+		private final String[] includes;
+
+		private Node(String[] text, String[] includes) {
+			this.text = text;
+			this.includes = includes;
+		}
+	}
+}
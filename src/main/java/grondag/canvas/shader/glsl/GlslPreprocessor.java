@@ -0,0 +1,827 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.shader.glsl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Applies {@link GlslDefines} to shader source with includes already resolved
+ * and removes conditional branches that can never compile.
+ *
+ * <p>Source is processed in one pass, line by line. Directives are recognized
+ * outside of comments only. Configured defines and extensions are emitted once,
+ * right after {@code #version}, and any directive in source for the same name is removed.
+ *
+ * <p>Conditional branches are only removed when the condition can be decided here.
+ * A condition is left for the driver when it references a name with an unknown value:
+ * names reserved for the driver ({@code GL_} and {@code __} prefixes other than {@code __VERSION__}),
+ * undefined names, function-like macros or macros defined inside another
+ * undecided branch. Output is then identical to what the driver would see.
+ *
+ * <p>Has no game dependencies and is safe to call from any thread.
+ */
+public final class GlslPreprocessor {
+	/** Value of a macro whose definition depends on an undecided condition. */
+	private static final String UNKNOWN = new String("<unknown>");
+
+	/** Marks function-like macros, which are never expanded here. */
+	private static final String FUNCTION = new String("<function>");
+
+	private GlslPreprocessor() {
+	}
+
+	public static String process(String source, GlslDefines defines) {
+		return new Pass(defines).run(source);
+	}
+
+	private static class Frame {
+		/** Lines in the enclosing branch are emitted. */
+		private final boolean parentActive;
+		/** Lines in the current branch are emitted. */
+		private boolean active;
+		/** A branch in this chain was known to be taken, so remaining branches are dead. */
+		private boolean taken;
+		/** Conditional directives for this chain are kept in output. */
+		private boolean verbatim;
+
+		private Frame(boolean parentActive) {
+			this.parentActive = parentActive;
+		}
+	}
+
+	private static class Pass {
+		private final GlslDefines defines;
+		private final HashMap<String, String> macros = new HashMap<>();
+		private final ArrayList<Frame> frames = new ArrayList<>();
+		private StringBuilder output;
+		private boolean isHeaderEmitted = false;
+		private boolean inBlockComment = false;
+		private int verbatimDepth = 0;
+
+		private Pass(GlslDefines defines) {
+			this.defines = defines;
+
+			for (final Map.Entry<String, String> e : defines.defines().entrySet()) {
+				if (e.getValue() != null) {
+					macros.put(e.getKey(), e.getValue());
+				}
+			}
+		}
+
+		private String run(String source) {
+			final int length = source.length();
+			output = new StringBuilder(length);
+			int lineStart = 0;
+
+			while (lineStart < length) {
+				int lineEnd = source.indexOf('\n', lineStart);
+
+				if (lineEnd == -1) {
+					lineEnd = length;
+				}
+
+				final boolean isDirective = !inBlockComment && isDirective(source, lineStart, lineEnd);
+
+				if (isDirective) {
+					// join continued lines
+					while (lineEnd < length && lineEnd > lineStart && source.charAt(lastChar(source, lineStart, lineEnd)) == '\\') {
+						final int next = source.indexOf('\n', lineEnd + 1);
+						lineEnd = next == -1 ? length : next;
+					}
+				}
+
+				final String line = source.substring(lineStart, lineEnd);
+				updateBlockComment(line);
+
+				if (isDirective) {
+					directive(line);
+				} else if (isActive()) {
+					emit(line);
+				}
+
+				lineStart = lineEnd + 1;
+			}
+
+			if (!isHeaderEmitted) {
+				final StringBuilder header = new StringBuilder();
+				appendHeader(header);
+				output.insert(0, header);
+			}
+
+			return output.toString();
+		}
+
+		private boolean isActive() {
+			final int size = frames.size();
+
+			if (size == 0) {
+				return true;
+			}
+
+			final Frame f = frames.get(size - 1);
+			return f.parentActive && f.active;
+		}
+
+		private void emit(String line) {
+			output.append(line).append('\n');
+		}
+
+		private void directive(String line) {
+			final int hash = line.indexOf('#');
+			int nameEnd = hash + 1;
+
+			while (nameEnd < line.length() && Character.isWhitespace(line.charAt(nameEnd))) {
+				++nameEnd;
+			}
+
+			final int nameStart = nameEnd;
+
+			while (nameEnd < line.length() && Character.isLetter(line.charAt(nameEnd))) {
+				++nameEnd;
+			}
+
+			final String name = line.substring(nameStart, nameEnd);
+			final String args = stripComments(line.substring(nameEnd)).trim();
+
+			switch (name) {
+				case "if":
+				case "ifdef":
+				case "ifndef":
+					beginIf(line, name, args);
+					return;
+				case "elif":
+					elif(line, args);
+					return;
+				case "else":
+					elseBranch(line);
+					return;
+				case "endif":
+					endif(line);
+					return;
+				default:
+					break;
+			}
+
+			if (!isActive()) {
+				return;
+			}
+
+			switch (name) {
+				case "version":
+					version(line, args);
+					break;
+				case "extension":
+					extension(line, args);
+					break;
+				case "define":
+					define(line, args);
+					break;
+				case "undef":
+					undef(line, args);
+					break;
+				default:
+					emit(line);
+					break;
+			}
+		}
+
+		private void beginIf(String line, String name, String args) {
+			final boolean parentActive = isActive();
+			final Frame f = new Frame(parentActive);
+			frames.add(f);
+
+			if (!parentActive) {
+				return;
+			}
+
+			final Boolean value;
+
+			if (name.equals("if")) {
+				value = evaluate(args);
+			} else {
+				final Boolean isDefined = isDefined(identifier(args));
+				value = isDefined == null ? null : name.equals("ifdef") == isDefined;
+			}
+
+			if (value == null) {
+				f.verbatim = true;
+				f.active = true;
+				++verbatimDepth;
+				emit(line);
+			} else {
+				f.active = value;
+				f.taken = value;
+			}
+		}
+
+		private void elif(String line, String args) {
+			final Frame f = top();
+
+			if (f == null) {
+				emit(line);
+				return;
+			}
+
+			if (!f.parentActive || f.taken) {
+				f.active = false;
+				return;
+			}
+
+			final Boolean value = evaluate(args);
+
+			if (f.verbatim) {
+				if (value == null) {
+					f.active = true;
+					emit(line);
+				} else if (value) {
+					// remaining branches are dead
+					f.active = true;
+					f.taken = true;
+					emit(indent(line) + "#else");
+				} else {
+					f.active = false;
+				}
+			} else if (value == null) {
+				// all earlier branches were dead so this one starts the chain
+				f.verbatim = true;
+				f.active = true;
+				++verbatimDepth;
+				emit(indent(line) + "#if " + args);
+			} else {
+				f.active = value;
+				f.taken = value;
+			}
+		}
+
+		private void elseBranch(String line) {
+			final Frame f = top();
+
+			if (f == null) {
+				emit(line);
+				return;
+			}
+
+			if (!f.parentActive || f.taken) {
+				f.active = false;
+			} else {
+				f.active = true;
+				f.taken = true;
+
+				if (f.verbatim) {
+					emit(line);
+				}
+			}
+		}
+
+		private void endif(String line) {
+			final Frame f = top();
+
+			if (f == null) {
+				emit(line);
+				return;
+			}
+
+			frames.remove(frames.size() - 1);
+
+			if (f.verbatim) {
+				--verbatimDepth;
+				emit(line);
+			}
+		}
+
+		private Frame top() {
+			final int size = frames.size();
+			return size == 0 ? null : frames.get(size - 1);
+		}
+
+		private void version(String line, String args) {
+			int end = 0;
+
+			while (end < args.length() && Character.isDigit(args.charAt(end))) {
+				++end;
+			}
+
+			final int version = defines.version();
+
+			if (version > 0) {
+				emit(indent(line) + "#version " + version + args.substring(end));
+				macros.put("__VERSION__", Integer.toString(version));
+			} else {
+				emit(line);
+
+				if (end > 0) {
+					macros.put("__VERSION__", args.substring(0, end));
+				}
+			}
+
+			if (!isHeaderEmitted) {
+				appendHeader(output);
+			}
+		}
+
+		private void appendHeader(StringBuilder builder) {
+			isHeaderEmitted = true;
+
+			for (final Map.Entry<String, String> e : defines.extensions().entrySet()) {
+				if (e.getValue() != null) {
+					builder.append("#extension ").append(e.getKey()).append(" : ").append(e.getValue()).append('\n');
+				}
+			}
+
+			for (final Map.Entry<String, String> e : defines.defines().entrySet()) {
+				if (e.getValue() != null) {
+					builder.append("#define ").append(e.getKey());
+
+					if (!e.getValue().isEmpty()) {
+						builder.append(' ').append(e.getValue());
+					}
+
+					builder.append('\n');
+				}
+			}
+		}
+
+		private void extension(String line, String args) {
+			final int colon = args.indexOf(':');
+			final String name = (colon == -1 ? args : args.substring(0, colon)).trim();
+
+			// configured extensions are in the header
+			if (!defines.extensions().containsKey(name)) {
+				emit(line);
+			}
+		}
+
+		private void define(String line, String args) {
+			final String name = identifier(args);
+
+			// configured defines are in the header
+			if (defines.defines().containsKey(name)) {
+				return;
+			}
+
+			if (!name.isEmpty()) {
+				if (verbatimDepth > 0) {
+					macros.put(name, UNKNOWN);
+				} else if (args.length() > name.length() && args.charAt(name.length()) == '(') {
+					macros.put(name, FUNCTION);
+				} else {
+					macros.put(name, args.substring(name.length()).trim());
+				}
+			}
+
+			emit(line);
+		}
+
+		private void undef(String line, String args) {
+			final String name = identifier(args);
+
+			if (defines.defines().containsKey(name)) {
+				return;
+			}
+
+			if (verbatimDepth > 0) {
+				macros.put(name, UNKNOWN);
+			} else {
+				macros.remove(name);
+			}
+
+			emit(line);
+		}
+
+		/**
+		 * @return True or false if known, null if the driver must decide
+		 */
+		private Boolean isDefined(String name) {
+			final String value = macros.get(name);
+
+			if (value == null) {
+				return name.isEmpty() || isReserved(name) ? null : Boolean.FALSE;
+			}
+
+			return value == UNKNOWN ? null : Boolean.TRUE;
+		}
+
+		private Boolean evaluate(String expression) {
+			final List<String> tokens = expand(tokenize(expression), new HashSet<>());
+
+			if (tokens == null) {
+				return null;
+			}
+
+			final ExpressionParser parser = new ExpressionParser(tokens);
+			final Long value = parser.parse();
+			return value == null ? null : value != 0;
+		}
+
+		/**
+		 * Replaces macros with their values and {@code defined} with 0 or 1.
+		 * Null if any part has an unknown value.
+		 */
+		private List<String> expand(List<String> tokens, Set<String> expanding) {
+			if (tokens == null) {
+				return null;
+			}
+
+			final ArrayList<String> result = new ArrayList<>();
+			final int limit = tokens.size();
+
+			for (int i = 0; i < limit; ++i) {
+				final String token = tokens.get(i);
+
+				if (token.equals("defined")) {
+					String name = i + 1 < limit ? tokens.get(++i) : "";
+
+					if (name.equals("(")) {
+						name = i + 1 < limit ? tokens.get(++i) : "";
+
+						if (i + 1 >= limit || !tokens.get(++i).equals(")")) {
+							return null;
+						}
+					}
+
+					final Boolean isDefined = isIdentifier(name) ? isDefined(name) : null;
+
+					if (isDefined == null) {
+						return null;
+					}
+
+					result.add(isDefined ? "1" : "0");
+				} else if (isIdentifier(token)) {
+					final String value = macros.get(token);
+
+					// undefined names are an error in GLSL conditions - let the driver report it
+					if (value == null || value == UNKNOWN || value == FUNCTION || expanding.contains(token)) {
+						return null;
+					}
+
+					expanding.add(token);
+					final List<String> expanded = expand(tokenize(value), expanding);
+					expanding.remove(token);
+
+					if (expanded == null) {
+						return null;
+					}
+
+					result.addAll(expanded);
+				} else {
+					result.add(token);
+				}
+			}
+
+			return result;
+		}
+
+		private void updateBlockComment(String line) {
+			final int length = line.length();
+			int i = 0;
+
+			while (i < length) {
+				if (inBlockComment) {
+					final int end = line.indexOf("*/", i);
+
+					if (end == -1) {
+						return;
+					}
+
+					inBlockComment = false;
+					i = end + 2;
+				} else {
+					final int lineComment = line.indexOf("//", i);
+					final int blockComment = line.indexOf("/*", i);
+
+					if (blockComment == -1 || (lineComment != -1 && lineComment < blockComment)) {
+						return;
+					}
+
+					inBlockComment = true;
+					i = blockComment + 2;
+				}
+			}
+		}
+	}
+
+	private static boolean isDirective(String source, int start, int end) {
+		for (int i = start; i < end; ++i) {
+			final char c = source.charAt(i);
+
+			if (c == '#') {
+				return true;
+			} else if (!Character.isWhitespace(c)) {
+				return false;
+			}
+		}
+
+		return false;
+	}
+
+	private static int lastChar(String source, int start, int end) {
+		int i = end - 1;
+
+		while (i > start && source.charAt(i) == '\r') {
+			--i;
+		}
+
+		return i;
+	}
+
+	private static String indent(String line) {
+		return line.substring(0, line.indexOf('#'));
+	}
+
+	private static boolean isReserved(String name) {
+		return name.startsWith("GL_") || name.startsWith("__");
+	}
+
+	private static boolean isIdentifier(String token) {
+		return !token.isEmpty() && (Character.isLetter(token.charAt(0)) || token.charAt(0) == '_');
+	}
+
+	/** Leading identifier, or empty string. */
+	private static String identifier(String text) {
+		int end = 0;
+
+		while (end < text.length() && (Character.isLetterOrDigit(text.charAt(end)) || text.charAt(end) == '_')) {
+			++end;
+		}
+
+		return text.substring(0, end);
+	}
+
+	private static String stripComments(String text) {
+		final StringBuilder builder = new StringBuilder(text.length());
+		final int length = text.length();
+		int i = 0;
+
+		while (i < length) {
+			if (text.startsWith("//", i)) {
+				break;
+			} else if (text.startsWith("/*", i)) {
+				final int end = text.indexOf("*/", i + 2);
+
+				if (end == -1) {
+					break;
+				}
+
+				builder.append(' ');
+				i = end + 2;
+			} else {
+				final char c = text.charAt(i++);
+
+				// line continuations
+				if (c != '\\' && c != '\r' && c != '\n') {
+					builder.append(c);
+				} else {
+					builder.append(' ');
+				}
+			}
+		}
+
+		return builder.toString();
+	}
+
+	/** Null if the expression has characters that can't appear in a condition. */
+	static List<String> tokenize(String expression) {
+		final ArrayList<String> tokens = new ArrayList<>();
+		final int length = expression.length();
+		int i = 0;
+
+		while (i < length) {
+			final char c = expression.charAt(i);
+
+			if (Character.isWhitespace(c)) {
+				++i;
+			} else if (Character.isLetterOrDigit(c) || c == '_') {
+				final int start = i;
+
+				while (i < length && (Character.isLetterOrDigit(expression.charAt(i)) || expression.charAt(i) == '_')) {
+					++i;
+				}
+
+				tokens.add(expression.substring(start, i));
+			} else if (i + 1 < length && isTwoCharOperator(c, expression.charAt(i + 1))) {
+				tokens.add(expression.substring(i, i + 2));
+				i += 2;
+			} else if ("()!~-+*/%<>&^|".indexOf(c) != -1) {
+				tokens.add(String.valueOf(c));
+				++i;
+			} else {
+				return null;
+			}
+		}
+
+		return tokens;
+	}
+
+	private static boolean isTwoCharOperator(char a, char b) {
+		switch (a) {
+			case '<':
+				return b == '<' || b == '=';
+			case '>':
+				return b == '>' || b == '=';
+			case '=':
+			case '!':
+				return b == '=';
+			case '&':
+				return b == '&';
+			case '|':
+				return b == '|';
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * Evaluates integer expressions with C precedence. Any error gives a null result.
+	 */
+	private static class ExpressionParser {
+		private final List<String> tokens;
+		private int pos = 0;
+		private boolean failed = false;
+
+		private ExpressionParser(List<String> tokens) {
+			this.tokens = tokens;
+		}
+
+		private Long parse() {
+			if (tokens.isEmpty()) {
+				return null;
+			}
+
+			final long result = binary(0);
+			return failed || pos != tokens.size() ? null : result;
+		}
+
+		private static int precedence(String op) {
+			switch (op) {
+				case "||":
+					return 1;
+				case "&&":
+					return 2;
+				case "|":
+					return 3;
+				case "^":
+					return 4;
+				case "&":
+					return 5;
+				case "==":
+				case "!=":
+					return 6;
+				case "<":
+				case ">":
+				case "<=":
+				case ">=":
+					return 7;
+				case "<<":
+				case ">>":
+					return 8;
+				case "+":
+				case "-":
+					return 9;
+				case "*":
+				case "/":
+				case "%":
+					return 10;
+				default:
+					return -1;
+			}
+		}
+
+		private long binary(int minPrecedence) {
+			long left = unary();
+
+			while (!failed && pos < tokens.size()) {
+				final String op = tokens.get(pos);
+				final int precedence = precedence(op);
+
+				if (precedence < 0 || precedence < minPrecedence) {
+					break;
+				}
+
+				++pos;
+				final long right = binary(precedence + 1);
+				left = apply(op, left, right);
+			}
+
+			return left;
+		}
+
+		private long apply(String op, long a, long b) {
+			switch (op) {
+				case "||":
+					return a != 0 || b != 0 ? 1 : 0;
+				case "&&":
+					return a != 0 && b != 0 ? 1 : 0;
+				case "|":
+					return a | b;
+				case "^":
+					return a ^ b;
+				case "&":
+					return a & b;
+				case "==":
+					return a == b ? 1 : 0;
+				case "!=":
+					return a != b ? 1 : 0;
+				case "<":
+					return a < b ? 1 : 0;
+				case ">":
+					return a > b ? 1 : 0;
+				case "<=":
+					return a <= b ? 1 : 0;
+				case ">=":
+					return a >= b ? 1 : 0;
+				case "<<":
+					return a << b;
+				case ">>":
+					return a >> b;
+				case "+":
+					return a + b;
+				case "-":
+					return a - b;
+				case "*":
+					return a * b;
+				case "/":
+				case "%":
+					if (b == 0) {
+						failed = true;
+						return 0;
+					}
+
+					return op.equals("/") ? a / b : a % b;
+				default:
+					failed = true;
+					return 0;
+			}
+		}
+
+		private long unary() {
+			if (pos >= tokens.size()) {
+				failed = true;
+				return 0;
+			}
+
+			final String token = tokens.get(pos++);
+
+			switch (token) {
+				case "!":
+					return unary() == 0 ? 1 : 0;
+				case "~":
+					return ~unary();
+				case "-":
+					return -unary();
+				case "+":
+					return unary();
+				case "(": {
+					final long result = binary(0);
+
+					if (pos >= tokens.size() || !tokens.get(pos++).equals(")")) {
+						failed = true;
+					}
+
+					return result;
+				}
+				default:
+					return number(token);
+			}
+		}
+
+		private long number(String token) {
+			String digits = token;
+
+			if (digits.endsWith("u") || digits.endsWith("U")) {
+				digits = digits.substring(0, digits.length() - 1);
+			}
+
+			try {
+				if (digits.startsWith("0x") || digits.startsWith("0X")) {
+					return Long.parseLong(digits.substring(2), 16);
+				} else if (digits.length() > 1 && digits.charAt(0) == '0') {
+					return Long.parseLong(digits.substring(1), 8);
+				} else {
+					return Long.parseLong(digits);
+				}
+			} catch (final NumberFormatException e) {
+				failed = true;
+				return 0;
+			}
+		}
+	}
+}
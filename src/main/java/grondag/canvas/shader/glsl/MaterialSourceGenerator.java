@@ -0,0 +1,196 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.shader.glsl;
+
+import java.util.function.IntFunction;
+
+/**
+ * Inserts material shader source into the main material vertex and fragment shaders.
+ *
+ * <p>When more than one material shader is included, each one's entry points are renamed
+ * with its index and calls are dispatched on {@code cv_programId}. When only one is
+ * included, as for a program specialized to a single material shader, entry points are
+ * called directly with no dispatch.
+ *
+ * <p>Has no game dependencies so generated source can be tested directly.
+ */
+public final class MaterialSourceGenerator {
+	public static final String API_TARGET = "#include canvas:apitarget";
+	public static final String FRAGMENT_START = "#include canvas:startfragment";
+	public static final String VERTEX_START = "#include canvas:startvertex";
+	public static final String VERTEX_END = "#include canvas:endvertex";
+
+	private static final String NOOP = "\t// NOOP";
+
+	private MaterialSourceGenerator() {
+	}
+
+	/**
+	 * @param baseSource main vertex source with insertion points
+	 * @param indexes material vertex shader indexes to include
+	 * @param sources source for a material vertex shader index
+	 * @param useSwitch dispatch with a switch statement instead of an if-else chain. Needs GLSL 130.
+	 */
+	public static String vertex(String baseSource, int[] indexes, IntFunction<String> sources, boolean useSwitch) {
+		final String starts;
+		final String ends;
+		final String impl;
+		final int limit = indexes.length;
+
+		if (limit == 0) {
+			starts = NOOP;
+			ends = NOOP;
+			impl = NOOP;
+		} else if (limit == 1) {
+			impl = sources.apply(indexes[0]);
+			starts = impl.contains("frx_startVertex") ? "\tfrx_startVertex(data);" : NOOP;
+			ends = impl.contains("frx_endVertex") ? "\tfrx_endVertex(data);" : NOOP;
+		} else {
+			final Dispatch startDispatch = new Dispatch(useSwitch, limit);
+			final Dispatch endDispatch = new Dispatch(useSwitch, limit);
+			final StringBuilder implBuilder = new StringBuilder();
+
+			for (int i = 0; i < limit; ++i) {
+				final int index = indexes[i];
+				String src = sources.apply(index);
+
+				if (src.contains("frx_startVertex")) {
+					startDispatch.add(i, index, "frx_startVertex" + index + "(data);");
+					src = src.replace("frx_startVertex", "frx_startVertex" + index);
+				} else {
+					startDispatch.add(i, index, null);
+				}
+
+				if (src.contains("frx_endVertex")) {
+					endDispatch.add(i, index, "frx_endVertex" + index + "(data);");
+					src = src.replace("frx_endVertex", "frx_endVertex" + index);
+				} else {
+					endDispatch.add(i, index, null);
+				}
+
+				implBuilder.append(src);
+				implBuilder.append("\n");
+			}
+
+			impl = implBuilder.toString();
+			starts = startDispatch.toString();
+			ends = endDispatch.toString();
+		}
+
+		baseSource = baseSource.replace(API_TARGET, impl);
+		baseSource = baseSource.replace(VERTEX_START, starts);
+		baseSource = baseSource.replace(VERTEX_END, ends);
+		return baseSource;
+	}
+
+	/**
+	 * @param baseSource main fragment source with insertion points
+	 * @param indexes material fragment shader indexes to include
+	 * @param sources source for a material fragment shader index
+	 * @param useSwitch dispatch with a switch statement instead of an if-else chain. Needs GLSL 130.
+	 */
+	public static String fragment(String baseSource, int[] indexes, IntFunction<String> sources, boolean useSwitch) {
+		final String starts;
+		final String impl;
+		final int limit = indexes.length;
+
+		if (limit == 0) {
+			starts = NOOP;
+			impl = "";
+		} else if (limit == 1) {
+			impl = sources.apply(indexes[0]);
+			starts = impl.contains("frx_startFragment") ? "\tfrx_startFragment(data);" : NOOP;
+		} else {
+			final Dispatch startDispatch = new Dispatch(useSwitch, limit);
+			final StringBuilder implBuilder = new StringBuilder();
+
+			for (int i = 0; i < limit; ++i) {
+				final int index = indexes[i];
+				String src = sources.apply(index);
+
+				if (src.contains("frx_startFragment")) {
+					startDispatch.add(i, index, "frx_startFragment" + index + "(data);");
+					src = src.replace("frx_startFragment", "frx_startFragment" + index);
+					implBuilder.append(src);
+					implBuilder.append("\n");
+				} else {
+					startDispatch.add(i, index, null);
+				}
+			}
+
+			impl = implBuilder.toString();
+			starts = startDispatch.toString();
+		}
+
+		baseSource = baseSource.replace(API_TARGET, impl);
+		baseSource = baseSource.replace(FRAGMENT_START, starts);
+		return baseSource;
+	}
+
+	/**
+	 * Calls one of several entry points based on program id. The last
+	 * case is the default so that ids not included still call something.
+	 */
+	private static class Dispatch {
+		private final boolean useSwitch;
+		private final int limit;
+		private final StringBuilder builder = new StringBuilder();
+
+		private Dispatch(boolean useSwitch, int limit) {
+			this.useSwitch = useSwitch;
+			this.limit = limit;
+
+			if (useSwitch) {
+				builder.append("\tswitch (cv_programId) {\n");
+			}
+		}
+
+		/**
+		 * @param call statement to call the entry point, or null if the shader has none
+		 */
+		private void add(int i, int index, String call) {
+			final boolean isLast = i == limit - 1;
+
+			if (useSwitch) {
+				builder.append(isLast ? "\tdefault: " : "\tcase " + index + ": ");
+
+				if (call != null) {
+					builder.append(call).append(' ');
+				}
+
+				builder.append("break;\n");
+			} else {
+				if (i > 0) {
+					builder.append("\telse ");
+				}
+
+				if (!isLast) {
+					builder.append("\tif (cv_programId == ");
+					builder.append(index);
+					builder.append(") ");
+				}
+
+				builder.append(call == null ? "{ }" : "{ " + call + " }").append('\n');
+			}
+		}
+
+		@Override
+		public String toString() {
+			return useSwitch ? builder.toString() + "\t}\n" : builder.toString();
+		}
+	}
+}
@@ -0,0 +1,388 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.terrain.occlusion;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import it.unimi.dsi.fastutil.longs.Long2BooleanOpenHashMap;
+
+import net.minecraft.block.entity.BlockEntity;
+import net.minecraft.entity.Entity;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Box;
+import net.minecraft.util.math.MathHelper;
+
+import grondag.canvas.CanvasMod;
+import grondag.canvas.Configurator;
+import grondag.canvas.mixinterface.EntityExt;
+
+/**
+ * Culls entities and block entities hidden behind terrain by testing their bounds
+ * against the raster from the last completed terrain iteration.
+ *
+ * <p>Results are cached until the raster changes or, for entities, the block position
+ * changes. Each frame the render thread queues only stale entries and tests them in
+ * batches, on worker threads when there are enough of them. Workers each test
+ * against their own copy of the raster. Render thread only otherwise.
+ */
+public class EntityOcclusionCuller {
+	/** Fewer tests than this run on the render thread alone. */
+	private static final int PARALLEL_THRESHOLD = 128;
+	private static final int MIN_BATCH_SIZE = 64;
+
+	/** Boxes this close to the camera on every axis aren't tested - the raster is coarse up close. */
+	private static final int NEAR_DISTANCE = 24;
+
+	/** Padding in blocks. Entity boxes also cover movement within a block. */
+	private static final int ENTITY_PADDING = 2;
+	private static final int BLOCK_ENTITY_PADDING = 1;
+
+	private final int workerCount = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+
+	/** Last occluder is used by the render thread. */
+	private final TerrainOccluder[] occluders = new TerrainOccluder[workerCount + 1];
+	private final Batch[] batches = new Batch[workerCount];
+	private final ArrayList<Future<?>> futures = new ArrayList<>();
+	private ExecutorService executor;
+
+	private final Long2BooleanOpenHashMap blockEntityResults = new Long2BooleanOpenHashMap();
+
+	private int[] boxes = new int[6 * 256];
+	private Object[] items = new Object[256];
+	private boolean[] results = new boolean[256];
+	private int pendingCount;
+
+	private int rasterVersion;
+	private boolean hasRaster;
+	private boolean isActive;
+	private int cameraX;
+	private int cameraY;
+	private int cameraZ;
+
+	private int culledEntities;
+	private int culledBlockEntities;
+	private long testNanos;
+	private int testCount;
+
+	private double avgCulledEntities;
+	private double avgCulledBlockEntities;
+	private double avgSavedNanos;
+	private double avgTestNanos;
+	private double avgTestCount;
+
+	public EntityOcclusionCuller() {
+		for (int i = 0; i <= workerCount; ++i) {
+			occluders[i] = new TerrainOccluder();
+		}
+
+		for (int i = 0; i < workerCount; ++i) {
+			batches[i] = new Batch(occluders[i]);
+		}
+	}
+
+	/**
+	 * Call when the terrain iterator completes, before it starts again.
+	 */
+	public void updateRaster(TerrainOccluder source, boolean chunkCullingEnabled) {
+		for (final TerrainOccluder occluder : occluders) {
+			occluder.copyFrom(source);
+		}
+
+		// without chunk culling the raster may be incomplete or drawn from inside terrain
+		hasRaster = chunkCullingEnabled;
+		++rasterVersion;
+		blockEntityResults.clear();
+	}
+
+	public void clear() {
+		hasRaster = false;
+		++rasterVersion;
+		blockEntityResults.clear();
+	}
+
+	/**
+	 * Call before queuing tests for a frame.
+	 */
+	public void beginFrame(double cameraX, double cameraY, double cameraZ) {
+		isActive = hasRaster && Configurator.occludeEntities && Configurator.cullEntityRender;
+		this.cameraX = MathHelper.floor(cameraX);
+		this.cameraY = MathHelper.floor(cameraY);
+		this.cameraZ = MathHelper.floor(cameraZ);
+		pendingCount = 0;
+		culledEntities = 0;
+		culledBlockEntities = 0;
+		testNanos = 0;
+		testCount = 0;
+	}
+
+	public boolean isActive() {
+		return isActive;
+	}
+
+	/**
+	 * Queues a test if there isn't a current result. Only call for entities
+	 * that would otherwise render.
+	 */
+	public void queue(Entity entity) {
+		final EntityExt ext = (EntityExt) entity;
+		final long pos = entity.getBlockPos().asLong();
+
+		if (ext.canvas_occlusionVersion() == rasterVersion && ext.canvas_occlusionPos() == pos) {
+			return;
+		}
+
+		final Box box = entity.getVisibilityBoundingBox();
+
+		// NB: isValid is mis-named - true means the box has NaN values
+		if (box.isValid()) {
+			ext.canvas_occlusion(rasterVersion, pos, true);
+			return;
+		}
+
+		final int x0 = MathHelper.floor(box.minX) - ENTITY_PADDING;
+		final int y0 = MathHelper.floor(box.minY) - ENTITY_PADDING;
+		final int z0 = MathHelper.floor(box.minZ) - ENTITY_PADDING;
+		final int x1 = MathHelper.ceil(box.maxX) + ENTITY_PADDING;
+		final int y1 = MathHelper.ceil(box.maxY) + ENTITY_PADDING;
+		final int z1 = MathHelper.ceil(box.maxZ) + ENTITY_PADDING;
+
+		if (isNear(x0, y0, z0, x1, y1, z1)) {
+			ext.canvas_occlusion(rasterVersion, pos, true);
+		} else {
+			add(entity, x0, y0, z0, x1, y1, z1);
+		}
+	}
+
+	/**
+	 * Queues a test if there isn't a current result. Only call for block entities
+	 * in visible regions.
+	 */
+	public void queue(BlockEntity blockEntity) {
+		final BlockPos pos = blockEntity.getPos();
+
+		if (blockEntityResults.containsKey(pos.asLong())) {
+			return;
+		}
+
+		final int x0 = pos.getX() - BLOCK_ENTITY_PADDING;
+		final int y0 = pos.getY() - BLOCK_ENTITY_PADDING;
+		final int z0 = pos.getZ() - BLOCK_ENTITY_PADDING;
+
+		// extra block above for tall models like banners
+		final int x1 = pos.getX() + 1 + BLOCK_ENTITY_PADDING;
+		final int y1 = pos.getY() + 2 + BLOCK_ENTITY_PADDING;
+		final int z1 = pos.getZ() + 1 + BLOCK_ENTITY_PADDING;
+
+		if (isNear(x0, y0, z0, x1, y1, z1)) {
+			blockEntityResults.put(pos.asLong(), true);
+		} else {
+			add(blockEntity, x0, y0, z0, x1, y1, z1);
+		}
+	}
+
+	private boolean isNear(int x0, int y0, int z0, int x1, int y1, int z1) {
+		return x0 - NEAR_DISTANCE <= cameraX && x1 + NEAR_DISTANCE >= cameraX
+				&& y0 - NEAR_DISTANCE <= cameraY && y1 + NEAR_DISTANCE >= cameraY
+				&& z0 - NEAR_DISTANCE <= cameraZ && z1 + NEAR_DISTANCE >= cameraZ;
+	}
+
+	private void add(Object item, int x0, int y0, int z0, int x1, int y1, int z1) {
+		final int index = pendingCount++;
+
+		if (index == items.length) {
+			items = Arrays.copyOf(items, index * 2);
+			results = Arrays.copyOf(results, index * 2);
+			boxes = Arrays.copyOf(boxes, index * 12);
+		}
+
+		items[index] = item;
+		final int[] boxes = this.boxes;
+		final int b = index * 6;
+		boxes[b] = x0;
+		boxes[b + 1] = y0;
+		boxes[b + 2] = z0;
+		boxes[b + 3] = x1;
+		boxes[b + 4] = y1;
+		boxes[b + 5] = z1;
+	}
+
+	/**
+	 * Runs queued tests, returning when all are complete.
+	 */
+	public void runQueued() {
+		final int count = pendingCount;
+
+		if (count == 0) {
+			return;
+		}
+
+		final long start = System.nanoTime();
+		Arrays.fill(results, 0, count, true);
+
+		if (count < PARALLEL_THRESHOLD) {
+			test(occluders[workerCount], boxes, results, 0, count);
+		} else {
+			runParallel(count);
+		}
+
+		final Object[] items = this.items;
+		final boolean[] results = this.results;
+
+		for (int i = 0; i < count; ++i) {
+			final Object item = items[i];
+			items[i] = null;
+
+			if (item instanceof Entity) {
+				final Entity entity = (Entity) item;
+				((EntityExt) entity).canvas_occlusion(rasterVersion, entity.getBlockPos().asLong(), results[i]);
+			} else {
+				blockEntityResults.put(((BlockEntity) item).getPos().asLong(), results[i]);
+			}
+		}
+
+		pendingCount = 0;
+		testCount += count;
+		testNanos += System.nanoTime() - start;
+	}
+
+	private void runParallel(int count) {
+		if (executor == null) {
+			final AtomicInteger threadCount = new AtomicInteger();
+
+			executor = Executors.newFixedThreadPool(workerCount, r -> {
+				final Thread thread = new Thread(r, "Canvas Entity Occlusion " + threadCount.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+
+		// render thread takes a share too
+		final int batchCount = Math.min(workerCount + 1, (count + MIN_BATCH_SIZE - 1) / MIN_BATCH_SIZE);
+		final int batchSize = (count + batchCount - 1) / batchCount;
+		final ArrayList<Future<?>> futures = this.futures;
+
+		for (int i = 1; i < batchCount; ++i) {
+			final Batch batch = batches[i - 1];
+			batch.boxes = boxes;
+			batch.results = results;
+			batch.from = i * batchSize;
+			batch.to = Math.min(count, batch.from + batchSize);
+			futures.add(executor.submit(batch));
+		}
+
+		test(occluders[workerCount], boxes, results, 0, Math.min(count, batchSize));
+
+		for (final Future<?> f : futures) {
+			try {
+				f.get();
+			} catch (final InterruptedException | ExecutionException e) {
+				// untested entries stay visible
+				CanvasMod.LOG.warn("Unable to complete entity occlusion tests due to exception:", e);
+			}
+		}
+
+		futures.clear();
+	}
+
+	private static void test(TerrainOccluder occluder, int[] boxes, boolean[] results, int from, int to) {
+		for (int i = from; i < to; ++i) {
+			final int b = i * 6;
+			results[i] = occluder.isWorldBoxVisible(boxes[b], boxes[b + 1], boxes[b + 2], boxes[b + 3], boxes[b + 4], boxes[b + 5]);
+		}
+	}
+
+	public boolean isVisible(Entity entity) {
+		if (!isActive) {
+			return true;
+		}
+
+		final EntityExt ext = (EntityExt) entity;
+
+		if (ext.canvas_occlusionVersion() == rasterVersion && !ext.canvas_occlusionResult() && ext.canvas_occlusionPos() == entity.getBlockPos().asLong()) {
+			++culledEntities;
+			return false;
+		}
+
+		return true;
+	}
+
+	public boolean isVisible(BlockEntity blockEntity) {
+		// missing entries default to true
+		if (!isActive || blockEntityResults.get(blockEntity.getPos().asLong())) {
+			return true;
+		}
+
+		++culledBlockEntities;
+		return false;
+	}
+
+	/**
+	 * Call after the entity and block entity loops with time spent in each and counts
+	 * rendered, to estimate time saved by culling.
+	 */
+	public void endFrame(long entityNanos, int entityCount, long blockEntityNanos, int blockEntityCount) {
+		double saved = 0;
+
+		if (entityCount > 0) {
+			saved += (double) entityNanos / entityCount * culledEntities;
+		}
+
+		if (blockEntityCount > 0) {
+			saved += (double) blockEntityNanos / blockEntityCount * culledBlockEntities;
+		}
+
+		// smoothed so the F3 screen is readable
+		avgCulledEntities += (culledEntities - avgCulledEntities) * 0.05;
+		avgCulledBlockEntities += (culledBlockEntities - avgCulledBlockEntities) * 0.05;
+		avgSavedNanos += (saved - avgSavedNanos) * 0.05;
+		avgTestNanos += (testNanos - avgTestNanos) * 0.05;
+		avgTestCount += (testCount - avgTestCount) * 0.05;
+	}
+
+	public void addDebugText(List<String> lines) {
+		if (!Configurator.occludeEntities || !Configurator.cullEntityRender) {
+			return;
+		}
+
+		lines.add(String.format("Occluded: %.0f entities %.0f block entities  ~%.2f ms saved  %.0f tests %.2f ms",
+				avgCulledEntities, avgCulledBlockEntities, avgSavedNanos / 1000000.0, avgTestCount, avgTestNanos / 1000000.0));
+	}
+
+	private static class Batch implements Runnable {
+		private final TerrainOccluder occluder;
+		private int[] boxes;
+		private boolean[] results;
+		private int from;
+		private int to;
+
+		private Batch(TerrainOccluder occluder) {
+			this.occluder = occluder;
+		}
+
+		@Override
+		public void run() {
+			test(occluder, boxes, results, from, to);
+		}
+	}
+}
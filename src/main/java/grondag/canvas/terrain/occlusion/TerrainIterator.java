@@ -29,11 +29,13 @@ import net.minecraft.util.math.Vec3i;
 import grondag.canvas.CanvasMod;
 import grondag.canvas.Configurator;
 import grondag.canvas.apiimpl.rendercontext.TerrainRenderContext;
+import grondag.canvas.perf.Telemetry;
 import grondag.canvas.render.CanvasWorldRenderer;
 import grondag.canvas.render.TerrainFrustum;
 import grondag.canvas.terrain.occlusion.geometry.OcclusionRegion;
 import grondag.canvas.terrain.region.BuiltRenderRegion;
 import grondag.canvas.terrain.region.RegionData;
+import grondag.canvas.terrain.region.RegionSeenBits;
 import grondag.canvas.terrain.region.RenderRegionStorage;
 import grondag.fermion.sc.unordered.SimpleUnorderedArrayList;
 import grondag.fermion.varia.Useful;
@@ -83,6 +85,11 @@ public class TerrainIterator implements Consumer<TerrainRenderContext> {
 		return state.get();
 	}
 
+	/** True if the last pass drew and tested against the occluder. */
+	public boolean isChunkCullingEnabled() {
+		return chunkCullingEnabled;
+	}
+
 	public void reset() {
 		cancelled = true;
 		state.compareAndSet(COMPLETE, IDLE);
@@ -92,6 +99,7 @@ public class TerrainIterator implements Consumer<TerrainRenderContext> {
 	public void accept(TerrainRenderContext ignored) {
 		assert state.get() == READY;
 		state.set(RUNNING);
+		final long startNanos = System.nanoTime();
 
 		final boolean chunkCullingEnabled = this.chunkCullingEnabled;
 		final int renderDistance = this.renderDistance;
@@ -230,6 +238,34 @@ public class TerrainIterator implements Consumer<TerrainRenderContext> {
 			if (Configurator.debugOcclusionRaster) {
 				terrainOccluder.outputRaster();
 			}
+
+			updateSeenBits();
+		}
+
+		// occluder drawing is interleaved with iteration, so a redraw is timed as the whole pass
+		Telemetry.record(redrawOccluder ? Telemetry.Event.OCCLUDER_REDRAW : Telemetry.Event.TERRAIN_ITERATION, startNanos);
+	}
+
+	/**
+	 * Publishes results for every region found potentially visible since the last
+	 * visibility version change, for lock-free entity culling.
+	 */
+	private void updateSeenBits() {
+		final RegionSeenBits seenBits = renderRegionStorage.seenBits;
+		final PotentiallyVisibleRegionSorter distanceSorter = this.distanceSorter;
+		final BuiltRenderRegion[] regions = distanceSorter.regions;
+		final int limit = distanceSorter.maxIndex;
+		seenBits.begin(distanceSorter.version());
+
+		for (int i = 0; i <= limit; ++i) {
+			final BuiltRenderRegion region = regions[i];
+
+			if (region != null) {
+				final BlockPos origin = region.getOrigin();
+				seenBits.add(origin.getX(), origin.getY(), origin.getZ(), region.occluderResult());
+			}
 		}
+
+		seenBits.publish();
 	}
 }
@@ -687,9 +687,13 @@ public class TerrainOccluder {
 		}
 
 		// PERF: could perhaps reuse CameraRelativeCenter values in BuildRenderRegion that are used by Frustum
-		offsetX = (int) ((origin.getX() << CAMERA_PRECISION_BITS) - viewX);
-		offsetY = (int) ((origin.getY() << CAMERA_PRECISION_BITS) - viewY);
-		offsetZ = (int) ((origin.getZ() << CAMERA_PRECISION_BITS) - viewZ);
+		setOrigin(origin.getX(), origin.getY(), origin.getZ());
+	}
+
+	private void setOrigin(int x, int y, int z) {
+		offsetX = (int) (((long) x << CAMERA_PRECISION_BITS) - viewX);
+		offsetY = (int) (((long) y << CAMERA_PRECISION_BITS) - viewY);
+		offsetZ = (int) (((long) z << CAMERA_PRECISION_BITS) - viewZ);
 
 		final Matrix4L mvpMatrix = raster.mvpMatrix;
 		mvpMatrix.copyFrom(baseMvpMatrix);
@@ -797,6 +801,25 @@ public class TerrainOccluder {
 		final int y1 = PackedBox.y1(packedBox) + 1;
 		final int z1 = PackedBox.z1(packedBox) + 1;
 
+		return boxTests[boxOutcome(x0, y0, z0, x1, y1, z1)].apply(x0, y0, z0, x1, y1, z1);
+	}
+
+	/**
+	 * For things that aren't terrain. Box is in world block coordinates and is tested
+	 * as given, without padding. Unlike region boxes, a box containing the camera is visible.
+	 * Relies on scratch state in this instance, so threads need their own copy.
+	 */
+	public boolean isWorldBoxVisible(int x0, int y0, int z0, int x1, int y1, int z1) {
+		setOrigin(x0, y0, z0);
+		x1 -= x0;
+		y1 -= y0;
+		z1 -= z0;
+		final int outcome = boxOutcome(0, 0, 0, x1, y1, z1);
+		return outcome == 0 || boxTests[outcome].apply(0, 0, 0, x1, y1, z1);
+	}
+
+	/** Faces of the box that can be seen from the camera, given the current origin. */
+	private int boxOutcome(int x0, int y0, int z0, int x1, int y1, int z1) {
 		final int offsetX = this.offsetX;
 		final int offsetY = this.offsetY;
 		final int offsetZ = this.offsetZ;
@@ -822,7 +845,7 @@ public class TerrainOccluder {
 			outcome |= NORTH;
 		}
 
-		return boxTests[outcome].apply(x0, y0, z0, x1, y1, z1);
+		return outcome;
 	}
 
 	public boolean isEmptyRegionVisible(BlockPos origin) {
@@ -0,0 +1,250 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.terrain.region;
+
+import java.util.function.Predicate;
+
+import it.unimi.dsi.fastutil.booleans.BooleanArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
+
+import net.minecraft.block.entity.BlockEntity;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.render.OverlayTexture;
+import net.minecraft.client.render.VertexConsumer;
+import net.minecraft.client.render.VertexConsumerProvider;
+import net.minecraft.client.render.WorldRenderer;
+import net.minecraft.client.render.block.entity.BlockEntityRenderDispatcher;
+import net.minecraft.client.render.block.entity.BlockEntityRenderer;
+import net.minecraft.client.util.math.MatrixStack;
+import net.minecraft.world.World;
+
+import grondag.canvas.CanvasMod;
+import grondag.canvas.apiimpl.MaterialConditionImpl;
+import grondag.canvas.buffer.encoding.VertexCollectorImpl;
+import grondag.canvas.buffer.encoding.VertexCollectorList;
+import grondag.canvas.material.property.MaterialTarget;
+import grondag.canvas.material.state.RenderContextState;
+import grondag.canvas.material.state.RenderMaterialImpl;
+import grondag.canvas.mixinterface.MultiPhaseExt;
+import grondag.canvas.render.CanvasWorldRenderer;
+
+/**
+ * Output of static block entities in a region, captured on the render thread when the
+ * region is copied for building and appended to terrain buffers by the build.
+ *
+ * <p>Vertices are in the same model space as terrain. Block entities with output that
+ * can't be drawn with terrain - materials excluded from Canvas, other targets or
+ * conditions - are not baked and render normally.
+ */
+class BlockEntityBake {
+	// render thread only
+	private static final RenderContextState CONTEXT_STATE = new RenderContextState();
+	private static final MatrixStack MATRIX_STACK = new MatrixStack();
+
+	private static final VertexConsumer DISCARD = new VertexConsumer() {
+		@Override
+		public VertexConsumer vertex(double x, double y, double z) {
+			return this;
+		}
+
+		@Override
+		public VertexConsumer color(int red, int green, int blue, int alpha) {
+			return this;
+		}
+
+		@Override
+		public VertexConsumer texture(float u, float v) {
+			return this;
+		}
+
+		@Override
+		public VertexConsumer overlay(int u, int v) {
+			return this;
+		}
+
+		@Override
+		public VertexConsumer light(int u, int v) {
+			return this;
+		}
+
+		@Override
+		public VertexConsumer normal(float x, float y, float z) {
+			return this;
+		}
+
+		@Override
+		public void next() {
+		}
+	};
+
+	private final ObjectArrayList<VertexCollectorImpl> collectors = new ObjectArrayList<>();
+	private final IntArrayList marks = new IntArrayList();
+	private int collectorCount;
+	private boolean isRejected;
+
+	final ReferenceOpenHashSet<BlockEntity> baked = new ReferenceOpenHashSet<>();
+	final ObjectArrayList<BlockEntity> watched = new ObjectArrayList<>();
+	final BooleanArrayList watchedBaked = new BooleanArrayList();
+	long nanos;
+
+	private final VertexConsumerProvider provider = layer -> {
+		RenderMaterialImpl mat = ((MultiPhaseExt) layer).canvas_materialState();
+
+		if (mat != RenderMaterialImpl.MISSING) {
+			mat = CONTEXT_STATE.mapMaterial(mat);
+		}
+
+		if (mat == RenderMaterialImpl.MISSING || mat.target != MaterialTarget.MAIN || mat.condition != MaterialConditionImpl.ALWAYS || mat.lines) {
+			isRejected = true;
+			return DISCARD;
+		}
+
+		final VertexCollectorImpl result = get(mat);
+		result.vertexState(mat);
+		return result;
+	};
+
+	void clear() {
+		for (int i = 0; i < collectorCount; ++i) {
+			collectors.get(i).clear();
+		}
+
+		collectorCount = 0;
+		baked.clear();
+		watched.clear();
+		watchedBaked.clear();
+		nanos = 0;
+	}
+
+	boolean isEmpty() {
+		return baked.isEmpty() && watched.isEmpty();
+	}
+
+	private VertexCollectorImpl get(RenderMaterialImpl mat) {
+		final int collectorIndex = mat.collectorIndex;
+
+		for (int i = 0; i < collectorCount; ++i) {
+			final VertexCollectorImpl c = collectors.get(i);
+
+			if (c.materialState().collectorIndex == collectorIndex) {
+				return c;
+			}
+		}
+
+		final VertexCollectorImpl result;
+
+		if (collectorCount < collectors.size()) {
+			result = collectors.get(collectorCount).prepare(mat);
+		} else {
+			result = new VertexCollectorImpl().prepare(mat);
+			collectors.add(result);
+		}
+
+		++collectorCount;
+		return result;
+	}
+
+	/**
+	 * Bakes the block entity if its type is static and it isn't animating or being broken.
+	 * Call on the render thread.
+	 *
+	 * @param x Position of the block in terrain model space.
+	 */
+	void capture(BlockEntity blockEntity, float x, float y, float z) {
+		final Predicate<BlockEntity> isStatic = StaticBlockEntities.get(blockEntity.getType());
+
+		if (isStatic == null) {
+			return;
+		}
+
+		final BlockEntityRenderer<BlockEntity> renderer = BlockEntityRenderDispatcher.INSTANCE.get(blockEntity);
+
+		if (renderer == null || renderer.rendersOutsideBoundingBox(blockEntity)) {
+			return;
+		}
+
+		final CanvasWorldRenderer cwr = CanvasWorldRenderer.instance();
+		final boolean isBreaking = cwr != null && cwr.isBlockBreaking(blockEntity.getPos());
+		final boolean didBake = !isBreaking && isStatic.test(blockEntity) && bake(blockEntity, renderer, x, y, z);
+
+		// breaking block entities are watched so they are baked once breaking stops
+		if (isStatic != StaticBlockEntities.ALWAYS || isBreaking) {
+			watched.add(blockEntity);
+			watchedBaked.add(didBake);
+		}
+	}
+
+	private boolean bake(BlockEntity blockEntity, BlockEntityRenderer<BlockEntity> renderer, float x, float y, float z) {
+		final long start = System.nanoTime();
+		final IntArrayList marks = this.marks;
+		marks.clear();
+
+		for (int i = 0; i < collectorCount; ++i) {
+			marks.add(collectors.get(i).integerSize());
+		}
+
+		isRejected = false;
+		CONTEXT_STATE.setCurrentBlockEntity(blockEntity);
+		final MatrixStack matrixStack = MATRIX_STACK;
+		matrixStack.push();
+		matrixStack.translate(x, y, z);
+
+		try {
+			final World world = blockEntity.getWorld();
+			final int light = world == null ? 0xF000F0 : WorldRenderer.getLightmapCoordinates(world, blockEntity.getPos());
+
+			// not through the dispatcher because it skips distant block entities
+			renderer.render(blockEntity, MinecraftClient.getInstance().getTickDelta(), matrixStack, provider, light, OverlayTexture.DEFAULT_UV);
+		} catch (final Exception e) {
+			CanvasMod.LOG.warn("Unable to bake block entity at " + blockEntity.getPos().toShortString() + " due to exception:", e);
+			isRejected = true;
+		} finally {
+			matrixStack.pop();
+			CONTEXT_STATE.setCurrentBlockEntity(null);
+		}
+
+		if (isRejected) {
+			// back out partial output, including from collectors added for this block entity
+			final int markCount = marks.size();
+
+			for (int i = 0; i < collectorCount; ++i) {
+				collectors.get(i).truncate(i < markCount ? marks.getInt(i) : 0);
+			}
+
+			return false;
+		}
+
+		baked.add(blockEntity);
+		nanos += System.nanoTime() - start;
+		return true;
+	}
+
+	/**
+	 * Adds baked output to a region build. Sorted output goes with translucent terrain.
+	 */
+	void appendTo(VertexCollectorList target) {
+		for (int i = 0; i < collectorCount; ++i) {
+			final VertexCollectorImpl source = collectors.get(i);
+
+			if (!source.isEmpty()) {
+				target.get(source.materialState()).append(source);
+			}
+		}
+	}
+}
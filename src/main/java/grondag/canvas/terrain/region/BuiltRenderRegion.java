@@ -31,6 +31,9 @@ import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
 import net.minecraft.block.Block;
 import net.minecraft.block.BlockRenderType;
 import net.minecraft.block.BlockState;
+import net.minecraft.block.CobwebBlock;
+import net.minecraft.block.PlantBlock;
+import net.minecraft.block.SugarCaneBlock;
 import net.minecraft.block.entity.BlockEntity;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.render.block.BlockRenderManager;
@@ -57,6 +60,7 @@ import grondag.canvas.buffer.encoding.VertexCollectorList;
 import grondag.canvas.material.state.RenderLayerHelper;
 import grondag.canvas.material.state.RenderMaterialImpl;
 import grondag.canvas.perf.ChunkRebuildCounters;
+import grondag.canvas.perf.Telemetry;
 import grondag.canvas.render.CanvasWorldRenderer;
 import grondag.canvas.render.TerrainFrustum;
 import grondag.canvas.terrain.occlusion.PotentiallyVisibleRegionSorter;
@@ -98,6 +102,9 @@ public class BuiltRenderRegion {
 
 	private int squaredChunkDistance;
 	private boolean isNear;
+	// read by build threads, so volatile
+	private volatile boolean isFarMesh;
+	private volatile boolean isReducedDetail;
 	private boolean needsRebuild;
 	private boolean needsImportantRebuild;
 	private volatile RegionBuildState buildState = new RegionBuildState();
@@ -224,6 +231,33 @@ public class BuiltRenderRegion {
 		squaredChunkDistance = horizontalSquaredDistance + cy * cy;
 		isNear = squaredChunkDistance <= 3;
 		occlusionRange = PackedBox.rangeFromSquareChunkDist(squaredChunkDistance);
+		computeDetailLevel();
+	}
+
+	/**
+	 * Selects greedy-meshed geometry and reduced detail beyond their configured
+	 * distances and schedules a rebuild when either changes.
+	 */
+	private void computeDetailLevel() {
+		final boolean far = Configurator.greedyFarTerrain && isBeyond(Configurator.greedyFarTerrainDistance, isFarMesh);
+		final boolean reduced = Configurator.reduceFarDetail && isBeyond(Configurator.reducedDetailDistance, isReducedDetail);
+
+		if (far != isFarMesh || reduced != isReducedDetail) {
+			isFarMesh = far;
+			isReducedDetail = reduced;
+
+			if (buildData.get() != RegionData.UNBUILT) {
+				markForBuild(false);
+			}
+		}
+	}
+
+	/**
+	 * One chunk of hysteresis keeps regions at a threshold from rebuilding back and forth.
+	 */
+	private boolean isBeyond(int chunkDistance, boolean wasBeyond) {
+		final int limit = wasBeyond ? chunkDistance * chunkDistance : (chunkDistance + 1) * (chunkDistance + 1);
+		return squaredChunkDistance > limit;
 	}
 
 	private void computeFrustumChecks() {
@@ -364,7 +398,7 @@ public class BuiltRenderRegion {
 	public boolean scheduleSort() {
 		final RegionData regionData = buildData.get();
 
-		if (regionData.translucentState == null) {
+		if (!regionData.hasSortedState()) {
 			return false;
 		} else {
 			if (buildState.protoRegion.compareAndSet(ProtoRenderRegion.IDLE, ProtoRenderRegion.RESORT_ONLY)) {
@@ -423,45 +457,55 @@ public class BuiltRenderRegion {
 
 		if (region == ProtoRenderRegion.RESORT_ONLY) {
 			final RegionData regionData = buildData.get();
-			final int[] state = regionData.translucentState;
 
-			if (state != null) {
+			if (regionData.hasSortedState()) {
 				final Vec3d cameraPos = cwr.cameraPos();
 				final VertexCollectorList collectors = context.collectors;
-				final RenderMaterialImpl translucentState = RenderLayerHelper.TRANSLUCENT_TERRAIN;
-				final VertexCollectorImpl collector = collectors.get(translucentState);
-
-				collector.loadState(translucentState, state);
+				final float sortX, sortY, sortZ;
 
 				if (Configurator.batchedChunkRender) {
-					collector.sortQuads(
-						(float) (cameraPos.x - TerrainModelSpace.renderCubeOrigin(origin.getX())),
-						(float) (cameraPos.y - TerrainModelSpace.renderCubeOrigin(origin.getY())),
-						(float) (cameraPos.z - TerrainModelSpace.renderCubeOrigin(origin.getZ())));
+					sortX = (float) (cameraPos.x - TerrainModelSpace.renderCubeOrigin(origin.getX()));
+					sortY = (float) (cameraPos.y - TerrainModelSpace.renderCubeOrigin(origin.getY()));
+					sortZ = (float) (cameraPos.z - TerrainModelSpace.renderCubeOrigin(origin.getZ()));
 				} else {
-					collector.sortQuads(
-						(float) (cameraPos.x - origin.getX()),
-						(float) (cameraPos.y - origin.getY()),
-						(float) (cameraPos.z - origin.getZ()));
+					sortX = (float) (cameraPos.x - origin.getX());
+					sortY = (float) (cameraPos.y - origin.getY());
+					sortZ = (float) (cameraPos.z - origin.getZ());
 				}
 
-				regionData.translucentState = collector.saveState(state);
+				final long sortStart = System.nanoTime();
+				final int[] state = regionData.translucentState;
+
+				if (state != null) {
+					final RenderMaterialImpl translucentState = RenderLayerHelper.TRANSLUCENT_TERRAIN;
+					final VertexCollectorImpl collector = collectors.get(translucentState);
+					collector.loadState(translucentState, state);
+					collector.sortQuads(sortX, sortY, sortZ);
+					regionData.translucentState = collector.saveState(state);
+				}
+
+				final int bakedLimit = regionData.bakedSortedStates.size();
+
+				for (int i = 0; i < bakedLimit; ++i) {
+					final RenderMaterialImpl mat = regionData.bakedSortedMaterials.get(i);
+					final int[] bakedState = regionData.bakedSortedStates.get(i);
+					final VertexCollectorImpl collector = collectors.get(mat);
+					collector.loadState(mat, bakedState);
+					collector.sortQuads(sortX, sortY, sortZ);
+					regionData.bakedSortedStates.set(i, collector.saveState(bakedState));
+				}
+
+				Telemetry.record(Telemetry.Event.TRANSLUCENT_SORT, sortStart);
 
 				if (runningState.protoRegion.get() != ProtoRenderRegion.INVALID) {
 					final UploadableChunk upload = collectors.toUploadableChunk(true);
 
 					if (upload != UploadableChunk.EMPTY_UPLOADABLE) {
 						renderRegionBuilder.scheduleUpload(() -> {
-							if (ChunkRebuildCounters.ENABLED) {
-								ChunkRebuildCounters.startUpload();
-							}
-
+							final long uploadStart = System.nanoTime();
 							translucentDrawable.close();
 							translucentDrawable = upload.produceDrawable();
-
-							if (ChunkRebuildCounters.ENABLED) {
-								ChunkRebuildCounters.completeUpload();
-							}
+							completeUpload(uploadStart);
 						});
 					}
 				}
@@ -469,7 +513,7 @@ public class BuiltRenderRegion {
 				collectors.clear();
 			}
 		} else {
-			context.prepareRegion(region);
+			context.prepareRegion(region, isReducedDetail);
 			final RegionData chunkData = buildRegionData(context, isNear());
 
 			final VertexCollectorList collectors = context.collectors;
@@ -488,17 +532,11 @@ public class BuiltRenderRegion {
 
 				if (solidUpload != UploadableChunk.EMPTY_UPLOADABLE || translucentUpload != UploadableChunk.EMPTY_UPLOADABLE) {
 					renderRegionBuilder.scheduleUpload(() -> {
-						if (ChunkRebuildCounters.ENABLED) {
-							ChunkRebuildCounters.startUpload();
-						}
-
+						final long uploadStart = System.nanoTime();
 						releaseDrawables();
 						solidDrawable = solidUpload.produceDrawable();
 						translucentDrawable = translucentUpload.produceDrawable();
-
-						if (ChunkRebuildCounters.ENABLED) {
-							ChunkRebuildCounters.completeUpload();
-						}
+						completeUpload(uploadStart);
 					});
 				}
 			}
@@ -532,10 +570,7 @@ public class BuiltRenderRegion {
 	}
 
 	private void buildTerrain(TerrainRenderContext context, RegionData regionData) {
-		if (ChunkRebuildCounters.ENABLED) {
-			ChunkRebuildCounters.startChunk();
-		}
-
+		final long buildStart = System.nanoTime();
 		final VertexCollectorList collectors = context.collectors;
 
 		final BlockPos.Mutable searchPos = context.searchPos;
@@ -560,6 +595,9 @@ public class BuiltRenderRegion {
 		final MatrixStack matrixStack = new MatrixStack();
 		final BlockRenderManager blockRenderManager = MinecraftClient.getInstance().getBlockRenderManager();
 		final OcclusionRegion occlusionRegion = region.occlusion;
+		context.faceMerger.begin(isFarMesh, origin);
+		final boolean reducedDetail = context.isReducedDetail();
+		int droppedBlockCount = 0;
 
 		for (int i = 0; i < RenderRegionAddressHelper.INTERIOR_CACHE_SIZE; i++) {
 			if (occlusionRegion.shouldRender(i)) {
@@ -571,7 +609,12 @@ public class BuiltRenderRegion {
 				searchPos.set(xOrigin + x, yOrigin + y, zOrigin + z);
 
 				final boolean hasFluid = !fluidState.isEmpty();
-				final boolean hasBlock = blockState.getRenderType() != BlockRenderType.INVISIBLE;
+				boolean hasBlock = blockState.getRenderType() != BlockRenderType.INVISIBLE;
+
+				if (hasBlock && reducedDetail && isDetailBlock(blockState.getBlock())) {
+					hasBlock = false;
+					++droppedBlockCount;
+				}
 
 				if (hasFluid || hasBlock) {
 					// PERF: allocation, speed
@@ -600,24 +643,48 @@ public class BuiltRenderRegion {
 			}
 		}
 
+		context.fluidSurfaces.emit(context, matrixStack, xModelOffset, yModelOffset, zModelOffset);
+		context.faceMerger.emit(context, xModelOffset, yModelOffset, zModelOffset);
+		region.bake.appendTo(collectors);
+
+		if (ChunkRebuildCounters.ENABLED) {
+			ChunkRebuildCounters.addDetailStats(reducedDetail, context.quadCount(), droppedBlockCount, context.leafCulledFaceCount());
+		}
+
 		regionData.endBuffering((float) (cameraPos.x - xOrigin + xModelOffset), (float) (cameraPos.y - yOrigin + yModelOffset), (float) (cameraPos.z - zOrigin + zModelOffset), collectors);
 
+		Telemetry.record(Telemetry.Event.CHUNK_BUILD, buildStart);
+
 		if (ChunkRebuildCounters.ENABLED) {
-			ChunkRebuildCounters.completeChunk();
+			ChunkRebuildCounters.completeChunk(buildStart);
 		}
 	}
 
+	/**
+	 * Cross and plant models - grass, flowers, crops, cobwebs and the like - that are
+	 * left out of regions built at reduced detail.
+	 */
+	private static boolean isDetailBlock(Block block) {
+		return block instanceof PlantBlock || block instanceof CobwebBlock || block instanceof SugarCaneBlock;
+	}
+
 	private void handleBlockEntities(RegionData regionData, TerrainRenderContext context) {
 		final ObjectOpenHashSet<BlockEntity> nonCullBlockEntities = context.nonCullBlockEntities;
 		final ObjectArrayList<BlockEntity> regionDataBlockEntities = regionData.blockEntities;
+		final BlockEntityBake bake = context.region.bake;
+		final boolean hasBake = !bake.isEmpty();
 
 		// PERF: benchmark vs list, empty indicator, or some other structure
 		for (final BlockEntity blockEntity : context.region.blockEntities) {
-			if (blockEntity != null) {
+			if (blockEntity != null && !(hasBake && bake.baked.contains(blockEntity))) {
 				addBlockEntity(regionDataBlockEntities, nonCullBlockEntities, blockEntity);
 			}
 		}
 
+		if (hasBake) {
+			regionData.takeBake(bake);
+		}
+
 		final ObjectOpenHashSet<BlockEntity> addedBlockEntities = context.addedBlockEntities;
 		final ObjectOpenHashSet<BlockEntity> removedBlockEntities = context.removedBlockEntities;
 
@@ -675,15 +742,12 @@ public class BuiltRenderRegion {
 			return;
 		}
 
-		final TerrainRenderContext context = renderRegionBuilder.mainThreadContext.prepareRegion(region);
+		final TerrainRenderContext context = renderRegionBuilder.mainThreadContext.prepareRegion(region, isReducedDetail);
 		final RegionData regionData = buildRegionData(context, isNear());
 
 		buildTerrain(context, regionData);
 
-		if (ChunkRebuildCounters.ENABLED) {
-			ChunkRebuildCounters.startUpload();
-		}
-
+		final long uploadStart = System.nanoTime();
 		final VertexCollectorList collectors = context.collectors;
 		final UploadableChunk solidUpload = collectors.toUploadableChunk(false);
 		final UploadableChunk translucentUpload = collectors.toUploadableChunk(true);
@@ -691,15 +755,20 @@ public class BuiltRenderRegion {
 		releaseDrawables();
 		solidDrawable = solidUpload.produceDrawable();
 		translucentDrawable = translucentUpload.produceDrawable();
-
-		if (ChunkRebuildCounters.ENABLED) {
-			ChunkRebuildCounters.completeUpload();
-		}
+		completeUpload(uploadStart);
 
 		collectors.clear();
 		region.release();
 	}
 
+	private static void completeUpload(long startNanos) {
+		Telemetry.record(Telemetry.Event.UPLOAD, startNanos);
+
+		if (ChunkRebuildCounters.ENABLED) {
+			ChunkRebuildCounters.completeUpload(startNanos);
+		}
+	}
+
 	public BuiltRenderRegion getNeighbor(int faceIndex) {
 		BuiltRenderRegion region = neighbors[faceIndex];
 
@@ -29,6 +29,7 @@ import it.unimi.dsi.fastutil.shorts.ShortArrayList;
 import org.jetbrains.annotations.Nullable;
 
 import net.minecraft.block.BlockState;
+import net.minecraft.block.LeavesBlock;
 import net.minecraft.block.entity.BlockEntity;
 import net.minecraft.client.render.WorldRenderer;
 import net.minecraft.fluid.FluidState;
@@ -69,12 +70,16 @@ public class FastRenderRegion extends AbstractRenderRegion implements RenderAtta
 
 		@Override
 		protected boolean closedAtRelativePos(BlockState blockState, int x, int y, int z) {
-			return blockState.isOpaqueFullCube(world, searchPos.set(originX + x, originY + y, originZ + z));
+			// leaves in neighboring regions may render at full detail, so only interior leaves are closed
+			return blockState.isOpaqueFullCube(world, searchPos.set(originX + x, originY + y, originZ + z))
+				|| (terrainContext.isReducedDetail() && ((x | y | z) & ~15) == 0 && blockState.getBlock() instanceof LeavesBlock);
 		}
 	};
 	// PERF: pack for reduced memory, better LOC
 	private final int[] aoCache = new int[TOTAL_CACHE_SIZE];
 	private final int[] lightCache = new int[TOTAL_CACHE_SIZE];
+	/** Owned by the proto region this was prepared from. */
+	BlockEntityBake bake;
 
 	public FastRenderRegion(TerrainRenderContext terrainContext) {
 		this.terrainContext = terrainContext;
@@ -112,6 +117,7 @@ public class FastRenderRegion extends AbstractRenderRegion implements RenderAtta
 		System.arraycopy(protoRegion.states, 0, states, INTERIOR_CACHE_SIZE, EXTERIOR_CACHE_SIZE);
 
 		copyBeData(protoRegion);
+		bake = protoRegion.bake;
 
 		occlusion.prepare();
 	}
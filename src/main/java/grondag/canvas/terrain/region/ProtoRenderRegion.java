@@ -43,9 +43,12 @@ import net.minecraft.world.chunk.WorldChunk;
 
 import net.fabricmc.fabric.api.rendering.data.v1.RenderAttachmentBlockEntity;
 
+import grondag.canvas.Configurator;
 import grondag.canvas.perf.ChunkRebuildCounters;
+import grondag.canvas.perf.Telemetry;
 import grondag.canvas.terrain.util.ChunkPaletteCopier;
 import grondag.canvas.terrain.util.ChunkPaletteCopier.PaletteCopy;
+import grondag.canvas.terrain.util.TerrainModelSpace;
 
 public class ProtoRenderRegion extends AbstractRenderRegion {
 	/**
@@ -70,6 +73,7 @@ public class ProtoRenderRegion extends AbstractRenderRegion {
 	final ShortArrayList renderDataPos = new ShortArrayList();
 	final ObjectArrayList<Object> renderData = new ObjectArrayList<>();
 	final ShortArrayList blockEntityPos = new ShortArrayList();
+	final BlockEntityBake bake = new BlockEntityBake();
 	PaletteCopy mainSectionCopy;
 
 	public static ProtoRenderRegion claim(ClientWorld world, BlockPos origin) {
@@ -87,10 +91,7 @@ public class ProtoRenderRegion extends AbstractRenderRegion {
 	}
 
 	private ProtoRenderRegion prepare(ClientWorld world, BlockPos origin) {
-		if (ChunkRebuildCounters.ENABLED) {
-			ChunkRebuildCounters.startCopy();
-		}
-
+		final long startNanos = System.nanoTime();
 		this.world = world;
 
 		final int originX = origin.getX();
@@ -136,8 +137,10 @@ public class ProtoRenderRegion extends AbstractRenderRegion {
 			result = this;
 		}
 
+		Telemetry.record(Telemetry.Event.CHUNK_COPY, startNanos);
+
 		if (ChunkRebuildCounters.ENABLED) {
-			ChunkRebuildCounters.completeCopy();
+			ChunkRebuildCounters.completeCopy(startNanos);
 		}
 
 		return result;
@@ -154,7 +157,20 @@ public class ProtoRenderRegion extends AbstractRenderRegion {
 		renderData.clear();
 		blockEntityPos.clear();
 		blockEntities.clear();
+		bake.clear();
 		final int yCheck = (originY >> 4);
+		final boolean shouldBake = StaticBlockEntities.isEnabled();
+		final int xModelOrigin, yModelOrigin, zModelOrigin;
+
+		if (Configurator.batchedChunkRender) {
+			xModelOrigin = TerrainModelSpace.renderCubeOrigin(originX);
+			yModelOrigin = TerrainModelSpace.renderCubeOrigin(originY);
+			zModelOrigin = TerrainModelSpace.renderCubeOrigin(originZ);
+		} else {
+			xModelOrigin = originX;
+			yModelOrigin = originY;
+			zModelOrigin = originZ;
+		}
 
 		for (final Map.Entry<BlockPos, BlockEntity> entry : mainChunk.getBlockEntities().entrySet()) {
 			final BlockPos pos = entry.getKey();
@@ -176,6 +192,10 @@ public class ProtoRenderRegion extends AbstractRenderRegion {
 				renderDataPos.add(key);
 				renderData.add(rd);
 			}
+
+			if (shouldBake) {
+				bake.capture(be, pos.getX() - xModelOrigin, pos.getY() - yModelOrigin, pos.getZ() - zModelOrigin);
+			}
 		}
 	}
 
@@ -266,6 +286,7 @@ public class ProtoRenderRegion extends AbstractRenderRegion {
 
 		blockEntities.clear();
 		renderData.clear();
+		bake.clear();
 
 		release(this);
 	}
@@ -17,7 +17,10 @@
 package grondag.canvas.terrain.region;
 
 import java.util.List;
+import java.util.function.Predicate;
 
+import it.unimi.dsi.fastutil.booleans.BooleanArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
 import it.unimi.dsi.fastutil.objects.ObjectArrayList;
 import org.jetbrains.annotations.Nullable;
 
@@ -29,6 +32,7 @@ import net.fabricmc.api.Environment;
 import grondag.canvas.buffer.encoding.VertexCollectorImpl;
 import grondag.canvas.buffer.encoding.VertexCollectorList;
 import grondag.canvas.material.state.RenderLayerHelper;
+import grondag.canvas.material.state.RenderMaterialImpl;
 import grondag.canvas.terrain.occlusion.geometry.OcclusionRegion;
 
 @Environment(EnvType.CLIENT)
@@ -42,6 +46,19 @@ public class RegionData {
 	@Nullable
 	int[] translucentState;
 
+	/** Sorted output of baked block entities, saved for resorting like translucent terrain. */
+	final ObjectArrayList<RenderMaterialImpl> bakedSortedMaterials = new ObjectArrayList<>();
+	final ObjectArrayList<int[]> bakedSortedStates = new ObjectArrayList<>();
+
+	final ObjectArrayList<BlockEntity> bakedBlockEntities = new ObjectArrayList<>();
+	final ObjectArrayList<BlockEntity> watchedBlockEntities = new ObjectArrayList<>();
+	final BooleanArrayList watchedBaked = new BooleanArrayList();
+	long bakedNanos;
+
+	/** Render thread only. */
+	private boolean didRequestRebake;
+	private int staleBakedCount;
+
 	public List<BlockEntity> getBlockEntities() {
 		return blockEntities;
 	}
@@ -53,6 +70,108 @@ public class RegionData {
 			buffer.sortQuads(x, y, z);
 			translucentState = buffer.saveState(translucentState);
 		}
+
+		if (!bakedBlockEntities.isEmpty()) {
+			final int limit = buffers.size();
+
+			for (int i = 0; i < limit; ++i) {
+				final VertexCollectorImpl baked = buffers.get(i);
+
+				if (baked != buffer && !baked.isEmpty() && baked.materialState().sorted) {
+					baked.sortQuads(x, y, z);
+					bakedSortedMaterials.add(baked.materialState());
+					bakedSortedStates.add(baked.saveState(null));
+				}
+			}
+		}
+	}
+
+	/**
+	 * True if the region has sorted quads that may need to be resorted when the camera moves.
+	 */
+	public boolean hasSortedState() {
+		return translucentState != null || !bakedSortedStates.isEmpty();
+	}
+
+	void takeBake(BlockEntityBake bake) {
+		bakedBlockEntities.addAll(bake.baked);
+		watchedBlockEntities.addAll(bake.watched);
+		watchedBaked.addAll(bake.watchedBaked);
+		bakedNanos = bake.nanos;
+	}
+
+	public boolean hasBakedBlockEntities() {
+		return !bakedBlockEntities.isEmpty() || !watchedBlockEntities.isEmpty();
+	}
+
+	public int bakedBlockEntityCount() {
+		return bakedBlockEntities.size();
+	}
+
+	public long bakedNanos() {
+		return bakedNanos;
+	}
+
+	/**
+	 * Finds baked block entities that started animating or being broken, and unbaked
+	 * ones that can now be baked. Call from the render thread.
+	 *
+	 * <p>Baked output stays in the region until it is rebuilt, so a rebuild is requested as
+	 * soon as a baked block entity starts animating or breaking. Until the rebuilt region is
+	 * in use only the baked copy is drawn - drawing it normally as well would overlap two
+	 * different states. The rebuilt region leaves it out of the bake and it renders normally.
+	 *
+	 * @return True if the region should be rebuilt to update what is baked.
+	 */
+	public boolean updateWatched(Long2ObjectMap<?> breakingProgress) {
+		boolean needsRebake = false;
+		int staleCount = 0;
+		final int limit = watchedBlockEntities.size();
+
+		for (int i = 0; i < limit; ++i) {
+			final BlockEntity be = watchedBlockEntities.get(i);
+			final Predicate<BlockEntity> isStatic = StaticBlockEntities.get(be.getType());
+			final boolean canBake = isStatic != null && isStatic.test(be) && !breakingProgress.containsKey(be.getPos().asLong());
+
+			if (watchedBaked.getBoolean(i)) {
+				if (!canBake) {
+					++staleCount;
+					needsRebake = true;
+				}
+			} else if (canBake) {
+				needsRebake = true;
+			}
+		}
+
+		if (!breakingProgress.isEmpty()) {
+			for (final BlockEntity be : bakedBlockEntities) {
+				// watched ones were counted above
+				if (breakingProgress.containsKey(be.getPos().asLong())) {
+					needsRebake = true;
+
+					if (!watchedBlockEntities.contains(be)) {
+						++staleCount;
+					}
+				}
+			}
+		}
+
+		staleBakedCount = staleCount;
+
+		if (needsRebake && !didRequestRebake) {
+			didRequestRebake = true;
+			return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Baked block entities found by the last {@link #updateWatched(Long2ObjectMap)} that are
+	 * animating or being broken and still drawn baked until the region is rebuilt.
+	 */
+	public int staleBakedCount() {
+		return staleBakedCount;
 	}
 
 	public int[] getOcclusionData() {
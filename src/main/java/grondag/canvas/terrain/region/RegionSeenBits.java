@@ -0,0 +1,149 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.terrain.region;
+
+import java.util.Arrays;
+
+/**
+ * Bitset of regions recently seen by the terrain iterator, so render thread lookups
+ * don't need to find the region or take any locks.
+ *
+ * <p>Matches {@link BuiltRenderRegion#wasRecentlySeen()}: a region counts as seen if
+ * it was found potentially visible within the last few visibility versions and its
+ * latest occlusion result was visible. Regions are indexed the same way as
+ * {@link RenderRegionStorage}, so positions more than 128 chunks apart share a bit.
+ *
+ * <p>Updated by the terrain iterator after each pass and read from any thread.
+ * Readers see the most recently published pass.
+ */
+public class RegionSeenBits {
+	private static final int WORD_COUNT = RenderRegionStorage.CHUNK_COUNT * 16 / 64;
+
+	/** Visibility versions retained before the current one. */
+	private static final int HISTORY_COUNT = 3;
+
+	/** Published arrays rotate so readers never see one being written. */
+	private static final int PUBLISHED_COUNT = 3;
+
+	private final long[][] history = new long[HISTORY_COUNT][WORD_COUNT];
+	private final long[] visited = new long[WORD_COUNT];
+	private final long[] visible = new long[WORD_COUNT];
+	private final long[][] published = new long[PUBLISHED_COUNT][WORD_COUNT];
+	private int historyIndex;
+	private int publishedIndex;
+	private int visibilityVersion = Integer.MIN_VALUE;
+	private volatile long[] current = published[0];
+	private volatile int version;
+
+	static int regionIndex(int x, int y, int z) {
+		return (((x + 30000000) >> 4) & 127) | ((((z + 30000000) >> 4) & 127) << 7) | (((y >> 4) & 15) << 14);
+	}
+
+	/**
+	 * Starts recording a pass. Results for regions from earlier visibility versions are
+	 * retained when the version changes and discarded once it falls out of range.
+	 */
+	public void begin(int visibilityVersion) {
+		if (this.visibilityVersion != visibilityVersion) {
+			final int age = this.visibilityVersion == Integer.MIN_VALUE ? Integer.MAX_VALUE : visibilityVersion - this.visibilityVersion;
+			final int rotations = age > 0 ? Math.min(age, HISTORY_COUNT) : HISTORY_COUNT;
+
+			// each rotation overwrites the oldest version
+			for (int i = 0; i < rotations; ++i) {
+				historyIndex = (historyIndex + 1) % HISTORY_COUNT;
+
+				if (i == 0 && age > 0 && age <= HISTORY_COUNT) {
+					System.arraycopy(visible, 0, history[historyIndex], 0, WORD_COUNT);
+				} else {
+					Arrays.fill(history[historyIndex], 0);
+				}
+			}
+
+			this.visibilityVersion = visibilityVersion;
+		}
+
+		Arrays.fill(visited, 0);
+		Arrays.fill(visible, 0);
+	}
+
+	/**
+	 * Records the latest result for a region found potentially visible in the current
+	 * visibility version.
+	 */
+	public void add(int x, int y, int z, boolean isVisible) {
+		final int index = regionIndex(x, y, z);
+		final long mask = 1L << index;
+		visited[index >>> 6] |= mask;
+
+		if (isVisible) {
+			visible[index >>> 6] |= mask;
+		}
+	}
+
+	/**
+	 * Makes results of the current pass visible to readers. Current results replace
+	 * older ones for regions visited in this version.
+	 */
+	public void publish() {
+		publishedIndex = (publishedIndex + 1) % PUBLISHED_COUNT;
+		final long[] out = published[publishedIndex];
+		final long[] h0 = history[0];
+		final long[] h1 = history[1];
+		final long[] h2 = history[2];
+
+		for (int i = 0; i < WORD_COUNT; ++i) {
+			out[i] = visible[i] | ((h0[i] | h1[i] | h2[i]) & ~visited[i]);
+		}
+
+		current = out;
+		++version;
+	}
+
+	/**
+	 * Forgets everything, for example when the world changes.
+	 */
+	public void clear() {
+		for (final long[] h : history) {
+			Arrays.fill(h, 0);
+		}
+
+		Arrays.fill(visited, 0);
+		Arrays.fill(visible, 0);
+		visibilityVersion = Integer.MIN_VALUE;
+		publishedIndex = (publishedIndex + 1) % PUBLISHED_COUNT;
+		final long[] out = published[publishedIndex];
+		Arrays.fill(out, 0);
+		current = out;
+		++version;
+	}
+
+	public boolean isSeen(int x, int y, int z) {
+		if ((y & 0xFFFFFF00) != 0) {
+			return false;
+		}
+
+		final int index = regionIndex(x, y, z);
+		return (current[index >>> 6] & (1L << index)) != 0;
+	}
+
+	/**
+	 * Changes each time results are published. Callers can keep a result while it is unchanged.
+	 */
+	public int version() {
+		return version;
+	}
+}
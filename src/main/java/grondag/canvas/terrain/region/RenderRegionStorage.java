@@ -20,6 +20,7 @@ import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.MathHelper;
 
 import grondag.canvas.render.CanvasWorldRenderer;
 
@@ -34,6 +35,7 @@ public class RenderRegionStorage {
 	static final int CHUNK_COUNT = 128 * 128;
 	private final RenderRegionChunk[] chunks = new RenderRegionChunk[CHUNK_COUNT];
 	private final ArrayBlockingQueue<RenderRegionChunk> closeQueue = new ArrayBlockingQueue<>(RenderRegionStorage.CHUNK_COUNT);
+	public final RegionSeenBits seenBits = new RegionSeenBits();
 
 	public RenderRegionStorage(CanvasWorldRenderer canvasWorldRenderer, RenderRegionPruner pruner) {
 		cwr = canvasWorldRenderer;
@@ -48,6 +50,8 @@ public class RenderRegionStorage {
 		for (final RenderRegionChunk chunk : chunks) {
 			chunk.close();
 		}
+
+		seenBits.clear();
 	}
 
 	public int cameraChunkX() {
@@ -126,9 +130,63 @@ public class RenderRegionStorage {
 		return chunks[chunkIndex(x, z)].getRegionIfExists(x, y, z);
 	}
 
+	/**
+	 * Same result as {@link BuiltRenderRegion#wasRecentlySeen()} as of the last completed
+	 * terrain iteration, without finding the region or locking.
+	 */
 	public boolean wasSeen(int x, int y, int z) {
-		final BuiltRenderRegion r = getRegionIfExists(x, y, z);
-		return r != null && r.wasRecentlySeen();
+		return seenBits.isSeen(x, y, z);
+	}
+
+	/**
+	 * True if any region overlapping the box was seen, per {@link #wasSeen(int, int, int)}.
+	 * Safe to call from any thread.
+	 */
+	public boolean wasBoxSeen(double x0, double y0, double z0, double x1, double y1, double z1) {
+		final int rx0 = MathHelper.floor(x0) & 0xFFFFFFF0;
+		final int ry0 = MathHelper.floor(y0) & 0xFFFFFFF0;
+		final int rz0 = MathHelper.floor(z0) & 0xFFFFFFF0;
+		final int rx1 = MathHelper.floor(x1) & 0xFFFFFFF0;
+		final int ry1 = MathHelper.floor(y1) & 0xFFFFFFF0;
+		final int rz1 = MathHelper.floor(z1) & 0xFFFFFFF0;
+
+		int flags = rx0 == rx1 ? 0 : 1;
+		if (ry0 != ry1) flags |= 2;
+		if (rz0 != rz1) flags |= 4;
+
+		switch (flags) {
+			case 0b000:
+				return wasSeen(rx0, ry0, rz0);
+
+			case 0b001:
+				return wasSeen(rx0, ry0, rz0) || wasSeen(rx1, ry0, rz0);
+
+			case 0b010:
+				return wasSeen(rx0, ry0, rz0) || wasSeen(rx0, ry1, rz0);
+
+			case 0b011:
+				return wasSeen(rx0, ry0, rz0) || wasSeen(rx1, ry0, rz0)
+						|| wasSeen(rx0, ry1, rz0) || wasSeen(rx1, ry1, rz0);
+
+			case 0b100:
+				return wasSeen(rx0, ry0, rz0) || wasSeen(rx0, ry0, rz1);
+
+			case 0b101:
+				return wasSeen(rx0, ry0, rz0) || wasSeen(rx1, ry0, rz0)
+						|| wasSeen(rx0, ry0, rz1) || wasSeen(rx1, ry0, rz1);
+
+			case 0b110:
+				return wasSeen(rx0, ry0, rz0) || wasSeen(rx0, ry1, rz0)
+						|| wasSeen(rx0, ry0, rz1) || wasSeen(rx0, ry1, rz1);
+
+			case 0b111:
+				return wasSeen(rx0, ry0, rz0) || wasSeen(rx1, ry0, rz0)
+						|| wasSeen(rx0, ry1, rz0) || wasSeen(rx1, ry1, rz0)
+						|| wasSeen(rx0, ry0, rz1) || wasSeen(rx1, ry0, rz1)
+						|| wasSeen(rx0, ry1, rz1) || wasSeen(rx1, ry1, rz1);
+		}
+
+		return true;
 	}
 
 	public void scheduleClose(RenderRegionChunk chunk) {
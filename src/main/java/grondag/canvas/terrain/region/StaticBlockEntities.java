@@ -0,0 +1,186 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.terrain.region;
+
+import java.util.List;
+import java.util.function.Predicate;
+
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import org.jetbrains.annotations.Nullable;
+
+import net.minecraft.block.entity.BlockEntity;
+import net.minecraft.block.entity.BlockEntityType;
+import net.minecraft.block.entity.ChestAnimationProgress;
+import net.minecraft.block.entity.SkullBlockEntity;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.InvalidIdentifierException;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.registry.Registry;
+
+import grondag.canvas.CanvasMod;
+import grondag.canvas.Configurator;
+import grondag.canvas.render.CanvasWorldRenderer;
+
+/**
+ * Block entity types whose renderer output is captured when their region is built
+ * and then drawn with terrain instead of every frame.
+ *
+ * <p>Types are declared static in configuration or by mods through {@link #register(BlockEntityType, Predicate)}.
+ * Nothing is baked unless enabled in configuration.
+ */
+public final class StaticBlockEntities {
+	static final Predicate<BlockEntity> ALWAYS = be -> true;
+
+	/** Used for vanilla types listed in configuration that sometimes animate. */
+	private static final Object2ObjectOpenHashMap<BlockEntityType<?>, Predicate<BlockEntity>> BUILT_IN = new Object2ObjectOpenHashMap<>();
+	private static final Object2ObjectOpenHashMap<BlockEntityType<?>, Predicate<BlockEntity>> REGISTERED = new Object2ObjectOpenHashMap<>();
+
+	/** Render thread only. */
+	private static Object2ObjectOpenHashMap<BlockEntityType<?>, Predicate<BlockEntity>> active = new Object2ObjectOpenHashMap<>();
+	private static boolean isEnabled;
+
+	private static int bakedCount;
+	private static long bakedNanos;
+	private static int staleCount;
+	private static double avgBakedCount;
+	private static double avgSavedNanos;
+	private static double avgStaleCount;
+	private static double avgDynamicNanos;
+
+	static {
+		final Predicate<BlockEntity> closed = be -> ((ChestAnimationProgress) be).getAnimationProgress(0) == 0;
+		BUILT_IN.put(BlockEntityType.CHEST, closed);
+		BUILT_IN.put(BlockEntityType.TRAPPED_CHEST, closed);
+		BUILT_IN.put(BlockEntityType.ENDER_CHEST, closed);
+
+		// dragon heads move while powered
+		BUILT_IN.put(BlockEntityType.SKULL, be -> ((SkullBlockEntity) be).getTicksPowered(0) == 0);
+	}
+
+	private StaticBlockEntities() {
+	}
+
+	/**
+	 * Declares a block entity type static. Call during client initialization.
+	 *
+	 * <p>The renderer for the type is called on the render thread when a region containing it is
+	 * built, with output drawn as part of the region until the region is rebuilt. Client-side
+	 * data updates to the block entity cause a rebuild. The renderer must not draw outside the
+	 * block bounds or depend on time, camera or tick delta.
+	 *
+	 * @param isStatic Tested on the render thread when the region is built and every frame after.
+	 * Return false while the block entity is animating. Its baked output is drawn until the
+	 * region is rebuilt, then it renders normally until the result changes and the region
+	 * is rebuilt again.
+	 */
+	@SuppressWarnings("unchecked")
+	public static synchronized <T extends BlockEntity> void register(BlockEntityType<T> type, Predicate<T> isStatic) {
+		REGISTERED.put(type, (Predicate<BlockEntity>) isStatic);
+	}
+
+	public static synchronized void reload() {
+		final Object2ObjectOpenHashMap<BlockEntityType<?>, Predicate<BlockEntity>> map = new Object2ObjectOpenHashMap<>(REGISTERED);
+		final String types = Configurator.staticBlockEntities;
+
+		if (types != null) {
+			for (String id : types.split(",")) {
+				id = id.trim();
+
+				if (id.isEmpty()) {
+					continue;
+				}
+
+				try {
+					final BlockEntityType<?> type = Registry.BLOCK_ENTITY_TYPE.getOrEmpty(new Identifier(id)).orElse(null);
+
+					if (type == null) {
+						CanvasMod.LOG.warn("Unknown block entity type " + id + " in static block entity configuration will be ignored.");
+					} else {
+						map.putIfAbsent(type, BUILT_IN.getOrDefault(type, ALWAYS));
+					}
+				} catch (final InvalidIdentifierException e) {
+					CanvasMod.LOG.warn("Invalid block entity type " + id + " in static block entity configuration will be ignored.");
+				}
+			}
+		}
+
+		active = map;
+		isEnabled = Configurator.bakeBlockEntities && !map.isEmpty();
+	}
+
+	static boolean isEnabled() {
+		return isEnabled;
+	}
+
+	/**
+	 * @return null if the type is not static.
+	 */
+	@Nullable
+	static Predicate<BlockEntity> get(BlockEntityType<?> type) {
+		return isEnabled ? active.get(type) : null;
+	}
+
+	/**
+	 * Called on the client when a block entity receives new data from the server.
+	 */
+	public static void onDataChanged(BlockEntity blockEntity) {
+		if (isEnabled && active.containsKey(blockEntity.getType())) {
+			final CanvasWorldRenderer cwr = CanvasWorldRenderer.instance();
+
+			if (cwr != null) {
+				final BlockPos pos = blockEntity.getPos();
+				cwr.scheduleRegionRender(pos.getX() >> 4, pos.getY() >> 4, pos.getZ() >> 4, false);
+			}
+		}
+	}
+
+	public static void beginFrame() {
+		bakedCount = 0;
+		bakedNanos = 0;
+		staleCount = 0;
+	}
+
+	/**
+	 * Counts baked block entities in a visible region. Baking time is how long the
+	 * renderers took when the region was built, and so approximates time saved each frame.
+	 *
+	 * @param staleCount Baked block entities that started animating and await a rebuild.
+	 */
+	public static void addVisible(int bakedCount, long bakedNanos, int staleCount) {
+		StaticBlockEntities.bakedCount += bakedCount;
+		StaticBlockEntities.bakedNanos += bakedNanos;
+		StaticBlockEntities.staleCount += staleCount;
+	}
+
+	/**
+	 * @param dynamicNanos Time spent rendering block entities normally this frame.
+	 */
+	public static void endFrame(long dynamicNanos) {
+		// smoothed so the F3 screen is readable
+		avgBakedCount += (bakedCount - avgBakedCount) * 0.05;
+		avgSavedNanos += (bakedNanos - avgSavedNanos) * 0.05;
+		avgStaleCount += (staleCount - avgStaleCount) * 0.05;
+		avgDynamicNanos += (dynamicNanos - avgDynamicNanos) * 0.05;
+	}
+
+	public static void addDebugText(List<String> lines) {
+		if (isEnabled) {
+			lines.add(String.format("Baked BEs: %.0f visible ~%.2f ms saved  %.0f awaiting rebuild  dynamic BEs %.2f ms",
+					avgBakedCount, avgSavedNanos / 1000000.0, avgStaleCount, avgDynamicNanos / 1000000.0));
+		}
+	}
+}
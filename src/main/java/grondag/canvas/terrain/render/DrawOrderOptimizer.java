@@ -0,0 +1,164 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.terrain.render;
+
+import java.util.Arrays;
+
+/**
+ * Reorders draws that don't depend on draw order so that draws with the same state
+ * are contiguous, ordered by the cost of switching each part of the state.
+ *
+ * <p>Draws are added in their natural order along with a state key from {@link #stateKey(int, int, int, int)}.
+ * After {@link #sort()} draws are ordered by key and then by the order they were added, so draws
+ * that share all key elements keep their natural (region) order.
+ *
+ * <p>Not thread-safe. Has no game dependencies so ordering can be tested directly.
+ */
+public class DrawOrderOptimizer {
+	public static final int TIER_BITS = 8;
+	public static final int PROGRAM_BITS = 12;
+	public static final int TEXTURE_BITS = 10;
+	public static final int STATE_BITS = 10;
+
+	private static final int SEQUENCE_BITS = 64 - TIER_BITS - PROGRAM_BITS - TEXTURE_BITS - STATE_BITS;
+	private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+	/** Maximum number of draws per sort. */
+	public static final int MAX_DRAWS = 1 << SEQUENCE_BITS;
+
+	private long[] keys = new long[1024];
+	private int[] stateIds = new int[1024];
+	private int[] groups = new int[1024];
+	private int[] items = new int[1024];
+	private int size = 0;
+	private int lastStateId = -1;
+	private int unsortedSwitches = 0;
+	private int sortedSwitches = 0;
+
+	/**
+	 * Packs state elements in order of switching cost, highest first.
+	 *
+	 * <p>Program, texture and state values too large for their field are clamped to the
+	 * field maximum. Those draws then share a key and keep their natural order, which only
+	 * costs extra state switches.
+	 *
+	 * @param tier draws in a lower tier always come first, regardless of other elements. Used
+	 * for ordering constraints needed for correct output, so must be in range.
+	 * @param program identifies the shader program
+	 * @param texture identifies the bound texture
+	 * @param state blend, depth and other fixed-function state
+	 * @return key to pass to {@link #add(long, int, int, int)}
+	 * @throws IllegalArgumentException if tier or another element is out of range
+	 */
+	public static long stateKey(int tier, int program, int texture, int state) {
+		if (tier < 0 || tier >= (1 << TIER_BITS) || (program | texture | state) < 0) {
+			throw new IllegalArgumentException("Invalid draw state key element");
+		}
+
+		long result = tier;
+		result = (result << PROGRAM_BITS) | Math.min(program, (1 << PROGRAM_BITS) - 1);
+		result = (result << TEXTURE_BITS) | Math.min(texture, (1 << TEXTURE_BITS) - 1);
+		result = (result << STATE_BITS) | Math.min(state, (1 << STATE_BITS) - 1);
+		return result << SEQUENCE_BITS;
+	}
+
+	public void clear() {
+		size = 0;
+		lastStateId = -1;
+		unsortedSwitches = 0;
+		sortedSwitches = 0;
+	}
+
+	/**
+	 * @param stateKey from {@link #stateKey(int, int, int, int)}
+	 * @param stateId identifies the complete draw state, used only to count state switches
+	 * @param group caller-defined, typically the region
+	 * @param item caller-defined, typically the draw within the region
+	 * @throws IllegalStateException if {@link #MAX_DRAWS} draws have already been added
+	 */
+	public void add(long stateKey, int stateId, int group, int item) {
+		final int index = size;
+
+		if (index >= MAX_DRAWS) {
+			throw new IllegalStateException("Too many draws for draw order optimizer");
+		}
+
+		if (index == keys.length) {
+			final int newSize = index * 2;
+			keys = Arrays.copyOf(keys, newSize);
+			stateIds = Arrays.copyOf(stateIds, newSize);
+			groups = Arrays.copyOf(groups, newSize);
+			items = Arrays.copyOf(items, newSize);
+		}
+
+		// flip sign bit so signed sort gives unsigned key order
+		keys[index] = (stateKey | index) ^ Long.MIN_VALUE;
+		stateIds[index] = stateId;
+		groups[index] = group;
+		items[index] = item;
+		size = index + 1;
+
+		if (stateId != lastStateId) {
+			++unsortedSwitches;
+			lastStateId = stateId;
+		}
+	}
+
+	public void sort() {
+		final int size = this.size;
+		final long[] keys = this.keys;
+		Arrays.sort(keys, 0, size);
+
+		int lastStateId = -1;
+		int switches = 0;
+
+		for (int i = 0; i < size; ++i) {
+			final int stateId = stateIds[(int) (keys[i] & SEQUENCE_MASK)];
+
+			if (stateId != lastStateId) {
+				++switches;
+				lastStateId = stateId;
+			}
+		}
+
+		sortedSwitches = switches;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/** Group of the draw at the given position in sorted order. */
+	public int group(int sortedIndex) {
+		return groups[(int) (keys[sortedIndex] & SEQUENCE_MASK)];
+	}
+
+	/** Item of the draw at the given position in sorted order. */
+	public int item(int sortedIndex) {
+		return items[(int) (keys[sortedIndex] & SEQUENCE_MASK)];
+	}
+
+	/** State changes needed to draw in the order draws were added. */
+	public int unsortedSwitches() {
+		return unsortedSwitches;
+	}
+
+	/** State changes needed to draw in sorted order. Valid after {@link #sort()}. */
+	public int sortedSwitches() {
+		return sortedSwitches;
+	}
+}
@@ -28,6 +28,7 @@ import net.minecraft.util.math.BlockPos;
 import grondag.canvas.Configurator;
 import grondag.canvas.light.LightmapHdTexture;
 import grondag.canvas.material.state.RenderMaterialImpl;
+import grondag.canvas.perf.TerrainDrawCounters;
 import grondag.canvas.shader.ProgramType;
 import grondag.canvas.terrain.region.BuiltRenderRegion;
 import grondag.canvas.terrain.util.TerrainModelSpace;
@@ -37,6 +38,7 @@ public class TerrainLayerRenderer {
 	private final String profileString;
 	private final Runnable sortTask;
 	private final boolean isTranslucent;
+	private final DrawOrderOptimizer drawOrder = new DrawOrderOptimizer();
 
 	public TerrainLayerRenderer(String layerName, @Nullable Runnable translucentSortTask) {
 		profileString = "render_" + layerName;
@@ -60,6 +62,17 @@ public class TerrainLayerRenderer {
 			DitherTexture.instance().enable();
 		}
 
+		// translucent must stay back to front
+		if (!isTranslucent && (Configurator.groupTerrainDraws || TerrainDrawCounters.ENABLED)) {
+			collectDraws(visibleRegions, visibleRegionCount);
+
+			if (Configurator.groupTerrainDraws) {
+				renderGrouped(visibleRegions, matrixStack, x, y, z);
+				mc.getProfiler().pop();
+				return;
+			}
+		}
+
 		long lastRelativeOrigin = -1;
 
 		//		final DrawHandler h = DrawHandlers.get(EncodingContext.TERRAIN, shaderContext.pass);
@@ -145,4 +158,130 @@ public class TerrainLayerRenderer {
 
 		mc.getProfiler().pop();
 	}
+
+	private void collectDraws(final BuiltRenderRegion[] visibleRegions, final int visibleRegionCount) {
+		final DrawOrderOptimizer drawOrder = this.drawOrder;
+		drawOrder.clear();
+
+		for (int regionIndex = 0; regionIndex < visibleRegionCount; ++regionIndex) {
+			final BuiltRenderRegion builtRegion = visibleRegions[regionIndex];
+
+			if (builtRegion == null) {
+				continue;
+			}
+
+			final DrawableChunk drawable = builtRegion.solidDrawable();
+
+			if (!drawable.isClosed()) {
+				final ObjectArrayList<DrawableDelegate> delegates = drawable.delegates();
+
+				if (delegates != null) {
+					final int limit = delegates.size();
+
+					for (int i = 0; i < limit; ++i) {
+						final RenderMaterialImpl mat = delegates.get(i).materialState();
+
+						if (mat.programType == ProgramType.MATERIAL_VERTEX_LOGIC || !mat.condition.affectBlocks || mat.condition.compute()) {
+							drawOrder.add(drawKey(mat), mat.renderState.index, regionIndex, i);
+						}
+					}
+				}
+			}
+		}
+
+		drawOrder.sort();
+
+		if (TerrainDrawCounters.ENABLED) {
+			TerrainDrawCounters.addSolidPass(drawOrder.size(), drawOrder.unsortedSwitches(), drawOrder.sortedSwitches());
+		}
+	}
+
+	/**
+	 * Ordering constraints from {@link RenderMaterialImpl#drawPriority} come first, then shader,
+	 * texture and fixed-function state. Within the same key draws stay in region order.
+	 */
+	private static long drawKey(RenderMaterialImpl mat) {
+		// draw priority is highest first, tier is lowest first
+		final int tier = 255 - ((mat.writeMask.drawPriority << 6) | (mat.transparency.drawPriority << 3)
+				| ((mat.primaryTargetTransparency ? 0 : 1) << 2) | mat.decal.drawPriority);
+
+		final int state = mat.transparency.index | (mat.depthTest.index << 3) | (mat.writeMask.index << 5)
+				| ((mat.cull ? 1 : 0) << 7) | (mat.fog.index << 8);
+
+		return DrawOrderOptimizer.stateKey(tier, mat.shader.index, mat.texture.index, state);
+	}
+
+	private void renderGrouped(final BuiltRenderRegion[] visibleRegions, MatrixStack matrixStack, double x, double y, double z) {
+		final DrawOrderOptimizer drawOrder = this.drawOrder;
+		final int limit = drawOrder.size();
+		int lastRegionIndex = -1;
+		long lastRelativeOrigin = -1;
+		boolean hasMatrix = false;
+		ObjectArrayList<DrawableDelegate> delegates = null;
+		int ox = 0, oy = 0, oz = 0;
+
+		for (int i = 0; i < limit; ++i) {
+			final int regionIndex = drawOrder.group(i);
+
+			if (regionIndex != lastRegionIndex) {
+				lastRegionIndex = regionIndex;
+				final BuiltRenderRegion builtRegion = visibleRegions[regionIndex];
+				final DrawableChunk drawable = builtRegion.solidDrawable();
+				final BlockPos modelOrigin = builtRegion.getOrigin();
+				delegates = drawable.delegates();
+
+				if (Configurator.batchedChunkRender) {
+					final long newRelativeOrigin = TerrainModelSpace.getPackedOrigin(modelOrigin);
+
+					if (newRelativeOrigin != lastRelativeOrigin) {
+						if (hasMatrix) {
+							RenderSystem.popMatrix();
+							matrixStack.pop();
+						}
+
+						lastRelativeOrigin = newRelativeOrigin;
+						hasMatrix = true;
+
+						ox = TerrainModelSpace.renderCubeOrigin(modelOrigin.getX());
+						oy = TerrainModelSpace.renderCubeOrigin(modelOrigin.getY());
+						oz = TerrainModelSpace.renderCubeOrigin(modelOrigin.getZ());
+
+						matrixStack.push();
+						matrixStack.translate(ox - x, oy - y, oz - z);
+						RenderSystem.pushMatrix();
+						RenderSystem.loadIdentity();
+						RenderSystem.multMatrix(matrixStack.peek().getModel());
+					}
+				} else {
+					if (hasMatrix) {
+						RenderSystem.popMatrix();
+						matrixStack.pop();
+					}
+
+					hasMatrix = true;
+
+					ox = modelOrigin.getX();
+					oy = modelOrigin.getY();
+					oz = modelOrigin.getZ();
+
+					matrixStack.push();
+					matrixStack.translate(ox - x, oy - y, oz - z);
+					RenderSystem.pushMatrix();
+					RenderSystem.loadIdentity();
+					RenderSystem.multMatrix(matrixStack.peek().getModel());
+				}
+
+				drawable.vboBuffer.bind();
+			}
+
+			final DrawableDelegate d = delegates.get(drawOrder.item(i));
+			d.materialState().renderState.enableWithOrigin(ox, oy, oz);
+			d.draw();
+		}
+
+		if (hasMatrix) {
+			RenderSystem.popMatrix();
+			matrixStack.pop();
+		}
+	}
 }
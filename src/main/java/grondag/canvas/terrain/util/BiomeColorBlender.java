@@ -0,0 +1,118 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.terrain.util;
+
+/**
+ * Computes blended biome colors for all 256 columns of a chunk in one pass,
+ * as a separable box blur over the base colors of the chunk and its neighbors.
+ *
+ * <p>Results are identical to averaging every sample in the square blend area
+ * for each column, as vanilla does, but each base color is read once per row and
+ * column instead of once per column in range.
+ */
+public abstract class BiomeColorBlender {
+	public static final int MAX_RADIUS = 16;
+
+	private BiomeColorBlender() {
+	}
+
+	/**
+	 * Index in the base color arrays passed to {@link #blend(int[][], int, int[])} of the chunk
+	 * at the given chunk offset from the target chunk.
+	 */
+	public static int neighborIndex(int dx, int dz) {
+		return (dz + 1) * 3 + dx + 1;
+	}
+
+	/**
+	 * @param baseColors base colors of the 3 x 3 chunks centered on the target chunk, ordered by
+	 * {@link #neighborIndex(int, int)}. Each array is 16 x 16, indexed by {@code x | z << 4}
+	 * @param radius blend radius in blocks, 1 to {@link #MAX_RADIUS}
+	 * @param out receives 256 blended colors, indexed by {@code x | z << 4}
+	 */
+	public static void blend(int[][] baseColors, int radius, int[] out) {
+		assert radius > 0 && radius <= MAX_RADIUS;
+
+		final int rowCount = 16 + radius * 2;
+		final int window = radius * 2 + 1;
+		final int sampleCount = window * window;
+
+		// horizontal sums for each row in the blend area, indexed by row * 16 + x
+		final int[] rowRed = new int[rowCount * 16];
+		final int[] rowGreen = new int[rowCount * 16];
+		final int[] rowBlue = new int[rowCount * 16];
+
+		for (int row = 0; row < rowCount; ++row) {
+			final int z = row - radius;
+			int r = 0;
+			int g = 0;
+			int b = 0;
+
+			for (int x = -radius; x <= radius; ++x) {
+				final int color = baseColor(baseColors, x, z);
+				r += (color >> 16) & 255;
+				g += (color >> 8) & 255;
+				b += color & 255;
+			}
+
+			final int rowStart = row * 16;
+
+			for (int x = 0; x < 16; ++x) {
+				rowRed[rowStart + x] = r;
+				rowGreen[rowStart + x] = g;
+				rowBlue[rowStart + x] = b;
+
+				if (x < 15) {
+					final int outColor = baseColor(baseColors, x - radius, z);
+					final int inColor = baseColor(baseColors, x + radius + 1, z);
+					r += ((inColor >> 16) & 255) - ((outColor >> 16) & 255);
+					g += ((inColor >> 8) & 255) - ((outColor >> 8) & 255);
+					b += (inColor & 255) - (outColor & 255);
+				}
+			}
+		}
+
+		// vertical sums of the row sums
+		for (int x = 0; x < 16; ++x) {
+			int r = 0;
+			int g = 0;
+			int b = 0;
+
+			for (int row = 0; row < window; ++row) {
+				r += rowRed[row * 16 + x];
+				g += rowGreen[row * 16 + x];
+				b += rowBlue[row * 16 + x];
+			}
+
+			for (int z = 0; z < 16; ++z) {
+				out[x | (z << 4)] = (r / sampleCount & 255) << 16 | (g / sampleCount & 255) << 8 | b / sampleCount & 255;
+
+				if (z < 15) {
+					final int outIndex = z * 16 + x;
+					final int inIndex = (z + window) * 16 + x;
+					r += rowRed[inIndex] - rowRed[outIndex];
+					g += rowGreen[inIndex] - rowGreen[outIndex];
+					b += rowBlue[inIndex] - rowBlue[outIndex];
+				}
+			}
+		}
+	}
+
+	private static int baseColor(int[][] baseColors, int x, int z) {
+		return baseColors[neighborIndex(x >> 4, z >> 4)][(x & 0xF) | ((z & 0xF) << 4)];
+	}
+}
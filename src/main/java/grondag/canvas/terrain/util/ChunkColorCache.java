@@ -109,101 +109,139 @@ public class ChunkColorCache implements BiomeAccess.Storage {
 		}
 	}
 
+	/**
+	 * Drops blended colors but keeps base colors. Call when a neighboring chunk is
+	 * loaded because blending near the border samples its biomes.
+	 */
+	public void invalidateBlendedColors() {
+		grassCache.blendedColors = null;
+		foliageCache.blendedColors = null;
+		waterCache.blendedColors = null;
+	}
+
+	/**
+	 * Clears the cache of a newly loaded chunk and blended colors of its loaded neighbors.
+	 */
+	public static void onChunkLoaded(ClientWorld world, WorldChunk chunk) {
+		((WorldChunkExt) chunk).canvas_clearColorCache();
+		final ChunkPos pos = chunk.getPos();
+
+		for (int dz = -1; dz <= 1; ++dz) {
+			for (int dx = -1; dx <= 1; ++dx) {
+				if ((dx | dz) != 0) {
+					final WorldChunk neighbor = world.getChunkManager().getWorldChunk(pos.x + dx, pos.z + dz, false);
+
+					if (neighbor != null) {
+						((WorldChunkExt) neighbor).canvas_invalidateBlendedColors();
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Base and blended colors for one color resolver, each computed for the whole chunk on first use.
+	 * Arrays are never modified after they are published, so build threads can share them without locking.
+	 * Like vanilla, colors are per column and use the biome at the height of the first request.
+	 */
 	private class BiomeColorCache {
-		private static final int BASE_INDEX = 0;
-		private static final int BASE_CONTROL = BASE_INDEX + 256;
-		private static final int BLENDED_INDEX = BASE_CONTROL + 8;
-		private static final int BLENDED_CONTROL = BLENDED_INDEX + 256;
 		private final ColorResolver colorResolver;
 		private final Function<ChunkColorCache, BiomeColorCache> cacheFunc;
-		private final int[] data = new int[512 + 16];
+		private volatile int[] baseColors;
+		private volatile int[] blendedColors;
 
 		private BiomeColorCache(ColorResolver colorResolver, Function<ChunkColorCache, BiomeColorCache> cacheFunc) {
 			this.colorResolver = colorResolver;
 			this.cacheFunc = cacheFunc;
 		}
 
-		private int getBaseColor(int x, int y, int z) {
-			final int cx = x >> 4;
-			final int cz = z >> 4;
+		private int[] baseColors(int y) {
+			int[] result = baseColors;
 
-			if (cx == chunkX && cz == chunkZ) {
-				return getLocalBaseColor(x, y, z);
-			} else {
-				return cacheFunc.apply(get(world.getChunk(cx, cz))).getLocalBaseColor(x, y, z);
+			if (result == null) {
+				result = computeBaseColors(chunkX, chunkZ, y);
+				baseColors = result;
 			}
+
+			return result;
 		}
 
-		private int getLocalBaseColor(int x, int y, int z) {
-			final int index = (x & 0xF) | ((z & 0xF) << 4);
-			final int controlIndex = BASE_CONTROL + (index >> 5);
-			final int controlMask = 1 << (index & 31);
-
-			if ((data[controlIndex] & controlMask) == 0) {
-				final int result = computeLocalBaseColor(x, y, z);
-				data[controlIndex] |= controlMask;
-				data[index] = result;
-				return result;
-			} else {
-				return data[index];
+		private int[] computeBaseColors(int cx, int cz, int y) {
+			final int[] result = new int[256];
+			final int x0 = cx << 4;
+			final int z0 = cz << 4;
+
+			for (int i = 0; i < 256; ++i) {
+				final int x = x0 + (i & 0xF);
+				final int z = z0 + (i >> 4);
+				result[i] = colorResolver.getColor(getBiome(x, y, z), x, z);
 			}
+
+			return result;
 		}
 
-		private int computeLocalBaseColor(int x, int y, int z) {
-			return colorResolver.getColor(getBiome(x, y, z), x, z);
+		private int[] neighborBaseColors(int cx, int cz, int y) {
+			final WorldChunk neighbor = world.getChunk(cx, cz);
+			final ChunkPos pos = neighbor.getPos();
+
+			if (pos.x == cx && pos.z == cz) {
+				return cacheFunc.apply(get(neighbor)).baseColors(y);
+			} else {
+				// the shared empty chunk stands in for unloaded chunks, so its cache can't be used
+				return computeBaseColors(cx, cz, y);
+			}
 		}
 
 		private int getColor(int x, int y, int z) {
 			final int cx = x >> 4;
 			final int cz = z >> 4;
 
+			final int index = (x & 0xF) | ((z & 0xF) << 4);
+
 			if (cx == chunkX && cz == chunkZ) {
-				return getLocalBlendedColor(x, y, z);
+				return blendedColors(y)[index];
+			}
+
+			final WorldChunk neighbor = world.getChunk(cx, cz);
+			final ChunkPos pos = neighbor.getPos();
+
+			if (pos.x == cx && pos.z == cz) {
+				return cacheFunc.apply(get(neighbor)).blendedColors(y)[index];
 			} else {
-				return cacheFunc.apply(get(world.getChunk(cx, cz))).getLocalBlendedColor(x, y, z);
+				// unloaded chunks share the empty chunk, which has no cache for this position
+				return colorResolver.getColor(getBiome(x, y, z), x, z);
 			}
 		}
 
-		private int getLocalBlendedColor(int x, int y, int z) {
-			final int index = (x & 0xF) | ((z & 0xF) << 4);
-			final int controlIndex = BLENDED_CONTROL + (index >> 5);
-			final int controlMask = 1 << (index & 31);
-
-			if ((data[controlIndex] & controlMask) == 0) {
-				final int result = computeLocalBlendedColor(x, y, z);
-				data[controlIndex] |= controlMask;
-				data[index + BLENDED_INDEX] = result;
-				return result;
-			} else {
-				return data[index + BLENDED_INDEX];
+		private int[] blendedColors(int y) {
+			int[] result = blendedColors;
+
+			if (result == null) {
+				result = computeBlendedColors(y);
+				blendedColors = result;
 			}
+
+			return result;
 		}
 
-		private int computeLocalBlendedColor(int xIn, int yIn, int zIn) {
-			final int radius = mc.options.biomeBlendRadius;
+		private int[] computeBlendedColors(int y) {
+			final int radius = Math.min(mc.options.biomeBlendRadius, BiomeColorBlender.MAX_RADIUS);
 
-			if (radius == 0) {
-				return getLocalBaseColor(xIn, yIn, zIn);
-			} else {
-				final int sampleCount = (radius * 2 + 1) * (radius * 2 + 1);
-				int r = 0;
-				int g = 0;
-				int b = 0;
-
-				final int xMax = xIn + radius;
-				final int zMax = zIn + radius;
-
-				for (int x = xIn - radius; x <= xMax; x++) {
-					for (int z = zIn - radius; z <= zMax; z++) {
-						final int color = getBaseColor(x, yIn, z);
-						g += (color >> 8) & 255;
-						r += (color >> 16) & 255;
-						b += color & 255;
-					}
-				}
+			if (radius <= 0) {
+				return baseColors(y);
+			}
+
+			final int[][] neighbors = new int[9][];
 
-				return (r / sampleCount & 255) << 16 | (g / sampleCount & 255) << 8 | b / sampleCount & 255;
+			for (int dz = -1; dz <= 1; ++dz) {
+				for (int dx = -1; dx <= 1; ++dx) {
+					neighbors[BiomeColorBlender.neighborIndex(dx, dz)] = (dx | dz) == 0 ? baseColors(y) : neighborBaseColors(chunkX + dx, chunkZ + dz, y);
+				}
 			}
+
+			final int[] result = new int[256];
+			BiomeColorBlender.blend(neighbors, radius, result);
+			return result;
 		}
 	}
 }
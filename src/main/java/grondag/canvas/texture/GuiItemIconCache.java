@@ -0,0 +1,343 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.texture;
+
+import java.util.Objects;
+import java.util.Random;
+
+import com.mojang.blaze3d.platform.FramebufferInfo;
+import com.mojang.blaze3d.platform.GlStateManager;
+import com.mojang.blaze3d.systems.RenderSystem;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import org.jetbrains.annotations.Nullable;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL30;
+
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.gl.Framebuffer;
+import net.minecraft.client.render.BufferBuilder;
+import net.minecraft.client.render.Tessellator;
+import net.minecraft.client.render.VertexFormats;
+import net.minecraft.client.render.model.BakedModel;
+import net.minecraft.client.render.model.BakedQuad;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.util.math.Direction;
+
+import net.fabricmc.fabric.api.renderer.v1.model.FabricBakedModel;
+
+import grondag.canvas.Configurator;
+import grondag.canvas.mixinterface.ItemRendererExt;
+import grondag.canvas.perf.GuiItemCounters;
+import grondag.canvas.render.CanvasFrameBufferHacks;
+
+/**
+ * Draws items in screens from images rendered once into an atlas, so inventories with
+ * many slots don't transform and buffer every item model every frame.
+ *
+ * <p>Only static items are cached: plain baked models without glint or animated sprites.
+ * Icons are keyed by model, item and tag, so damage and other tag-driven state such
+ * as dye color get their own icon. Model overrides already select a different model for
+ * items like clocks and bows. Icons are evicted least recently used and discarded
+ * when resources reload or the GUI scale changes.
+ *
+ * <p>Icons are rendered with the vanilla GUI item path at the current GUI scale, into
+ * a cleared cell with translucent blending, which leaves premultiplied color. They
+ * are drawn one quad per item so ordering with slot overlays is unchanged.
+ *
+ * <p>Render thread only.
+ */
+public class GuiItemIconCache {
+	private static final int ATLAS_SIZE = 2048;
+	private static final float TEXEL = 1f / ATLAS_SIZE;
+
+	private static final int UNKNOWN = 0;
+	private static final int STATIC = 1;
+	private static final int DYNAMIC = 2;
+
+	private static final Reference2IntOpenHashMap<BakedModel> MODEL_STATE = new Reference2IntOpenHashMap<>();
+	private static final Random RANDOM = new Random();
+	private static final IconKey SEARCH_KEY = new IconKey();
+	private static final int[] VIEWPORT = new int[4];
+	private static final int[] SCISSOR_BOX = new int[4];
+	private static final float[] CLEAR_COLOR = new float[4];
+
+	private static Framebuffer atlas;
+	private static IconSlotCache<IconKey> slots;
+	private static int cellSize;
+	private static int cellsPerRow;
+	private static int frame;
+	private static boolean isCapturing;
+	private static long renderStart;
+
+	private GuiItemIconCache() {
+	}
+
+	public static void reload() {
+		MODEL_STATE.clear();
+
+		if (slots != null) {
+			slots.clear();
+		}
+
+		if (!Configurator.cacheGuiItems && atlas != null) {
+			atlas.delete();
+			atlas = null;
+		}
+	}
+
+	/**
+	 * Call before anything is drawn in a frame.
+	 */
+	public static void beginFrame() {
+		++frame;
+
+		if (GuiItemCounters.ENABLED) {
+			GuiItemCounters.endFrame(slots == null ? 0 : slots.takeEvictionCount());
+		}
+
+		if (Configurator.cacheGuiItems) {
+			final int size = (int) Math.round(16 * MinecraftClient.getInstance().getWindow().getScaleFactor());
+
+			if (size != cellSize) {
+				cellSize = size;
+				cellsPerRow = ATLAS_SIZE / size;
+				slots = new IconSlotCache<>(cellsPerRow * cellsPerRow);
+			}
+		}
+	}
+
+	/**
+	 * Called before an item is rendered in a screen.
+	 *
+	 * @return true if the item was drawn from the cache and should not be rendered.
+	 */
+	public static boolean draw(ItemRendererExt renderer, ItemStack stack, int x, int y, BakedModel model) {
+		if (isCapturing) {
+			return false;
+		}
+
+		final long start = GuiItemCounters.ENABLED ? System.nanoTime() : 0;
+
+		if (Configurator.cacheGuiItems && slots != null && isStatic(stack, model)) {
+			final IconKey key = SEARCH_KEY.set(model, stack.getItem(), stack.getTag());
+			int slot = slots.find(key, frame);
+
+			if (slot == -1) {
+				slot = slots.allocate(key.copy(), frame);
+
+				if (slot != -1) {
+					capture(renderer, stack, model, slot);
+				}
+			}
+
+			if (slot != -1) {
+				drawIcon(slot, x, y, 100.0F + renderer.canvas_zOffset());
+
+				if (GuiItemCounters.ENABLED) {
+					GuiItemCounters.addCached(System.nanoTime() - start);
+				}
+
+				return true;
+			}
+		}
+
+		renderStart = start;
+		return false;
+	}
+
+	/**
+	 * Called after an item is rendered normally in a screen.
+	 */
+	public static void afterRender() {
+		if (GuiItemCounters.ENABLED && !isCapturing) {
+			GuiItemCounters.addRendered(System.nanoTime() - renderStart);
+		}
+	}
+
+	private static boolean isStatic(ItemStack stack, BakedModel model) {
+		if (stack.hasGlint() || model.isBuiltin() || !((FabricBakedModel) model).isVanillaAdapter()) {
+			return false;
+		}
+
+		int state = MODEL_STATE.getInt(model);
+
+		if (state == UNKNOWN) {
+			state = hasAnimatedSprite(model) ? DYNAMIC : STATIC;
+			MODEL_STATE.put(model, state);
+		}
+
+		return state == STATIC;
+	}
+
+	private static boolean hasAnimatedSprite(BakedModel model) {
+		for (int i = 0; i <= 6; ++i) {
+			final Direction face = i == 6 ? null : Direction.byId(i);
+			// same seed as item rendering
+			RANDOM.setSeed(42L);
+
+			for (final BakedQuad quad : model.getQuads(null, face, RANDOM)) {
+				if (quad.getSprite().isAnimated()) {
+					return true;
+				}
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Renders the item into the atlas cell for the slot using the vanilla GUI path,
+	 * then restores the frame buffer, viewport, scissor and clear color that were in use.
+	 * Screens with scrolling lists draw items inside a scissor region.
+	 */
+	private static void capture(ItemRendererExt renderer, ItemStack stack, BakedModel model, int slot) {
+		final int oldFbo = GlStateManager.getInteger(GL30.GL_FRAMEBUFFER_BINDING);
+		final boolean oldScissor = GL11.glIsEnabled(GL11.GL_SCISSOR_TEST);
+		GL11.glGetIntegerv(GL11.GL_VIEWPORT, VIEWPORT);
+		GL11.glGetIntegerv(GL11.GL_SCISSOR_BOX, SCISSOR_BOX);
+		GL11.glGetFloatv(GL11.GL_COLOR_CLEAR_VALUE, CLEAR_COLOR);
+
+		if (atlas == null) {
+			atlas = new Framebuffer(ATLAS_SIZE, ATLAS_SIZE, true, MinecraftClient.IS_SYSTEM_MAC);
+			atlas.setTexFilter(GL11.GL_NEAREST);
+		}
+
+		final int cellX = (slot % cellsPerRow) * cellSize;
+		final int cellY = (slot / cellsPerRow) * cellSize;
+		final float zOffset = renderer.canvas_zOffset();
+
+		atlas.beginWrite(false);
+		RenderSystem.viewport(cellX, cellY, cellSize, cellSize);
+		RenderSystem.enableScissor(cellX, cellY, cellSize, cellSize);
+		RenderSystem.depthMask(true);
+		RenderSystem.clearColor(0, 0, 0, 0);
+		RenderSystem.clearDepth(1.0);
+		RenderSystem.clear(GL11.GL_COLOR_BUFFER_BIT | GL11.GL_DEPTH_BUFFER_BIT, MinecraftClient.IS_SYSTEM_MAC);
+		RenderSystem.disableScissor();
+
+		// same projection as screens, covering one slot
+		RenderSystem.matrixMode(GL11.GL_PROJECTION);
+		RenderSystem.pushMatrix();
+		RenderSystem.loadIdentity();
+		RenderSystem.ortho(0.0D, 16.0D, 16.0D, 0.0D, 1000.0D, 3000.0D);
+		RenderSystem.matrixMode(GL11.GL_MODELVIEW);
+		RenderSystem.pushMatrix();
+		RenderSystem.loadIdentity();
+		RenderSystem.translatef(0.0F, 0.0F, -2000.0F);
+
+		isCapturing = true;
+		CanvasFrameBufferHacks.suspendEmissiveCapture(true);
+		renderer.canvas_zOffset(0);
+
+		try {
+			renderer.canvas_renderGuiItemModel(stack, 0, 0, model);
+		} finally {
+			renderer.canvas_zOffset(zOffset);
+			CanvasFrameBufferHacks.suspendEmissiveCapture(false);
+			isCapturing = false;
+
+			RenderSystem.matrixMode(GL11.GL_PROJECTION);
+			RenderSystem.popMatrix();
+			RenderSystem.matrixMode(GL11.GL_MODELVIEW);
+			RenderSystem.popMatrix();
+
+			GlStateManager.bindFramebuffer(FramebufferInfo.FRAME_BUFFER, oldFbo);
+			RenderSystem.viewport(VIEWPORT[0], VIEWPORT[1], VIEWPORT[2], VIEWPORT[3]);
+			RenderSystem.clearColor(CLEAR_COLOR[0], CLEAR_COLOR[1], CLEAR_COLOR[2], CLEAR_COLOR[3]);
+
+			if (oldScissor) {
+				RenderSystem.enableScissor(SCISSOR_BOX[0], SCISSOR_BOX[1], SCISSOR_BOX[2], SCISSOR_BOX[3]);
+			} else {
+				GL11.glScissor(SCISSOR_BOX[0], SCISSOR_BOX[1], SCISSOR_BOX[2], SCISSOR_BOX[3]);
+			}
+		}
+
+		if (GuiItemCounters.ENABLED) {
+			GuiItemCounters.addCapture();
+		}
+	}
+
+	private static void drawIcon(int slot, int x, int y, float z) {
+		final float u0 = (slot % cellsPerRow) * cellSize * TEXEL;
+		final float u1 = u0 + cellSize * TEXEL;
+		// frame buffer rows start at the bottom
+		final float vBottom = (slot / cellsPerRow) * cellSize * TEXEL;
+		final float vTop = vBottom + cellSize * TEXEL;
+		final float x1 = x + 16;
+		final float y1 = y + 16;
+
+		atlas.beginRead();
+		RenderSystem.enableBlend();
+		RenderSystem.blendFunc(GL11.GL_ONE, GL11.GL_ONE_MINUS_SRC_ALPHA);
+		RenderSystem.enableAlphaTest();
+		RenderSystem.defaultAlphaFunc();
+		RenderSystem.enableDepthTest();
+		RenderSystem.color4f(1.0F, 1.0F, 1.0F, 1.0F);
+
+		final BufferBuilder buffer = Tessellator.getInstance().getBuffer();
+		buffer.begin(GL11.GL_QUADS, VertexFormats.POSITION_TEXTURE);
+		buffer.vertex(x, y1, z).texture(u0, vBottom).next();
+		buffer.vertex(x1, y1, z).texture(u1, vBottom).next();
+		buffer.vertex(x1, y, z).texture(u1, vTop).next();
+		buffer.vertex(x, y, z).texture(u0, vTop).next();
+		Tessellator.getInstance().draw();
+
+		RenderSystem.disableAlphaTest();
+		RenderSystem.defaultBlendFunc();
+	}
+
+	private static class IconKey {
+		private BakedModel model;
+		private Item item;
+		@Nullable private CompoundTag tag;
+		private int hash;
+
+		IconKey set(BakedModel model, Item item, @Nullable CompoundTag tag) {
+			this.model = model;
+			this.item = item;
+			this.tag = tag;
+			hash = (System.identityHashCode(model) * 31 + System.identityHashCode(item)) * 31 + Objects.hashCode(tag);
+			return this;
+		}
+
+		IconKey copy() {
+			final IconKey result = new IconKey();
+			result.model = model;
+			result.item = item;
+			result.tag = tag == null ? null : tag.copy();
+			result.hash = hash;
+			return result;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof IconKey)) {
+				return false;
+			}
+
+			final IconKey other = (IconKey) obj;
+			return model == other.model && item == other.item && Objects.equals(tag, other.tag);
+		}
+	}
+}
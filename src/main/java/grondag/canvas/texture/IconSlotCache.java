@@ -0,0 +1,100 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.texture;
+
+import it.unimi.dsi.fastutil.objects.Object2IntLinkedOpenHashMap;
+
+/**
+ * Assigns a fixed number of atlas slots to keys, evicting the least recently used key
+ * when all slots are taken.
+ *
+ * <p>Slots used in the current frame are never evicted, so a screen with more distinct
+ * icons than slots can't evict and re-render the same icons every frame. Callers render
+ * those normally instead.
+ *
+ * <p>Not thread-safe. Has no game dependencies so eviction can be tested directly.
+ */
+public class IconSlotCache<K> {
+	private final Object2IntLinkedOpenHashMap<K> slots = new Object2IntLinkedOpenHashMap<>();
+	private final int[] lastUsedFrame;
+	private final int capacity;
+	private int evictionCount;
+
+	public IconSlotCache(int capacity) {
+		this.capacity = capacity;
+		lastUsedFrame = new int[capacity];
+		slots.defaultReturnValue(-1);
+	}
+
+	/**
+	 * @return slot holding the key or -1 if not cached. A found key becomes the most recently used.
+	 */
+	public int find(K key, int frame) {
+		final int slot = slots.getAndMoveToLast(key);
+
+		if (slot != -1) {
+			lastUsedFrame[slot] = frame;
+		}
+
+		return slot;
+	}
+
+	/**
+	 * Assigns a slot to a key not already cached. The slot's previous content, if any,
+	 * is no longer valid.
+	 *
+	 * @return slot for the key or -1 if every slot has been used this frame.
+	 */
+	public int allocate(K key, int frame) {
+		assert !slots.containsKey(key);
+		int slot = slots.size();
+
+		if (slot == capacity) {
+			slot = slots.getInt(slots.firstKey());
+
+			if (lastUsedFrame[slot] == frame) {
+				return -1;
+			}
+
+			slots.removeFirstInt();
+			++evictionCount;
+		}
+
+		slots.put(key, slot);
+		lastUsedFrame[slot] = frame;
+		return slot;
+	}
+
+	public void clear() {
+		slots.clear();
+	}
+
+	public int size() {
+		return slots.size();
+	}
+
+	public int capacity() {
+		return capacity;
+	}
+
+	/** Evictions since the last call. */
+	public int takeEvictionCount() {
+		final int result = evictionCount;
+		evictionCount = 0;
+		return result;
+	}
+}
@@ -21,11 +21,17 @@ import java.nio.IntBuffer;
 import com.mojang.blaze3d.platform.GLX;
 import com.mojang.blaze3d.platform.GlStateManager;
 import org.apache.logging.log4j.Logger;
+import org.lwjgl.opengl.ARBDrawInstanced;
+import org.lwjgl.opengl.ARBGetProgramBinary;
+import org.lwjgl.opengl.ARBInstancedArrays;
 import org.lwjgl.opengl.ARBVertexArrayObject;
 import org.lwjgl.opengl.GL;
+import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GL20;
 import org.lwjgl.opengl.GL21;
 import org.lwjgl.opengl.GL30;
+import org.lwjgl.opengl.GL31;
+import org.lwjgl.opengl.GL33;
 import org.lwjgl.opengl.GLCapabilities;
 
 import net.minecraft.client.MinecraftClient;
@@ -37,6 +43,13 @@ public class CanvasGlHelper {
 	static boolean useVboArb;
 	private static boolean vaoEnabled = false;
 	private static boolean useVaoArb = false;
+	private static boolean supportsUniformBuffers = false;
+	private static boolean supportsProgramBinary = false;
+	private static boolean supportsFramebufferBlit = false;
+	private static boolean supportsTimerQuery = false;
+	private static boolean supportsInstancing = false;
+	private static boolean useDrawInstancedArb = false;
+	private static boolean useInstancedArraysArb = false;
 	private static int attributeEnabledCount = 0;
 
 	public static void init() {
@@ -48,6 +61,13 @@ public class CanvasGlHelper {
 		useVboArb = !caps.OpenGL15 && caps.GL_ARB_vertex_buffer_object;
 		vaoEnabled = caps.GL_ARB_vertex_array_object || caps.OpenGL30;
 		useVaoArb = !caps.OpenGL30 && caps.GL_ARB_vertex_array_object;
+		supportsUniformBuffers = caps.OpenGL31 || caps.GL_ARB_uniform_buffer_object;
+		supportsProgramBinary = (caps.OpenGL41 || caps.GL_ARB_get_program_binary) && GL11.glGetInteger(ARBGetProgramBinary.GL_NUM_PROGRAM_BINARY_FORMATS) > 0;
+		supportsFramebufferBlit = caps.OpenGL30 || caps.GL_ARB_framebuffer_object;
+		supportsTimerQuery = caps.OpenGL33 || caps.GL_ARB_timer_query;
+		useDrawInstancedArb = !caps.OpenGL31 && caps.GL_ARB_draw_instanced;
+		useInstancedArraysArb = !caps.OpenGL33 && caps.GL_ARB_instanced_arrays;
+		supportsInstancing = (caps.OpenGL31 || useDrawInstancedArb) && (caps.OpenGL33 || useInstancedArraysArb);
 
 		if (Configurator.logMachineInfo) {
 			logMachineInfo(caps);
@@ -64,10 +84,14 @@ public class CanvasGlHelper {
 		log.info(String.format(" GPU: %s  %s", GLX._getCapsString(), GLX._getLWJGLVersion()));
 		log.info(String.format(" OpenGL: %s", GLX.getOpenGLVersionString()));
 		log.info(String.format(
-				" VboArb: %s  VaoEnabled: %s  VaoArb: %s",
+				" VboArb: %s  VaoEnabled: %s  VaoArb: %s  UBO: %s  ProgramBinary: %s  TimerQuery: %s  Instancing: %s",
 					useVboArb ? "Y" : "N",
 					vaoEnabled ? "Y" : "N",
-					useVaoArb ? "Y" : "N"));
+					useVaoArb ? "Y" : "N",
+					supportsUniformBuffers ? "Y" : "N",
+					supportsProgramBinary ? "Y" : "N",
+					supportsTimerQuery ? "Y" : "N",
+					supportsInstancing ? "Y" : "N"));
 		log.info(" (This message can be disabled by configuring logMachineInfo = false.)");
 		log.info("========================================================================");
 	}
@@ -140,6 +164,52 @@ public class CanvasGlHelper {
 		return vaoEnabled && Configurator.enableVao();
 	}
 
+	public static boolean supportsUniformBuffers() {
+		return supportsUniformBuffers;
+	}
+
+	public static boolean supportsProgramBinary() {
+		return supportsProgramBinary;
+	}
+
+	public static boolean supportsFramebufferBlit() {
+		return supportsFramebufferBlit;
+	}
+
+	public static boolean supportsTimerQuery() {
+		return supportsTimerQuery;
+	}
+
+	public static boolean supportsInstancing() {
+		return supportsInstancing;
+	}
+
+	/**
+	 * Only valid when {@link #supportsInstancing()} is true.
+	 */
+	public static void glVertexAttribDivisor(int index, int divisor) {
+		if (Configurator.logGlStateChanges) {
+			CanvasMod.LOG.info(String.format("GlState: glVertexAttribDivisor(%d, %d)", index, divisor));
+		}
+
+		if (useInstancedArraysArb) {
+			ARBInstancedArrays.glVertexAttribDivisorARB(index, divisor);
+		} else {
+			GL33.glVertexAttribDivisor(index, divisor);
+		}
+	}
+
+	/**
+	 * Only valid when {@link #supportsInstancing()} is true.
+	 */
+	public static void glDrawArraysInstanced(int mode, int first, int count, int instanceCount) {
+		if (useDrawInstancedArb) {
+			ARBDrawInstanced.glDrawArraysInstancedARB(mode, first, count, instanceCount);
+		} else {
+			GL31.glDrawArraysInstanced(mode, first, count, instanceCount);
+		}
+	}
+
 	public static void glGenVertexArrays(IntBuffer arrays) {
 		if (useVaoArb) {
 			ARBVertexArrayObject.glGenVertexArrays(arrays);
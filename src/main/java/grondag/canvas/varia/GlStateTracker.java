@@ -0,0 +1,260 @@
+/*
+ *  Copyright 2019, 2020 grondag
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ *  use this file except in compliance with the License.  You may obtain a copy
+ *  of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ *  WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ *  License for the specific language governing permissions and limitations under
+ *  the License.
+ */
+
+package grondag.canvas.varia;
+
+import java.util.Arrays;
+
+import com.mojang.blaze3d.systems.RenderSystem;
+import org.lwjgl.opengl.GL11;
+import org.lwjgl.opengl.GL21;
+
+import grondag.canvas.perf.GlStateCounters;
+
+/**
+ * Shadow copy of the GL state changed by material render states. Calls are
+ * only passed on when the value differs from the shadow.
+ *
+ * <p>Calls go through {@link RenderSystem} where vanilla has an equivalent so that
+ * vanilla state caching stays consistent. Other code can change the same state
+ * without our knowledge, so shadow values are only trusted while a canvas render
+ * state is active and are reset by {@link #invalidate()} when one becomes active.
+ *
+ * <p>Texture bindings are shadowed only for units bound through this class.
+ *
+ * <p>Render thread only.
+ */
+public final class GlStateTracker {
+	private static final int UNKNOWN = -1;
+	private static final int TEXTURE_UNITS = 16;
+
+	private static int blend = UNKNOWN;
+	private static int blendSrcRgb = UNKNOWN;
+	private static int blendDstRgb = UNKNOWN;
+	private static int blendSrcAlpha = UNKNOWN;
+	private static int blendDstAlpha = UNKNOWN;
+	private static int depthTest = UNKNOWN;
+	private static int depthFunc = UNKNOWN;
+	private static int depthMask = UNKNOWN;
+	private static int colorMask = UNKNOWN;
+	private static int cull = UNKNOWN;
+	private static int polygonOffset = UNKNOWN;
+	private static float polygonOffsetFactor = Float.NaN;
+	private static float polygonOffsetUnits = Float.NaN;
+	private static float lineWidth = Float.NaN;
+	private static int shadeModel = UNKNOWN;
+	private static int program = UNKNOWN;
+	private static final int[] TEXTURE_ENABLED = new int[TEXTURE_UNITS];
+	private static final int[] TEXTURE_BINDING = new int[TEXTURE_UNITS];
+
+	static {
+		invalidate();
+	}
+
+	private GlStateTracker() {
+	}
+
+	/**
+	 * Forget all shadow values so the next call for each state is issued. Called when
+	 * canvas takes control of render state after other code may have changed it.
+	 */
+	public static void invalidate() {
+		blend = UNKNOWN;
+		blendSrcRgb = UNKNOWN;
+		blendDstRgb = UNKNOWN;
+		blendSrcAlpha = UNKNOWN;
+		blendDstAlpha = UNKNOWN;
+		depthTest = UNKNOWN;
+		depthFunc = UNKNOWN;
+		depthMask = UNKNOWN;
+		colorMask = UNKNOWN;
+		cull = UNKNOWN;
+		polygonOffset = UNKNOWN;
+		polygonOffsetFactor = Float.NaN;
+		polygonOffsetUnits = Float.NaN;
+		lineWidth = Float.NaN;
+		shadeModel = UNKNOWN;
+		program = UNKNOWN;
+		Arrays.fill(TEXTURE_ENABLED, UNKNOWN);
+		Arrays.fill(TEXTURE_BINDING, UNKNOWN);
+	}
+
+	private static boolean changed(int shadow, int value) {
+		return changed(shadow == value);
+	}
+
+	private static boolean changed(boolean same) {
+		if (same) {
+			if (GlStateCounters.ENABLED) GlStateCounters.addElided();
+			return false;
+		} else {
+			if (GlStateCounters.ENABLED) GlStateCounters.addIssued();
+			return true;
+		}
+	}
+
+	private static int bit(boolean value) {
+		return value ? 1 : 0;
+	}
+
+	public static void blend(boolean enable) {
+		if (changed(blend, bit(enable))) {
+			blend = bit(enable);
+
+			if (enable) {
+				RenderSystem.enableBlend();
+			} else {
+				RenderSystem.disableBlend();
+			}
+		}
+	}
+
+	public static void blendFunc(int srcFactor, int dstFactor) {
+		blendFuncSeparate(srcFactor, dstFactor, srcFactor, dstFactor);
+	}
+
+	public static void blendFuncSeparate(int srcRgb, int dstRgb, int srcAlpha, int dstAlpha) {
+		if (changed(blendSrcRgb == srcRgb && blendDstRgb == dstRgb && blendSrcAlpha == srcAlpha && blendDstAlpha == dstAlpha)) {
+			blendSrcRgb = srcRgb;
+			blendDstRgb = dstRgb;
+			blendSrcAlpha = srcAlpha;
+			blendDstAlpha = dstAlpha;
+			RenderSystem.blendFuncSeparate(srcRgb, dstRgb, srcAlpha, dstAlpha);
+		}
+	}
+
+	/** Matches {@link RenderSystem#defaultBlendFunc()}. */
+	public static void defaultBlendFunc() {
+		blendFuncSeparate(GL11.GL_SRC_ALPHA, GL11.GL_ONE_MINUS_SRC_ALPHA, GL11.GL_ONE, GL11.GL_ZERO);
+	}
+
+	public static void depthTest(boolean enable) {
+		if (changed(depthTest, bit(enable))) {
+			depthTest = bit(enable);
+
+			if (enable) {
+				RenderSystem.enableDepthTest();
+			} else {
+				RenderSystem.disableDepthTest();
+			}
+		}
+	}
+
+	public static void depthFunc(int func) {
+		if (changed(depthFunc, func)) {
+			depthFunc = func;
+			RenderSystem.depthFunc(func);
+		}
+	}
+
+	public static void depthMask(boolean enable) {
+		if (changed(depthMask, bit(enable))) {
+			depthMask = bit(enable);
+			RenderSystem.depthMask(enable);
+		}
+	}
+
+	public static void colorMask(boolean red, boolean green, boolean blue, boolean alpha) {
+		final int mask = bit(red) | (bit(green) << 1) | (bit(blue) << 2) | (bit(alpha) << 3);
+
+		if (changed(colorMask, mask)) {
+			colorMask = mask;
+			RenderSystem.colorMask(red, green, blue, alpha);
+		}
+	}
+
+	public static void cull(boolean enable) {
+		if (changed(cull, bit(enable))) {
+			cull = bit(enable);
+
+			if (enable) {
+				RenderSystem.enableCull();
+			} else {
+				RenderSystem.disableCull();
+			}
+		}
+	}
+
+	public static void polygonOffset(boolean enable, float factor, float units) {
+		if (changed(polygonOffsetFactor == factor && polygonOffsetUnits == units)) {
+			polygonOffsetFactor = factor;
+			polygonOffsetUnits = units;
+			RenderSystem.polygonOffset(factor, units);
+		}
+
+		if (changed(polygonOffset, bit(enable))) {
+			polygonOffset = bit(enable);
+
+			if (enable) {
+				RenderSystem.enablePolygonOffset();
+			} else {
+				RenderSystem.disablePolygonOffset();
+			}
+		}
+	}
+
+	public static void lineWidth(float width) {
+		if (changed(lineWidth == width)) {
+			lineWidth = width;
+			RenderSystem.lineWidth(width);
+		}
+	}
+
+	public static void shadeModel(int mode) {
+		if (changed(shadeModel, mode)) {
+			shadeModel = mode;
+			RenderSystem.shadeModel(mode);
+		}
+	}
+
+	public static void useProgram(int programId) {
+		if (changed(program, programId)) {
+			program = programId;
+			GL21.glUseProgram(programId);
+		}
+	}
+
+	/**
+	 * Enables or disables 2D texturing for the given unit, leaving it as the active unit.
+	 * @param unit zero-based unit index, not a {@code GL_TEXTUREn} constant
+	 */
+	public static void texture(int unit, boolean enable) {
+		RenderSystem.activeTexture(GL21.GL_TEXTURE0 + unit);
+
+		if (changed(TEXTURE_ENABLED[unit], bit(enable))) {
+			TEXTURE_ENABLED[unit] = bit(enable);
+
+			if (enable) {
+				RenderSystem.enableTexture();
+			} else {
+				RenderSystem.disableTexture();
+			}
+		}
+	}
+
+	/**
+	 * Binds a 2D texture to the given unit, leaving it as the active unit.
+	 * @param unit zero-based unit index, not a {@code GL_TEXTUREn} constant
+	 */
+	public static void bindTexture(int unit, int textureId) {
+		RenderSystem.activeTexture(GL21.GL_TEXTURE0 + unit);
+
+		if (changed(TEXTURE_BINDING[unit], textureId)) {
+			TEXTURE_BINDING[unit] = textureId;
+			RenderSystem.bindTexture(textureId);
+		}
+	}
+}
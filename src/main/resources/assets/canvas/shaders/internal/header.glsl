@@ -2,13 +2,17 @@
 #version 120
 // removed when not running on a mac
 #extension GL_EXT_gpu_shader4 : require
+// GL_ARB_uniform_buffer_object is added when world data is in a uniform buffer
 
 #define VERTEX_SHADER
 
 // mac doesn't understand uint syntax
 #if __VERSION__ < 130
 	#define uint unsigned int
+	#define _cv_textureGrad texture2DGrad
 #else
+	#define _cv_textureGrad textureGrad
+
 	#ifdef VERTEX_SHADER
 		#define varying out
 	#else
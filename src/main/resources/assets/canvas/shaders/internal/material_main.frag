@@ -49,6 +49,17 @@ vec4 aoFactor(vec2 lightCoord) {
 }
 #endif
 
+vec4 _cv_spriteColor() {
+	if (_cvv_repeatBounds.z != 0.0) {
+		// Tiled quad: wrap within sprite bounds. Gradients come from the unwrapped
+		// coordinates so mip selection doesn't jump at the seams.
+		vec2 uv = _cvv_repeatBounds.xy + fract(_cvv_texcoord) * _cvv_repeatBounds.zw;
+		return _cv_textureGrad(frxs_spriteAltas, uv, dFdx(_cvv_texcoord) * _cvv_repeatBounds.zw, dFdy(_cvv_texcoord) * _cvv_repeatBounds.zw);
+	}
+
+	return texture2D(frxs_spriteAltas, _cvv_texcoord, _cv_getFlag(_CV_FLAG_UNMIPPED) * -4.0);
+}
+
 vec4 light(frx_FragmentData fragData) {
 	vec4 result;
 
@@ -90,7 +101,7 @@ void main() {
 #endif
 
 	frx_FragmentData fragData = frx_FragmentData (
-		texture2D(frxs_spriteAltas, _cvv_texcoord, _cv_getFlag(_CV_FLAG_UNMIPPED) * -4.0),
+		_cv_spriteColor(),
 		_cvv_color,
 		frx_matEmissive() ? 1.0 : 0.0,
 		!frx_matDisableDiffuse(),
@@ -23,6 +23,19 @@ void _cv_endVertex(inout frx_VertexData data, in int cv_programId) {
 }
 
 void main() {
+#ifdef _CV_INSTANCED
+	// model geometry is shared by all instances, with white color, no light and no overlay
+	frx_VertexData data = frx_VertexData(
+	vec4(dot(in_inst_model_0, gl_Vertex), dot(in_inst_model_1, gl_Vertex), dot(in_inst_model_2, gl_Vertex), 1.0),
+	in_uv,
+	in_color * in_inst_color,
+	normalize(mat3(in_inst_normal_0, in_inst_normal_1, in_inst_normal_2) * ((in_normal_flags.xyz - 127.0) / 127.0)),
+	in_inst_lightmap.rg * 0.00390625 + 0.03125
+	);
+
+	// overlay flags don't overlap material flags, so adding them is the same as combining bits
+	_cvv_flags = uint(in_normal_flags.w + in_inst_lightmap.w + 0.5);
+#else
 	frx_VertexData data = frx_VertexData(
 	gl_Vertex,
 	in_uv,
@@ -34,9 +47,19 @@ void main() {
 	// Adding +0.5 prevents striping or other strangeness in flag-dependent rendering
 	// due to FP error on some cards/drivers.  Also made varying attribute invariant (rolls eyes at OpenGL)
 	_cvv_flags = uint(in_normal_flags.w + 0.5);
+#endif
 
 	_cv_setupProgram();
 
+	// tiled quads are buffered at reduced scale so they fit the unsigned short range
+	bool uvRepeat = in_material.y >= _CV_UV_REPEAT_FLAG;
+
+	if (uvRepeat) {
+		data.spriteUV *= _CV_UV_REPEAT_SPAN;
+	}
+
+	_cvv_repeatBounds = vec4(0.0, 0.0, 0.0, 0.0);
+
 	int cv_programId = _cv_vertexProgramId();
 	_cv_startVertex(data, cv_programId);
 
@@ -54,7 +77,12 @@ void main() {
 		spriteBounds -= fract(spriteBounds);
 		spriteBounds /= vec4(atlasWidth, atlasHeight, atlasWidth, atlasHeight);
 
-		data.spriteUV = spriteBounds.xy + data.spriteUV * spriteBounds.zw;
+		if (uvRepeat) {
+			// wrapped per fragment, so texture coordinates stay in sprite units here
+			_cvv_repeatBounds = spriteBounds;
+		} else {
+			data.spriteUV = spriteBounds.xy + data.spriteUV * spriteBounds.zw;
+		}
 	}
 
 	data.spriteUV = _cv_textureCoord(data.spriteUV, 0);
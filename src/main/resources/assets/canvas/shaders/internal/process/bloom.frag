@@ -11,6 +11,7 @@ uniform sampler2D _cvu_bloom;
 uniform ivec2 _cvu_size;
 uniform vec2 _cvu_distance;
 uniform float cvu_intensity;
+uniform int _cvu_lod;
 
 varying vec2 _cvv_texcoord;
 
@@ -19,7 +20,7 @@ varying vec2 _cvv_texcoord;
 void main() {
 	vec4 base = frx_fromGamma(texture2D(_cvu_base, _cvv_texcoord));
 
-	vec4 bloom = texture2DLod(_cvu_bloom, _cvv_texcoord, 0);
+	vec4 bloom = texture2DLod(_cvu_bloom, _cvv_texcoord, _cvu_lod);
 
 	// chop off very low end to avoid halo banding
 	vec3 color = base.rgb + (max(bloom.rgb - vec3(0.01), vec3(0))) / vec3(0.99) * cvu_intensity;
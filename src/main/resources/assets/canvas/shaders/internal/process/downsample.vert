@@ -13,7 +13,7 @@ attribute vec2 in_uv;
 varying vec2 _cvv_texcoord;
 
 void main() {
-	vec4 outPos = gl_ProjectionMatrix * vec4(gl_Vertex.xy * _cvu_size, 0.0, 1.0);
-	gl_Position = vec4(outPos.xy, 0.2, 1.0);
+	// full-screen quad with y down, so no projection is needed
+	gl_Position = vec4(gl_Vertex.x * 2.0 - 1.0, 1.0 - gl_Vertex.y * 2.0, 0.2, 1.0);
 	_cvv_texcoord = in_uv;
 }
@@ -57,6 +57,11 @@ float _cv_isGui() {
 void _cv_setupProgram() {
 #ifndef PROGRAM_BY_UNIFORM
 	float materialIndex = in_material.y;
+
+	if (materialIndex >= _CV_UV_REPEAT_FLAG) {
+		materialIndex -= _CV_UV_REPEAT_FLAG;
+	}
+
 	float y = floor((materialIndex + 0.1) / _CV_MATERIAL_INFO_TEXTURE_SIZE);
 	float x = materialIndex - (y * _CV_MATERIAL_INFO_TEXTURE_SIZE);
 	vec2 coord = vec2(x, y);
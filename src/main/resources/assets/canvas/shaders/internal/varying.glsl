@@ -18,3 +18,6 @@ varying vec2 _cvv_texcoord;
 varying vec2 _cvv_lightcoord;
 varying vec3 _cvv_normal;
 varying vec3 _cvv_worldcoord;
+
+// atlas bounds (min uv, size) of tiled sprites, zero otherwise
+flat varying vec4 _cvv_repeatBounds;
@@ -8,12 +8,28 @@
 #define _CV_ATLAS_WIDTH 1
 #define _CV_ATLAS_HEIGHT 2
 
+// set in material attribute for quads that tile their sprite - see CanvasVertexFormats
+#define _CV_UV_REPEAT_FLAG 32768.0
+#define _CV_UV_REPEAT_SPAN 16.0
+
 #ifdef VERTEX_SHADER
 attribute vec4 in_color;
 attribute vec2 in_uv;
 attribute vec2 in_material;
 attribute vec4 in_lightmap;
 attribute vec4 in_normal_flags;
+
+#ifdef _CV_INSTANCED
+// per-instance attributes - see CanvasVertexFormats.MATERIAL_INSTANCE
+attribute vec4 in_inst_model_0;
+attribute vec4 in_inst_model_1;
+attribute vec4 in_inst_model_2;
+attribute vec3 in_inst_normal_0;
+attribute vec3 in_inst_normal_1;
+attribute vec3 in_inst_normal_2;
+attribute vec4 in_inst_color;
+attribute vec4 in_inst_lightmap;
+#endif
 #endif
 
 uniform float[4] _cvu_atlas;
@@ -30,9 +30,21 @@
 #define _CV_FLAG0_IS_THUNDERING        	6
 #define _CV_FLAG0_IS_SKY_DARKENED      	7
 
+// enabled when the uniform buffer is supported and configured
+//#define _CV_WORLD_UBO
+
+#ifdef _CV_WORLD_UBO
+// std140 layout must match WorldDataUniformBuffer
+layout(std140) uniform _cvu_world_block {
+	float[22] _cvu_world;
+	uint _cvu_world_flags;
+	uint[2] _cvu_condition_flags;
+};
+#else
 uniform float[22] _cvu_world;
 uniform uint _cvu_world_flags;
 uniform uint[2] _cvu_condition_flags;
+#endif
 uniform vec3 _cvu_model_origin;
 uniform int _cvu_model_origin_type;
 uniform mat3 _cvu_normal_model_matrix;
@@ -0,0 +1,52 @@
+package grondag.canvas;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import grondag.canvas.terrain.util.BiomeColorBlender;
+
+class BiomeColorBlenderTest {
+	@Test
+	void test() {
+		final Random r = new Random(7);
+		final int[][] base = new int[9][256];
+		final int[] out = new int[256];
+
+		for (int n = 0; n < 20; n++) {
+			for (final int[] chunk : base) {
+				for (int i = 0; i < 256; i++) {
+					chunk[i] = r.nextInt(0x1000000);
+				}
+			}
+
+			for (int radius = 1; radius <= 7; radius++) {
+				BiomeColorBlender.blend(base, radius, out);
+
+				for (int z = 0; z < 16; z++) {
+					for (int x = 0; x < 16; x++) {
+						assert out[x | (z << 4)] == bruteForce(base, radius, x, z);
+					}
+				}
+			}
+		}
+	}
+
+	private static int bruteForce(int[][] base, int radius, int xIn, int zIn) {
+		final int sampleCount = (radius * 2 + 1) * (radius * 2 + 1);
+		int r = 0;
+		int g = 0;
+		int b = 0;
+
+		for (int x = xIn - radius; x <= xIn + radius; x++) {
+			for (int z = zIn - radius; z <= zIn + radius; z++) {
+				final int color = base[BiomeColorBlender.neighborIndex(x >> 4, z >> 4)][(x & 0xF) | ((z & 0xF) << 4)];
+				g += (color >> 8) & 255;
+				r += (color >> 16) & 255;
+				b += color & 255;
+			}
+		}
+
+		return (r / sampleCount & 255) << 16 | (g / sampleCount & 255) << 8 | b / sampleCount & 255;
+	}
+}
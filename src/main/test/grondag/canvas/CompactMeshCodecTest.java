@@ -0,0 +1,85 @@
+package grondag.canvas;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import grondag.canvas.apiimpl.mesh.CompactMeshCodec;
+import grondag.canvas.apiimpl.mesh.MeshEncodingHelper;
+
+class CompactMeshCodecTest {
+	@Test
+	void test() {
+		final int stride = MeshEncodingHelper.stride();
+		final Random r = new Random(42);
+
+		for (int n = 0; n < 200; n++) {
+			final int quadCount = 1 + r.nextInt(12);
+			final int[] data = new int[quadCount * stride + 7];
+
+			for (int q = 0; q < quadCount; q++) {
+				final int base = q * stride;
+
+				// header fields mostly repeat, as in real meshes
+				data[base + MeshEncodingHelper.HEADER_MATERIAL] = r.nextInt(4);
+				data[base + MeshEncodingHelper.HEADER_COLOR_INDEX] = r.nextBoolean() ? -1 : r.nextInt(3);
+				data[base + MeshEncodingHelper.HEADER_BITS] = r.nextInt();
+				data[base + MeshEncodingHelper.HEADER_TAG] = 0;
+				data[base + MeshEncodingHelper.HEADER_SPRITE] = r.nextInt(1000);
+
+				for (int v = 0; v < 4; v++) {
+					final int vb = base + MeshEncodingHelper.VERTEX_START + v * MeshEncodingHelper.BASE_VERTEX_STRIDE;
+					data[vb] = Float.floatToRawIntBits(r.nextInt(17) / 16f);
+					data[vb + 1] = Float.floatToRawIntBits(r.nextFloat() * 2 - 0.5f);
+					data[vb + 2] = Float.floatToRawIntBits(r.nextBoolean() ? -0f : 1f);
+					data[vb + 3] = r.nextBoolean() ? -1 : r.nextInt();
+					data[vb + 4] = r.nextInt(0x10000);
+					data[vb + 5] = r.nextInt(0x10000);
+					data[vb + 6] = r.nextInt();
+					data[vb + 7] = r.nextBoolean() ? 0 : r.nextInt();
+				}
+			}
+
+			final int length = quadCount * stride;
+			final byte[] bytes = CompactMeshCodec.encode(data, length);
+			final int[] decoded = new int[length];
+			final CompactMeshCodec.Reader reader = new CompactMeshCodec.Reader();
+			reader.begin(bytes);
+			int index = 0;
+
+			while (reader.hasNext()) {
+				reader.next(decoded, index);
+				index += stride;
+			}
+
+			assert index == length;
+			assert Arrays.equals(decoded, Arrays.copyOf(data, length));
+		}
+	}
+
+	@Test
+	void repeatedQuadsAreSmall() {
+		final int stride = MeshEncodingHelper.stride();
+		final int[] data = new int[stride * 6];
+
+		for (int q = 0; q < 6; q++) {
+			final int base = q * stride;
+			data[base + MeshEncodingHelper.HEADER_COLOR_INDEX] = -1;
+			data[base + MeshEncodingHelper.HEADER_SPRITE] = 123;
+
+			for (int v = 0; v < 4; v++) {
+				final int vb = base + MeshEncodingHelper.VERTEX_START + v * MeshEncodingHelper.BASE_VERTEX_STRIDE;
+				data[vb] = Float.floatToRawIntBits((v & 1) == 0 ? 0f : 1f);
+				data[vb + 1] = Float.floatToRawIntBits(0.5f);
+				data[vb + 2] = Float.floatToRawIntBits((v & 2) == 0 ? 0f : 1f);
+				data[vb + 3] = -1;
+				data[vb + 4] = (v & 1) == 0 ? 0 : 0xFFFF;
+				data[vb + 5] = (v & 2) == 0 ? 0 : 0xFFFF;
+			}
+		}
+
+		final byte[] bytes = CompactMeshCodec.encode(data, data.length);
+		assert bytes.length * 2 < data.length * 4;
+	}
+}
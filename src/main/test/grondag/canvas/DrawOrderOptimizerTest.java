@@ -0,0 +1,112 @@
+package grondag.canvas;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import grondag.canvas.terrain.render.DrawOrderOptimizer;
+
+class DrawOrderOptimizerTest {
+	@Test
+	void test() {
+		final DrawOrderOptimizer optimizer = new DrawOrderOptimizer();
+		final Random r = new Random(11);
+
+		for (int n = 0; n < 20; n++) {
+			optimizer.clear();
+			final int regionCount = 1 + r.nextInt(300);
+			int drawCount = 0;
+
+			final int[] tiers = new int[regionCount * 4];
+			final int[] programs = new int[regionCount * 4];
+			final int[] textures = new int[regionCount * 4];
+			final int[] states = new int[regionCount * 4];
+
+			for (int region = 0; region < regionCount; region++) {
+				final int itemCount = 1 + r.nextInt(4);
+
+				for (int item = 0; item < itemCount; item++) {
+					final int index = region * 4 + item;
+					tiers[index] = r.nextInt(3) == 0 ? 1 : 0;
+					programs[index] = r.nextInt(4);
+					textures[index] = r.nextInt(3);
+					states[index] = r.nextInt(2);
+					final int stateId = ((tiers[index] * 4 + programs[index]) * 3 + textures[index]) * 2 + states[index];
+					optimizer.add(DrawOrderOptimizer.stateKey(tiers[index], programs[index], textures[index], states[index]), stateId, region, item);
+					++drawCount;
+				}
+			}
+
+			optimizer.sort();
+			assert optimizer.size() == drawCount;
+			assert optimizer.sortedSwitches() <= optimizer.unsortedSwitches();
+
+			for (int i = 1; i < drawCount; i++) {
+				final int a = optimizer.group(i - 1) * 4 + optimizer.item(i - 1);
+				final int b = optimizer.group(i) * 4 + optimizer.item(i);
+
+				final int cmp = compare(tiers[a], tiers[b], programs[a], programs[b], textures[a], textures[b], states[a], states[b]);
+				assert cmp <= 0;
+
+				// same state keeps region order
+				if (cmp == 0) {
+					assert a < b;
+				}
+			}
+		}
+	}
+
+	@Test
+	void switchCounts() {
+		final DrawOrderOptimizer optimizer = new DrawOrderOptimizer();
+
+		// two states alternating across ten regions
+		for (int region = 0; region < 10; region++) {
+			optimizer.add(DrawOrderOptimizer.stateKey(0, 1, 0, 0), 1, region, 0);
+			optimizer.add(DrawOrderOptimizer.stateKey(0, 2, 0, 0), 2, region, 1);
+		}
+
+		optimizer.sort();
+		assert optimizer.unsortedSwitches() == 20;
+		assert optimizer.sortedSwitches() == 2;
+		assert optimizer.group(0) == 0 && optimizer.item(0) == 0;
+		assert optimizer.group(10) == 0 && optimizer.item(10) == 1;
+	}
+
+	@Test
+	void highTierSortsLast() {
+		final DrawOrderOptimizer optimizer = new DrawOrderOptimizer();
+		optimizer.add(DrawOrderOptimizer.stateKey(255, 0, 0, 0), 0, 0, 0);
+		optimizer.add(DrawOrderOptimizer.stateKey(0, 4095, 1023, 1023), 1, 1, 0);
+		optimizer.sort();
+		assert optimizer.group(0) == 1;
+		assert optimizer.group(1) == 0;
+	}
+
+	@Test
+	void outOfRangeElementsClamp() {
+		assert DrawOrderOptimizer.stateKey(3, 5000, 0, 0) == DrawOrderOptimizer.stateKey(3, 4095, 0, 0);
+		assert DrawOrderOptimizer.stateKey(3, 0, 2000, 0) == DrawOrderOptimizer.stateKey(3, 0, 1023, 0);
+		assert DrawOrderOptimizer.stateKey(3, 0, 0, 2000) == DrawOrderOptimizer.stateKey(3, 0, 0, 1023);
+
+		// clamped values never reach the tier
+		assert DrawOrderOptimizer.stateKey(3, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE) < DrawOrderOptimizer.stateKey(4, 0, 0, 0);
+
+		boolean didThrow = false;
+
+		try {
+			DrawOrderOptimizer.stateKey(256, 0, 0, 0);
+		} catch (final IllegalArgumentException e) {
+			didThrow = true;
+		}
+
+		assert didThrow;
+	}
+
+	private static int compare(int tierA, int tierB, int programA, int programB, int textureA, int textureB, int stateA, int stateB) {
+		if (tierA != tierB) return Integer.compare(tierA, tierB);
+		if (programA != programB) return Integer.compare(programA, programB);
+		if (textureA != textureB) return Integer.compare(textureA, textureB);
+		return Integer.compare(stateA, stateB);
+	}
+}
@@ -0,0 +1,218 @@
+package grondag.canvas;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import grondag.canvas.shader.glsl.GlslDefines;
+import grondag.canvas.shader.glsl.GlslIncludeGraph;
+import grondag.canvas.shader.glsl.GlslPreprocessor;
+
+class GlslPreprocessorTest {
+	private static final Path ASSETS = Paths.get("src", "main", "resources", "assets");
+
+	private static String load(String id) {
+		final int colon = id.indexOf(':');
+		final Path path = ASSETS.resolve(id.substring(0, colon)).resolve(id.substring(colon + 1));
+
+		try {
+			return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+		} catch (final IOException e) {
+			// material shader targets are generated at runtime
+			return null;
+		}
+	}
+
+	private static GlslDefines configDefines(boolean isFragment) {
+		return new GlslDefines()
+			.version(130)
+			.extension("GL_EXT_gpu_shader4", null)
+			.extension("GL_ARB_uniform_buffer_object", "require")
+			.flag("VERTEX_SHADER", !isFragment)
+			.flag("FRAGMENT_SHADER", isFragment)
+			.flag("PROGRAM_BY_UNIFORM", false)
+			.flag("ANIMATED_FOLIAGE", true)
+			.define("_CV_FOG_CONFIG", "_CV_FOG_CONFIG_SUBTLE")
+			.define("TARGET_EMISSIVE", -1)
+			.define("HANDHELD_LIGHT_RADIUS", 0)
+			.define("_CV_MATERIAL_INFO_TEXTURE_SIZE", 64)
+			.define("_CV_MAX_SHADER_COUNT", 4096)
+			.flag("VANILLA_LIGHTING", true)
+			.flag("ENABLE_LIGHT_NOISE", false)
+			.define("AO_SHADING_MODE", "AO_MODE_NORMAL")
+			.define("DIFFUSE_SHADING_MODE", "DIFFUSE_MODE_NORMAL")
+			.flag("_CV_WORLD_UBO", true);
+	}
+
+	private static int count(String source, String line) {
+		int result = 0;
+
+		for (final String l : source.split("\n")) {
+			if (l.trim().equals(line)) {
+				++result;
+			}
+		}
+
+		return result;
+	}
+
+	private static int countStartingWith(String source, String prefix) {
+		int result = 0;
+
+		for (final String l : source.split("\n")) {
+			if (l.trim().startsWith(prefix)) {
+				++result;
+			}
+		}
+
+		return result;
+	}
+
+	@Test
+	void shippedShaders() {
+		final GlslIncludeGraph graph = new GlslIncludeGraph(GlslPreprocessorTest::load);
+		final String[] ids = {
+			"canvas:shaders/internal/material_main.vert",
+			"canvas:shaders/internal/material_main.frag",
+			"canvas:shaders/internal/process/bloom.frag",
+			"canvas:shaders/internal/process/copy.vert",
+		};
+
+		for (final String id : ids) {
+			final boolean isFragment = id.endsWith(".frag");
+			final String combined = graph.resolve(load(id));
+			assert countStartingWith(combined, "#include canvas:shaders") == 0;
+			assert countStartingWith(combined, "#include frex:shaders") == 0;
+
+			final GlslDefines defines = configDefines(isFragment);
+			final String output = GlslPreprocessor.process(combined, defines);
+
+			// deterministic, so memoizing by source and key is safe
+			assert output.equals(GlslPreprocessor.process(combined, configDefines(isFragment)));
+			assert defines.key().equals(configDefines(isFragment).key());
+			assert !defines.key().equals(configDefines(!isFragment).key());
+
+			assert count(output, "#version 130") == 1;
+			assert count(output, "#version 120") == 0;
+			assert countStartingWith(output, "#extension GL_EXT_gpu_shader4") == 0;
+			assert count(output, "#extension GL_ARB_uniform_buffer_object : require") == 1;
+			assert count(output, "#define _CV_MAX_SHADER_COUNT 4096") == 1;
+			assert count(output, "#define _CV_MAX_SHADER_COUNT 0") == 0;
+			assert count(output, "#define _CV_FOG_CONFIG _CV_FOG_CONFIG_SUBTLE") == 1;
+			assert countStartingWith(output, "#define PROGRAM_BY_UNIFORM") == 0;
+			assert count(output, isFragment ? "#define FRAGMENT_SHADER" : "#define VERTEX_SHADER") == 1;
+			assert count(output, isFragment ? "#define VERTEX_SHADER" : "#define FRAGMENT_SHADER") == 0;
+
+			// decided here, so never reach the driver
+			assert !output.contains("__VERSION__");
+			assert !output.contains("#ifdef VERTEX_SHADER");
+			assert !output.contains("#ifdef PROGRAM_BY_UNIFORM");
+			assert !output.contains("#if TARGET_EMISSIVE");
+			assert !output.contains("#define uint unsigned int");
+
+			// dead branches are gone
+			assert !output.contains("uniform ivec3 _cvu_program;");
+
+			if (id.contains("material_main")) {
+				assert output.contains("flat varying ivec4 _cvu_program;");
+				assert output.contains("layout(std140) uniform _cvu_world_block");
+				assert countStartingWith(output, "#ifdef _CV_WORLD_UBO") == 0;
+			}
+
+			assert countStartingWith(output, "#if") == countStartingWith(output, "#endif");
+		}
+	}
+
+	@Test
+	void includeGraph() {
+		final GlslIncludeGraph graph = new GlslIncludeGraph(GlslPreprocessorTest::load);
+		final Set<String> deps = graph.dependencies("canvas:shaders/internal/material_main.vert");
+		assert deps.contains("canvas:shaders/internal/header.glsl");
+		assert deps.contains("frex:shaders/api/context.glsl");
+
+		// reached only indirectly, through frex:shaders/api/context.glsl
+		assert deps.contains("canvas:shaders/internal/program.glsl");
+		assert graph.includes("frex:shaders/api/context.glsl").contains("canvas:shaders/internal/program.glsl");
+
+		final String combined = graph.resolve(load("canvas:shaders/internal/material_main.vert"));
+
+		// each file once, at first reference
+		assert combined.indexOf("canvas:shaders/internal/program.glsl\n*****") == combined.lastIndexOf("canvas:shaders/internal/program.glsl\n*****");
+		assert combined.indexOf("#version 120") < combined.indexOf("frex:shaders/api/context.glsl");
+	}
+
+	@Test
+	void conditionals() {
+		final GlslDefines defines = new GlslDefines().define("A", 2).undefine("B").define("C");
+		final String source = "#version 120\n"
+			+ "#define B 1\n"
+			+ "#define MODE_X 0\n"
+			+ "#define MODE MODE_X\n"
+			+ "#if A > 1 && MODE == MODE_X\n"
+			+ "keep1\n"
+			+ "#else\n"
+			+ "drop1\n"
+			+ "#endif\n"
+			+ "#ifdef B\n"
+			+ "drop2\n"
+			+ "#elif defined(C)\n"
+			+ "keep2\n"
+			+ "#endif\n"
+			+ "#if GL_ES\n"
+			+ "driver1\n"
+			+ "#elif A == 3\n"
+			+ "drop3\n"
+			+ "#elif A == 2\n"
+			+ "driver2\n"
+			+ "#else\n"
+			+ "drop4\n"
+			+ "#endif\n"
+			+ "#if A == 7\n"
+			+ "drop5\n"
+			+ "#elif GL_ES\n"
+			+ "driver3\n"
+			+ "#endif\n"
+			+ "/*\n"
+			+ "#if A == 7\n"
+			+ "*/\n"
+			+ "#ifdef GL_ES\n"
+			+ "#define D 1\n"
+			+ "#endif\n"
+			+ "#if D\n"
+			+ "driver4\n"
+			+ "#endif\n";
+
+		final String output = GlslPreprocessor.process(source, defines);
+		final String expected = "#version 120\n"
+			+ "#define A 2\n"
+			+ "#define C\n"
+			+ "#define MODE_X 0\n"
+			+ "#define MODE MODE_X\n"
+			+ "keep1\n"
+			+ "keep2\n"
+			+ "#if GL_ES\n"
+			+ "driver1\n"
+			+ "#else\n"
+			+ "driver2\n"
+			+ "#endif\n"
+			+ "#if GL_ES\n"
+			+ "driver3\n"
+			+ "#endif\n"
+			+ "/*\n"
+			+ "#if A == 7\n"
+			+ "*/\n"
+			+ "#ifdef GL_ES\n"
+			+ "#define D 1\n"
+			+ "#endif\n"
+			+ "#if D\n"
+			+ "driver4\n"
+			+ "#endif\n";
+
+		assert output.equals(expected);
+	}
+}
@@ -0,0 +1,39 @@
+package grondag.canvas;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import grondag.canvas.apiimpl.util.GreedyMerge;
+
+class GreedyMergeTest {
+	@Test
+	void expandsRectangle() {
+		final int[] cells = new int[256];
+
+		// 3 x 2 block of 1s at u = 2, v = 5 with a matching cell below the middle of the last row
+		for (int v = 5; v < 7; ++v) {
+			for (int u = 2; u < 5; ++u) {
+				cells[(v << 4) | u] = 1;
+			}
+		}
+
+		cells[(7 << 4) | 3] = 1;
+		final GreedyMerge.CellMatcher matcher = (i, j) -> cells[j] != 0 && cells[j] == cells[i];
+		final int start = (5 << 4) | 2;
+		final int w = GreedyMerge.width(matcher, start, 2);
+		assert w == 3;
+		assert GreedyMerge.height(matcher, start, 5, w) == 2;
+	}
+
+	@Test
+	void stopsAtLayerEdge() {
+		final int[] cells = new int[256];
+		Arrays.fill(cells, 2);
+		final GreedyMerge.CellMatcher matcher = (i, j) -> cells[j] != 0 && cells[j] == cells[i];
+		assert GreedyMerge.width(matcher, 0, 0) == 16;
+		assert GreedyMerge.height(matcher, 0, 0, 16) == 16;
+		assert GreedyMerge.width(matcher, (15 << 4) | 12, 12) == 4;
+		assert GreedyMerge.height(matcher, (15 << 4) | 12, 15, 4) == 1;
+	}
+}
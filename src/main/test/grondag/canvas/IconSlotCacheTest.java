@@ -0,0 +1,77 @@
+package grondag.canvas;
+
+import org.junit.jupiter.api.Test;
+
+import grondag.canvas.texture.IconSlotCache;
+
+class IconSlotCacheTest {
+	@Test
+	void fillAndFind() {
+		final IconSlotCache<String> cache = new IconSlotCache<>(4);
+
+		for (int i = 0; i < 4; ++i) {
+			assert cache.find("k" + i, 0) == -1;
+			assert cache.allocate("k" + i, 0) == i;
+		}
+
+		for (int i = 0; i < 4; ++i) {
+			assert cache.find("k" + i, 1) == i;
+		}
+
+		assert cache.size() == 4;
+		assert cache.takeEvictionCount() == 0;
+	}
+
+	@Test
+	void evictsLeastRecentlyUsed() {
+		final IconSlotCache<String> cache = new IconSlotCache<>(3);
+		cache.allocate("a", 0);
+		cache.allocate("b", 0);
+		cache.allocate("c", 0);
+
+		// b becomes least recently used
+		assert cache.find("a", 1) == 0;
+		assert cache.find("c", 1) == 2;
+
+		assert cache.allocate("d", 2) == 1;
+		assert cache.find("b", 2) == -1;
+		assert cache.find("d", 2) == 1;
+		assert cache.takeEvictionCount() == 1;
+		assert cache.takeEvictionCount() == 0;
+
+		// a is now oldest
+		assert cache.allocate("e", 3) == 0;
+		assert cache.find("a", 3) == -1;
+		assert cache.size() == 3;
+	}
+
+	@Test
+	void keepsSlotsUsedThisFrame() {
+		final IconSlotCache<Integer> cache = new IconSlotCache<>(2);
+		cache.allocate(0, 5);
+		cache.allocate(1, 5);
+
+		assert cache.allocate(2, 5) == -1;
+		assert cache.find(0, 5) == 0;
+		assert cache.find(1, 5) == 1;
+		assert cache.takeEvictionCount() == 0;
+
+		// next frame only used slots are protected
+		assert cache.find(1, 6) == 1;
+		assert cache.allocate(2, 6) == 0;
+		assert cache.allocate(3, 6) == -1;
+	}
+
+	@Test
+	void clear() {
+		final IconSlotCache<String> cache = new IconSlotCache<>(2);
+		cache.allocate("a", 0);
+		cache.allocate("b", 0);
+		cache.clear();
+
+		assert cache.size() == 0;
+		assert cache.find("a", 0) == -1;
+		assert cache.allocate("c", 0) == 0;
+		assert cache.allocate("a", 0) == 1;
+	}
+}
@@ -0,0 +1,115 @@
+package grondag.canvas;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import grondag.canvas.buffer.instance.InstanceBatcher;
+
+class InstanceBatcherTest {
+	@Test
+	void keys() {
+		final int maxOrder = (1 << InstanceBatcher.ORDER_BITS) - 1;
+		final int maxMesh = InstanceBatcher.MAX_MESHES - 1;
+
+		for (final int order : new int[] {0, 1, 2047, 2048, maxOrder}) {
+			for (final int mesh : new int[] {0, 1, 12345, maxMesh}) {
+				final int key = InstanceBatcher.batchKey(order, mesh);
+				assert key >= 0;
+				assert InstanceBatcher.keyOrder(key) == order;
+				assert InstanceBatcher.keyMesh(key) == mesh;
+			}
+		}
+
+		// order dominates mesh
+		assert InstanceBatcher.batchKey(1, 0) > InstanceBatcher.batchKey(0, maxMesh);
+		assert InstanceBatcher.batchKey(maxOrder, 0) > InstanceBatcher.batchKey(maxOrder - 1, maxMesh);
+	}
+
+	@Test
+	void rejectsOutOfRangeKeys() {
+		assert throwsOnKey(InstanceBatcher.MAX_ORDERS, 0);
+		assert throwsOnKey(-1, 0);
+		assert throwsOnKey(0, InstanceBatcher.MAX_MESHES);
+		assert !throwsOnKey(InstanceBatcher.MAX_ORDERS - 1, InstanceBatcher.MAX_MESHES - 1);
+	}
+
+	private static boolean throwsOnKey(int order, int mesh) {
+		try {
+			InstanceBatcher.batchKey(order, mesh);
+			return false;
+		} catch (final IllegalArgumentException e) {
+			return true;
+		}
+	}
+
+	@Test
+	void packLight() {
+		// block 0xF0, sky 0xE0 in vanilla packed form
+		assert InstanceBatcher.packLight(0xE000F0, 0) == 0xE0F0;
+		assert InstanceBatcher.packLight(0xE000F0, 0x40000000) == 0x4000E0F0;
+	}
+
+	@Test
+	void batches() {
+		final InstanceBatcher batcher = new InstanceBatcher();
+		final Random r = new Random(42);
+		final float[] transform = new float[InstanceBatcher.TRANSFORM_LENGTH];
+
+		// run twice to check reuse after clear, with enough instances to grow
+		for (int pass = 0; pass < 2; ++pass) {
+			batcher.clear();
+			final int count = 3000;
+			final int[] keys = new int[count];
+
+			for (int i = 0; i < count; ++i) {
+				keys[i] = InstanceBatcher.batchKey(r.nextInt(1 << InstanceBatcher.ORDER_BITS) & 0xF07, r.nextInt(5));
+
+				for (int j = 0; j < transform.length; ++j) {
+					transform[j] = i + j * 0.01f;
+				}
+
+				// color identifies the instance, light its key
+				batcher.add(keys[i], transform, i, keys[i]);
+			}
+
+			assert batcher.size() == count;
+			batcher.sort();
+
+			final int[] data = batcher.sortedData();
+			int expectedStart = 0;
+			int lastKey = -1;
+
+			for (int b = 0; b < batcher.batchCount(); ++b) {
+				final int key = batcher.batchKey(b);
+				final int start = batcher.batchStart(b);
+				final int size = batcher.batchSize(b);
+				assert key > lastKey;
+				assert start == expectedStart;
+				assert size > 0;
+
+				int lastInstance = -1;
+
+				for (int i = start; i < start + size; ++i) {
+					final int base = i * InstanceBatcher.INSTANCE_STRIDE;
+					final int instance = data[base + InstanceBatcher.COLOR_OFFSET];
+
+					assert data[base + InstanceBatcher.LIGHT_OFFSET] == key;
+					assert keys[instance] == key;
+					// same key keeps add order
+					assert instance > lastInstance;
+					lastInstance = instance;
+
+					for (int j = 0; j < InstanceBatcher.TRANSFORM_LENGTH; ++j) {
+						assert Float.intBitsToFloat(data[base + j]) == instance + j * 0.01f;
+					}
+				}
+
+				lastKey = key;
+				expectedStart += size;
+			}
+
+			assert expectedStart == count;
+		}
+	}
+}
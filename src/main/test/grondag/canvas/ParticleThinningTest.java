@@ -0,0 +1,51 @@
+package grondag.canvas;
+
+import org.junit.jupiter.api.Test;
+
+import grondag.canvas.render.ParticleThinning;
+
+class ParticleThinningTest {
+	@Test
+	void keepFraction() {
+		assert ParticleThinning.keepFraction(1000000f, 0) == 1f;
+		assert ParticleThinning.keepFraction(0f, 32) == 1f;
+		assert ParticleThinning.keepFraction(32 * 32, 32) == 1f;
+		assert ParticleThinning.keepFraction(64 * 64, 32) == 0.25f;
+		assert ParticleThinning.keepFraction(1000 * 1000, 32) == ParticleThinning.MIN_KEEP_FRACTION;
+
+		float last = 1f;
+
+		for (int d = 32; d < 256; ++d) {
+			final float f = ParticleThinning.keepFraction(d * d, 32);
+			assert f <= last;
+			last = f;
+		}
+	}
+
+	@Test
+	void isKept() {
+		final int count = 100000;
+
+		for (final float fraction : new float[] {0.125f, 0.25f, 0.5f, 0.9f}) {
+			int kept = 0;
+
+			// sequential hashes are the worst case for distribution
+			for (int i = 0; i < count; ++i) {
+				final boolean result = ParticleThinning.isKept(i, fraction);
+				assert result == ParticleThinning.isKept(i, fraction);
+
+				if (result) {
+					++kept;
+					// anything kept at a fraction is also kept at larger fractions
+					assert ParticleThinning.isKept(i, Math.min(1f, fraction + 0.05f));
+				}
+			}
+
+			assert Math.abs((double) kept / count - fraction) < 0.01;
+		}
+
+		for (int i = 0; i < 1000; ++i) {
+			assert ParticleThinning.isKept(i * 31, 1f);
+		}
+	}
+}
@@ -0,0 +1,134 @@
+package grondag.canvas;
+
+import java.util.HashSet;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import grondag.canvas.terrain.region.RegionSeenBits;
+
+class RegionSeenBitsTest {
+	@Test
+	void currentPass() {
+		final RegionSeenBits bits = new RegionSeenBits();
+		assert !bits.isSeen(0, 0, 0);
+
+		final int v0 = bits.version();
+		bits.begin(1);
+		bits.add(16, 64, -32, true);
+		bits.add(32, 64, -32, false);
+
+		// nothing visible until published
+		assert !bits.isSeen(16, 64, -32);
+		bits.publish();
+		assert bits.version() != v0;
+
+		// any position within the region
+		assert bits.isSeen(16, 64, -32);
+		assert bits.isSeen(31, 79, -17);
+		assert !bits.isSeen(32, 64, -32);
+		assert !bits.isSeen(0, 64, -32);
+		assert !bits.isSeen(16, 80, -32);
+
+		// outside world height
+		assert !bits.isSeen(16, -16, -32);
+		assert !bits.isSeen(16, 256, -32);
+	}
+
+	@Test
+	void history() {
+		final RegionSeenBits bits = new RegionSeenBits();
+		bits.begin(10);
+		bits.add(0, 0, 0, true);
+		bits.add(16, 0, 0, true);
+		bits.publish();
+
+		// later pass in same version - latest result wins
+		bits.begin(10);
+		bits.add(0, 0, 0, true);
+		bits.add(16, 0, 0, false);
+		bits.publish();
+		assert bits.isSeen(0, 0, 0);
+		assert !bits.isSeen(16, 0, 0);
+
+		// retained for three more versions when not revisited
+		for (int v = 11; v <= 13; ++v) {
+			bits.begin(v);
+			bits.publish();
+			assert bits.isSeen(0, 0, 0) : v;
+		}
+
+		bits.begin(14);
+		bits.publish();
+		assert !bits.isSeen(0, 0, 0);
+
+		// revisiting replaces the older result
+		bits.begin(15);
+		bits.add(32, 0, 0, true);
+		bits.publish();
+		bits.begin(16);
+		bits.add(32, 0, 0, false);
+		bits.publish();
+		assert !bits.isSeen(32, 0, 0);
+
+		// skipped versions age out older results
+		bits.begin(17);
+		bits.add(48, 0, 0, true);
+		bits.publish();
+		bits.begin(21);
+		bits.publish();
+		assert !bits.isSeen(48, 0, 0);
+
+		bits.begin(22);
+		bits.add(64, 0, 0, true);
+		bits.publish();
+		bits.clear();
+		assert !bits.isSeen(64, 0, 0);
+	}
+
+	@Test
+	void randomLookups() {
+		final RegionSeenBits bits = new RegionSeenBits();
+		final Random random = new Random(42);
+		final HashSet<Integer> added = new HashSet<>();
+		final HashSet<Integer> visible = new HashSet<>();
+		bits.begin(1);
+
+		// within 128 chunks of each other, so no positions share a bit
+		for (int i = 0; i < 2000; ++i) {
+			final int x = random.nextInt(64) - 32;
+			final int y = random.nextInt(16);
+			final int z = random.nextInt(64) - 32;
+			final boolean isVisible = random.nextBoolean();
+
+			// the terrain iterator visits each region once per pass
+			if (!added.add(key(x, y, z))) {
+				continue;
+			}
+
+			if (isVisible) {
+				visible.add(key(x, y, z));
+			}
+
+			bits.add(x << 4, y << 4, z << 4, isVisible);
+		}
+
+		bits.publish();
+
+		for (int x = -32; x < 32; ++x) {
+			for (int y = 0; y < 16; ++y) {
+				for (int z = -32; z < 32; ++z) {
+					// any block in the region gives the same answer
+					final int bx = (x << 4) + random.nextInt(16);
+					final int by = (y << 4) + random.nextInt(16);
+					final int bz = (z << 4) + random.nextInt(16);
+					assert bits.isSeen(bx, by, bz) == visible.contains(key(x, y, z));
+				}
+			}
+		}
+	}
+
+	private static int key(int x, int y, int z) {
+		return (x + 32) | (y << 6) | ((z + 32) << 10);
+	}
+}
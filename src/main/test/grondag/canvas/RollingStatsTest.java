@@ -0,0 +1,56 @@
+package grondag.canvas;
+
+import org.junit.jupiter.api.Test;
+
+import grondag.canvas.perf.RollingStats;
+
+class RollingStatsTest {
+	@Test
+	void empty() {
+		final RollingStats stats = new RollingStats(10);
+		assert stats.count() == 0;
+		assert stats.mean() == 0;
+		assert stats.percentiles(50, 99)[1] == 0;
+	}
+
+	@Test
+	void percentiles() {
+		final RollingStats stats = new RollingStats(100);
+
+		// added out of order
+		for (int i = 100; i >= 1; --i) {
+			stats.add(i);
+		}
+
+		assert stats.count() == 100;
+		assert stats.mean() == 50.5;
+
+		final double[] p = stats.percentiles(0, 50, 95, 99, 100);
+		assert p[0] == 1;
+		assert p[1] == 50;
+		assert p[2] == 95;
+		assert p[3] == 99;
+		assert p[4] == 100;
+	}
+
+	@Test
+	void rolling() {
+		final RollingStats stats = new RollingStats(4);
+
+		for (int i = 1; i <= 10; ++i) {
+			stats.add(i);
+		}
+
+		// only 7, 8, 9, 10 remain
+		assert stats.count() == 4;
+		assert stats.mean() == 8.5;
+		assert stats.percentiles(0)[0] == 7;
+		assert stats.percentiles(50)[0] == 8;
+
+		stats.clear();
+		assert stats.count() == 0;
+		stats.add(3);
+		assert stats.mean() == 3;
+		assert stats.percentiles(99)[0] == 3;
+	}
+}
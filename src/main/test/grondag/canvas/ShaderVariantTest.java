@@ -0,0 +1,131 @@
+package grondag.canvas;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.function.IntFunction;
+
+import org.junit.jupiter.api.Test;
+
+import grondag.canvas.shader.ShaderVariantSelector;
+import grondag.canvas.shader.glsl.GlslDefines;
+import grondag.canvas.shader.glsl.GlslIncludeGraph;
+import grondag.canvas.shader.glsl.GlslPreprocessor;
+import grondag.canvas.shader.glsl.MaterialSourceGenerator;
+
+class ShaderVariantTest {
+	private static final Path ASSETS = Paths.get("src", "main", "resources", "assets");
+
+	private static final String BASE_FRAGMENT = MaterialSourceGenerator.API_TARGET + "\nvoid main() {\n" + MaterialSourceGenerator.FRAGMENT_START + "\n}\n";
+	private static final String BASE_VERTEX = MaterialSourceGenerator.API_TARGET + "\nvoid main() {\n" + MaterialSourceGenerator.VERTEX_START + "\n" + MaterialSourceGenerator.VERTEX_END + "\n}\n";
+
+	private static final IntFunction<String> FRAGMENT_SOURCES = i -> i == 2 ? "void other() { }" : "void frx_startFragment(inout frx_FragmentData data) { /*" + i + "*/ }";
+	private static final IntFunction<String> VERTEX_SOURCES = i -> i == 2 ? "void frx_endVertex(inout frx_VertexData data) { }" : "void frx_startVertex(inout frx_VertexData data) { }";
+
+	private static String load(String id) {
+		final int colon = id.indexOf(':');
+		final Path path = ASSETS.resolve(id.substring(0, colon)).resolve(id.substring(colon + 1));
+
+		try {
+			return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+		} catch (final IOException e) {
+			return null;
+		}
+	}
+
+	@Test
+	void specializedFragment() {
+		final String output = MaterialSourceGenerator.fragment(BASE_FRAGMENT, new int[] {5}, FRAGMENT_SOURCES, true);
+		assert output.equals("void frx_startFragment(inout frx_FragmentData data) { /*5*/ }\nvoid main() {\n\tfrx_startFragment(data);\n}\n");
+		assert !output.contains("cv_programId");
+	}
+
+	@Test
+	void specializedVertex() {
+		final String output = MaterialSourceGenerator.vertex(BASE_VERTEX, new int[] {2}, VERTEX_SOURCES, false);
+		assert output.equals("void frx_endVertex(inout frx_VertexData data) { }\nvoid main() {\n\t// NOOP\n\tfrx_endVertex(data);\n}\n");
+	}
+
+	@Test
+	void sharedIfChain() {
+		final String output = MaterialSourceGenerator.fragment(BASE_FRAGMENT, new int[] {1, 2, 3}, FRAGMENT_SOURCES, false);
+		assert output.equals("void frx_startFragment1(inout frx_FragmentData data) { /*1*/ }\n"
+			+ "void frx_startFragment3(inout frx_FragmentData data) { /*3*/ }\n"
+			+ "\nvoid main() {\n"
+			+ "\tif (cv_programId == 1) { frx_startFragment1(data); }\n"
+			+ "\telse \tif (cv_programId == 2) { }\n"
+			+ "\telse { frx_startFragment3(data); }\n"
+			+ "\n}\n");
+	}
+
+	@Test
+	void sharedSwitch() {
+		final String output = MaterialSourceGenerator.vertex(BASE_VERTEX, new int[] {1, 2}, VERTEX_SOURCES, true);
+		assert output.equals("void frx_startVertex1(inout frx_VertexData data) { }\n"
+			+ "void frx_endVertex2(inout frx_VertexData data) { }\n"
+			+ "\nvoid main() {\n"
+			+ "\tswitch (cv_programId) {\n"
+			+ "\tcase 1: frx_startVertex1(data); break;\n"
+			+ "\tdefault: break;\n"
+			+ "\t}\n"
+			+ "\n"
+			+ "\tswitch (cv_programId) {\n"
+			+ "\tcase 1: break;\n"
+			+ "\tdefault: frx_endVertex2(data); break;\n"
+			+ "\t}\n"
+			+ "\n}\n");
+	}
+
+	@Test
+	void shippedShaders() {
+		final String[] fragmentIds = {"canvas:shaders/material/default.frag", "canvas:shaders/material/warm_glow.frag"};
+		final IntFunction<String> sources = i -> load(fragmentIds[i]);
+		final GlslIncludeGraph graph = new GlslIncludeGraph(ShaderVariantTest::load);
+		final GlslDefines defines = new GlslDefines().version(130).define("FRAGMENT_SHADER").undefine("VERTEX_SHADER").define("PROGRAM_BY_UNIFORM");
+		final String base = load("canvas:shaders/internal/material_main.frag");
+
+		final String specialized = GlslPreprocessor.process(graph.resolve(MaterialSourceGenerator.fragment(base, new int[] {1}, sources, true)), defines);
+		final String shared = GlslPreprocessor.process(graph.resolve(MaterialSourceGenerator.fragment(base, new int[] {0, 1}, sources, true)), defines);
+
+		assert !specialized.contains("switch (cv_programId)");
+		assert specialized.contains("\tfrx_startFragment(data);");
+		assert specialized.contains("fragData.emissivity = lit ? e : 0.0;");
+		assert !specialized.contains("frx_startFragment0");
+		assert !specialized.contains("frx_startFragment1");
+
+		assert shared.contains("switch (cv_programId)");
+		assert shared.contains("case 0: frx_startFragment0(data); break;");
+		assert shared.contains("default: frx_startFragment1(data); break;");
+		assert shared.contains("void frx_startFragment1(inout frx_FragmentData fragData)");
+
+		// shared includes are resolved once either way
+		assert specialized.length() < shared.length();
+	}
+
+	@Test
+	void selection() {
+		final int[] counts = {500, 0, 900, 120, 900, 50};
+		final boolean[] isSpecialized = new boolean[6];
+
+		int[] selected = ShaderVariantSelector.select(counts, isSpecialized, 3, 120);
+		assert selected.length == 3;
+		assert selected[0] == 2 && selected[1] == 4 && selected[2] == 0;
+
+		isSpecialized[2] = true;
+		isSpecialized[4] = true;
+		isSpecialized[0] = true;
+
+		// limit reached
+		selected = ShaderVariantSelector.select(counts, isSpecialized, 3, 120);
+		assert selected.length == 0;
+
+		selected = ShaderVariantSelector.select(counts, isSpecialized, 8, 120);
+		assert selected.length == 1 && selected[0] == 3;
+
+		// below the minimum
+		selected = ShaderVariantSelector.select(counts, isSpecialized, 8, 121);
+		assert selected.length == 0;
+	}
+}
@@ -0,0 +1,102 @@
+package grondag.canvas;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.Test;
+
+import grondag.canvas.material.state.StateBitsCache;
+
+class StateBitsCacheTest {
+	@Test
+	void singleThread() {
+		final StateBitsCache<String> cache = new StateBitsCache<>(100);
+
+		assert cache.get(0) == null;
+		assert cache.putIfAbsent(0, "zero").equals("zero");
+		assert cache.putIfAbsent(0, "other").equals("zero");
+		assert cache.get(0).equals("zero");
+
+		// high bits and sign matter
+		assert cache.get(1L << 63) == null;
+		assert cache.putIfAbsent(1L << 63, "high").equals("high");
+		assert cache.putIfAbsent(-1L, "ones").equals("ones");
+		assert cache.get(1L << 63).equals("high");
+		assert cache.get(-1L).equals("ones");
+		assert cache.get(Long.MAX_VALUE) == null;
+
+		for (int i = 1; i < 100; ++i) {
+			cache.putIfAbsent(i * 0x100000001L, Integer.toString(i));
+		}
+
+		for (int i = 1; i < 100; ++i) {
+			assert cache.get(i * 0x100000001L).equals(Integer.toString(i));
+		}
+	}
+
+	@Test
+	void full() {
+		final StateBitsCache<Long> cache = new StateBitsCache<>(2);
+		boolean threw = false;
+
+		try {
+			for (long i = 0; i < 100; ++i) {
+				cache.putIfAbsent(i, i);
+			}
+		} catch (final IllegalStateException e) {
+			threw = true;
+		}
+
+		assert threw;
+	}
+
+	/** Threads racing to add the same keys must all see one winner per key. */
+	@Test
+	void concurrent() throws InterruptedException {
+		final int keyCount = 4096;
+		final int threadCount = 8;
+		final StateBitsCache<Object> cache = new StateBitsCache<>(keyCount);
+		final Object[][] seen = new Object[threadCount][keyCount];
+		final CountDownLatch start = new CountDownLatch(1);
+		final List<Thread> threads = new ArrayList<>();
+
+		for (int t = 0; t < threadCount; ++t) {
+			final Object[] results = seen[t];
+			final int offset = t * 31;
+
+			final Thread thread = new Thread(() -> {
+				try {
+					start.await();
+				} catch (final InterruptedException e) {
+					return;
+				}
+
+				for (int i = 0; i < keyCount; ++i) {
+					final int k = (i + offset) % keyCount;
+					final long bits = ((long) k << 40) | k;
+					final Object found = cache.get(bits);
+					results[k] = found == null ? cache.putIfAbsent(bits, new Object()) : found;
+				}
+			});
+
+			threads.add(thread);
+			thread.start();
+		}
+
+		start.countDown();
+
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+
+		for (int k = 0; k < keyCount; ++k) {
+			final Object winner = cache.get(((long) k << 40) | k);
+			assert winner != null;
+
+			for (int t = 0; t < threadCount; ++t) {
+				assert seen[t][k] == winner;
+			}
+		}
+	}
+}
@@ -0,0 +1,124 @@
+package grondag.canvas;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+
+import grondag.canvas.perf.LatencyHistogram;
+import grondag.canvas.perf.TelemetryRing;
+import grondag.canvas.perf.TelemetryTrace;
+
+class TelemetryTest {
+	@Test
+	void ringWraps() {
+		final TelemetryRing ring = new TelemetryRing(5, "test", 7);
+		assert ring.capacity() == 8;
+		assert ring.snapshot().count == 0;
+
+		for (int i = 0; i < 20; ++i) {
+			ring.record(i & 3, i * 100, i * 100 + i);
+		}
+
+		final TelemetryRing.Events e = ring.snapshot();
+
+		// the writer could be mid-write on the oldest slot, so it is never copied
+		assert e.count == 7;
+		assert e.threadId == 7;
+
+		for (int n = 0; n < e.count; ++n) {
+			final int i = 13 + n;
+			assert e.startNanos[n] == i * 100;
+			assert e.durationNanos[n] == i;
+			assert e.types[n] == (i & 3);
+		}
+	}
+
+	@Test
+	void histogramBuckets() {
+		// exact below 16, then within an eighth
+		for (long v = 0; v < 16; ++v) {
+			final LatencyHistogram h = new LatencyHistogram();
+			h.add(v);
+			assert h.percentile(50) == v;
+		}
+
+		final LatencyHistogram h = new LatencyHistogram();
+
+		for (long v = 1; v <= 1000000; v = v * 3 + 1) {
+			h.clear();
+			h.add(v);
+			h.add(Long.MAX_VALUE);
+			final long p = h.percentile(50);
+			assert p >= v && p <= v + v / 8 : v + " reported as " + p;
+		}
+
+		assert h.percentile(100) == Long.MAX_VALUE;
+	}
+
+	@Test
+	void histogramPercentiles() {
+		final LatencyHistogram h = new LatencyHistogram();
+		assert h.percentile(99) == 0;
+
+		for (int i = 1000; i >= 1; --i) {
+			h.add(i * 1000L);
+		}
+
+		assert h.count() == 1000;
+		assert h.mean() == 500500;
+		assert h.max() == 1000000;
+		assertNear(h.percentile(50), 500000);
+		assertNear(h.percentile(95), 950000);
+		assertNear(h.percentile(99), 990000);
+		assert h.percentile(100) == 1000000;
+	}
+
+	@Test
+	void chromeTrace() throws Exception {
+		final TelemetryRing ring = new TelemetryRing(16, "Render \"main\"", 3);
+		ring.record(0, 5000, 6500);
+		ring.record(1, 10001, 10001 + 12345678);
+
+		final TelemetryTrace trace = new TelemetryTrace(new String[] {"copy", "build"}, Arrays.asList(ring.snapshot(), new TelemetryRing(4, "idle", 4).snapshot()));
+		assert trace.eventCount() == 2;
+
+		final StringBuilder sb = new StringBuilder();
+		trace.writeChromeJson(sb);
+		final String json = sb.toString();
+
+		assert json.startsWith("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+		assert json.contains("\"tid\":3,\"args\":{\"name\":\"Render \\\"main\\\"\"}");
+		assert json.contains("{\"name\":\"copy\",\"cat\":\"canvas\",\"ph\":\"X\",\"pid\":1,\"tid\":3,\"ts\":0.000,\"dur\":1.500}");
+		assert json.contains("{\"name\":\"build\",\"cat\":\"canvas\",\"ph\":\"X\",\"pid\":1,\"tid\":3,\"ts\":5.001,\"dur\":12345.678}");
+		assert !json.contains("idle");
+		assert json.endsWith("]}\n");
+
+		final LatencyHistogram[] h = trace.histograms();
+		assert h[0].count() == 1 && h[0].max() == 1500;
+		assert h[1].count() == 1;
+
+		assert new TelemetryTrace(new String[0], Collections.emptyList()).eventCount() == 0;
+	}
+
+	@Test
+	void sustainedRecording() {
+		final TelemetryRing ring = new TelemetryRing(1 << 14, "bench", 1);
+		final int count = 5000000;
+
+		for (int i = 0; i < count; ++i) {
+			ring.record(i & 7, i, i + 10);
+		}
+
+		final TelemetryRing.Events e = ring.snapshot();
+		assert e.count == ring.capacity() - 1;
+		final int last = count - 1;
+		assert e.startNanos[e.count - 1] == last;
+		assert e.durationNanos[e.count - 1] == 10;
+		assert e.types[e.count - 1] == (last & 7);
+	}
+
+	private static void assertNear(long actual, long expected) {
+		assert actual >= expected && actual <= expected + expected / 8 : actual + " expected near " + expected;
+	}
+}
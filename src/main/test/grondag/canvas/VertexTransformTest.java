@@ -0,0 +1,135 @@
+package grondag.canvas;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import grondag.canvas.apiimpl.util.NormalHelper;
+import grondag.canvas.buffer.encoding.VertexTransform;
+
+class VertexTransformTest {
+	private static final int STRIDE = 8;
+	private static final int NORMAL = 7;
+
+	@Test
+	void golden() {
+		// rotate 90 degrees around Y and translate
+		final float[] t = {
+			0, 0, 1, 10,
+			0, 1, 0, 20,
+			-1, 0, 0, 30,
+			0, 0, 1,
+			0, 1, 0,
+			-1, 0, 0
+		};
+
+		final int[] data = new int[STRIDE * 2];
+		data[0] = Float.floatToRawIntBits(1);
+		data[1] = Float.floatToRawIntBits(2);
+		data[2] = Float.floatToRawIntBits(3);
+		data[3] = 0xDEADBEEF;
+		// +X normal with flags in high byte
+		data[NORMAL] = 0x7F7FFE | 0xA5000000;
+		data[STRIDE + NORMAL] = 0x7FFE7F;
+
+		VertexTransform.transform(t, data, 0, 2, STRIDE, NORMAL);
+
+		assert Float.intBitsToFloat(data[0]) == 13f;
+		assert Float.intBitsToFloat(data[1]) == 22f;
+		assert Float.intBitsToFloat(data[2]) == 29f;
+		assert data[3] == 0xDEADBEEF;
+		// now -Z, flags unchanged
+		assert data[NORMAL] == (0x007F7F | 0xA5000000);
+		// +Y is unchanged by rotation around Y
+		assert data[STRIDE + NORMAL] == 0x7FFE7F;
+		assert Float.intBitsToFloat(data[STRIDE]) == 10f;
+	}
+
+	@Test
+	void onlyTransformsRange() {
+		final float[] t = new float[VertexTransform.TRANSFORM_LENGTH];
+		t[3] = 1;
+		t[7] = 1;
+		t[11] = 1;
+
+		final int[] data = new int[STRIDE * 3];
+		final int[] expected = data.clone();
+
+		VertexTransform.transform(t, data, STRIDE, 1, STRIDE, NORMAL);
+
+		for (int i = 0; i < data.length; ++i) {
+			if (i >= STRIDE && i < STRIDE + 3) {
+				assert Float.intBitsToFloat(data[i]) == 1f;
+			} else if (i != STRIDE + NORMAL) {
+				assert data[i] == expected[i];
+			}
+		}
+	}
+
+	@Test
+	void matchesPerVertexTransform() {
+		final Random r = new Random(42);
+		final float[] t = new float[VertexTransform.TRANSFORM_LENGTH];
+		final int vertexCount = 64;
+		final int[] data = new int[vertexCount * STRIDE];
+
+		for (int pass = 0; pass < 1000; ++pass) {
+			for (int i = 0; i < t.length; ++i) {
+				t[i] = (r.nextFloat() - 0.5f) * (i < 12 ? 64 : 2.5f);
+			}
+
+			for (int v = 0; v < vertexCount; ++v) {
+				final int base = v * STRIDE;
+
+				for (int i = 0; i < STRIDE; ++i) {
+					data[base + i] = r.nextInt();
+				}
+
+				data[base] = Float.floatToRawIntBits((r.nextFloat() - 0.5f) * 32);
+				data[base + 1] = Float.floatToRawIntBits((r.nextFloat() - 0.5f) * 32);
+				data[base + 2] = Float.floatToRawIntBits((r.nextFloat() - 0.5f) * 32);
+
+				// shared normals exercise reuse of the last result
+				if (v > 0 && r.nextBoolean()) {
+					data[base + NORMAL] = (data[base - STRIDE + NORMAL] & 0xFFFFFF) | (data[base + NORMAL] & 0xFF000000);
+				}
+			}
+
+			final int[] expected = data.clone();
+
+			for (int v = 0; v < vertexCount; ++v) {
+				referenceTransform(t, expected, v * STRIDE);
+			}
+
+			VertexTransform.transform(t, data, 0, vertexCount, STRIDE, NORMAL);
+
+			for (int i = 0; i < data.length; ++i) {
+				assert data[i] == expected[i];
+			}
+		}
+	}
+
+	/**
+	 * The per-vertex path the kernel replaces: position as in QuadViewImpl.transformAndAppend
+	 * and normal as in Matrix3fExt.canvas_transform.
+	 */
+	private static void referenceTransform(float[] t, int[] data, int base) {
+		final float x = Float.intBitsToFloat(data[base]);
+		final float y = Float.intBitsToFloat(data[base + 1]);
+		final float z = Float.intBitsToFloat(data[base + 2]);
+
+		data[base] = Float.floatToRawIntBits(t[0] * x + t[1] * y + t[2] * z + t[3]);
+		data[base + 1] = Float.floatToRawIntBits(t[4] * x + t[5] * y + t[6] * z + t[7]);
+		data[base + 2] = Float.floatToRawIntBits(t[8] * x + t[9] * y + t[10] * z + t[11]);
+
+		final int packed = data[base + NORMAL];
+		final float nx = NormalHelper.getPackedNormalComponent(packed, 0);
+		final float ny = NormalHelper.getPackedNormalComponent(packed, 1);
+		final float nz = NormalHelper.getPackedNormalComponent(packed, 2);
+
+		data[base + NORMAL] = NormalHelper.packNormal(
+			t[12] * nx + t[13] * ny + t[14] * nz,
+			t[15] * nx + t[16] * ny + t[17] * nz,
+			t[18] * nx + t[19] * ny + t[20] * nz) | (packed & 0xFF000000);
+	}
+}